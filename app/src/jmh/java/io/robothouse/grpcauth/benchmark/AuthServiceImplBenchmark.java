@@ -0,0 +1,72 @@
+package io.robothouse.grpcauth.benchmark;
+
+import io.grpc.Context;
+import io.grpc.stub.StreamObserver;
+import io.robothouse.grpcauth.lib.component.PeerFailureLimiter;
+import io.robothouse.grpcauth.lib.util.CtxConstants;
+import io.robothouse.grpcauth.proto.AuthResponse;
+import io.robothouse.grpcauth.proto.AuthenticateRequest;
+import io.robothouse.grpcauth.service.AuthServiceImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures AuthServiceImpl.authenticate response construction for an already authenticated call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class AuthServiceImplBenchmark {
+
+    private AuthServiceImpl authService;
+
+    /**
+     * Context carrying a verified JWT and request id, as set up by the interceptors.
+     */
+    private Context context;
+
+    private final ResponseSink responseSink = new ResponseSink();
+
+    @Setup
+    public void setUp() {
+        var tokens = new BenchmarkTokens();
+        var decoder = tokens.decoder();
+        var jwt = decoder.decode(tokens.token("valid"));
+        authService = new AuthServiceImpl(decoder, new PeerFailureLimiter(false, 1, 1, 1), Runnable::run, 100, 64, Optional.empty());
+        context = Context.current()
+                .withValue(CtxConstants.JWT_CONTEXT_KEY, Optional.of(jwt))
+                .withValue(CtxConstants.REQUEST_ID_CONTEXT_KEY, "benchmark-request-id");
+    }
+
+    @Benchmark
+    public AuthResponse authenticate() {
+        var previous = context.attach();
+        try {
+            authService.authenticate(AuthenticateRequest.getDefaultInstance(), responseSink);
+        } finally {
+            context.detach(previous);
+        }
+        return responseSink.last;
+    }
+
+    /**
+     * Observer that keeps the last response so the benchmark can return it.
+     */
+    private static final class ResponseSink implements StreamObserver<AuthResponse> {
+
+        private AuthResponse last;
+
+        @Override
+        public void onNext(AuthResponse value) {
+            last = value;
+        }
+
+        @Override
+        public void onError(Throwable t) {}
+
+        @Override
+        public void onCompleted() {}
+    }
+}
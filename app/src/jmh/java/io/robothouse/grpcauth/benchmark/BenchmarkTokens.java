@@ -0,0 +1,173 @@
+package io.robothouse.grpcauth.benchmark;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import io.robothouse.grpcauth.lib.jwt.IssuerJwtDecoders;
+import io.robothouse.grpcauth.lib.jwt.IssuerMetadata;
+import io.robothouse.grpcauth.lib.jwt.Rs256JwtDecoder;
+import io.robothouse.grpcauth.lib.ticket.SessionTicketKeyRing;
+import io.robothouse.grpcauth.lib.ticket.SessionTickets;
+import io.robothouse.grpcauth.lib.ticket.TicketAwareJwtDecoder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Signs benchmark tokens with a locally generated RSA key and builds a decoder that trusts it.
+ */
+public final class BenchmarkTokens {
+
+    /**
+     * The issuer of every benchmark token, shaped like a Firebase issuer.
+     */
+    public static final String ISSUER = "https://securetoken.google.com/benchmark-project";
+
+    /**
+     * The key id shared by the trusted key and the impostor key.
+     */
+    private static final String KEY_ID = "benchmark-key";
+
+    private final RSAKey signingKey;
+
+    /**
+     * A different key published under the same key id, used to produce bad signatures.
+     */
+    private final RSAKey impostorKey;
+
+    private final SessionTickets sessionTickets = sessionTickets(1);
+
+    /**
+     * Tickets signed with a different secret under the same key id, used to produce bad MACs.
+     */
+    private final SessionTickets impostorTickets = sessionTickets(2);
+
+    public BenchmarkTokens() {
+        try {
+            this.signingKey = new RSAKeyGenerator(2048).keyID(KEY_ID).generate();
+            this.impostorKey = new RSAKeyGenerator(2048).keyID(KEY_ID).generate();
+        } catch (JOSEException e) {
+            throw new IllegalStateException("Unable to generate benchmark keys", e);
+        }
+    }
+
+    /**
+     * Returns the public JWK set containing the trusted signing key.
+     */
+    public JWKSet jwkSet() {
+        return new JWKSet(signingKey.toPublicJWK());
+    }
+
+    /**
+     * Returns the metadata of the benchmark issuer.
+     */
+    public IssuerMetadata issuerMetadata() {
+        return new IssuerMetadata(ISSUER, URI.create("http://localhost/jwks"), Set.of(JWSAlgorithm.RS256));
+    }
+
+    /**
+     * Returns a decoder configured like the production issuer decoder but trusting the local key.
+     */
+    public JwtDecoder decoder() {
+        return IssuerJwtDecoders.create(issuerMetadata(), new ImmutableJWKSet<>(jwkSet()));
+    }
+
+    /**
+     * Returns the decoder specialised for RS256 tokens, trusting the local key.
+     */
+    public JwtDecoder rs256Decoder() {
+        var keySet = jwkSet();
+        return new Rs256JwtDecoder(ISSUER, () -> keySet, new ImmutableJWKSet<>(keySet));
+    }
+
+    /**
+     * Returns a decoder that verifies session tickets and passes ID tokens to {@link #decoder()}.
+     */
+    public JwtDecoder ticketAwareDecoder() {
+        return new TicketAwareJwtDecoder(decoder(), sessionTickets);
+    }
+
+    /**
+     * Returns a session ticket of the given kind: valid, expired, bad_signature or malformed.
+     */
+    public String ticket(String kind) {
+        var now = Instant.now();
+        return switch (kind) {
+            case "valid" -> sessionTickets.mint(idToken(now.plus(Duration.ofHours(1)))).token();
+            case "expired" -> sessionTickets.mint(idToken(now.minus(Duration.ofHours(1)))).token();
+            case "bad_signature" -> impostorTickets.mint(idToken(now.plus(Duration.ofHours(1)))).token();
+            case "malformed" -> SessionTickets.PREFIX + "benchmark.not-a-ticket";
+            default -> throw new IllegalArgumentException("Unknown ticket kind: " + kind);
+        };
+    }
+
+    /**
+     * Returns a raw token of the given kind: valid, expired, bad_signature or malformed.
+     */
+    public String token(String kind) {
+        var now = Instant.now();
+        return switch (kind) {
+            case "valid" -> sign(signingKey, now.minus(Duration.ofMinutes(1)), now.plus(Duration.ofHours(1)));
+            case "expired" -> sign(signingKey, now.minus(Duration.ofHours(2)), now.minus(Duration.ofHours(1)));
+            case "bad_signature" -> sign(impostorKey, now.minus(Duration.ofMinutes(1)), now.plus(Duration.ofHours(1)));
+            case "malformed" -> "not-a.valid-jwt";
+            default -> throw new IllegalArgumentException("Unknown token kind: " + kind);
+        };
+    }
+
+    private static SessionTickets sessionTickets(int fill) {
+        var secret = new byte[SessionTicketKeyRing.MIN_SECRET_LENGTH];
+        Arrays.fill(secret, (byte) fill);
+        var keyRing = SessionTicketKeyRing.of("benchmark:" + Base64.getEncoder().encodeToString(secret));
+        return new SessionTickets(keyRing, Duration.ofMinutes(15));
+    }
+
+    private static Jwt idToken(Instant expiresAt) {
+        return Jwt.withTokenValue("benchmark-id-token")
+                .header("alg", "RS256")
+                .issuer(ISSUER)
+                .audience(List.of("benchmark-project"))
+                .subject("benchmark-user")
+                .issuedAt(expiresAt.minus(Duration.ofHours(2)))
+                .expiresAt(expiresAt)
+                .build();
+    }
+
+    private static String sign(RSAKey key, Instant issuedAt, Instant expiresAt) {
+        var header = new JWSHeader.Builder(JWSAlgorithm.RS256)
+                .keyID(key.getKeyID())
+                .type(JOSEObjectType.JWT)
+                .build();
+        var claims = new JWTClaimsSet.Builder()
+                .issuer(ISSUER)
+                .audience("benchmark-project")
+                .subject("benchmark-user")
+                .issueTime(Date.from(issuedAt))
+                .expirationTime(Date.from(expiresAt))
+                .claim("email", "benchmark@example.com")
+                .build();
+        try {
+            var jwt = new SignedJWT(header, claims);
+            jwt.sign(new RSASSASigner(key));
+            return jwt.serialize();
+        } catch (JOSEException e) {
+            throw new IllegalStateException("Unable to sign benchmark token", e);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package io.robothouse.grpcauth.benchmark;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.Server;
+import io.grpc.ServerInterceptors;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.MetadataUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.robothouse.grpcauth.lib.component.AccessLogger;
+import io.robothouse.grpcauth.lib.component.AuthMetrics;
+import io.robothouse.grpcauth.lib.component.AuthPolicyRegistry;
+import io.robothouse.grpcauth.lib.component.ConcurrencyLimitInterceptor;
+import io.robothouse.grpcauth.lib.component.JwtAuthenticationInterceptor;
+import io.robothouse.grpcauth.lib.component.PeerFailureLimiter;
+import io.robothouse.grpcauth.lib.component.RequestLoggingInterceptor;
+import io.robothouse.grpcauth.lib.jwt.CachingJwtDecoder;
+import io.robothouse.grpcauth.lib.requestid.RequestIdGenerators;
+import io.robothouse.grpcauth.proto.AuthServiceGrpc;
+import io.robothouse.grpcauth.proto.AuthenticateRequest;
+import io.robothouse.grpcauth.service.AuthServiceImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a complete Authenticate call through the interceptor chain and service over an
+ * in-process transport, which excludes network and HTTP/2 framing costs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class InProcessChainBenchmark {
+
+    private static final Metadata.Key<String> AUTHORIZATION_KEY =
+            Metadata.Key.of("Authorization", Metadata.ASCII_STRING_MARSHALLER);
+
+    /**
+     * The kind of credential presented: a token kind understood by BenchmarkTokens, or missing.
+     */
+    @Param({"valid", "expired", "missing"})
+    public String token;
+
+    /**
+     * Whether the decoder is wrapped in the verified-token cache.
+     */
+    @Param({"true", "false"})
+    public boolean cached;
+
+    private Server server;
+
+    private ManagedChannel channel;
+
+    private AuthServiceGrpc.AuthServiceBlockingStub stub;
+
+    @Setup
+    public void setUp() throws IOException {
+        var tokens = new BenchmarkTokens();
+        var decoder = cached
+                ? new CachingJwtDecoder(tokens.decoder(), 10_000, Duration.ofSeconds(30))
+                : tokens.decoder();
+        var service = new AuthServiceImpl(decoder, new PeerFailureLimiter(false, 1, 1, 1), Runnable::run, 100, 64, Optional.empty());
+        var meterRegistry = new SimpleMeterRegistry();
+        var authMetrics = new AuthMetrics(meterRegistry);
+        var accessLogger = new AccessLogger(1);
+        var peerFailureLimiter = new PeerFailureLimiter(true, 5, 20, 100_000);
+        var serverName = InProcessServerBuilder.generateName();
+
+        // The last interceptor runs first, matching the @Order of the production beans.
+        server = InProcessServerBuilder.forName(serverName)
+                .directExecutor()
+                .addService(ServerInterceptors.intercept(service,
+                        new JwtAuthenticationInterceptor(decoder, authMetrics, peerFailureLimiter,
+                                new AuthPolicyRegistry(List.of(service))),
+                        new ConcurrencyLimitInterceptor(true, 100, 20, 1000, Duration.ofMillis(100), meterRegistry),
+                        new RequestLoggingInterceptor(authMetrics, RequestIdGenerators.randomUuid(), accessLogger)))
+                .build()
+                .start();
+        channel = InProcessChannelBuilder.forName(serverName).directExecutor().build();
+
+        stub = AuthServiceGrpc.newBlockingStub(channel);
+        if (!"missing".equals(token)) {
+            var headers = new Metadata();
+            headers.put(AUTHORIZATION_KEY, "Bearer " + tokens.token(token));
+            stub = stub.withInterceptors(MetadataUtils.newAttachHeadersInterceptor(headers));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public Object authenticate() {
+        try {
+            return stub.authenticate(AuthenticateRequest.getDefaultInstance());
+        } catch (StatusRuntimeException e) {
+            return e.getStatus();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package io.robothouse.grpcauth.benchmark;
+
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.robothouse.grpcauth.lib.component.AuthMetrics;
+import io.robothouse.grpcauth.lib.component.AuthPolicyRegistry;
+import io.robothouse.grpcauth.lib.component.JwtAuthenticationInterceptor;
+import io.robothouse.grpcauth.lib.component.PeerFailureLimiter;
+import io.robothouse.grpcauth.lib.jwt.CachingJwtDecoder;
+import io.robothouse.grpcauth.lib.jwt.NegativeCachingJwtDecoder;
+import io.robothouse.grpcauth.lib.jwt.SingleFlightJwtDecoder;
+import io.robothouse.grpcauth.proto.AuthResponse;
+import io.robothouse.grpcauth.proto.AuthServiceGrpc;
+import io.robothouse.grpcauth.proto.AuthenticateRequest;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures JwtAuthenticationInterceptor.interceptCall for each kind of credential,
+ * with and without the caching and coalescing decorators in front of the decoder.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class JwtAuthenticationInterceptorBenchmark {
+
+    private static final Metadata.Key<String> AUTHORIZATION_KEY =
+            Metadata.Key.of("Authorization", Metadata.ASCII_STRING_MARSHALLER);
+
+    /**
+     * The kind of credential presented: a token kind understood by BenchmarkTokens, or missing.
+     */
+    @Param({"valid", "expired", "bad_signature", "malformed", "missing"})
+    public String token;
+
+    /**
+     * Whether the decoder is wrapped in the verified-token cache, single-flight and negative cache.
+     */
+    @Param({"true", "false"})
+    public boolean cached;
+
+    private JwtAuthenticationInterceptor interceptor;
+
+    private ServerCall<AuthenticateRequest, AuthResponse> call;
+
+    private ServerCallHandler<AuthenticateRequest, AuthResponse> next;
+
+    private Metadata headers;
+
+    @Setup
+    public void setUp() {
+        var tokens = new BenchmarkTokens();
+        var decoder = cached
+                ? new CachingJwtDecoder(
+                        new SingleFlightJwtDecoder(
+                                new NegativeCachingJwtDecoder(tokens.decoder(), 10_000, Duration.ofSeconds(10))),
+                        10_000,
+                        Duration.ofSeconds(30))
+                : tokens.decoder();
+        // The no-op call has no remote address, so the failed-attempt limiter never engages.
+        interceptor = new JwtAuthenticationInterceptor(
+                decoder,
+                new AuthMetrics(new SimpleMeterRegistry()),
+                new PeerFailureLimiter(true, 5, 20, 100_000),
+                new AuthPolicyRegistry(List.of(new AuthServiceGrpc.AuthServiceImplBase() {})));
+        call = new NoopServerCall<>(AuthServiceGrpc.getAuthenticateMethod());
+        next = NoopServerCall.noopHandler();
+        headers = new Metadata();
+        if (!"missing".equals(token)) {
+            headers.put(AUTHORIZATION_KEY, "Bearer " + tokens.token(token));
+        }
+    }
+
+    @Benchmark
+    public ServerCall.Listener<AuthenticateRequest> interceptCall() {
+        return interceptor.interceptCall(call, headers, next);
+    }
+}
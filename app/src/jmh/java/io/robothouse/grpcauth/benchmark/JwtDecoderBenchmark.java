@@ -0,0 +1,54 @@
+package io.robothouse.grpcauth.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the decoder engines, and session tickets, on each kind of credential without any
+ * caching in front of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class JwtDecoderBenchmark {
+
+    /**
+     * The decoder engine: the general-purpose Spring decoder, the RS256-specialised one, or
+     * session tickets verified in front of the general-purpose decoder.
+     */
+    @Param({"nimbus", "rs256", "ticket"})
+    public String engine;
+
+    /**
+     * The kind of token decoded, as understood by BenchmarkTokens.
+     */
+    @Param({"valid", "expired", "bad_signature", "malformed"})
+    public String token;
+
+    private JwtDecoder decoder;
+
+    private String rawToken;
+
+    @Setup
+    public void setUp() {
+        var tokens = new BenchmarkTokens();
+        decoder = switch (engine) {
+            case "rs256" -> tokens.rs256Decoder();
+            case "ticket" -> tokens.ticketAwareDecoder();
+            default -> tokens.decoder();
+        };
+        rawToken = "ticket".equals(engine) ? tokens.ticket(token) : tokens.token(token);
+    }
+
+    @Benchmark
+    public Object decode() {
+        try {
+            return decoder.decode(rawToken);
+        } catch (JwtException e) {
+            return e;
+        }
+    }
+}
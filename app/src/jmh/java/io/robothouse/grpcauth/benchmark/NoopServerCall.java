@@ -0,0 +1,59 @@
+package io.robothouse.grpcauth.benchmark;
+
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.Status;
+
+/**
+ * Server call that discards everything sent on it, for driving interceptors directly.
+ */
+public final class NoopServerCall<ReqT, RespT> extends ServerCall<ReqT, RespT> {
+
+    private final MethodDescriptor<ReqT, RespT> methodDescriptor;
+
+    /**
+     * The status the call was last closed with, or null if it is still open.
+     */
+    private Status closedStatus;
+
+    public NoopServerCall(MethodDescriptor<ReqT, RespT> methodDescriptor) {
+        this.methodDescriptor = methodDescriptor;
+    }
+
+    /**
+     * Returns a handler that starts every call with a listener that ignores all events.
+     */
+    public static <ReqT, RespT> ServerCallHandler<ReqT, RespT> noopHandler() {
+        return (call, headers) -> new ServerCall.Listener<>() {};
+    }
+
+    public Status closedStatus() {
+        return closedStatus;
+    }
+
+    @Override
+    public void request(int numMessages) {}
+
+    @Override
+    public void sendHeaders(Metadata headers) {}
+
+    @Override
+    public void sendMessage(RespT message) {}
+
+    @Override
+    public void close(Status status, Metadata trailers) {
+        closedStatus = status;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    @Override
+    public MethodDescriptor<ReqT, RespT> getMethodDescriptor() {
+        return methodDescriptor;
+    }
+}
@@ -0,0 +1,50 @@
+package io.robothouse.grpcauth.benchmark;
+
+import io.grpc.Metadata;
+import io.robothouse.grpcauth.lib.requestid.HeaderRequestIdGenerator;
+import io.robothouse.grpcauth.lib.requestid.RequestIdGenerator;
+import io.robothouse.grpcauth.lib.requestid.RequestIdGenerators;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the request id strategies with every available core generating ids at once, which
+ * is where contention on a shared random source shows up.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(Threads.MAX)
+public class RequestIdGeneratorBenchmark {
+
+    /**
+     * The strategy under test; 'propagated' reuses an incoming x-request-id header.
+     */
+    @Param({"random_uuid", "thread_local_random", "uuid_v7", "propagated"})
+    public String strategy;
+
+    private RequestIdGenerator generator;
+
+    private Metadata headers;
+
+    @Setup
+    public void setUp() {
+        headers = new Metadata();
+        generator = switch (strategy) {
+            case "random_uuid" -> RequestIdGenerators.randomUuid();
+            case "thread_local_random" -> RequestIdGenerators.threadLocalRandom();
+            case "uuid_v7" -> RequestIdGenerators.uuidV7();
+            case "propagated" -> {
+                headers.put(HeaderRequestIdGenerator.REQUEST_ID_METADATA_KEY, "0192b6f0-4f8e-7c41-9d2a-6e5b3c1f0a7d");
+                yield new HeaderRequestIdGenerator(RequestIdGenerators.randomUuid());
+            }
+            default -> throw new IllegalArgumentException("Unknown strategy: " + strategy);
+        };
+    }
+
+    @Benchmark
+    public String generate() {
+        return generator.generate(headers);
+    }
+}
@@ -0,0 +1,56 @@
+package io.robothouse.grpcauth.benchmark;
+
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.robothouse.grpcauth.lib.component.AccessLogger;
+import io.robothouse.grpcauth.lib.component.AuthMetrics;
+import io.robothouse.grpcauth.lib.component.RequestLoggingInterceptor;
+import io.robothouse.grpcauth.lib.requestid.RequestIdGenerators;
+import io.robothouse.grpcauth.proto.AuthResponse;
+import io.robothouse.grpcauth.proto.AuthServiceGrpc;
+import io.robothouse.grpcauth.proto.AuthenticateRequest;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a full RequestLoggingInterceptor cycle: request id generation, MDC setup, the
+ * access-log event and MDC cleanup on completion, with and without success sampling.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RequestLoggingInterceptorBenchmark {
+
+    /**
+     * One in how many successful calls is written to the access log.
+     */
+    @Param({"1", "100"})
+    public int successSampleRate;
+
+    private RequestLoggingInterceptor interceptor;
+
+    private ServerCall<AuthenticateRequest, AuthResponse> call;
+
+    private ServerCallHandler<AuthenticateRequest, AuthResponse> next;
+
+    private Metadata headers;
+
+    @Setup
+    public void setUp() {
+        interceptor = new RequestLoggingInterceptor(
+                new AuthMetrics(new SimpleMeterRegistry()), RequestIdGenerators.randomUuid(), new AccessLogger(successSampleRate));
+        call = new NoopServerCall<>(AuthServiceGrpc.getAuthenticateMethod());
+        next = NoopServerCall.noopHandler();
+        headers = new Metadata();
+    }
+
+    @Benchmark
+    public ServerCall.Listener<AuthenticateRequest> interceptAndComplete() {
+        var listener = interceptor.interceptCall(call, headers, next);
+        listener.onComplete();
+        return listener;
+    }
+}
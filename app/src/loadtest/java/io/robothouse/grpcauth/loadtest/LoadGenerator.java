@@ -0,0 +1,160 @@
+package io.robothouse.grpcauth.loadtest;
+
+import io.grpc.Channel;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.stub.MetadataUtils;
+import io.grpc.stub.StreamObserver;
+import io.robothouse.grpcauth.proto.AuthResponse;
+import io.robothouse.grpcauth.proto.AuthServiceGrpc;
+import io.robothouse.grpcauth.proto.AuthenticateRequest;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives {@code AuthService/Authenticate} calls over a channel, in closed-loop or open-loop mode.
+ *
+ * <p>Every token is bound to its own stub when the generator is created, so starting a call
+ * only picks a stub and allocates no headers.</p>
+ */
+final class LoadGenerator {
+
+    private static final Metadata.Key<String> AUTHORIZATION =
+            Metadata.Key.of("Authorization", Metadata.ASCII_STRING_MARSHALLER);
+
+    /**
+     * How long a phase waits for calls still in flight once it stops starting calls.
+     */
+    private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(30);
+
+    private final LoadTestSettings settings;
+
+    private final Map<TokenKind, AuthServiceGrpc.AuthServiceStub[]> stubs = new EnumMap<>(TokenKind.class);
+
+    LoadGenerator(Channel channel, StubIssuer issuer, LoadTestSettings settings) {
+        this.settings = settings;
+        var stub = AuthServiceGrpc.newStub(channel);
+        for (var kind : settings.mix().kinds()) {
+            stubs.put(kind, issuer.tokens(kind, settings.distinctTokens()).stream()
+                    .map(token -> token == null ? stub : stub.withInterceptors(
+                            MetadataUtils.newAttachHeadersInterceptor(authorization(token))))
+                    .toArray(AuthServiceGrpc.AuthServiceStub[]::new));
+        }
+    }
+
+    /**
+     * Applies load for the given duration, then waits for the calls in flight to complete.
+     *
+     * @param duration how long calls are started for
+     * @return the results of the calls, and the time taken until the last call completed
+     */
+    Phase run(Duration duration) throws InterruptedException {
+        var results = new LoadResults(settings.mix().kinds());
+        var start = System.nanoTime();
+        var end = start + duration.toNanos();
+        if (settings.mode() == LoadTestSettings.Mode.CLOSED) {
+            runClosedLoop(end, results);
+        } else {
+            runOpenLoop(start, end, results);
+        }
+        return new Phase(results, Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private void runClosedLoop(long end, LoadResults results) throws InterruptedException {
+        var callers = new CountDownLatch(settings.concurrency());
+        for (var i = 0; i < settings.concurrency(); i++) {
+            callNext(end, results, callers);
+        }
+        if (!callers.await(DRAIN_TIMEOUT.toNanos() + end - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+            throw new IllegalStateException("Calls did not complete within " + DRAIN_TIMEOUT);
+        }
+    }
+
+    /**
+     * Starts a caller's next call, or retires the caller once the phase has ended.
+     */
+    private void callNext(long end, LoadResults results, CountDownLatch callers) {
+        var now = System.nanoTime();
+        if (now - end >= 0) {
+            callers.countDown();
+            return;
+        }
+        call(settings.mix().next(), now, results, () -> callNext(end, results, callers));
+    }
+
+    /**
+     * Starts calls at the configured rate. Latency is measured from when each call was due, not
+     * from when it was started, so a generator that falls behind does not hide the delay.
+     */
+    private void runOpenLoop(long start, long end, LoadResults results) throws InterruptedException {
+        var intervalNanos = TimeUnit.SECONDS.toNanos(1) / (double) settings.rate();
+        var inFlight = new AtomicInteger();
+        for (long i = 0; ; i++) {
+            var due = start + (long) (i * intervalNanos);
+            if (due - end >= 0) {
+                break;
+            }
+            long wait;
+            while ((wait = due - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            if (inFlight.incrementAndGet() > settings.concurrency()) {
+                inFlight.decrementAndGet();
+                results.recordDropped();
+                continue;
+            }
+            call(settings.mix().next(), due, results, inFlight::decrementAndGet);
+        }
+
+        var drainDeadline = System.nanoTime() + DRAIN_TIMEOUT.toNanos();
+        while (inFlight.get() > 0) {
+            if (System.nanoTime() - drainDeadline >= 0) {
+                throw new IllegalStateException("Calls did not complete within " + DRAIN_TIMEOUT);
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    private void call(TokenKind kind, long startNanos, LoadResults results, Runnable onComplete) {
+        var kindStubs = stubs.get(kind);
+        var stub = kindStubs[ThreadLocalRandom.current().nextInt(kindStubs.length)];
+        stub.authenticate(AuthenticateRequest.getDefaultInstance(), new StreamObserver<>() {
+            @Override
+            public void onNext(AuthResponse response) {
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                results.record(kind, Status.fromThrowable(t).getCode(), System.nanoTime() - startNanos);
+                onComplete.run();
+            }
+
+            @Override
+            public void onCompleted() {
+                results.record(kind, Status.Code.OK, System.nanoTime() - startNanos);
+                onComplete.run();
+            }
+        });
+    }
+
+    private static Metadata authorization(String token) {
+        var headers = new Metadata();
+        headers.put(AUTHORIZATION, "Bearer " + token);
+        return headers;
+    }
+
+    /**
+     * The results of one phase.
+     *
+     * @param results the latencies and status codes of the phase's calls
+     * @param elapsed the time from the first call starting to the last call completing
+     */
+    record Phase(LoadResults results, Duration elapsed) {}
+}
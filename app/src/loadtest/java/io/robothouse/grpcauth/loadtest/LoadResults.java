@@ -0,0 +1,99 @@
+package io.robothouse.grpcauth.loadtest;
+
+import io.grpc.Status;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies and status codes of the calls of one load-test phase, per token kind.
+ *
+ * <p>Latencies are recorded in microseconds into HdrHistogram recorders, which take values
+ * from many threads without locking.</p>
+ */
+final class LoadResults {
+
+    /**
+     * Significant decimal digits kept by the histograms.
+     */
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final Map<TokenKind, Recorder> latencies = new EnumMap<>(TokenKind.class);
+
+    private final Map<TokenKind, Map<Status.Code, LongAdder>> statuses = new EnumMap<>(TokenKind.class);
+
+    private final LongAdder dropped = new LongAdder();
+
+    LoadResults(Iterable<TokenKind> kinds) {
+        for (var kind : kinds) {
+            latencies.put(kind, new Recorder(SIGNIFICANT_DIGITS));
+            statuses.put(kind, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Records a completed call.
+     */
+    void record(TokenKind kind, Status.Code code, long latencyNanos) {
+        latencies.get(kind).recordValue(Math.max(1, TimeUnit.NANOSECONDS.toMicros(latencyNanos)));
+        statuses.get(kind).computeIfAbsent(code, c -> new LongAdder()).increment();
+    }
+
+    /**
+     * Records an open-loop call that was not started because too many calls were in flight.
+     */
+    void recordDropped() {
+        dropped.increment();
+    }
+
+    /**
+     * Prints throughput, latency percentiles and status codes per token kind and overall, and
+     * returns the overall latency histogram. Must be called once, after every call has completed.
+     *
+     * @param out the stream the report is printed to
+     * @param elapsed the time from the first call starting to the last call completing
+     * @return the latency histogram of all calls, in microseconds
+     */
+    Histogram report(PrintStream out, Duration elapsed) {
+        var seconds = elapsed.toNanos() / 1e9;
+        var total = new Histogram(SIGNIFICANT_DIGITS);
+        var totalStatuses = new TreeMap<Status.Code, Long>();
+
+        out.printf("%-14s %10s %12s %9s %9s %9s %9s  %s%n",
+                "kind", "calls", "calls/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "statuses");
+        latencies.forEach((kind, recorder) -> {
+            var histogram = recorder.getIntervalHistogram();
+            total.add(histogram);
+            var kindStatuses = new TreeMap<Status.Code, Long>();
+            statuses.get(kind).forEach((code, count) -> kindStatuses.put(code, count.sum()));
+            kindStatuses.forEach((code, count) -> totalStatuses.merge(code, count, Long::sum));
+            printRow(out, kind.label(), histogram, seconds, kindStatuses);
+        });
+        printRow(out, "all", total, seconds, totalStatuses);
+        if (dropped.sum() > 0) {
+            out.printf("%d open-loop calls were not started because the maximum in flight was reached%n", dropped.sum());
+        }
+        return total;
+    }
+
+    private static void printRow(
+            PrintStream out, String label, Histogram histogram, double seconds, Map<Status.Code, Long> statuses) {
+        out.printf("%-14s %10d %12.1f %9.3f %9.3f %9.3f %9.3f  %s%n",
+                label,
+                histogram.getTotalCount(),
+                histogram.getTotalCount() / seconds,
+                histogram.getValueAtPercentile(50) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0,
+                histogram.getMaxValue() / 1000.0,
+                statuses);
+    }
+}
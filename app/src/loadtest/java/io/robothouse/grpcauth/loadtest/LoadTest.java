@@ -0,0 +1,78 @@
+package io.robothouse.grpcauth.loadtest;
+
+import io.grpc.Grpc;
+import io.grpc.InsecureChannelCredentials;
+import io.robothouse.grpcauth.GrpcApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end load test of {@code AuthService/Authenticate}.
+ *
+ * <p>Starts the Spring Boot application with a {@link StubIssuer} as its issuer, in static
+ * metadata mode so that nothing leaves the machine, then applies load over a real gRPC channel
+ * on the loopback interface. Load is applied for a warm-up period, whose results are discarded,
+ * and then measured, and the throughput and HdrHistogram latency percentiles of each token kind
+ * are printed. The client runs in the same JVM as the server, so results are for comparing
+ * builds on the same machine, not absolute capacity.</p>
+ *
+ * <p>Settings are read from {@code loadtest.*} system properties (see {@link LoadTestSettings}).
+ * {@code spring.*} system properties override the application's configuration as usual; peer
+ * throttling is disabled unless set, since every call comes from the same address.</p>
+ */
+public final class LoadTest {
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        var settings = LoadTestSettings.fromSystemProperties();
+        var out = System.out;
+
+        try (var issuer = new StubIssuer()) {
+            // System properties rather than default properties, which application.yml would override
+            System.getProperties().putIfAbsent("spring.authentication.project_id", StubIssuer.PROJECT_ID);
+            System.getProperties().putIfAbsent("spring.authentication.metadata.mode", "static");
+            System.getProperties().putIfAbsent("spring.authentication.metadata.jwks_uri", issuer.jwkSetUri().toString());
+            System.getProperties().putIfAbsent("spring.authentication.peer_throttle.enabled", "false");
+            System.getProperties().putIfAbsent("spring.grpc.server.port", String.valueOf(freePort()));
+            System.getProperties().putIfAbsent("management.server.port", "0");
+
+            try (var context = new SpringApplicationBuilder(GrpcApplication.class).run(args)) {
+                var port = context.getEnvironment().getProperty("spring.grpc.server.port");
+                var channel = Grpc.newChannelBuilderForAddress("localhost", Integer.parseInt(port),
+                                InsecureChannelCredentials.create())
+                        .directExecutor()
+                        .build();
+                try {
+                    var generator = new LoadGenerator(channel, issuer, settings);
+                    out.println("Load test: " + settings);
+                    out.println("Warming up for " + settings.warmup().toSeconds() + "s");
+                    generator.run(settings.warmup());
+                    out.println("Measuring for " + settings.duration().toSeconds() + "s");
+                    var phase = generator.run(settings.duration());
+                    var histogram = phase.results().report(out, phase.elapsed());
+                    if (settings.histogramFile() != null) {
+                        try (var file = new PrintStream(Files.newOutputStream(settings.histogramFile()))) {
+                            histogram.outputPercentileDistribution(file, 1000.0);
+                        }
+                        out.println("Latency distribution (ms) written to " + settings.histogramFile());
+                    }
+                } finally {
+                    channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+                }
+            }
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (var socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package io.robothouse.grpcauth.loadtest;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * The settings of a load-test run, read from {@code loadtest.*} system properties.
+ *
+ * @param mode closed-loop or open-loop
+ * @param concurrency the number of callers in closed-loop mode, and the most calls in flight in
+ *                    open-loop mode
+ * @param rate the calls started per second in open-loop mode
+ * @param warmup how long load is applied before measuring
+ * @param duration how long load is measured
+ * @param mix the token kinds to send and their weights
+ * @param distinctTokens the number of distinct tokens of each kind, each for its own subject
+ * @param histogramFile an optional file the latency distribution of all calls is written to
+ */
+record LoadTestSettings(
+        Mode mode,
+        int concurrency,
+        int rate,
+        Duration warmup,
+        Duration duration,
+        TokenMix mix,
+        int distinctTokens,
+        Path histogramFile) {
+
+    /**
+     * How calls are started.
+     */
+    enum Mode {
+
+        /**
+         * Each caller starts its next call when its previous call completes, so the offered load
+         * falls as latency rises.
+         */
+        CLOSED,
+
+        /**
+         * Calls are started at a fixed rate regardless of how many are in flight, and latency is
+         * measured from when each call was due to start, so queueing delay is not hidden.
+         */
+        OPEN
+    }
+
+    static LoadTestSettings fromSystemProperties() {
+        var histogramFile = System.getProperty("loadtest.histogram_file", "");
+        return new LoadTestSettings(
+                Mode.valueOf(System.getProperty("loadtest.mode", "closed").toUpperCase()),
+                Integer.parseInt(System.getProperty("loadtest.concurrency", "64")),
+                Integer.parseInt(System.getProperty("loadtest.rate", "1000")),
+                DurationStyle.detectAndParse(System.getProperty("loadtest.warmup", "10s")),
+                DurationStyle.detectAndParse(System.getProperty("loadtest.duration", "30s")),
+                TokenMix.parse(System.getProperty("loadtest.mix", "valid=100")),
+                Integer.parseInt(System.getProperty("loadtest.distinct_tokens", "1000")),
+                histogramFile.isBlank() ? null : Path.of(histogramFile));
+    }
+
+    @Override
+    public String toString() {
+        return "mode=" + mode.name().toLowerCase()
+                + (mode == Mode.OPEN ? " rate=" + rate + "/s max_in_flight=" : " concurrency=") + concurrency
+                + " warmup=" + warmup.toSeconds() + "s duration=" + duration.toSeconds() + "s"
+                + " mix=" + mix + " distinct_tokens=" + distinctTokens;
+    }
+}
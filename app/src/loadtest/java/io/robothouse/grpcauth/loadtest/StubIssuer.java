@@ -0,0 +1,134 @@
+package io.robothouse.grpcauth.loadtest;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A local stand-in for the Firebase issuer: signs tokens with a locally generated RSA key and
+ * serves its public JWK set over HTTP on the loopback interface.
+ */
+final class StubIssuer implements AutoCloseable {
+
+    /**
+     * The project the stub issuer signs tokens for; the issuer is
+     * {@code https://securetoken.google.com/<project id>}.
+     */
+    static final String PROJECT_ID = "loadtest-project";
+
+    private static final String ISSUER = "https://securetoken.google.com/" + PROJECT_ID;
+
+    /**
+     * The key id shared by the trusted key and the impostor key.
+     */
+    private static final String KEY_ID = "loadtest-key";
+
+    /**
+     * The prefix of the key ids under which unknown-key tokens are signed; each token has its own.
+     */
+    private static final String UNKNOWN_KEY_ID_PREFIX = "loadtest-unknown-key-";
+
+    private final RSAKey signingKey;
+
+    /**
+     * A different key signing under the same key id, used to produce bad signatures.
+     */
+    private final RSAKey impostorKey;
+
+    private final HttpServer server;
+
+    StubIssuer() throws IOException {
+        try {
+            this.signingKey = new RSAKeyGenerator(2048).keyID(KEY_ID).generate();
+            this.impostorKey = new RSAKeyGenerator(2048).keyID(KEY_ID).generate();
+        } catch (JOSEException e) {
+            throw new IllegalStateException("Unable to generate stub issuer keys", e);
+        }
+
+        var body = new JWKSet(signingKey.toPublicJWK()).toString().getBytes(StandardCharsets.UTF_8);
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/jwks", exchange -> {
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.getResponseHeaders().set("Cache-Control", "public, max-age=3600");
+            exchange.sendResponseHeaders(200, body.length);
+            try (var out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+
+    /**
+     * Returns the location of the stub JWK set.
+     */
+    URI jwkSetUri() {
+        return URI.create("http://localhost:" + server.getAddress().getPort() + "/jwks");
+    }
+
+    /**
+     * Returns the given number of distinct tokens of a kind, each for its own subject. Tokens of
+     * the {@link TokenKind#NO_HEADER} kind are null.
+     */
+    List<String> tokens(TokenKind kind, int count) {
+        var now = Instant.now();
+        var tokens = new ArrayList<String>(count);
+        for (var i = 0; i < count; i++) {
+            var subject = "loadtest-user-" + i;
+            tokens.add(switch (kind) {
+                case VALID -> sign(signingKey, KEY_ID, subject, now.minus(Duration.ofMinutes(1)), now.plus(Duration.ofHours(1)));
+                case EXPIRED -> sign(signingKey, KEY_ID, subject, now.minus(Duration.ofHours(2)), now.minus(Duration.ofHours(1)));
+                case BAD_SIGNATURE -> sign(impostorKey, KEY_ID, subject, now.minus(Duration.ofMinutes(1)), now.plus(Duration.ofHours(1)));
+                case UNKNOWN_KEY -> sign(impostorKey, UNKNOWN_KEY_ID_PREFIX + i, subject,
+                        now.minus(Duration.ofMinutes(1)), now.plus(Duration.ofHours(1)));
+                case NO_HEADER -> null;
+            });
+        }
+        return tokens;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private static String sign(RSAKey key, String keyId, String subject, Instant issuedAt, Instant expiresAt) {
+        var header = new JWSHeader.Builder(JWSAlgorithm.RS256)
+                .keyID(keyId)
+                .type(JOSEObjectType.JWT)
+                .build();
+        var claims = new JWTClaimsSet.Builder()
+                .issuer(ISSUER)
+                .audience(PROJECT_ID)
+                .subject(subject)
+                .issueTime(Date.from(issuedAt))
+                .expirationTime(Date.from(expiresAt))
+                .claim("email", subject + "@example.com")
+                .build();
+        try {
+            var jwt = new SignedJWT(header, claims);
+            jwt.sign(new RSASSASigner(key));
+            return jwt.serialize();
+        } catch (JOSEException e) {
+            throw new IllegalStateException("Unable to sign load-test token", e);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package io.robothouse.grpcauth.loadtest;
+
+/**
+ * The kinds of credential a load-test call can carry.
+ */
+enum TokenKind {
+
+    /**
+     * A token signed by the stub issuer that has not expired.
+     */
+    VALID("valid"),
+
+    /**
+     * A token signed by the stub issuer that expired an hour ago.
+     */
+    EXPIRED("expired"),
+
+    /**
+     * An unexpired token signed by a key that is not in the stub issuer's JWK set, under the
+     * same key id.
+     */
+    BAD_SIGNATURE("bad_signature"),
+
+    /**
+     * An unexpired token signed under a key id that is not in the stub issuer's JWK set, so
+     * that its verification goes through the key lookup and refresh path.
+     */
+    UNKNOWN_KEY("unknown_key"),
+
+    /**
+     * No authorization header at all.
+     */
+    NO_HEADER("no_header");
+
+    private final String label;
+
+    TokenKind(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Returns the name used for this kind in the token mix and the report.
+     */
+    String label() {
+        return label;
+    }
+
+    static TokenKind fromLabel(String label) {
+        for (var kind : values()) {
+            if (kind.label.equals(label)) {
+                return kind;
+            }
+        }
+        throw new IllegalArgumentException("Unknown token kind: " + label);
+    }
+}
@@ -0,0 +1,82 @@
+package io.robothouse.grpcauth.loadtest;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A weighted choice of token kinds, parsed from entries such as
+ * {@code valid=90,expired=5,bad_signature=2,unknown_key=1,no_header=2}.
+ */
+final class TokenMix {
+
+    private final TokenKind[] kinds;
+
+    private final int[] cumulativeWeights;
+
+    private final Map<TokenKind, Integer> weights;
+
+    private TokenMix(Map<TokenKind, Integer> weights) {
+        this.weights = weights;
+        this.kinds = weights.keySet().toArray(TokenKind[]::new);
+        this.cumulativeWeights = new int[kinds.length];
+        var total = 0;
+        for (var i = 0; i < kinds.length; i++) {
+            total += weights.get(kinds[i]);
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    /**
+     * Parses a comma-separated list of {@code <kind>=<weight>} entries.
+     */
+    static TokenMix parse(String mix) {
+        var weights = new EnumMap<TokenKind, Integer>(TokenKind.class);
+        for (var entry : mix.split(",")) {
+            var parts = entry.trim().split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Token mix entries must be '<kind>=<weight>': " + entry);
+            }
+            var weight = Integer.parseInt(parts[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Token mix weights must not be negative: " + entry);
+            }
+            if (weight > 0) {
+                weights.merge(TokenKind.fromLabel(parts[0].trim()), weight, Integer::sum);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("Token mix has no positive weights: " + mix);
+        }
+        return new TokenMix(weights);
+    }
+
+    /**
+     * Returns the kinds with a positive weight.
+     */
+    Set<TokenKind> kinds() {
+        return weights.keySet();
+    }
+
+    /**
+     * Picks a kind at random in proportion to the weights.
+     */
+    TokenKind next() {
+        var point = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (var i = 0; i < kinds.length; i++) {
+            if (point < cumulativeWeights[i]) {
+                return kinds[i];
+            }
+        }
+        throw new IllegalStateException("Unreachable");
+    }
+
+    @Override
+    public String toString() {
+        var joiner = new StringBuilder();
+        weights.forEach((kind, weight) -> joiner.append(joiner.isEmpty() ? "" : ",")
+                .append(kind.label()).append('=').append(weight));
+        return joiner.toString();
+    }
+}
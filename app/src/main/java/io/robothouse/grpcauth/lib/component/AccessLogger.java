@@ -0,0 +1,60 @@
+package io.robothouse.grpcauth.lib.component;
+
+import io.grpc.Status;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * Writes one structured access-log event per completed gRPC call.
+ *
+ * <p>Each event carries the request id, method, final status and duration as separate JSON
+ * fields. Failed calls are always logged at WARN; successful calls are logged at INFO and
+ * sampled so that only one in every N is written.</p>
+ */
+// SLF4J rather than Log4j2 like elsewhere: kv(...) structured arguments are lost through the Log4j2 API bridge.
+@Slf4j(topic = "io.robothouse.grpcauth.access")
+@Component
+public class AccessLogger {
+
+    /**
+     * One in how many successful calls is logged; 1 logs every call and 0 or less logs none.
+     *
+     * <p>Injected from the application configuration property
+     * 'spring.authentication.logging.success_sample_rate'.</p>
+     */
+    private final int successSampleRate;
+
+    public AccessLogger(@Value("${spring.authentication.logging.success_sample_rate:1}") int successSampleRate) {
+        this.successSampleRate = successSampleRate;
+    }
+
+    /**
+     * Logs a completed call, subject to sampling when it succeeded.
+     *
+     * @param requestId the request id assigned to the call
+     * @param fullMethodName the full gRPC method name
+     * @param code the status code the call was closed with
+     * @param durationNanos the time from the start of the call to its completion
+     */
+    public void logCall(String requestId, String fullMethodName, Status.Code code, long durationNanos) {
+        if (code == Status.Code.OK) {
+            if (isSampled() && log.isInfoEnabled()) {
+                log.info("gRPC call completed: {} {} {} {}", kv("requestId", requestId),
+                        kv("method", fullMethodName), kv("status", code), kv("durationMs", durationNanos / 1_000_000.0));
+            }
+        } else if (log.isWarnEnabled()) {
+            log.warn("gRPC call completed: {} {} {} {}", kv("requestId", requestId),
+                    kv("method", fullMethodName), kv("status", code), kv("durationMs", durationNanos / 1_000_000.0));
+        }
+    }
+
+    private boolean isSampled() {
+        return successSampleRate == 1
+                || (successSampleRate > 1 && ThreadLocalRandom.current().nextInt(successSampleRate) == 0);
+    }
+}
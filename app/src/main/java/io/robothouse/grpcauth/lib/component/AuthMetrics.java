@@ -0,0 +1,86 @@
+package io.robothouse.grpcauth.lib.component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.robothouse.grpcauth.lib.jwt.AuthOutcome;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer instrumentation for the authentication request path.
+ *
+ * <p>All meters are registered up front or, for per-method counters, once on first use, so
+ * that recording on the hot path is a map lookup and an increment without building tags.</p>
+ */
+@Component
+public class AuthMetrics {
+
+    /**
+     * Name of the timer recording JWT validation latency, tagged by outcome.
+     */
+    public static final String VALIDATION_TIMER = "grpcauth.jwt.validation";
+
+    /**
+     * Name of the counter recording calls, tagged by full gRPC method name.
+     */
+    public static final String CALLS_COUNTER = "grpcauth.calls";
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<AuthOutcome, Timer> validationTimers;
+
+    private final Map<String, Counter> callCounters = new ConcurrentHashMap<>();
+
+    public AuthMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.validationTimers = new EnumMap<>(AuthOutcome.class);
+        for (var outcome : AuthOutcome.values()) {
+            validationTimers.put(outcome, Timer.builder(VALIDATION_TIMER)
+                    .description("Time spent validating the credential of a call")
+                    .tag("outcome", outcome.tagValue())
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofNanos(1_000))
+                    .maximumExpectedValue(Duration.ofSeconds(5))
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Records the latency of a credential validation.
+     *
+     * @param outcome the validation outcome
+     * @param durationNanos the validation time in nanoseconds
+     */
+    public void recordValidation(AuthOutcome outcome, long durationNanos) {
+        validationTimers.get(outcome).record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Counts a call to the given method.
+     *
+     * @param fullMethodName the full gRPC method name
+     */
+    public void recordCall(String fullMethodName) {
+        var counter = callCounters.get(fullMethodName);
+        if (counter == null) {
+            counter = callCounters.computeIfAbsent(fullMethodName, method -> Counter.builder(CALLS_COUNTER)
+                    .description("Calls received, by gRPC method")
+                    .tag("method", method)
+                    .register(meterRegistry));
+        }
+        counter.increment();
+    }
+
+    /**
+     * Returns the registry the meters are registered with.
+     */
+    public MeterRegistry meterRegistry() {
+        return meterRegistry;
+    }
+}
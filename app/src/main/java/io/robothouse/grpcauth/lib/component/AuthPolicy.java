@@ -0,0 +1,24 @@
+package io.robothouse.grpcauth.lib.component;
+
+/**
+ * How a gRPC method is authenticated by {@link JwtAuthenticationInterceptor}.
+ */
+public enum AuthPolicy {
+
+    /**
+     * No credential is read; the call proceeds without a JWT in its context.
+     */
+    PUBLIC,
+
+    /**
+     * A bearer token is validated if present, but the call proceeds without a JWT in its
+     * context when the token is missing or invalid.
+     */
+    OPTIONAL,
+
+    /**
+     * A valid bearer token is required; otherwise the call is closed with UNAUTHENTICATED
+     * before it reaches the service.
+     */
+    REQUIRED
+}
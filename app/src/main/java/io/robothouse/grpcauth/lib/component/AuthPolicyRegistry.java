@@ -0,0 +1,78 @@
+package io.robothouse.grpcauth.lib.component;
+
+import io.envoyproxy.envoy.service.auth.v3.AuthorizationGrpc;
+import io.grpc.BindableService;
+import io.grpc.MethodDescriptor;
+import io.grpc.health.v1.HealthGrpc;
+import io.robothouse.grpcauth.proto.AuthServiceGrpc;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The authentication policy of every method served, keyed by full method name.
+ *
+ * <p>The map is built once at startup from the registered services, so the interceptor only
+ * does a single lookup per call. Health checks, reflection and Envoy's ext_authz Check are
+ * public: they either carry no credential or authorize the one in their request body.
+ * AuthenticateBatch and AuthenticateStream validate the tokens in their messages, so their own
+ * Authorization header is optional. Every other method, including any not known at startup,
+ * requires a valid token.</p>
+ */
+@Log4j2
+@Component
+public class AuthPolicyRegistry {
+
+    /**
+     * Policies applying to every method of a service, keyed by service name.
+     */
+    private static final Map<String, AuthPolicy> SERVICE_POLICIES = Map.of(
+            HealthGrpc.SERVICE_NAME, AuthPolicy.PUBLIC,
+            io.grpc.reflection.v1.ServerReflectionGrpc.SERVICE_NAME, AuthPolicy.PUBLIC,
+            io.grpc.reflection.v1alpha.ServerReflectionGrpc.SERVICE_NAME, AuthPolicy.PUBLIC,
+            AuthorizationGrpc.SERVICE_NAME, AuthPolicy.PUBLIC);
+
+    /**
+     * Policies of individual methods, keyed by full method name.
+     */
+    private static final Map<String, AuthPolicy> METHOD_POLICIES = Map.of(
+            AuthServiceGrpc.getAuthenticateBatchMethod().getFullMethodName(), AuthPolicy.OPTIONAL,
+            AuthServiceGrpc.getAuthenticateStreamMethod().getFullMethodName(), AuthPolicy.OPTIONAL);
+
+    private final Map<String, AuthPolicy> policies;
+
+    public AuthPolicyRegistry(List<BindableService> services) {
+        var policies = new HashMap<String, AuthPolicy>();
+        for (var service : services) {
+            for (var method : service.bindService().getMethods()) {
+                var descriptor = method.getMethodDescriptor();
+                policies.put(descriptor.getFullMethodName(), resolve(descriptor));
+            }
+        }
+        this.policies = Map.copyOf(policies);
+        log.info("Authentication policies: {}", this.policies);
+    }
+
+    /**
+     * Returns the policy of a method.
+     *
+     * @param method the method being called
+     * @return the method's policy, resolved from the rules above if it was not known at startup
+     */
+    public AuthPolicy policyFor(MethodDescriptor<?, ?> method) {
+        var policy = policies.get(method.getFullMethodName());
+        return policy != null ? policy : resolve(method);
+    }
+
+    private static AuthPolicy resolve(MethodDescriptor<?, ?> method) {
+        var policy = METHOD_POLICIES.get(method.getFullMethodName());
+        if (policy == null) {
+            var serviceName = method.getServiceName();
+            policy = serviceName == null ? null : SERVICE_POLICIES.get(serviceName);
+        }
+        return policy != null ? policy : AuthPolicy.REQUIRED;
+    }
+}
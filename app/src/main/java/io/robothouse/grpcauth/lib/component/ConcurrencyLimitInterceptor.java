@@ -0,0 +1,209 @@
+package io.robothouse.grpcauth.lib.component;
+
+import io.grpc.*;
+import io.grpc.health.v1.HealthGrpc;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.robothouse.grpcauth.lib.util.VegasConcurrencyLimit;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.grpc.server.GlobalServerInterceptor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * gRPC server interceptor that sheds load once the number of concurrent calls exceeds an
+ * adaptive limit.
+ *
+ * <p>The limit is a {@link VegasConcurrencyLimit}, which follows the latency of completed calls:
+ * it grows while latency stays near its minimum and shrinks as calls start to queue, for
+ * example while signing keys are slow to fetch. Calls over the limit are closed immediately
+ * with UNAVAILABLE and a {@code grpc-retry-pushback-ms} trailer, before any authentication
+ * work, so the calls already admitted keep their latency.</p>
+ *
+ * <p>Health checks are never limited, so that load balancers do not take a busy instance out
+ * of rotation. Streaming calls are not limited either, as they hold a permit for as long as the
+ * stream is open and their duration says nothing about load.</p>
+ *
+ * <p>The current limit, the calls in flight and the number of rejected calls are exported as
+ * {@value #LIMIT_GAUGE}, {@value #IN_FLIGHT_GAUGE} and {@value #REJECTED_COUNTER}.</p>
+ */
+@Log4j2
+@Component
+@GlobalServerInterceptor
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class ConcurrencyLimitInterceptor implements ServerInterceptor {
+
+    /**
+     * Name of the gauge reporting the current concurrency limit.
+     */
+    public static final String LIMIT_GAUGE = "grpcauth.concurrency.limit";
+
+    /**
+     * Name of the gauge reporting the number of limited calls in flight.
+     */
+    public static final String IN_FLIGHT_GAUGE = "grpcauth.concurrency.in_flight";
+
+    /**
+     * Name of the counter recording calls rejected for being over the limit.
+     */
+    public static final String REJECTED_COUNTER = "grpcauth.concurrency.rejected";
+
+    /**
+     * Trailer telling clients with a retry policy how long to wait before retrying.
+     */
+    private static final Metadata.Key<String> RETRY_PUSHBACK_KEY =
+            Metadata.Key.of("grpc-retry-pushback-ms", Metadata.ASCII_STRING_MARSHALLER);
+
+    private static final Status OVER_LIMIT_STATUS =
+            Status.UNAVAILABLE.withDescription("Server is over its concurrency limit, retry later");
+
+    /**
+     * Whether calls are limited at all.
+     *
+     * <p>Injected from the application configuration property
+     * 'spring.authentication.concurrency_limit.enabled'.</p>
+     */
+    private final boolean enabled;
+
+    /**
+     * The pushback sent to rejected calls, in milliseconds.
+     */
+    private final String retryPushbackMillis;
+
+    private final VegasConcurrencyLimit limit;
+
+    private final Counter rejectedCounter;
+
+    public ConcurrencyLimitInterceptor(
+            @Value("${spring.authentication.concurrency_limit.enabled:true}") boolean enabled,
+            @Value("${spring.authentication.concurrency_limit.initial_limit:100}") int initialLimit,
+            @Value("${spring.authentication.concurrency_limit.min_limit:20}") int minLimit,
+            @Value("${spring.authentication.concurrency_limit.max_limit:1000}") int maxLimit,
+            @Value("${spring.authentication.concurrency_limit.retry_pushback:100ms}") Duration retryPushback,
+            MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.retryPushbackMillis = Long.toString(retryPushback.toMillis());
+        this.limit = new VegasConcurrencyLimit(initialLimit, minLimit, maxLimit);
+        Gauge.builder(LIMIT_GAUGE, limit, VegasConcurrencyLimit::limit)
+                .description("Current adaptive limit on concurrent calls")
+                .register(meterRegistry);
+        Gauge.builder(IN_FLIGHT_GAUGE, limit, VegasConcurrencyLimit::inFlight)
+                .description("Calls currently counted against the concurrency limit")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder(REJECTED_COUNTER)
+                .description("Calls rejected for exceeding the concurrency limit")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Admits the call if it is under the limit, and releases its permit when it completes.
+     *
+     * <p>The permit is released with the call's latency when it completes. Calls that missed
+     * their deadline, whether closed with DEADLINE_EXCEEDED or cancelled when it expired, are
+     * marked as dropped; calls cancelled by the client release it without a sample.</p>
+     */
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+            ServerCall<ReqT, RespT> call,
+            Metadata headers,
+            ServerCallHandler<ReqT, RespT> next
+    ) {
+        var method = call.getMethodDescriptor();
+        if (!enabled || method.getType() != MethodDescriptor.MethodType.UNARY
+                || HealthGrpc.SERVICE_NAME.equals(method.getServiceName())) {
+            return next.startCall(call, headers);
+        }
+
+        if (!limit.tryAcquire()) {
+            rejectedCounter.increment();
+            log.debug("Rejecting call to {}: concurrency limit of {} reached", method.getFullMethodName(), limit.limit());
+            var trailers = new Metadata();
+            trailers.put(RETRY_PUSHBACK_KEY, retryPushbackMillis);
+            call.close(OVER_LIMIT_STATUS, trailers);
+            return new ServerCall.Listener<>() {};
+        }
+
+        var permit = new Permit(System.nanoTime());
+        var permitCall = new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+            @Override
+            public void close(Status status, Metadata trailers) {
+                permit.dropped = status.getCode() == Status.Code.DEADLINE_EXCEEDED;
+                super.close(status, trailers);
+            }
+        };
+
+        ServerCall.Listener<ReqT> listener;
+        try {
+            listener = next.startCall(permitCall, headers);
+        } catch (RuntimeException | Error e) {
+            permit.release(false);
+            throw e;
+        }
+
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(listener) {
+            @Override
+            public void onComplete() {
+                try {
+                    super.onComplete();
+                } finally {
+                    permit.release(true);
+                }
+            }
+
+            @Override
+            public void onCancel() {
+                try {
+                    super.onCancel();
+                } finally {
+                    var deadline = Context.current().getDeadline();
+                    if (deadline != null && deadline.isExpired()) {
+                        permit.dropped = true;
+                        permit.release(true);
+                    } else {
+                        permit.release(false);
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns the adaptive limit applied to calls.
+     */
+    VegasConcurrencyLimit limit() {
+        return limit;
+    }
+
+    /**
+     * A permit held by one admitted call, released at most once.
+     */
+    private final class Permit {
+
+        private final long startNanos;
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private volatile boolean dropped;
+
+        Permit(long startNanos) {
+            this.startNanos = startNanos;
+        }
+
+        void release(boolean sample) {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            if (sample) {
+                limit.release(System.nanoTime() - startNanos, dropped);
+            } else {
+                limit.releaseWithoutSample();
+            }
+        }
+    }
+}
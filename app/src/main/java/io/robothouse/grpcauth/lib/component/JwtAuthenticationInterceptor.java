@@ -1,15 +1,16 @@
 package io.robothouse.grpcauth.lib.component;
 
 import io.grpc.*;
+import io.robothouse.grpcauth.lib.jfr.JwtAuthenticationEvent;
+import io.robothouse.grpcauth.lib.jwt.AuthOutcome;
+import io.robothouse.grpcauth.lib.jwt.JwtFailures;
 import io.robothouse.grpcauth.lib.util.CtxConstants;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
 import org.springframework.grpc.server.GlobalServerInterceptor;
-import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.security.oauth2.jwt.JwtException;
-import org.springframework.security.oauth2.jwt.JwtValidationException;
 import org.springframework.stereotype.Component;
 
 import java.util.Optional;
@@ -20,7 +21,7 @@ import java.util.Optional;
 @Log4j2
 @Component
 @GlobalServerInterceptor
-@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+@Order(Ordered.HIGHEST_PRECEDENCE + 2)
 public class JwtAuthenticationInterceptor implements ServerInterceptor {
 
     /**
@@ -32,12 +33,44 @@ public class JwtAuthenticationInterceptor implements ServerInterceptor {
 
     private final JwtDecoder jwtDecoder;
 
-    public JwtAuthenticationInterceptor(JwtDecoder jwtDecoder) {
+    private final AuthMetrics authMetrics;
+
+    private final PeerFailureLimiter peerFailureLimiter;
+
+    private final AuthPolicyRegistry authPolicyRegistry;
+
+    public JwtAuthenticationInterceptor(
+            JwtDecoder jwtDecoder,
+            AuthMetrics authMetrics,
+            PeerFailureLimiter peerFailureLimiter,
+            AuthPolicyRegistry authPolicyRegistry) {
         this.jwtDecoder = jwtDecoder;
+        this.authMetrics = authMetrics;
+        this.peerFailureLimiter = peerFailureLimiter;
+        this.authPolicyRegistry = authPolicyRegistry;
     }
 
     /**
      * Intercepts incoming gRPC calls to perform JWT authentication.
+     *
+     * <p>Each call is handled according to its method's {@link AuthPolicy}. Public methods
+     * proceed without any credential being read. A missing or rejected token closes calls to
+     * methods that require authentication with UNAUTHENTICATED, and lets calls to methods where
+     * it is optional proceed without a JWT in their context.</p>
+     *
+     * <p>The time spent validating the credential is recorded per outcome. Successful
+     * validations are logged at DEBUG, as the call's access-log event already records them;
+     * failures are always logged, and a missing header is only logged when it is required.</p>
+     *
+     * <p>Tokens that are malformed, badly signed or carry invalid claims count against the
+     * peer's failed-attempt budget. Tokens signed with a key not yet in the key set do not, as
+     * valid tokens fail this way while signing keys rotate. While that budget is exhausted the
+     * peer's calls are closed with RESOURCE_EXHAUSTED before the token is decoded. Calls that
+     * proceed carry the peer in their context, so that services validating further tokens
+     * draw on the same budget.</p>
+     *
+     * <p>For methods that are not public, the work up to the outcome is recorded as a
+     * {@link JwtAuthenticationEvent} when that JFR event is enabled.</p>
      */
     @Override
     public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
@@ -45,35 +78,93 @@ public class JwtAuthenticationInterceptor implements ServerInterceptor {
             Metadata headers,
             ServerCallHandler<ReqT, RespT> next
     ) {
-        Context ctx;
+        var policy = authPolicyRegistry.policyFor(call.getMethodDescriptor());
+        if (policy == AuthPolicy.PUBLIC) {
+            return next.startCall(call, headers);
+        }
 
+        var event = new JwtAuthenticationEvent();
+        event.begin();
+        var startNanos = System.nanoTime();
         var authHeader = headers.get(AUTHORIZATION_METADATA_KEY);
+        var peer = peerFailureLimiter.peerOf(call);
+        var peerCtx = Context.current().withValue(CtxConstants.PEER_CONTEXT_KEY, peer);
 
-        if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            var token = authHeader.substring("Bearer ".length());
-
-            try {
-                var jwt = jwtDecoder.decode(token);
-                log.info("JWT validation successful. Token issued by: {}", jwt.getIssuer());
-                ctx = Context.current().withValue(CtxConstants.JWT_CONTEXT_KEY, Optional.of(jwt));
-            } catch (JwtValidationException e) {
-                var isExpired = e.getErrors().stream()
-                        .anyMatch(error -> "exp".equals(error.getErrorCode()));
-                if (isExpired) {
-                    log.warn("JWT expired: {}", e.getMessage());
-                } else {
-                    log.error("JWT validation failed: {}", e.getMessage());
-                }
-                ctx = Context.current().withValue(CtxConstants.JWT_CONTEXT_KEY, Optional.empty());
-            } catch (JwtException e) {
-                log.error("JWT validation failed: {}", e.getMessage());
-                ctx = Context.current().withValue(CtxConstants.JWT_CONTEXT_KEY, Optional.empty());
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+            authMetrics.recordValidation(AuthOutcome.MISSING_HEADER, System.nanoTime() - startNanos);
+            commit(event, call, policy, AuthOutcome.MISSING_HEADER);
+            if (policy == AuthPolicy.REQUIRED) {
+                log.warn("Missing or malformed Authorization header");
+                return unauthenticated(call);
             }
-        } else {
-            log.warn("Missing or malformed Authorization header");
-            ctx = Context.current().withValue(CtxConstants.JWT_CONTEXT_KEY, Optional.empty());
+            return Contexts.interceptCall(peerCtx, call, headers, next);
+        }
+
+        if (peerFailureLimiter.isThrottled(peer)) {
+            authMetrics.recordValidation(AuthOutcome.THROTTLED, System.nanoTime() - startNanos);
+            commit(event, call, policy, AuthOutcome.THROTTLED);
+            log.debug("Rejecting call from {}: too many failed authentication attempts", peer);
+            call.close(Status.RESOURCE_EXHAUSTED
+                    .withDescription("Too many failed authentication attempts"), new Metadata());
+            return new ServerCall.Listener<>() {};
         }
 
-        return Contexts.interceptCall(ctx, call, headers, next);
+        var token = authHeader.substring("Bearer ".length());
+
+        try {
+            var jwt = jwtDecoder.decode(token);
+            authMetrics.recordValidation(AuthOutcome.SUCCESS, System.nanoTime() - startNanos);
+            commit(event, call, policy, AuthOutcome.SUCCESS);
+            if (log.isDebugEnabled()) {
+                log.debug("JWT validation successful. Token issued by: {}", jwt.getIssuer());
+            }
+            var ctx = peerCtx.withValue(CtxConstants.JWT_CONTEXT_KEY, Optional.of(jwt));
+            return Contexts.interceptCall(ctx, call, headers, next);
+        } catch (JwtException e) {
+            var outcome = JwtFailures.classify(e);
+            authMetrics.recordValidation(outcome, System.nanoTime() - startNanos);
+            commit(event, call, policy, outcome);
+            if (outcome == AuthOutcome.MALFORMED || outcome == AuthOutcome.BAD_SIGNATURE
+                    || outcome == AuthOutcome.INVALID_CLAIMS) {
+                peerFailureLimiter.recordFailure(peer);
+            }
+            if (outcome == AuthOutcome.EXPIRED) {
+                log.warn("JWT expired: {}", e.getMessage());
+            } else if (outcome == AuthOutcome.UNKNOWN_KEY) {
+                log.warn("JWT signed with an unknown key: {}", e.getMessage());
+            } else if (outcome == AuthOutcome.REVOKED) {
+                log.warn("JWT revoked: {}", e.getMessage());
+            } else if (outcome == AuthOutcome.ERROR) {
+                log.error("Unable to validate JWT: {}", e.getMessage());
+            } else {
+                // Already recorded by the access log and metrics; a flood of bad tokens must not flood the logs.
+                log.debug("JWT validation failed: {}", e.getMessage());
+            }
+            if (policy == AuthPolicy.REQUIRED) {
+                return outcome == AuthOutcome.ERROR ? unavailable(call) : unauthenticated(call);
+            }
+            return Contexts.interceptCall(peerCtx, call, headers, next);
+        }
+    }
+
+    private static void commit(
+            JwtAuthenticationEvent event, ServerCall<?, ?> call, AuthPolicy policy, AuthOutcome outcome) {
+        if (event.shouldCommit()) {
+            event.method = call.getMethodDescriptor().getFullMethodName();
+            event.requestId = CtxConstants.REQUEST_ID_CONTEXT_KEY.get();
+            event.policy = policy.name();
+            event.outcome = outcome.tagValue();
+            event.commit();
+        }
+    }
+
+    private static <ReqT, RespT> ServerCall.Listener<ReqT> unauthenticated(ServerCall<ReqT, RespT> call) {
+        call.close(Status.UNAUTHENTICATED.withDescription("Missing or invalid JWT token"), new Metadata());
+        return new ServerCall.Listener<>() {};
+    }
+
+    private static <ReqT, RespT> ServerCall.Listener<ReqT> unavailable(ServerCall<ReqT, RespT> call) {
+        call.close(Status.UNAVAILABLE.withDescription("Unable to validate JWT token"), new Metadata());
+        return new ServerCall.Listener<>() {};
     }
 }
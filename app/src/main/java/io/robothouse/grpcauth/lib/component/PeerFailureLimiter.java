@@ -0,0 +1,135 @@
+package io.robothouse.grpcauth.lib.component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.grpc.Grpc;
+import io.grpc.ServerCall;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-peer token bucket limiting how many failed authentication attempts a client may make.
+ *
+ * <p>Each peer, identified by the host of the call's remote address, has a bucket of
+ * {@code burst} tokens refilled at {@code failuresPerSecond}. Every failed attempt takes a
+ * token; while a peer's bucket is empty its calls are rejected before any token is decoded.
+ * Successful calls never take tokens, so well-behaved clients are not affected.</p>
+ *
+ * <p>Buckets are lock-free: each holds a single {@link AtomicLong} with the time at which it
+ * would be full again, advanced by compare-and-set (the generic cell rate algorithm, which
+ * behaves like a token bucket). Idle buckets are evicted and the number of tracked peers is
+ * bounded.</p>
+ */
+@Component
+public class PeerFailureLimiter {
+
+    /**
+     * Whether failed attempts are limited at all.
+     *
+     * <p>Injected from the application configuration property
+     * 'spring.authentication.peer_throttle.enabled'.</p>
+     */
+    private final boolean enabled;
+
+    /**
+     * Nanoseconds needed to refill a single token.
+     */
+    private final long refillIntervalNanos;
+
+    /**
+     * Nanoseconds needed to refill an empty bucket.
+     */
+    private final long capacityNanos;
+
+    private final Cache<Object, AtomicLong> buckets;
+
+    private final LongSupplier nanoClock;
+
+    @Autowired
+    public PeerFailureLimiter(
+            @Value("${spring.authentication.peer_throttle.enabled:true}") boolean enabled,
+            @Value("${spring.authentication.peer_throttle.failures_per_second:5}") double failuresPerSecond,
+            @Value("${spring.authentication.peer_throttle.burst:20}") int burst,
+            @Value("${spring.authentication.peer_throttle.max_peers:100000}") long maxPeers) {
+        this(enabled, failuresPerSecond, burst, maxPeers, System::nanoTime);
+    }
+
+    PeerFailureLimiter(boolean enabled, double failuresPerSecond, int burst, long maxPeers, LongSupplier nanoClock) {
+        this.enabled = enabled;
+        this.refillIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / failuresPerSecond);
+        this.capacityNanos = refillIntervalNanos * burst;
+        this.nanoClock = nanoClock;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxPeers)
+                .expireAfterAccess(Duration.ofNanos(Math.max(capacityNanos, TimeUnit.SECONDS.toNanos(1))))
+                .executor(Runnable::run)
+                .build();
+    }
+
+    /**
+     * Returns the key identifying the peer of a call, or null if it cannot be determined.
+     *
+     * <p>For TCP peers this is the remote host, so all connections from one address share a
+     * bucket; other transports are keyed by their socket address.</p>
+     *
+     * @param call the incoming call
+     * @return the peer key, or null
+     */
+    public Object peerOf(ServerCall<?, ?> call) {
+        var attributes = call.getAttributes();
+        var remoteAddress = attributes != null ? attributes.get(Grpc.TRANSPORT_ATTR_REMOTE_ADDR) : null;
+        if (remoteAddress instanceof InetSocketAddress inetAddress && inetAddress.getAddress() != null) {
+            return inetAddress.getAddress();
+        }
+        return remoteAddress;
+    }
+
+    /**
+     * Returns whether the peer has used up its failed attempts and must be rejected.
+     *
+     * @param peer the peer key, or null if unknown
+     * @return true if the peer's bucket is empty
+     */
+    public boolean isThrottled(Object peer) {
+        if (!enabled || peer == null) {
+            return false;
+        }
+        var bucket = buckets.getIfPresent(peer);
+        if (bucket == null) {
+            return false;
+        }
+        var now = nanoClock.getAsLong();
+        return bucket.get() - now > capacityNanos - refillIntervalNanos;
+    }
+
+    /**
+     * Takes a token from the peer's bucket for a failed attempt.
+     *
+     * @param peer the peer key, or null if unknown
+     * @return false if the bucket was already empty
+     */
+    public boolean recordFailure(Object peer) {
+        if (!enabled || peer == null) {
+            return true;
+        }
+        var now = nanoClock.getAsLong();
+        var bucket = buckets.get(peer, key -> new AtomicLong(now));
+        while (true) {
+            var fullAt = bucket.get();
+            var next = (fullAt - now > 0 ? fullAt : now) + refillIntervalNanos;
+            if (next - now > capacityNanos) {
+                return false;
+            }
+            if (bucket.compareAndSet(fullAt, next)) {
+                return true;
+            }
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package io.robothouse.grpcauth.lib.component;
 
 import io.grpc.*;
+import io.robothouse.grpcauth.lib.jfr.AccessLogEvent;
+import io.robothouse.grpcauth.lib.jfr.RequestInterceptEvent;
+import io.robothouse.grpcauth.lib.requestid.RequestIdGenerator;
 import io.robothouse.grpcauth.lib.util.CtxConstants;
 import lombok.extern.log4j.Log4j2;
 import org.slf4j.MDC;
@@ -9,10 +12,11 @@ import org.springframework.core.annotation.Order;
 import org.springframework.grpc.server.GlobalServerInterceptor;
 import org.springframework.stereotype.Component;
 
-import java.util.UUID;
-
 /**
  * gRPC server interceptor that provides request logging and distributed tracing capabilities.
+ *
+ * <p>Each call produces a single access-log event when it completes or is cancelled; see
+ * {@link AccessLogger}.</p>
  */
 @Log4j2
 @Component
@@ -25,8 +29,27 @@ public class RequestLoggingInterceptor implements ServerInterceptor {
      */
     private static final String MDC_REQUEST_ID_KEY = "requestId";
 
+    private final AuthMetrics authMetrics;
+
+    private final RequestIdGenerator requestIdGenerator;
+
+    private final AccessLogger accessLogger;
+
+    public RequestLoggingInterceptor(
+            AuthMetrics authMetrics,
+            RequestIdGenerator requestIdGenerator,
+            AccessLogger accessLogger) {
+        this.authMetrics = authMetrics;
+        this.requestIdGenerator = requestIdGenerator;
+        this.accessLogger = accessLogger;
+    }
+
     /**
      * Intercepts incoming gRPC calls to add logging and request tracking.
+     *
+     * <p>The request id is produced by the configured {@link RequestIdGenerator}. The
+     * interception and the access-log event are recorded as {@link RequestInterceptEvent} and
+     * {@link AccessLogEvent} when those JFR events are enabled.</p>
      */
     @Override
     public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
@@ -34,14 +57,24 @@ public class RequestLoggingInterceptor implements ServerInterceptor {
             Metadata headers,
             ServerCallHandler<ReqT, RespT> next
     ) {
+        var interceptEvent = new RequestInterceptEvent();
+        interceptEvent.begin();
+        var startNanos = System.nanoTime();
         var methodName = call.getMethodDescriptor().getFullMethodName();
-        var requestId = UUID.randomUUID().toString();
+        var requestId = requestIdGenerator.generate(headers);
+        authMetrics.recordCall(methodName);
 
         MDC.put(MDC_REQUEST_ID_KEY, requestId);
-        log.info("Incoming gRPC request for method: {}", methodName);
+        log.debug("Incoming gRPC request for method: {}", methodName);
 
+        var statusRecordingCall = new StatusRecordingServerCall<>(call);
         var ctx = Context.current().withValue(CtxConstants.REQUEST_ID_CONTEXT_KEY, requestId);
-        var listener = Contexts.interceptCall(ctx, call, headers, next);
+        var listener = Contexts.interceptCall(ctx, statusRecordingCall, headers, next);
+        if (interceptEvent.shouldCommit()) {
+            interceptEvent.method = methodName;
+            interceptEvent.requestId = requestId;
+            interceptEvent.commit();
+        }
 
         return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(listener) {
             @Override
@@ -49,7 +82,7 @@ public class RequestLoggingInterceptor implements ServerInterceptor {
                 try {
                     super.onComplete();
                 } finally {
-                    MDC.remove(MDC_REQUEST_ID_KEY);
+                    logCall(requestId, methodName, statusRecordingCall.code(Status.Code.OK), startNanos);
                 }
             }
 
@@ -58,9 +91,52 @@ public class RequestLoggingInterceptor implements ServerInterceptor {
                 try {
                     super.onCancel();
                 } finally {
-                    MDC.remove(MDC_REQUEST_ID_KEY);
+                    logCall(requestId, methodName, statusRecordingCall.code(Status.Code.CANCELLED), startNanos);
                 }
             }
         };
     }
+
+    /**
+     * Writes the call's access-log event and clears the request id from the MDC.
+     */
+    private void logCall(String requestId, String methodName, Status.Code code, long startNanos) {
+        var event = new AccessLogEvent();
+        event.begin();
+        accessLogger.logCall(requestId, methodName, code, System.nanoTime() - startNanos);
+        MDC.remove(MDC_REQUEST_ID_KEY);
+        if (event.shouldCommit()) {
+            event.method = methodName;
+            event.requestId = requestId;
+            event.status = code.name();
+            event.commit();
+        }
+    }
+
+    /**
+     * Remembers the status a call is closed with so that it can be logged on completion.
+     */
+    private static final class StatusRecordingServerCall<ReqT, RespT>
+            extends ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT> {
+
+        private volatile Status.Code code;
+
+        StatusRecordingServerCall(ServerCall<ReqT, RespT> delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void close(Status status, Metadata trailers) {
+            code = status.getCode();
+            super.close(status, trailers);
+        }
+
+        /**
+         * Returns the status code the call was closed with, or the given default if it was not closed.
+         */
+        Status.Code code(Status.Code defaultCode) {
+            var closedWith = code;
+            return closedWith != null ? closedWith : defaultCode;
+        }
+    }
 }
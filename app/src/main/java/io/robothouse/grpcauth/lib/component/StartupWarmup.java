@@ -0,0 +1,359 @@
+package io.robothouse.grpcauth.lib.component;
+
+import com.google.protobuf.FieldMask;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import io.grpc.Context;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptors;
+import io.grpc.Status;
+import io.grpc.health.v1.HealthCheckResponse;
+import io.grpc.protobuf.services.HealthStatusManager;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.robothouse.grpcauth.lib.jwt.IssuerDecoderRegistry;
+import io.robothouse.grpcauth.lib.jwt.IssuerJwtDecoders;
+import io.robothouse.grpcauth.lib.jwt.IssuerMetadata;
+import io.robothouse.grpcauth.lib.jwt.IssuerRoutingJwtDecoder;
+import io.robothouse.grpcauth.lib.jwt.JwkSetManager;
+import io.robothouse.grpcauth.lib.jwt.NegativeCachingJwtDecoder;
+import io.robothouse.grpcauth.lib.jwt.Rs256JwtDecoder;
+import io.robothouse.grpcauth.lib.jwt.SingleFlightJwtDecoder;
+import io.robothouse.grpcauth.lib.util.CtxConstants;
+import io.robothouse.grpcauth.proto.AuthResponse;
+import io.robothouse.grpcauth.proto.AuthServiceGrpc;
+import io.robothouse.grpcauth.proto.AuthenticateRequest;
+import io.robothouse.grpcauth.service.AuthServiceImpl;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Warms the authentication path up before the instance reports itself as serving.
+ *
+ * <p>The gRPC health status is set to NOT_SERVING as soon as this component is created, before
+ * the gRPC server starts. Once the application has started, the issuer's signing keys are
+ * loaded and a number of synthetic calls are made through a {@link JwtAuthenticationInterceptor}
+ * and {@link AuthServiceImpl}, with a token signed by a key generated for the purpose and the
+ * configured decoder engine, so that the decode and verify path is compiled before real
+ * traffic arrives. The health status is then set to SERVING.</p>
+ *
+ * <p>A failed warm-up is logged and does not keep the instance out of service, as it would
+ * only leave the path cold; in particular, keys that could not be loaded are fetched again when
+ * the first token needs them. The warm-up duration is recorded under {@value #WARMUP_TIMER},
+ * tagged by outcome, and its state is reported by the actuator health endpoint.</p>
+ */
+@Log4j2
+@Component
+public class StartupWarmup implements ApplicationRunner, HealthIndicator {
+
+    /**
+     * Name of the timer recording the warm-up duration, tagged by outcome.
+     */
+    public static final String WARMUP_TIMER = "grpcauth.warmup";
+
+    /**
+     * The issuer of the synthetic tokens, which no real token can carry.
+     */
+    private static final String WARMUP_ISSUER = "https://warmup.invalid";
+
+    private static final Metadata.Key<String> AUTHORIZATION_METADATA_KEY =
+            Metadata.Key.of("Authorization", Metadata.ASCII_STRING_MARSHALLER);
+
+    /**
+     * The request made by every synthetic call, selecting claims so that they are projected too.
+     */
+    private static final AuthenticateRequest WARMUP_REQUEST = AuthenticateRequest.newBuilder()
+            .setClaimsMask(FieldMask.newBuilder().addPaths("subject").addPaths("email"))
+            .build();
+
+    /**
+     * Whether the warm-up runs at all.
+     *
+     * <p>Injected from the application configuration property 'spring.authentication.warmup.enabled'.</p>
+     */
+    private final boolean enabled;
+
+    /**
+     * The number of synthetic calls made.
+     *
+     * <p>Injected from the application configuration property 'spring.authentication.warmup.iterations'.</p>
+     */
+    private final int iterations;
+
+    /**
+     * The decoder engine whose code is warmed up.
+     *
+     * <p>Injected from the application configuration property 'spring.authentication.decoder_engine'.</p>
+     */
+    private final String decoderEngine;
+
+    /**
+     * How long to wait for the signing keys to load.
+     *
+     * <p>Injected from the application configuration property 'spring.authentication.jwks.fetch_timeout'.</p>
+     */
+    private final Duration keyLoadTimeout;
+
+    private final JwkSetManager jwkSetManager;
+
+    private final PeerFailureLimiter peerFailureLimiter;
+
+    private final AuthPolicyRegistry authPolicyRegistry;
+
+    private final Optional<HealthStatusManager> healthStatusManager;
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * The outcome of the warm-up, or null while it has not finished.
+     */
+    private volatile String outcome;
+
+    public StartupWarmup(
+            @Value("${spring.authentication.warmup.enabled:true}") boolean enabled,
+            @Value("${spring.authentication.warmup.iterations:2000}") int iterations,
+            @Value("${spring.authentication.decoder_engine:nimbus}") String decoderEngine,
+            @Value("${spring.authentication.jwks.fetch_timeout:5s}") Duration keyLoadTimeout,
+            JwkSetManager jwkSetManager,
+            PeerFailureLimiter peerFailureLimiter,
+            AuthPolicyRegistry authPolicyRegistry,
+            Optional<HealthStatusManager> healthStatusManager,
+            MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.iterations = iterations;
+        this.decoderEngine = decoderEngine;
+        this.keyLoadTimeout = keyLoadTimeout;
+        this.jwkSetManager = jwkSetManager;
+        this.peerFailureLimiter = peerFailureLimiter;
+        this.authPolicyRegistry = authPolicyRegistry;
+        this.healthStatusManager = healthStatusManager;
+        this.meterRegistry = meterRegistry;
+        if (enabled) {
+            setServingStatus(HealthCheckResponse.ServingStatus.NOT_SERVING);
+        } else {
+            this.outcome = "disabled";
+        }
+    }
+
+    /**
+     * Runs the warm-up and then reports the instance as serving.
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+
+        var startNanos = System.nanoTime();
+        var result = "success";
+        try {
+            if (!loadSigningKeys()) {
+                result = "keys_unavailable";
+            }
+            runIterations();
+        } catch (RuntimeException e) {
+            result = "failure";
+            log.warn("Warm-up failed: {}", e.getMessage());
+        } finally {
+            var durationNanos = System.nanoTime() - startNanos;
+            Timer.builder(WARMUP_TIMER)
+                    .description("Time spent warming up before serving")
+                    .tag("outcome", result)
+                    .register(meterRegistry)
+                    .record(durationNanos, TimeUnit.NANOSECONDS);
+            log.info("Warm-up finished with outcome {} after {} iterations in {} ms",
+                    result, iterations, TimeUnit.NANOSECONDS.toMillis(durationNanos));
+            outcome = result;
+            setServingStatus(HealthCheckResponse.ServingStatus.SERVING);
+        }
+    }
+
+    /**
+     * Reports the instance out of service until the warm-up has finished.
+     */
+    @Override
+    public Health health() {
+        var current = outcome;
+        return current == null
+                ? Health.outOfService().withDetail("warmup", "running").build()
+                : Health.up().withDetail("warmup", current).build();
+    }
+
+    /**
+     * Waits for the issuer's signing keys, unless keys other than seeded ones are already held.
+     *
+     * @return whether fetched keys are available
+     */
+    private boolean loadSigningKeys() {
+        if (jwkSetManager.current().filter(keySet -> keySet.fetchedAt().isAfter(Instant.EPOCH)).isPresent()) {
+            return true;
+        }
+        try {
+            jwkSetManager.refresh().get(keyLoadTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            return true;
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("Signing keys could not be loaded during warm-up: {}", e.getMessage());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Makes the synthetic calls through an interceptor and service of their own.
+     *
+     * <p>The decoder is the uncached part of the production chain, over the configured engine,
+     * so that every call parses and verifies the token. Validations are recorded in a registry
+     * of their own, so the synthetic calls do not show in the service's metrics.</p>
+     *
+     * @throws IllegalStateException if a synthetic call does not succeed
+     */
+    private void runIterations() {
+        var keys = WarmupKeys.generate();
+        var metadata = new IssuerMetadata(WARMUP_ISSUER, URI.create(WARMUP_ISSUER + "/jwks"), Set.of(JWSAlgorithm.RS256));
+        JwtDecoder engineDecoder = "rs256".equals(decoderEngine)
+                ? new Rs256JwtDecoder(WARMUP_ISSUER, keys::jwkSet, new ImmutableJWKSet<>(keys.jwkSet()))
+                : IssuerJwtDecoders.create(metadata, new ImmutableJWKSet<>(keys.jwkSet()));
+        var registry = new IssuerDecoderRegistry(
+                Map.of(WARMUP_ISSUER, () -> new IssuerDecoderRegistry.IssuerDecoder(engineDecoder, null)),
+                Duration.ZERO);
+        var decoder = new SingleFlightJwtDecoder(
+                new NegativeCachingJwtDecoder(new IssuerRoutingJwtDecoder(registry), 1, Duration.ofSeconds(1)));
+
+        var authService = new AuthServiceImpl(decoder, peerFailureLimiter, Runnable::run, 1, 1, Optional.empty());
+        var interceptor = new JwtAuthenticationInterceptor(
+                decoder, new AuthMetrics(new SimpleMeterRegistry()), peerFailureLimiter, authPolicyRegistry);
+        var handler = authenticateHandler(authService, interceptor);
+
+        var headers = new Metadata();
+        headers.put(AUTHORIZATION_METADATA_KEY, "Bearer " + keys.sign());
+        var context = Context.current().withValue(CtxConstants.REQUEST_ID_CONTEXT_KEY, "warmup");
+        for (var i = 0; i < iterations; i++) {
+            var call = new WarmupCall();
+            var previous = context.attach();
+            try {
+                var listener = handler.startCall(call, headers);
+                listener.onMessage(WARMUP_REQUEST);
+                listener.onHalfClose();
+                listener.onComplete();
+            } finally {
+                context.detach(previous);
+            }
+            if (call.status == null || !call.status.isOk()) {
+                throw new IllegalStateException("Synthetic call closed with " + call.status);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ServerCallHandler<AuthenticateRequest, AuthResponse> authenticateHandler(
+            AuthServiceImpl authService, JwtAuthenticationInterceptor interceptor) {
+        return (ServerCallHandler<AuthenticateRequest, AuthResponse>) ServerInterceptors.intercept(authService, interceptor)
+                .getMethod(AuthServiceGrpc.getAuthenticateMethod().getFullMethodName())
+                .getServerCallHandler();
+    }
+
+    private void setServingStatus(HealthCheckResponse.ServingStatus status) {
+        healthStatusManager.ifPresent(manager -> manager.setStatus(HealthStatusManager.SERVICE_NAME_ALL_SERVICES, status));
+    }
+
+    /**
+     * A signing key generated for the warm-up, trusted only by the warm-up decoder.
+     */
+    private record WarmupKeys(RSAKey signingKey, JWKSet jwkSet) {
+
+        static WarmupKeys generate() {
+            try {
+                var key = new RSAKeyGenerator(2048).keyID("warmup").generate();
+                return new WarmupKeys(key, new JWKSet(key.toPublicJWK()));
+            } catch (JOSEException e) {
+                throw new IllegalStateException("Unable to generate warm-up key", e);
+            }
+        }
+
+        String sign() {
+            var now = Instant.now();
+            var header = new JWSHeader.Builder(JWSAlgorithm.RS256)
+                    .keyID(signingKey.getKeyID())
+                    .type(JOSEObjectType.JWT)
+                    .build();
+            var claims = new JWTClaimsSet.Builder()
+                    .issuer(WARMUP_ISSUER)
+                    .subject("warmup")
+                    .issueTime(Date.from(now))
+                    .expirationTime(Date.from(now.plus(Duration.ofHours(1))))
+                    .claim("email", "warmup@warmup.invalid")
+                    .build();
+            try {
+                var jwt = new SignedJWT(header, claims);
+                jwt.sign(new RSASSASigner(signingKey));
+                return jwt.serialize();
+            } catch (JOSEException e) {
+                throw new IllegalStateException("Unable to sign warm-up token", e);
+            }
+        }
+    }
+
+    /**
+     * Server call that keeps the status it is closed with and discards everything else.
+     */
+    private static final class WarmupCall extends ServerCall<AuthenticateRequest, AuthResponse> {
+
+        private Status status;
+
+        @Override
+        public void request(int numMessages) {}
+
+        @Override
+        public void sendHeaders(Metadata headers) {}
+
+        @Override
+        public void sendMessage(AuthResponse message) {}
+
+        @Override
+        public void close(Status status, Metadata trailers) {
+            this.status = status;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public MethodDescriptor<AuthenticateRequest, AuthResponse> getMethodDescriptor() {
+            return AuthServiceGrpc.getAuthenticateMethod();
+        }
+    }
+}
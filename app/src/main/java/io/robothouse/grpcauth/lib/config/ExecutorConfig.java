@@ -0,0 +1,76 @@
+package io.robothouse.grpcauth.lib.config;
+
+import io.grpc.ServerBuilder;
+import io.robothouse.grpcauth.lib.util.BoundedVirtualThreadExecutor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.grpc.server.ServerBuilderCustomizer;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spring configuration class for executors used by the gRPC services.
+ */
+@Configuration
+public class ExecutorConfig {
+
+    /**
+     * Creates the bounded executor used to validate tokens in parallel.
+     *
+     * <p>The pool has a fixed number of threads and a bounded queue. When the queue is full the
+     * submitting thread validates the token itself, which applies back-pressure to callers
+     * instead of growing without limit.</p>
+     *
+     * @param parallelism the number of validation threads, or 0 to use one per available processor
+     * @param queueCapacity the maximum number of pending validations
+     * @return the token validation executor
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService tokenValidationExecutor(
+            @Value("${spring.authentication.batch.parallelism:0}") int parallelism,
+            @Value("${spring.authentication.batch.queue_capacity:1024}") int queueCapacity) {
+        var threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        return new ThreadPoolExecutor(
+                threads,
+                threads,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().name("token-validation-", 0).daemon().factory(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Creates the virtual-thread executor on which the gRPC server runs calls.
+     *
+     * <p>Only created when 'spring.authentication.executor.mode' is 'virtual'; otherwise the
+     * server keeps gRPC's default cached thread pool.</p>
+     *
+     * @param maxConcurrency the maximum number of call callbacks running, and of virtual threads, at the same time
+     * @return the bounded virtual-thread executor
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "spring.authentication.executor.mode", havingValue = "virtual")
+    public BoundedVirtualThreadExecutor grpcServerExecutor(
+            @Value("${spring.authentication.executor.max_concurrency:1024}") int maxConcurrency) {
+        return new BoundedVirtualThreadExecutor("grpc-call-", maxConcurrency);
+    }
+
+    /**
+     * Switches the gRPC server to the virtual-thread executor.
+     *
+     * @param grpcServerExecutor the executor on which calls are run
+     * @return a customizer that installs the executor on the server builder
+     */
+    @Bean
+    @ConditionalOnProperty(name = "spring.authentication.executor.mode", havingValue = "virtual")
+    public <T extends ServerBuilder<T>> ServerBuilderCustomizer<T> virtualThreadServerBuilderCustomizer(
+            BoundedVirtualThreadExecutor grpcServerExecutor) {
+        return builder -> builder.executor(grpcServerExecutor);
+    }
+}
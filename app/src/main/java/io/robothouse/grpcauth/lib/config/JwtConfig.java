@@ -1,14 +1,45 @@
 package io.robothouse.grpcauth.lib.config;
 
+import com.nimbusds.jose.JWSAlgorithm;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.robothouse.grpcauth.lib.jwt.CachingJwtDecoder;
+import io.robothouse.grpcauth.lib.jwt.IssuerDecoderRegistry;
+import io.robothouse.grpcauth.lib.jwt.IssuerJwtDecoders;
+import io.robothouse.grpcauth.lib.jwt.IssuerMetadata;
+import io.robothouse.grpcauth.lib.jwt.IssuerRoutingJwtDecoder;
+import io.robothouse.grpcauth.lib.jwt.JwkSetManager;
+import io.robothouse.grpcauth.lib.jwt.JwkSetSnapshot;
+import io.robothouse.grpcauth.lib.jwt.NegativeCachingJwtDecoder;
+import io.robothouse.grpcauth.lib.jwt.SingleFlightJwtDecoder;
+import io.robothouse.grpcauth.lib.revocation.RevocationCheckingJwtDecoder;
+import io.robothouse.grpcauth.lib.revocation.RevocationIndex;
+import io.robothouse.grpcauth.lib.ticket.SessionTickets;
+import io.robothouse.grpcauth.lib.ticket.TicketAwareJwtDecoder;
+import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
-import org.springframework.security.oauth2.jwt.JwtDecoders;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
  * Spring configuration class for JWT authentication setup.
  */
+@Log4j2
 @Configuration
 public class JwtConfig {
 
@@ -26,21 +57,375 @@ public class JwtConfig {
      */
     private final String issuerUri;
 
+    /**
+     * How issuer metadata is obtained: 'discovery' fetches the OpenID discovery document at
+     * startup, 'static' takes it from configuration without any outbound call.
+     *
+     * <p>Injected from the application configuration property 'spring.authentication.metadata.mode'.</p>
+     */
+    private final String metadataMode;
+
+    /**
+     * The JWK set location used in static metadata mode.
+     *
+     * <p>Injected from the application configuration property 'spring.authentication.metadata.jwks_uri'.</p>
+     */
+    private final String staticJwksUri;
+
+    /**
+     * The JWS algorithms accepted in static metadata mode.
+     *
+     * <p>Injected from the application configuration property 'spring.authentication.metadata.algorithms'.</p>
+     */
+    private final List<String> staticAlgorithms;
+
+    /**
+     * An optional JWK set file loaded before the first fetch, so tokens can be verified immediately.
+     *
+     * <p>Injected from the application configuration property 'spring.authentication.jwks.seed_file'.</p>
+     */
+    private final String jwksSeedFile;
+
+    /**
+     * An optional file the last good JWK set is persisted to, and restored from at startup.
+     *
+     * <p>Injected from the application configuration property 'spring.authentication.jwks.snapshot_file'.</p>
+     */
+    private final String jwksSnapshotFile;
+
+    /**
+     * How long after it was fetched a persisted JWK set may still be restored.
+     *
+     * <p>Injected from the application configuration property 'spring.authentication.jwks.snapshot_max_staleness'.</p>
+     */
+    private final Duration jwksSnapshotMaxStaleness;
+
+    /**
+     * The decoder verifying token signatures and claims: 'nimbus' for the general-purpose
+     * Spring decoder, 'rs256' for the decoder specialised for RS256 tokens.
+     *
+     * <p>Injected from the application configuration property 'spring.authentication.decoder_engine'.</p>
+     */
+    private final String decoderEngine;
+
+    /**
+     * The maximum number of verified tokens held in the token cache.
+     *
+     * <p>Injected from the application configuration property 'spring.authentication.token_cache.maximum_size'.</p>
+     */
+    private final long tokenCacheMaximumSize;
+
+    /**
+     * The margin subtracted from a token's expiry when deciding how long it may stay cached.
+     *
+     * <p>Injected from the application configuration property 'spring.authentication.token_cache.clock_skew'.</p>
+     */
+    private final Duration tokenCacheClockSkew;
+
+    /**
+     * The maximum number of rejected tokens remembered by the negative cache.
+     *
+     * <p>Injected from the application configuration property 'spring.authentication.negative_cache.maximum_size'.</p>
+     */
+    private final long negativeCacheMaximumSize;
+
+    /**
+     * How long a token rejected for its signature or format keeps being rejected without decoding.
+     *
+     * <p>Injected from the application configuration property 'spring.authentication.negative_cache.ttl'.</p>
+     */
+    private final Duration negativeCacheTtl;
+
+    /**
+     * The timeout applied to issuer discovery and JWK set requests.
+     *
+     * <p>Injected from the application configuration property 'spring.authentication.jwks.fetch_timeout'.</p>
+     */
+    private final Duration jwksFetchTimeout;
+
+    /**
+     * The key set lifetime assumed when the JWKS response has no Cache-Control max-age.
+     *
+     * <p>Injected from the application configuration property 'spring.authentication.jwks.default_max_age'.</p>
+     */
+    private final Duration jwksDefaultMaxAge;
+
+    /**
+     * The minimum time between JWK set fetches triggered by unknown key ids.
+     *
+     * <p>Injected from the application configuration property 'spring.authentication.jwks.min_refresh_interval'.</p>
+     */
+    private final Duration jwksMinRefreshInterval;
+
+    /**
+     * Further issuers whose tokens are accepted, each either an issuer location whose metadata
+     * is discovered, or '&lt;issuer&gt;=&lt;jwks uri&gt;' to use the static algorithms without discovery.
+     *
+     * <p>Injected from the application configuration property 'spring.authentication.additional_issuers'.</p>
+     */
+    private final List<String> additionalIssuers;
+
     public JwtConfig(
             @Value("${spring.authentication.project_id}") String projectId,
-            @Value("${spring.authentication.issuer_uri}") String issuerUri) {
+            @Value("${spring.authentication.issuer_uri}") String issuerUri,
+            @Value("${spring.authentication.metadata.mode:discovery}") String metadataMode,
+            @Value("${spring.authentication.metadata.jwks_uri:}") String staticJwksUri,
+            @Value("${spring.authentication.metadata.algorithms:RS256}") List<String> staticAlgorithms,
+            @Value("${spring.authentication.jwks.seed_file:}") String jwksSeedFile,
+            @Value("${spring.authentication.jwks.snapshot_file:}") String jwksSnapshotFile,
+            @Value("${spring.authentication.jwks.snapshot_max_staleness:24h}") Duration jwksSnapshotMaxStaleness,
+            @Value("${spring.authentication.decoder_engine:nimbus}") String decoderEngine,
+            @Value("${spring.authentication.token_cache.maximum_size:10000}") long tokenCacheMaximumSize,
+            @Value("${spring.authentication.token_cache.clock_skew:30s}") Duration tokenCacheClockSkew,
+            @Value("${spring.authentication.negative_cache.maximum_size:10000}") long negativeCacheMaximumSize,
+            @Value("${spring.authentication.negative_cache.ttl:10s}") Duration negativeCacheTtl,
+            @Value("${spring.authentication.jwks.fetch_timeout:5s}") Duration jwksFetchTimeout,
+            @Value("${spring.authentication.jwks.default_max_age:5m}") Duration jwksDefaultMaxAge,
+            @Value("${spring.authentication.jwks.min_refresh_interval:30s}") Duration jwksMinRefreshInterval,
+            @Value("${spring.authentication.additional_issuers:}") List<String> additionalIssuers) {
         this.projectId = projectId;
         this.issuerUri = issuerUri;
+        this.metadataMode = metadataMode;
+        this.staticJwksUri = staticJwksUri;
+        this.staticAlgorithms = staticAlgorithms;
+        this.jwksSeedFile = jwksSeedFile;
+        this.jwksSnapshotFile = jwksSnapshotFile;
+        this.jwksSnapshotMaxStaleness = jwksSnapshotMaxStaleness;
+        this.decoderEngine = decoderEngine;
+        this.tokenCacheMaximumSize = tokenCacheMaximumSize;
+        this.tokenCacheClockSkew = tokenCacheClockSkew;
+        this.negativeCacheMaximumSize = negativeCacheMaximumSize;
+        this.negativeCacheTtl = negativeCacheTtl;
+        this.jwksFetchTimeout = jwksFetchTimeout;
+        this.jwksDefaultMaxAge = jwksDefaultMaxAge;
+        this.jwksMinRefreshInterval = jwksMinRefreshInterval;
+        this.additionalIssuers = additionalIssuers;
     }
 
     /**
-     * Creates and configures a JwtDecoder bean for Firebase JWT validation.
+     * Creates the HTTP client used for issuer discovery and JWK set fetches.
      *
-     * @return a configured JwtDecoder instance for validating Firebase-issued tokens
+     * @return a configured HttpClient instance
+     */
+    @Bean
+    public HttpClient jwksHttpClient() {
+        return HttpClient.newBuilder()
+                .connectTimeout(jwksFetchTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    /**
+     * Resolves the metadata of the configured Firebase issuer.
+     *
+     * <p>In static mode the metadata is taken from configuration and startup makes no outbound
+     * call; otherwise it is read from the issuer's OpenID discovery document. If discovery
+     * fails and a recent enough JWK set snapshot of the issuer exists, its JWK set location is
+     * used with the configured static algorithms, so that a discovery outage does not prevent
+     * startup.</p>
+     *
+     * @param jwksHttpClient the client used for the discovery request
+     * @return the issuer metadata, including its JWK set location
      */
     @Bean
-    public JwtDecoder jwtDecoder() {
+    public IssuerMetadata issuerMetadata(HttpClient jwksHttpClient) {
         var fullIssuerUri = issuerUri + projectId;
-        return JwtDecoders.fromIssuerLocation(fullIssuerUri);
+        if (!isStaticMetadata()) {
+            try {
+                return IssuerMetadata.discover(fullIssuerUri, jwksHttpClient, jwksFetchTimeout);
+            } catch (IllegalStateException e) {
+                var snapshot = freshSnapshot(fullIssuerUri).orElseThrow(() -> e);
+                log.warn("Issuer discovery failed, using JWK set location {} from snapshot: {}",
+                        snapshot.jwkSetUri(), e.getMessage());
+                return new IssuerMetadata(fullIssuerUri, snapshot.jwkSetUri(), staticAlgorithms());
+            }
+        }
+
+        if (staticJwksUri.isBlank()) {
+            throw new IllegalStateException(
+                    "spring.authentication.metadata.jwks_uri is required in static metadata mode");
+        }
+        return new IssuerMetadata(fullIssuerUri, URI.create(staticJwksUri), staticAlgorithms());
+    }
+
+    /**
+     * Creates the manager that prefetches and refreshes the issuer's signing keys.
+     *
+     * <p>When a snapshot file is configured, every fetched key set is persisted to it, and a
+     * snapshot no older than the maximum staleness is served at startup while the first fetch
+     * runs in the background. Otherwise, when a seed file is configured its keys are served
+     * until the first fetch completes. In static metadata mode startup never waits for the
+     * initial fetch.</p>
+     *
+     * @param issuerMetadata the metadata of the issuer whose keys are managed
+     * @param jwksHttpClient the client used for JWK set fetches
+     * @param eventPublisher the publisher notified when signing keys rotate
+     * @param meterRegistry the registry receiving the JWK set fetch timers
+     * @return a JwkSetManager that is started with the application context
+     */
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public JwkSetManager jwkSetManager(
+            IssuerMetadata issuerMetadata,
+            HttpClient jwksHttpClient,
+            ApplicationEventPublisher eventPublisher,
+            MeterRegistry meterRegistry) {
+        var manager = new JwkSetManager(
+                issuerMetadata.issuer(),
+                issuerMetadata.jwkSetUri(),
+                jwksHttpClient,
+                eventPublisher,
+                meterRegistry,
+                new JwkSetManager.Settings(
+                        jwksFetchTimeout, jwksDefaultMaxAge, jwksMinRefreshInterval, !isStaticMetadata()));
+        var restored = !jwksSnapshotFile.isBlank()
+                && manager.restoreSnapshot(Path.of(jwksSnapshotFile), jwksSnapshotMaxStaleness);
+        if (!restored && !jwksSeedFile.isBlank()) {
+            manager.seed(Path.of(jwksSeedFile));
+        }
+        return manager;
+    }
+
+    /**
+     * Creates the registry of decoders for every accepted issuer.
+     *
+     * <p>The configured Firebase issuer is verified with the keys of the {@link JwkSetManager}
+     * bean. Each additional issuer gets its own JwkSetManager, created together with its decoder
+     * when the first token from that issuer arrives, so an unreachable issuer neither delays
+     * startup nor affects the others. A failed creation is retried after the minimum refresh
+     * interval.</p>
+     *
+     * @param issuerMetadata the metadata of the configured Firebase issuer
+     * @param jwkSetManager the source of the Firebase issuer's signing keys
+     * @param jwksHttpClient the client used for discovery and JWK set fetches of additional issuers
+     * @param eventPublisher the publisher notified when signing keys rotate
+     * @param meterRegistry the registry receiving the JWK set fetch timers
+     * @return an IssuerDecoderRegistry closing the key set managers it created on shutdown
+     * @throws IllegalArgumentException if the decoder engine is unknown
+     */
+    @Bean(destroyMethod = "close")
+    public IssuerDecoderRegistry issuerDecoderRegistry(
+            IssuerMetadata issuerMetadata,
+            JwkSetManager jwkSetManager,
+            HttpClient jwksHttpClient,
+            ApplicationEventPublisher eventPublisher,
+            MeterRegistry meterRegistry) {
+        var primaryDecoder = new IssuerDecoderRegistry.IssuerDecoder(
+                engineDecoder(issuerMetadata, jwkSetManager), null);
+        var factories = new LinkedHashMap<String, Supplier<IssuerDecoderRegistry.IssuerDecoder>>();
+        factories.put(issuerMetadata.issuer(), () -> primaryDecoder);
+        for (var entry : additionalIssuers) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            var separator = entry.indexOf('=');
+            var issuer = (separator < 0 ? entry : entry.substring(0, separator)).trim();
+            var jwksUri = separator < 0 ? null : URI.create(entry.substring(separator + 1).trim());
+            factories.put(issuer, () -> {
+                var metadata = jwksUri == null
+                        ? IssuerMetadata.discover(issuer, jwksHttpClient, jwksFetchTimeout)
+                        : new IssuerMetadata(issuer, jwksUri, staticAlgorithms());
+                var manager = new JwkSetManager(
+                        metadata.issuer(),
+                        metadata.jwkSetUri(),
+                        jwksHttpClient,
+                        eventPublisher,
+                        meterRegistry,
+                        new JwkSetManager.Settings(jwksFetchTimeout, jwksDefaultMaxAge, jwksMinRefreshInterval, false));
+                manager.start();
+                return new IssuerDecoderRegistry.IssuerDecoder(engineDecoder(metadata, manager), manager);
+            });
+        }
+        return new IssuerDecoderRegistry(factories, jwksMinRefreshInterval);
+    }
+
+    /**
+     * Creates the verified-token cache and the decoders beneath it.
+     *
+     * <p>Each token is routed by its unverified issuer to that issuer's decoder in the
+     * {@link IssuerDecoderRegistry}, and tokens from any other issuer are rejected before any
+     * signature is verified. The decoder is wrapped in a {@link CachingJwtDecoder} so that
+     * repeat presentations of the same token skip signature verification. Beneath it, a
+     * {@link NegativeCachingJwtDecoder} briefly remembers tokens rejected for their signature or
+     * format so that replays of them are rejected without decoding. In between, a
+     * {@link SingleFlightJwtDecoder} lets concurrent requests carrying the same uncached token
+     * share a single decode.</p>
+     *
+     * <p>When session tickets are enabled, a {@link TicketAwareJwtDecoder} beneath the
+     * verified-token cache verifies tickets directly, so they skip the single-flight and
+     * negative cache layers that exist to save RSA work.</p>
+     *
+     * <p>The cache is a bean of its own so that it is cleared when signing keys rotate.</p>
+     *
+     * @param issuerDecoderRegistry the decoders of the accepted issuers
+     * @param sessionTickets the session tickets service, present when tickets are enabled
+     * @return the verified-token cache over the verifying decoders
+     */
+    @Bean
+    public CachingJwtDecoder verifiedTokenCache(
+            IssuerDecoderRegistry issuerDecoderRegistry,
+            Optional<SessionTickets> sessionTickets) {
+        var negativeCachingDecoder = new NegativeCachingJwtDecoder(
+                new IssuerRoutingJwtDecoder(issuerDecoderRegistry), negativeCacheMaximumSize, negativeCacheTtl);
+        var singleFlightDecoder = new SingleFlightJwtDecoder(negativeCachingDecoder);
+        JwtDecoder verifyingDecoder = sessionTickets.isPresent()
+                ? new TicketAwareJwtDecoder(singleFlightDecoder, sessionTickets.get())
+                : singleFlightDecoder;
+        return new CachingJwtDecoder(verifyingDecoder, tokenCacheMaximumSize, tokenCacheClockSkew);
+    }
+
+    /**
+     * Creates and configures the JwtDecoder bean for Firebase JWT validation.
+     *
+     * <p>Tokens are decoded through the {@link CachingJwtDecoder} and then checked against the
+     * {@link RevocationIndex}, so that a revocation also applies to tokens that are already
+     * cached.</p>
+     *
+     * @param verifiedTokenCache the verified-token cache over the verifying decoders
+     * @param revocationIndex the index of revoked subjects and tokens
+     * @return a configured JwtDecoder instance for validating Firebase-issued tokens
+     */
+    @Bean
+    @Primary
+    public JwtDecoder jwtDecoder(CachingJwtDecoder verifiedTokenCache, RevocationIndex revocationIndex) {
+        return new RevocationCheckingJwtDecoder(verifiedTokenCache, revocationIndex);
+    }
+
+    /**
+     * Creates the decoder of one issuer with the configured decoder engine.
+     */
+    private JwtDecoder engineDecoder(IssuerMetadata issuerMetadata, JwkSetManager jwkSetManager) {
+        return switch (decoderEngine) {
+            case "nimbus" -> IssuerJwtDecoders.create(issuerMetadata, jwkSetManager);
+            case "rs256" -> IssuerJwtDecoders.createRs256(issuerMetadata, jwkSetManager);
+            default -> throw new IllegalArgumentException("Unknown decoder engine: " + decoderEngine);
+        };
+    }
+
+    private Set<JWSAlgorithm> staticAlgorithms() {
+        return staticAlgorithms.stream()
+                .map(String::trim)
+                .map(JWSAlgorithm::parse)
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    /**
+     * Returns the configured JWK set snapshot if it belongs to the issuer and is recent enough.
+     */
+    private Optional<JwkSetSnapshot> freshSnapshot(String issuer) {
+        if (jwksSnapshotFile.isBlank()) {
+            return Optional.empty();
+        }
+        try {
+            return JwkSetSnapshot.read(Path.of(jwksSnapshotFile))
+                    .filter(snapshot -> issuer.equals(snapshot.issuer()))
+                    .filter(snapshot -> snapshot.isFresh(jwksSnapshotMaxStaleness));
+        } catch (IOException | ParseException e) {
+            log.warn("Ignoring unreadable JWK set snapshot {}: {}", jwksSnapshotFile, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private boolean isStaticMetadata() {
+        return "static".equalsIgnoreCase(metadataMode);
     }
 }
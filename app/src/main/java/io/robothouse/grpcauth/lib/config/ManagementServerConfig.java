@@ -0,0 +1,39 @@
+package io.robothouse.grpcauth.lib.config;
+
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import io.robothouse.grpcauth.lib.util.ManagementHttpServer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.HealthEndpoint;
+import org.springframework.boot.actuate.metrics.export.prometheus.PrometheusScrapeEndpoint;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Spring configuration class for the HTTP management endpoints.
+ */
+@Configuration
+public class ManagementServerConfig {
+
+    /**
+     * Creates the server exposing the actuator health and Prometheus endpoints over HTTP.
+     *
+     * <p>Each endpoint is served when it is included in
+     * 'management.endpoints.web.exposure.include', which is what makes actuator create it.</p>
+     *
+     * @param port the port to listen on
+     * @param prometheusRegistry the Prometheus registry, if Prometheus export is enabled
+     * @param prometheusEndpoint the Prometheus endpoint, if it is exposed
+     * @param healthEndpoint the health endpoint, if it is exposed
+     * @return the management server
+     */
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public ManagementHttpServer managementHttpServer(
+            @Value("${management.server.port:8080}") int port,
+            ObjectProvider<PrometheusMeterRegistry> prometheusRegistry,
+            ObjectProvider<PrometheusScrapeEndpoint> prometheusEndpoint,
+            ObjectProvider<HealthEndpoint> healthEndpoint) {
+        var scrapedRegistry = prometheusEndpoint.getIfAvailable() != null ? prometheusRegistry.getIfAvailable() : null;
+        return new ManagementHttpServer(port, scrapedRegistry, healthEndpoint.getIfAvailable());
+    }
+}
@@ -0,0 +1,36 @@
+package io.robothouse.grpcauth.lib.config;
+
+import io.robothouse.grpcauth.lib.requestid.HeaderRequestIdGenerator;
+import io.robothouse.grpcauth.lib.requestid.RequestIdGenerator;
+import io.robothouse.grpcauth.lib.requestid.RequestIdGenerators;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Spring configuration class for request id generation.
+ */
+@Configuration
+public class RequestIdConfig {
+
+    /**
+     * Creates the generator that assigns a request id to every incoming call.
+     *
+     * @param strategy 'random_uuid', 'thread_local_random' or 'uuid_v7'
+     * @param propagateHeader whether an incoming 'x-request-id' header is reused when present
+     * @return the configured request id generator
+     * @throws IllegalArgumentException if the strategy is unknown
+     */
+    @Bean
+    public RequestIdGenerator requestIdGenerator(
+            @Value("${spring.authentication.request_id.strategy:random_uuid}") String strategy,
+            @Value("${spring.authentication.request_id.propagate_header:false}") boolean propagateHeader) {
+        var generator = switch (strategy) {
+            case "random_uuid" -> RequestIdGenerators.randomUuid();
+            case "thread_local_random" -> RequestIdGenerators.threadLocalRandom();
+            case "uuid_v7" -> RequestIdGenerators.uuidV7();
+            default -> throw new IllegalArgumentException("Unknown request id strategy: " + strategy);
+        };
+        return propagateHeader ? new HeaderRequestIdGenerator(generator) : generator;
+    }
+}
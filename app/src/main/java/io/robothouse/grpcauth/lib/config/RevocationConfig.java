@@ -0,0 +1,37 @@
+package io.robothouse.grpcauth.lib.config;
+
+import io.robothouse.grpcauth.lib.revocation.RevocationIndex;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Spring configuration class for token revocation.
+ */
+@Configuration
+public class RevocationConfig {
+
+    /**
+     * Creates the index of revoked subjects and tokens.
+     *
+     * <p>The index starts empty. When a revocation file is configured it is loaded at startup
+     * and merged into the index again whenever it changes; revocations can also be pushed
+     * through the RevocationService.</p>
+     *
+     * @param retention how long a subject revocation is kept after its revoked-after time
+     * @param revocationFile the optional file of revocations
+     * @param filePollInterval how often the revocation file is checked for changes
+     * @return the revocation index
+     */
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public RevocationIndex revocationIndex(
+            @Value("${spring.authentication.revocation.retention:1h}") Duration retention,
+            @Value("${spring.authentication.revocation.file:}") String revocationFile,
+            @Value("${spring.authentication.revocation.file_poll_interval:30s}") Duration filePollInterval) {
+        return new RevocationIndex(
+                retention, revocationFile.isBlank() ? null : Path.of(revocationFile), filePollInterval);
+    }
+}
@@ -0,0 +1,61 @@
+package io.robothouse.grpcauth.lib.config;
+
+import io.robothouse.grpcauth.lib.ticket.SessionTicketKeyRing;
+import io.robothouse.grpcauth.lib.ticket.SessionTickets;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Spring configuration class for session tickets.
+ *
+ * <p>Only active when 'spring.authentication.ticket.enabled' is true; otherwise ExchangeToken
+ * is unavailable and only ID tokens are accepted.</p>
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.authentication.ticket.enabled", havingValue = "true")
+public class SessionTicketConfig {
+
+    /**
+     * Creates the key ring that signs and verifies session tickets.
+     *
+     * <p>Keys are read from the key file when one is configured, and reloaded when it changes;
+     * otherwise they are taken from the inline key entries.</p>
+     *
+     * @param keys the inline key entries, used when no key file is configured
+     * @param keyFile the file containing the key entries
+     * @param keyFilePollInterval how often the key file is checked for changes
+     * @param eventPublisher publishes a rotation event when a key file reload removes a key
+     * @return the session ticket key ring
+     * @throws IllegalStateException if no valid keys are configured
+     */
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public SessionTicketKeyRing sessionTicketKeyRing(
+            @Value("${spring.authentication.ticket.keys:}") String keys,
+            @Value("${spring.authentication.ticket.key_file:}") String keyFile,
+            @Value("${spring.authentication.ticket.key_file_poll_interval:30s}") Duration keyFilePollInterval,
+            ApplicationEventPublisher eventPublisher) {
+        return keyFile.isBlank()
+                ? SessionTicketKeyRing.of(keys)
+                : SessionTicketKeyRing.ofFile(Path.of(keyFile), keyFilePollInterval, eventPublisher);
+    }
+
+    /**
+     * Creates the service that mints and verifies session tickets.
+     *
+     * @param sessionTicketKeyRing the keys that sign and verify tickets
+     * @param ttl the maximum lifetime of a minted ticket
+     * @return the session tickets service
+     */
+    @Bean
+    public SessionTickets sessionTickets(
+            SessionTicketKeyRing sessionTicketKeyRing,
+            @Value("${spring.authentication.ticket.ttl:15m}") Duration ttl) {
+        return new SessionTickets(sessionTicketKeyRing, ttl);
+    }
+}
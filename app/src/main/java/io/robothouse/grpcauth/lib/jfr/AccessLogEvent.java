@@ -0,0 +1,32 @@
+package io.robothouse.grpcauth.lib.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR event spanning the access-log event written when a call completes or is cancelled.
+ */
+@Name("io.robothouse.grpcauth.AccessLog")
+@Label("Access Log")
+@Category("gRPC Auth")
+@Description("Writing the access-log event of a completed or cancelled call")
+@Enabled(false)
+@StackTrace(false)
+@Threshold("1 ms")
+public final class AccessLogEvent extends Event {
+
+    @Label("Method")
+    public String method;
+
+    @Label("Request Id")
+    public String requestId;
+
+    @Label("Status")
+    public String status;
+}
@@ -0,0 +1,33 @@
+package io.robothouse.grpcauth.lib.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR event spanning {@code AuthService/Authenticate}, from reading the context to sending the
+ * response.
+ */
+@Name("io.robothouse.grpcauth.Authenticate")
+@Label("Authenticate")
+@Category("gRPC Auth")
+@Description("Building and sending the response of an Authenticate call")
+@Enabled(false)
+@StackTrace(false)
+@Threshold("1 ms")
+public final class AuthenticateEvent extends Event {
+
+    @Label("Request Id")
+    public String requestId;
+
+    @Label("Claims Projected")
+    public boolean claimsProjected;
+
+    @Label("Status")
+    public String status;
+}
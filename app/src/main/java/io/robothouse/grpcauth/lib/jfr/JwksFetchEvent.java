@@ -0,0 +1,38 @@
+package io.robothouse.grpcauth.lib.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR event spanning a JWK set fetch from an issuer.
+ */
+@Name("io.robothouse.grpcauth.JwksFetch")
+@Label("JWKS Fetch")
+@Category("gRPC Auth")
+@Description("Fetching and parsing an issuer's JWK set")
+@Enabled(false)
+@StackTrace(false)
+@Threshold("0 ms")
+public final class JwksFetchEvent extends Event {
+
+    @Label("Issuer")
+    public String issuer;
+
+    @Label("JWK Set URI")
+    public String jwkSetUri;
+
+    @Label("Outcome")
+    public String outcome;
+
+    @Label("Keys")
+    public int keys;
+
+    @Label("Error")
+    public String error;
+}
@@ -0,0 +1,36 @@
+package io.robothouse.grpcauth.lib.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR event spanning the validation of a call's credential by the JWT authentication
+ * interceptor, from reading the header to the outcome being decided.
+ */
+@Name("io.robothouse.grpcauth.JwtAuthentication")
+@Label("JWT Authentication")
+@Category("gRPC Auth")
+@Description("Reading and validating the bearer token of a call, including decoding and signature verification")
+@Enabled(false)
+@StackTrace(false)
+@Threshold("5 ms")
+public final class JwtAuthenticationEvent extends Event {
+
+    @Label("Method")
+    public String method;
+
+    @Label("Request Id")
+    public String requestId;
+
+    @Label("Policy")
+    public String policy;
+
+    @Label("Outcome")
+    public String outcome;
+}
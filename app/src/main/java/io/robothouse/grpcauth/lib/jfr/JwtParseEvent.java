@@ -0,0 +1,30 @@
+package io.robothouse.grpcauth.lib.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR event spanning the parse of a token by the rs256 decoder engine, from splitting it to
+ * checking its header.
+ */
+@Name("io.robothouse.grpcauth.JwtParse")
+@Label("JWT Parse")
+@Category("gRPC Auth")
+@Description("Splitting and base64url-decoding a token, parsing its header and claims and checking its header")
+@Enabled(false)
+@StackTrace(false)
+@Threshold("1 ms")
+public final class JwtParseEvent extends Event {
+
+    @Label("Issuer")
+    public String issuer;
+
+    @Label("Outcome")
+    public String outcome;
+}
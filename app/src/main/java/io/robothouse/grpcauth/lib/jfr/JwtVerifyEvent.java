@@ -0,0 +1,33 @@
+package io.robothouse.grpcauth.lib.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR event spanning the signature check of a token by the rs256 decoder engine, including
+ * the key source lookup made for an unknown key id.
+ */
+@Name("io.robothouse.grpcauth.JwtVerify")
+@Label("JWT Verify")
+@Category("gRPC Auth")
+@Description("Finding the signing key of a token, refreshing the keys for an unknown key id, and checking the signature")
+@Enabled(false)
+@StackTrace(false)
+@Threshold("1 ms")
+public final class JwtVerifyEvent extends Event {
+
+    @Label("Issuer")
+    public String issuer;
+
+    @Label("Key Id")
+    public String keyId;
+
+    @Label("Outcome")
+    public String outcome;
+}
@@ -0,0 +1,30 @@
+package io.robothouse.grpcauth.lib.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR event spanning the interception of a call by the request logging interceptor: request id
+ * generation and the interceptors after it, including JWT authentication.
+ */
+@Name("io.robothouse.grpcauth.RequestIntercept")
+@Label("Request Intercept")
+@Category("gRPC Auth")
+@Description("Request id generation and interception of a call, including the interceptors after it")
+@Enabled(false)
+@StackTrace(false)
+@Threshold("5 ms")
+public final class RequestInterceptEvent extends Event {
+
+    @Label("Method")
+    public String method;
+
+    @Label("Request Id")
+    public String requestId;
+}
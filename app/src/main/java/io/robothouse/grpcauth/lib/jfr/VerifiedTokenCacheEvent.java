@@ -0,0 +1,27 @@
+package io.robothouse.grpcauth.lib.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR event spanning a decode through the verified-token cache: the lookup and, on a miss,
+ * the rest of the decoder chain.
+ */
+@Name("io.robothouse.grpcauth.VerifiedTokenCache")
+@Label("Verified Token Cache")
+@Category("gRPC Auth")
+@Description("Looking a token up in the verified-token cache and, on a miss, decoding and caching it")
+@Enabled(false)
+@StackTrace(false)
+@Threshold("1 ms")
+public final class VerifiedTokenCacheEvent extends Event {
+
+    @Label("Hit")
+    public boolean hit;
+}
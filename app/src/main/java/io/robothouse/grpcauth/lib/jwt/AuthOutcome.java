@@ -0,0 +1,31 @@
+package io.robothouse.grpcauth.lib.jwt;
+
+/**
+ * The outcome of authenticating a single credential.
+ */
+public enum AuthOutcome {
+
+    SUCCESS("success"),
+    EXPIRED("expired"),
+    BAD_SIGNATURE("bad_signature"),
+    UNKNOWN_KEY("unknown_key"),
+    MALFORMED("malformed"),
+    INVALID_CLAIMS("invalid_claims"),
+    REVOKED("revoked"),
+    MISSING_HEADER("missing_header"),
+    THROTTLED("throttled"),
+    ERROR("error");
+
+    /**
+     * The value used when tagging metrics and log events with this outcome.
+     */
+    private final String tagValue;
+
+    AuthOutcome(String tagValue) {
+        this.tagValue = tagValue;
+    }
+
+    public String tagValue() {
+        return tagValue;
+    }
+}
@@ -0,0 +1,142 @@
+package io.robothouse.grpcauth.lib.jwt;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.robothouse.grpcauth.lib.jfr.VerifiedTokenCacheEvent;
+import io.robothouse.grpcauth.lib.util.TokenDigests;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.time.Clock;
+import java.time.Duration;
+
+/**
+ * JwtDecoder decorator that caches successfully verified tokens.
+ *
+ * <p>Entries are keyed by the SHA-256 digest of the raw token and expire at the token's
+ * {@code exp} claim minus the configured clock skew. The cache is bounded in size and is
+ * cleared whenever a {@link SigningKeysRotatedEvent} is published. Failed decodes are never
+ * cached.</p>
+ */
+@Log4j2
+public class CachingJwtDecoder implements JwtDecoder {
+
+    private final JwtDecoder delegate;
+
+    private final Cache<String, Jwt> cache;
+
+    /**
+     * Safety margin subtracted from the token expiry when computing the entry lifetime.
+     */
+    private final Duration clockSkew;
+
+    private final Clock clock;
+
+    public CachingJwtDecoder(JwtDecoder delegate, long maximumSize, Duration clockSkew) {
+        this(delegate, maximumSize, clockSkew, Clock.systemUTC());
+    }
+
+    CachingJwtDecoder(JwtDecoder delegate, long maximumSize, Duration clockSkew, Clock clock) {
+        this.delegate = delegate;
+        this.clockSkew = clockSkew;
+        this.clock = clock;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new TokenExpiry())
+                .executor(Runnable::run)
+                .build();
+    }
+
+    /**
+     * Returns the cached JWT for the token if present, otherwise decodes it with the
+     * delegate and caches the result until shortly before it expires.
+     *
+     * <p>The decode is recorded as a {@link VerifiedTokenCacheEvent} when that JFR event is
+     * enabled.</p>
+     */
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        var event = new VerifiedTokenCacheEvent();
+        event.begin();
+        var key = TokenDigests.sha256(token);
+        var cached = cache.getIfPresent(key);
+        if (cached != null) {
+            commit(event, true);
+            return cached;
+        }
+
+        try {
+            var jwt = delegate.decode(token);
+            if (remainingLifetime(jwt).isPositive()) {
+                cache.put(key, jwt);
+            }
+            return jwt;
+        } finally {
+            commit(event, false);
+        }
+    }
+
+    /**
+     * Discards every cached token after the signing keys have been rotated.
+     */
+    @EventListener
+    public void onSigningKeysRotated(SigningKeysRotatedEvent event) {
+        log.info("Signing keys rotated for issuer {}, clearing verified token cache", event.issuer());
+        invalidateAll();
+    }
+
+    /**
+     * Discards every cached token.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Returns the approximate number of cached tokens.
+     */
+    public long size() {
+        cache.cleanUp();
+        return cache.estimatedSize();
+    }
+
+    private static void commit(VerifiedTokenCacheEvent event, boolean hit) {
+        if (event.shouldCommit()) {
+            event.hit = hit;
+            event.commit();
+        }
+    }
+
+    private Duration remainingLifetime(Jwt jwt) {
+        var expiresAt = jwt.getExpiresAt();
+        if (expiresAt == null) {
+            return Duration.ZERO;
+        }
+        return Duration.between(clock.instant(), expiresAt.minus(clockSkew));
+    }
+
+    /**
+     * Expires each entry at its token's expiry; reads and overwrites do not extend the lifetime.
+     */
+    private final class TokenExpiry implements Expiry<String, Jwt> {
+
+        @Override
+        public long expireAfterCreate(String key, Jwt jwt, long currentTime) {
+            return Math.max(0L, remainingLifetime(jwt).toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Jwt jwt, long currentTime, long currentDuration) {
+            return Math.max(0L, remainingLifetime(jwt).toNanos());
+        }
+
+        @Override
+        public long expireAfterRead(String key, Jwt jwt, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
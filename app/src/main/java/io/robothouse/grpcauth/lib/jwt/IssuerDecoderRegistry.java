@@ -0,0 +1,158 @@
+package io.robothouse.grpcauth.lib.jwt;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * The decoders of every trusted issuer, keyed by the issuer's {@code iss} value.
+ *
+ * <p>The set of issuers is fixed at startup, so finding an issuer's decoder is a single lookup
+ * in an immutable map. Each decoder is created the first time a token from its issuer is seen,
+ * by resolving the issuer's metadata and starting a {@link JwkSetManager} that then refreshes
+ * that issuer's keys independently of the others. If creating a decoder fails, for example
+ * because discovery is unreachable, tokens from that issuer fail fast until the retry interval
+ * has passed and creation is attempted again.</p>
+ */
+@Log4j2
+public class IssuerDecoderRegistry implements AutoCloseable {
+
+    private final Map<String, LazyDecoder> decoders;
+
+    private final long retryIntervalNanos;
+
+    private final LongSupplier nanoClock;
+
+    /**
+     * @param factories the factory of each issuer's decoder, keyed by issuer
+     * @param retryInterval how long after a failed creation the next attempt is made
+     */
+    public IssuerDecoderRegistry(Map<String, Supplier<IssuerDecoder>> factories, Duration retryInterval) {
+        this(factories, retryInterval, System::nanoTime);
+    }
+
+    IssuerDecoderRegistry(Map<String, Supplier<IssuerDecoder>> factories, Duration retryInterval, LongSupplier nanoClock) {
+        var decoders = new LinkedHashMap<String, LazyDecoder>();
+        factories.forEach((issuer, factory) -> decoders.put(issuer, new LazyDecoder(issuer, factory)));
+        this.decoders = Map.copyOf(decoders);
+        this.retryIntervalNanos = retryInterval.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Returns the decoder of an issuer, creating it on first use.
+     *
+     * @param issuer the unverified {@code iss} claim of a token
+     * @return the issuer's decoder, or null if the issuer is not trusted
+     * @throws JwtException if the issuer's decoder cannot be created
+     */
+    public JwtDecoder decoderFor(String issuer) throws JwtException {
+        var decoder = decoders.get(issuer);
+        return decoder == null ? null : decoder.get();
+    }
+
+    /**
+     * Returns the trusted issuers.
+     */
+    public Set<String> issuers() {
+        return decoders.keySet();
+    }
+
+    /**
+     * Closes the key set managers of every decoder created so far.
+     */
+    @Override
+    public void close() {
+        decoders.values().forEach(LazyDecoder::close);
+    }
+
+    /**
+     * The decoder of one issuer, and the key set manager it owns, if any.
+     *
+     * @param decoder the decoder verifying the issuer's tokens
+     * @param jwkSetManager the manager of the issuer's keys, closed with the registry; null if
+     *                      its lifecycle is managed elsewhere
+     */
+    public record IssuerDecoder(JwtDecoder decoder, JwkSetManager jwkSetManager) {}
+
+    /**
+     * Creates an issuer's decoder once, remembering failures for the retry interval.
+     *
+     * <p>Creation blocks on discovery and the first key fetch, so it is guarded by a
+     * {@link ReentrantLock} rather than a monitor: callers on virtual threads that wait for it
+     * unmount instead of pinning their carrier thread.</p>
+     */
+    private final class LazyDecoder {
+
+        private final String issuer;
+
+        private final Supplier<IssuerDecoder> factory;
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private volatile IssuerDecoder created;
+
+        /**
+         * When creation last failed, in nanoClock time; guarded by lock.
+         */
+        private long failedAtNanos;
+
+        private RuntimeException failure;
+
+        LazyDecoder(String issuer, Supplier<IssuerDecoder> factory) {
+            this.issuer = issuer;
+            this.factory = factory;
+        }
+
+        JwtDecoder get() {
+            var decoder = created;
+            if (decoder != null) {
+                return decoder.decoder();
+            }
+            lock.lock();
+            try {
+                if (created == null) {
+                    create();
+                }
+                return created.decoder();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void create() {
+            if (failure != null && nanoClock.getAsLong() - failedAtNanos < retryIntervalNanos) {
+                throw new JwtException("Signing keys for issuer " + issuer + " are unavailable", failure);
+            }
+            try {
+                created = factory.get();
+                failure = null;
+                log.info("Created decoder for issuer {}", issuer);
+            } catch (RuntimeException e) {
+                failure = e;
+                failedAtNanos = nanoClock.getAsLong();
+                log.warn("Failed to create decoder for issuer {}: {}", issuer, e.getMessage());
+                throw new JwtException("Signing keys for issuer " + issuer + " are unavailable", e);
+            }
+        }
+
+        void close() {
+            lock.lock();
+            try {
+                if (created != null && created.jwkSetManager() != null) {
+                    created.jwkSetManager().close();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
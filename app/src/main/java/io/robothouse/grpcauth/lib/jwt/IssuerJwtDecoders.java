@@ -0,0 +1,90 @@
+package io.robothouse.grpcauth.lib.jwt;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSObject;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+
+import java.text.ParseException;
+
+/**
+ * Factory methods for decoders that verify the tokens of a single issuer.
+ */
+public final class IssuerJwtDecoders {
+
+    /**
+     * The reason Nimbus gives when no key in the key set matches the token's key id and algorithm.
+     */
+    private static final String NO_MATCHING_KEY = "no matching key(s) found";
+
+    private IssuerJwtDecoders() {}
+
+    /**
+     * Creates a decoder that verifies signatures with keys from the given source and applies
+     * the default timestamp and issuer validators.
+     *
+     * <p>Nimbus reports a token whose key id is not in the key set the same way as a token in
+     * an unaccepted algorithm. Such failures are told apart by the token's header and rethrown
+     * as {@link UnknownKeyJwtException}, as the {@link Rs256JwtDecoder} does.</p>
+     *
+     * @param issuerMetadata the issuer whose tokens are accepted
+     * @param keySource the source of the issuer's signing keys
+     * @return a decoder backed by a configured NimbusJwtDecoder
+     */
+    public static JwtDecoder create(IssuerMetadata issuerMetadata, JWKSource<SecurityContext> keySource) {
+        var jwtProcessor = new DefaultJWTProcessor<SecurityContext>();
+        jwtProcessor.setJWSKeySelector(new JWSVerificationKeySelector<>(issuerMetadata.algorithms(), keySource));
+        // Claims are validated by the Spring validators configured below.
+        jwtProcessor.setJWTClaimsSetVerifier((claims, context) -> {});
+
+        var decoder = new NimbusJwtDecoder(jwtProcessor);
+        decoder.setJwtValidator(JwtValidators.createDefaultWithIssuer(issuerMetadata.issuer()));
+        return token -> {
+            try {
+                return decoder.decode(token);
+            } catch (BadJwtException e) {
+                throw e.getMessage().contains(NO_MATCHING_KEY) && hasAcceptedAlgorithmAndKeyId(token, issuerMetadata)
+                        ? new UnknownKeyJwtException(e.getMessage(), e)
+                        : e;
+            }
+        };
+    }
+
+    /**
+     * Returns whether the token's header names an accepted algorithm and a key id, in which
+     * case a failure to select a key means the key id is not in the key set.
+     */
+    private static boolean hasAcceptedAlgorithmAndKeyId(String token, IssuerMetadata issuerMetadata) {
+        try {
+            var header = JWSObject.parse(token).getHeader();
+            return header.getKeyID() != null && issuerMetadata.algorithms().contains(header.getAlgorithm());
+        } catch (ParseException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Creates an {@link Rs256JwtDecoder} that verifies tokens with the keys held by the given manager.
+     *
+     * @param issuerMetadata the issuer whose tokens are accepted
+     * @param jwkSetManager the source of the issuer's signing keys
+     * @return a decoder specialised for RS256 tokens
+     * @throws IllegalStateException if the issuer does not sign with RS256
+     */
+    public static Rs256JwtDecoder createRs256(IssuerMetadata issuerMetadata, JwkSetManager jwkSetManager) {
+        if (!issuerMetadata.algorithms().contains(JWSAlgorithm.RS256)) {
+            throw new IllegalStateException("The rs256 decoder engine requires an issuer that signs with RS256, but "
+                    + issuerMetadata.issuer() + " uses " + issuerMetadata.algorithms());
+        }
+        return new Rs256JwtDecoder(
+                issuerMetadata.issuer(),
+                () -> jwkSetManager.current().map(JwkSetManager.KeySet::jwkSet).orElse(null),
+                jwkSetManager);
+    }
+}
@@ -0,0 +1,85 @@
+package io.robothouse.grpcauth.lib.jwt;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.util.JSONObjectUtils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * The subset of an issuer's OpenID provider metadata needed to verify its tokens.
+ *
+ * @param issuer the expected {@code iss} claim value
+ * @param jwkSetUri the location of the issuer's JSON Web Key set
+ * @param algorithms the JWS algorithms accepted for token signatures
+ */
+public record IssuerMetadata(String issuer, URI jwkSetUri, Set<JWSAlgorithm> algorithms) {
+
+    /**
+     * Path appended to the issuer to locate its OpenID discovery document.
+     */
+    private static final String DISCOVERY_PATH = "/.well-known/openid-configuration";
+
+    /**
+     * Fetches the issuer's OpenID discovery document and extracts its metadata.
+     *
+     * @param issuer the issuer location
+     * @param httpClient the client used for the discovery request
+     * @param timeout the request timeout
+     * @return the discovered issuer metadata
+     * @throws IllegalStateException if the document cannot be fetched, parsed or does not match the issuer
+     */
+    public static IssuerMetadata discover(String issuer, HttpClient httpClient, Duration timeout) {
+        var location = URI.create(issuer.endsWith("/")
+                ? issuer.substring(0, issuer.length() - 1) + DISCOVERY_PATH
+                : issuer + DISCOVERY_PATH);
+        var request = HttpRequest.newBuilder(location)
+                .timeout(timeout)
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+
+        try {
+            var response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("Unexpected status " + response.statusCode()
+                        + " fetching issuer metadata from " + location);
+            }
+
+            var configuration = JSONObjectUtils.parse(response.body());
+            var discoveredIssuer = JSONObjectUtils.getString(configuration, "issuer");
+            if (!issuer.equals(discoveredIssuer)) {
+                throw new IllegalStateException("Issuer " + discoveredIssuer
+                        + " in discovery document does not match " + issuer);
+            }
+
+            var algorithms = new LinkedHashSet<JWSAlgorithm>();
+            var supported = JSONObjectUtils.getStringList(configuration, "id_token_signing_alg_values_supported");
+            if (supported != null) {
+                supported.forEach(name -> algorithms.add(JWSAlgorithm.parse(name)));
+            }
+            if (algorithms.isEmpty()) {
+                algorithms.add(JWSAlgorithm.RS256);
+            }
+
+            var jwkSetUri = JSONObjectUtils.getURI(configuration, "jwks_uri");
+            if (jwkSetUri == null) {
+                throw new IllegalStateException("Discovery document for " + issuer + " has no jwks_uri");
+            }
+
+            return new IssuerMetadata(issuer, jwkSetUri, Set.copyOf(algorithms));
+        } catch (IOException | ParseException e) {
+            throw new IllegalStateException("Unable to fetch issuer metadata from " + location, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted fetching issuer metadata from " + location, e);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package io.robothouse.grpcauth.lib.jwt;
+
+import com.nimbusds.jose.util.JSONObjectUtils;
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimNames;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.JwtValidationException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * JwtDecoder that routes each token to the decoder of its issuer.
+ *
+ * <p>The {@code iss} claim is read from the token's payload without verifying anything, by
+ * scanning the decoded JSON for the top-level member rather than parsing it, and the token is
+ * handed to exactly one decoder from the {@link IssuerDecoderRegistry}. That decoder verifies
+ * the signature and validates the issuer again, so a forged {@code iss} can at worst select a
+ * decoder that then rejects the token. Tokens from unknown issuers, or without an issuer, are
+ * rejected before any key is fetched or signature verified.</p>
+ */
+public class IssuerRoutingJwtDecoder implements JwtDecoder {
+
+    private static final String INVALID_TOKEN_URI = "https://tools.ietf.org/html/rfc6750#section-3.1";
+
+    private static final byte[] ISS = {'i', 's', 's'};
+
+    private static final Base64.Decoder BASE64_URL_DECODER = Base64.getUrlDecoder();
+
+    private final IssuerDecoderRegistry registry;
+
+    public IssuerRoutingJwtDecoder(IssuerDecoderRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        String issuer;
+        try {
+            issuer = unverifiedIssuer(token);
+        } catch (ParseException e) {
+            throw new BadJwtException("An error occurred while attempting to decode the Jwt: " + e.getMessage(), e);
+        }
+        if (issuer == null) {
+            throw invalidIssuer("The iss claim is missing");
+        }
+        var decoder = registry.decoderFor(issuer);
+        if (decoder == null) {
+            throw invalidIssuer("The iss claim is not a trusted issuer");
+        }
+        return decoder.decode(token);
+    }
+
+    /**
+     * Returns the {@code iss} claim of a JWS in compact serialization, without verifying it.
+     *
+     * @param token the raw token
+     * @return the issuer, or null if the payload has no string {@code iss} member
+     * @throws ParseException if the token is not made of three parts or its payload is not
+     *                        base64url-encoded
+     */
+    static String unverifiedIssuer(String token) throws ParseException {
+        var firstDot = token.indexOf('.');
+        var secondDot = firstDot < 0 ? -1 : token.indexOf('.', firstDot + 1);
+        if (secondDot < 0 || token.indexOf('.', secondDot + 1) >= 0) {
+            throw new ParseException("Invalid serialized JWS object: Missing or extra part delimiters", 0);
+        }
+        byte[] payload;
+        try {
+            var encoded = token.substring(firstDot + 1, secondDot).getBytes(StandardCharsets.US_ASCII);
+            var decoded = BASE64_URL_DECODER.decode(ByteBuffer.wrap(encoded));
+            payload = new byte[decoded.remaining()];
+            decoded.get(payload);
+        } catch (IllegalArgumentException e) {
+            throw new ParseException("Invalid base64url encoding: " + e.getMessage(), firstDot + 1);
+        }
+        return findIssuer(payload);
+    }
+
+    /**
+     * Scans a JSON object for its top-level {@code iss} string member. Falls back to a full
+     * parse if the value contains escape sequences.
+     */
+    private static String findIssuer(byte[] json) throws ParseException {
+        var depth = 0;
+        var expectingKey = false;
+        for (var i = 0; i < json.length; i++) {
+            switch (json[i]) {
+                case '{', '[' -> {
+                    depth++;
+                    expectingKey = depth == 1 && json[i] == '{';
+                }
+                case '}', ']' -> {
+                    depth--;
+                    expectingKey = false;
+                }
+                case ',' -> expectingKey = depth == 1;
+                case '"' -> {
+                    var end = endOfString(json, i);
+                    if (expectingKey && isIss(json, i + 1, end)) {
+                        return issuerValue(json, end + 1);
+                    }
+                    expectingKey = false;
+                    i = end;
+                }
+                default -> {
+                    // Whitespace, colons and scalar values carry nothing to track.
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads the value following the {@code iss} key, starting just after its closing quote.
+     */
+    private static String issuerValue(byte[] json, int from) throws ParseException {
+        var i = skipWhitespace(json, from);
+        if (i >= json.length || json[i] != ':') {
+            throw new ParseException("Invalid JSON in the Jwt payload", i);
+        }
+        i = skipWhitespace(json, i + 1);
+        if (i >= json.length || json[i] != '"') {
+            return null;
+        }
+        var end = endOfString(json, i);
+        for (var j = i + 1; j < end; j++) {
+            if (json[j] == '\\') {
+                return JSONObjectUtils.getString(
+                        JSONObjectUtils.parse(new String(json, StandardCharsets.UTF_8)), JwtClaimNames.ISS);
+            }
+        }
+        return new String(json, i + 1, end - i - 1, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the index of the quote closing the string that opens at {@code from}.
+     */
+    private static int endOfString(byte[] json, int from) throws ParseException {
+        for (var i = from + 1; i < json.length; i++) {
+            if (json[i] == '\\') {
+                i++;
+            } else if (json[i] == '"') {
+                return i;
+            }
+        }
+        throw new ParseException("Unterminated string in the Jwt payload", from);
+    }
+
+    private static boolean isIss(byte[] json, int from, int to) {
+        return to - from == ISS.length && json[from] == ISS[0] && json[from + 1] == ISS[1] && json[from + 2] == ISS[2];
+    }
+
+    private static int skipWhitespace(byte[] json, int from) {
+        var i = from;
+        while (i < json.length && (json[i] == ' ' || json[i] == '\t' || json[i] == '\n' || json[i] == '\r')) {
+            i++;
+        }
+        return i;
+    }
+
+    private static JwtValidationException invalidIssuer(String description) {
+        var error = new OAuth2Error("invalid_token", description, INVALID_TOKEN_URI);
+        return new JwtValidationException("An error occurred while attempting to decode the Jwt: " + description,
+                List.of(error));
+    }
+}
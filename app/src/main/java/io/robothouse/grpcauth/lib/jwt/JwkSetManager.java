@@ -0,0 +1,432 @@
+package io.robothouse.grpcauth.lib.jwt;
+
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.robothouse.grpcauth.lib.jfr.JwksFetchEvent;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Owns the signing keys of a single issuer and keeps them fresh in the background.
+ *
+ * <p>Keys are fetched once at startup and then refreshed on a schedule derived from the
+ * {@code Cache-Control: max-age} of each response, so request threads normally never wait on
+ * the network. The last good key set keeps being served while a refresh is in flight or
+ * failing. A token signed with an unknown {@code kid} triggers an early refresh; concurrent
+ * misses share a single fetch, and misses are throttled by a minimum interval since the last
+ * fetch attempt, successful or not, so that garbage key ids cannot be used to hammer the JWKS
+ * endpoint and requests do not each wait out the fetch timeout while it is down.</p>
+ *
+ * <p>When a refresh removes a key id that was previously published, a
+ * {@link SigningKeysRotatedEvent} is emitted so that caches of verified tokens can be cleared.</p>
+ *
+ * <p>Each fetched key set can be persisted to a {@link JwkSetSnapshot}, which the next process
+ * restores so that it can verify tokens before its own first fetch completes.</p>
+ *
+ * <p>Every fetch is timed under {@value #FETCH_TIMER}, tagged by issuer and outcome, and
+ * recorded as a {@link JwksFetchEvent} when that JFR event is enabled.</p>
+ */
+@Log4j2
+public class JwkSetManager implements JWKSource<SecurityContext>, AutoCloseable {
+
+    /**
+     * Extracts the max-age directive from a Cache-Control header.
+     */
+    private static final Pattern MAX_AGE_PATTERN = Pattern.compile("max-age=(\\d+)");
+
+    /**
+     * Lower bound on the delay between scheduled refreshes.
+     */
+    private static final Duration MIN_SCHEDULE_DELAY = Duration.ofSeconds(1);
+
+    /**
+     * Name of the timer recording JWK set fetches.
+     */
+    public static final String FETCH_TIMER = "grpcauth.jwks.fetch";
+
+    private final String issuer;
+
+    private final URI jwkSetUri;
+
+    private final HttpClient httpClient;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final Settings settings;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final Timer fetchSuccessTimer;
+
+    private final Timer fetchFailureTimer;
+
+    /**
+     * The last successfully fetched key set, or null before the first successful fetch.
+     */
+    private volatile KeySet current;
+
+    /**
+     * The fetch currently in progress, shared by every caller that needs fresh keys.
+     */
+    private final AtomicReference<CompletableFuture<KeySet>> inFlight = new AtomicReference<>();
+
+    /**
+     * When the last fetch finished, successfully or not; unknown key ids do not trigger another
+     * fetch until the minimum refresh interval has passed since.
+     */
+    private volatile Instant lastAttemptAt = Instant.EPOCH;
+
+    /**
+     * The next scheduled background refresh.
+     */
+    private ScheduledFuture<?> nextRefresh;
+
+    /**
+     * The file every fetched key set is persisted to, or null if key sets are not persisted.
+     */
+    private volatile Path snapshotFile;
+
+    public JwkSetManager(
+            String issuer,
+            URI jwkSetUri,
+            HttpClient httpClient,
+            ApplicationEventPublisher eventPublisher,
+            MeterRegistry meterRegistry,
+            Settings settings) {
+        this.issuer = issuer;
+        this.jwkSetUri = jwkSetUri;
+        this.httpClient = httpClient;
+        this.eventPublisher = eventPublisher;
+        this.settings = settings;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("jwks-refresh").daemon().factory());
+        this.fetchSuccessTimer = fetchTimer(meterRegistry, issuer, "success");
+        this.fetchFailureTimer = fetchTimer(meterRegistry, issuer, "failure");
+    }
+
+    /**
+     * Loads a pre-seeded key set so that tokens can be verified before the first fetch completes.
+     *
+     * <p>Seeded keys are treated as already stale, so the first fetch replaces them as soon as
+     * it succeeds.</p>
+     *
+     * @param seedFile a file containing a JWK set in JSON format
+     * @throws IllegalStateException if the file cannot be read or parsed
+     */
+    public void seed(Path seedFile) {
+        try {
+            install(new KeySet(JWKSet.load(seedFile.toFile()), Instant.EPOCH, Instant.EPOCH));
+        } catch (IOException | ParseException e) {
+            throw new IllegalStateException("Unable to load JWK set seed file " + seedFile, e);
+        }
+    }
+
+    /**
+     * Serves the key set persisted in a snapshot file, if it is recent enough, and persists
+     * every key set fetched from then on to the same file.
+     *
+     * <p>A restored key set keeps the times it was originally fetched and expires, so it is
+     * served while the initial fetch runs in the background and replaced as soon as that fetch
+     * succeeds. A snapshot of another issuer or JWK set location is ignored, as is one that
+     * cannot be read.</p>
+     *
+     * @param snapshotFile the file the key set is persisted to
+     * @param maxStaleness how long after its fetch a persisted key set may still be served
+     * @return whether a key set was restored
+     */
+    public boolean restoreSnapshot(Path snapshotFile, Duration maxStaleness) {
+        this.snapshotFile = snapshotFile;
+        Optional<JwkSetSnapshot> snapshot;
+        try {
+            snapshot = JwkSetSnapshot.read(snapshotFile);
+        } catch (IOException | ParseException e) {
+            log.warn("Ignoring unreadable JWK set snapshot {}: {}", snapshotFile, e.getMessage());
+            return false;
+        }
+
+        var restorable = snapshot
+                .filter(s -> issuer.equals(s.issuer()) && jwkSetUri.equals(s.jwkSetUri()))
+                .filter(s -> s.isFresh(maxStaleness));
+        if (restorable.isEmpty()) {
+            snapshot.ifPresent(s -> log.info("Ignoring JWK set snapshot {} fetched at {} from {}",
+                    snapshotFile, s.keySet().fetchedAt(), s.jwkSetUri()));
+            return false;
+        }
+        log.info("Restoring JWK set snapshot {} fetched at {}", snapshotFile, restorable.get().keySet().fetchedAt());
+        install(restorable.get().keySet());
+        return true;
+    }
+
+    /**
+     * Starts the initial key set fetch.
+     *
+     * <p>If keys have been seeded or restored, or the settings do not require it, the fetch runs entirely in
+     * the background. Otherwise startup waits at most the fetch timeout; a failed prefetch is
+     * logged and retried and does not prevent startup.</p>
+     */
+    public void start() {
+        var initialFetch = refresh();
+        if (current != null || !settings.awaitInitialFetch()) {
+            return;
+        }
+
+        try {
+            initialFetch.get(settings.fetchTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("Initial JWK set fetch from {} failed: {}", jwkSetUri, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the keys matching the selector, refreshing the key set if no key matches.
+     *
+     * <p>Within the minimum refresh interval of the last fetch attempt no refresh is made: an
+     * empty list is returned, or a {@link KeySourceException} if no key set has been loaded.</p>
+     */
+    @Override
+    public List<JWK> get(JWKSelector jwkSelector, SecurityContext context) throws KeySourceException {
+        var keySet = current;
+        if (keySet != null) {
+            var matches = jwkSelector.select(keySet.jwkSet());
+            if (!matches.isEmpty()) {
+                return matches;
+            }
+        }
+        if (lastAttemptAt.plus(settings.minRefreshInterval()).isAfter(Instant.now())) {
+            if (keySet == null) {
+                throw new KeySourceException("No JWK set available from " + jwkSetUri + ", last fetch failed");
+            }
+            return List.of();
+        }
+
+        try {
+            keySet = refresh().get(settings.fetchTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            keySet = current;
+            if (keySet == null) {
+                throw new KeySourceException("Unable to fetch JWK set from " + jwkSetUri, e);
+            }
+            log.warn("JWK set refresh from {} failed, using last good key set: {}", jwkSetUri, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new KeySourceException("Interrupted fetching JWK set from " + jwkSetUri, e);
+        }
+        return jwkSelector.select(keySet.jwkSet());
+    }
+
+    /**
+     * Returns the last successfully fetched key set, if any.
+     */
+    public Optional<KeySet> current() {
+        return Optional.ofNullable(current);
+    }
+
+    /**
+     * Starts a fetch of the key set, or joins the fetch already in progress.
+     *
+     * @return a future completed with the freshly fetched key set
+     */
+    public CompletableFuture<KeySet> refresh() {
+        while (true) {
+            var existing = inFlight.get();
+            if (existing != null) {
+                return existing;
+            }
+            var future = new CompletableFuture<KeySet>();
+            if (inFlight.compareAndSet(null, future)) {
+                scheduler.execute(() -> runFetch(future));
+                return future;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Performs a fetch for the given in-flight future. The future is detached before it is
+     * completed so that callers woken by it always start a new fetch rather than rejoin this one.
+     */
+    private void runFetch(CompletableFuture<KeySet> future) {
+        var event = new JwksFetchEvent();
+        event.begin();
+        var startNanos = System.nanoTime();
+        try {
+            var keySet = fetch();
+            fetchSuccessTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            if (event.shouldCommit()) {
+                event.keys = keySet.jwkSet().getKeys().size();
+                commit(event, "success", null);
+            }
+            install(keySet);
+            lastAttemptAt = Instant.now();
+            inFlight.compareAndSet(future, null);
+            future.complete(keySet);
+            scheduleRefresh(refreshDelay(keySet));
+            persist(keySet);
+        } catch (Exception e) {
+            fetchFailureTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            if (event.shouldCommit()) {
+                commit(event, "failure", e.toString());
+            }
+            log.warn("Failed to fetch JWK set from {}: {}", jwkSetUri, e.toString());
+            lastAttemptAt = Instant.now();
+            inFlight.compareAndSet(future, null);
+            future.completeExceptionally(e);
+            scheduleRefresh(atLeastMinimumDelay(settings.minRefreshInterval()));
+        }
+    }
+
+    private void commit(JwksFetchEvent event, String outcome, String error) {
+        event.issuer = issuer;
+        event.jwkSetUri = jwkSetUri.toString();
+        event.outcome = outcome;
+        event.error = error;
+        event.commit();
+    }
+
+    private static Timer fetchTimer(MeterRegistry meterRegistry, String issuer, String outcome) {
+        return Timer.builder(FETCH_TIMER)
+                .description("JWK set fetches from the issuer")
+                .tag("issuer", issuer)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private KeySet fetch() throws IOException, InterruptedException, ParseException {
+        var request = HttpRequest.newBuilder(jwkSetUri)
+                .timeout(settings.fetchTimeout())
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+        var response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IOException("Unexpected status " + response.statusCode());
+        }
+
+        var jwkSet = JWKSet.parse(response.body());
+        var maxAge = response.headers().firstValue("Cache-Control")
+                .flatMap(JwkSetManager::parseMaxAge)
+                .orElse(settings.defaultMaxAge());
+        var fetchedAt = Instant.now();
+        return new KeySet(jwkSet, fetchedAt, fetchedAt.plus(maxAge));
+    }
+
+    private void install(KeySet keySet) {
+        var previous = current;
+        current = keySet;
+        log.info("Loaded {} signing keys for issuer {}, valid until {}",
+                keySet.jwkSet().getKeys().size(), issuer, keySet.expiresAt());
+
+        if (previous != null && !keyIds(keySet).containsAll(keyIds(previous))) {
+            eventPublisher.publishEvent(new SigningKeysRotatedEvent(issuer));
+        }
+    }
+
+    /**
+     * Writes a fetched key set to the snapshot file, if one is configured. A failure only
+     * costs the next restart its snapshot, so it is logged and otherwise ignored.
+     */
+    private void persist(KeySet keySet) {
+        var file = snapshotFile;
+        if (file == null) {
+            return;
+        }
+        try {
+            new JwkSetSnapshot(issuer, jwkSetUri, keySet).write(file);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to write JWK set snapshot {}: {}", file, e.toString());
+        }
+    }
+
+    private synchronized void scheduleRefresh(Duration delay) {
+        if (scheduler.isShutdown()) {
+            return;
+        }
+        if (nextRefresh != null) {
+            nextRefresh.cancel(false);
+        }
+        nextRefresh = scheduler.schedule(this::refresh, delay.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Refreshes ahead of expiry, at 80% of the advertised lifetime.
+     */
+    private Duration refreshDelay(KeySet keySet) {
+        var lifetime = Duration.between(keySet.fetchedAt(), keySet.expiresAt());
+        return atLeastMinimumDelay(lifetime.multipliedBy(4).dividedBy(5));
+    }
+
+    private static Duration atLeastMinimumDelay(Duration delay) {
+        return delay.compareTo(MIN_SCHEDULE_DELAY) < 0 ? MIN_SCHEDULE_DELAY : delay;
+    }
+
+    private static Set<String> keyIds(KeySet keySet) {
+        return keySet.jwkSet().getKeys().stream()
+                .map(JWK::getKeyID)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+    }
+
+    static Optional<Duration> parseMaxAge(String cacheControl) {
+        var matcher = MAX_AGE_PATTERN.matcher(cacheControl);
+        return matcher.find() ? Optional.of(Duration.ofSeconds(Long.parseLong(matcher.group(1)))) : Optional.empty();
+    }
+
+    /**
+     * A fetched JWK set together with the time it was fetched and when it should be considered stale.
+     *
+     * @param jwkSet the signing keys
+     * @param fetchedAt when the key set was fetched
+     * @param expiresAt when the key set's advertised lifetime ends
+     */
+    public record KeySet(JWKSet jwkSet, Instant fetchedAt, Instant expiresAt) {}
+
+    /**
+     * Tuning for key set fetching and refreshing.
+     *
+     * @param fetchTimeout the timeout for a single fetch, and the longest a request thread waits on an unknown-kid refresh
+     * @param defaultMaxAge the key set lifetime assumed when the response carries no max-age directive
+     * @param minRefreshInterval the minimum time between fetches triggered by unknown key ids, and the retry delay after a failure
+     * @param awaitInitialFetch whether {@link #start()} waits for the first fetch when no keys have been seeded
+     */
+    public record Settings(
+            Duration fetchTimeout,
+            Duration defaultMaxAge,
+            Duration minRefreshInterval,
+            boolean awaitInitialFetch) {}
+}
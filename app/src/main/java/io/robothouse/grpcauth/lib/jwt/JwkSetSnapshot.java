@@ -0,0 +1,95 @@
+package io.robothouse.grpcauth.lib.jwt;
+
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.util.JSONObjectUtils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Optional;
+
+/**
+ * The last good key set of an issuer, as persisted to a local file so that a restart can
+ * serve it before the issuer has been reached.
+ *
+ * <p>The file is a JSON object holding the issuer, the JWK set location, the public keys and
+ * the times the key set was fetched and expires. It is written to a temporary file in the same
+ * directory and then moved over the previous snapshot, so readers never see a partial file.</p>
+ *
+ * @param issuer the issuer whose keys were fetched
+ * @param jwkSetUri the location the keys were fetched from
+ * @param keySet the keys, with the times they were fetched and expire
+ */
+public record JwkSetSnapshot(String issuer, URI jwkSetUri, JwkSetManager.KeySet keySet) {
+
+    /**
+     * Reads a snapshot file.
+     *
+     * @param file the snapshot file
+     * @return the snapshot, or empty if the file does not exist
+     * @throws IOException if the file cannot be read
+     * @throws ParseException if the file is not a valid snapshot
+     */
+    public static Optional<JwkSetSnapshot> read(Path file) throws IOException, ParseException {
+        String content;
+        try {
+            content = Files.readString(file, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+
+        var json = JSONObjectUtils.parse(content);
+        var keys = JSONObjectUtils.getJSONObject(json, "keys");
+        if (keys == null) {
+            throw new ParseException("Snapshot has no keys", 0);
+        }
+        var keySet = new JwkSetManager.KeySet(
+                JWKSet.parse(keys),
+                Instant.ofEpochSecond(JSONObjectUtils.getLong(json, "fetched_at")),
+                Instant.ofEpochSecond(JSONObjectUtils.getLong(json, "expires_at")));
+        return Optional.of(new JwkSetSnapshot(
+                JSONObjectUtils.getString(json, "issuer"),
+                JSONObjectUtils.getURI(json, "jwks_uri"),
+                keySet));
+    }
+
+    /**
+     * Atomically replaces a snapshot file with this snapshot. Only public keys are written.
+     *
+     * @param file the snapshot file
+     * @throws IOException if the file cannot be written
+     */
+    public void write(Path file) throws IOException {
+        var json = new LinkedHashMap<String, Object>();
+        json.put("issuer", issuer);
+        json.put("jwks_uri", jwkSetUri.toString());
+        json.put("fetched_at", keySet.fetchedAt().getEpochSecond());
+        json.put("expires_at", keySet.expiresAt().getEpochSecond());
+        json.put("keys", keySet.jwkSet().toJSONObject(true));
+
+        var directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        var temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            Files.writeString(temporary, JSONObjectUtils.toJSONString(json), StandardCharsets.UTF_8);
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Returns whether the keys were fetched no longer ago than the given staleness.
+     */
+    public boolean isFresh(Duration maxStaleness) {
+        return !keySet.fetchedAt().plus(maxStaleness).isBefore(Instant.now());
+    }
+}
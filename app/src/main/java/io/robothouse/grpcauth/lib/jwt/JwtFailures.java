@@ -0,0 +1,66 @@
+package io.robothouse.grpcauth.lib.jwt;
+
+import io.robothouse.grpcauth.lib.revocation.RevokedJwtException;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.JwtValidationException;
+
+import java.text.ParseException;
+
+/**
+ * Utility class for classifying JWT decoding failures.
+ */
+public final class JwtFailures {
+
+    private JwtFailures() {}
+
+    /**
+     * Returns whether the failure was caused by the token having expired.
+     *
+     * <p>Matches both an explicit {@code exp} error code and the {@code invalid_token} error
+     * raised by Spring's timestamp validator, whose description reports the expiry.</p>
+     *
+     * @param e the exception thrown while decoding the token
+     * @return true if the token was rejected because it has expired
+     */
+    public static boolean isExpired(JwtException e) {
+        if (!(e instanceof JwtValidationException validationException)) {
+            return false;
+        }
+        return validationException.getErrors().stream()
+                .anyMatch(error -> "exp".equals(error.getErrorCode())
+                        || (error.getDescription() != null && error.getDescription().contains("expired")));
+    }
+
+    /**
+     * Classifies a decoding failure into an {@link AuthOutcome}.
+     *
+     * <p>Revoked tokens are reported as such, and other claim validation failures as expired
+     * or invalid claims. Other {@link BadJwtException}s are malformed when caused by a parse
+     * error, an {@link UnknownKeyJwtException} is an unknown key, and the rest are a bad
+     * signature. Any remaining failure, such as an unreachable key source, is reported as an
+     * error.</p>
+     *
+     * <p>An unknown key is reported separately because a valid token signed with a newly
+     * rotated key fails this way until the issuer's keys are next refreshed, so it must not be
+     * treated as evidence of a forged token.</p>
+     *
+     * @param e the exception thrown while decoding the token
+     * @return the outcome describing the failure
+     */
+    public static AuthOutcome classify(JwtException e) {
+        if (e instanceof RevokedJwtException) {
+            return AuthOutcome.REVOKED;
+        }
+        if (e instanceof JwtValidationException) {
+            return isExpired(e) ? AuthOutcome.EXPIRED : AuthOutcome.INVALID_CLAIMS;
+        }
+        if (e instanceof UnknownKeyJwtException) {
+            return AuthOutcome.UNKNOWN_KEY;
+        }
+        if (e instanceof BadJwtException) {
+            return e.getCause() instanceof ParseException ? AuthOutcome.MALFORMED : AuthOutcome.BAD_SIGNATURE;
+        }
+        return AuthOutcome.ERROR;
+    }
+}
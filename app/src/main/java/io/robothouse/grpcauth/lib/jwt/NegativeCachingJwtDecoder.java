@@ -0,0 +1,67 @@
+package io.robothouse.grpcauth.lib.jwt;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.robothouse.grpcauth.lib.util.TokenDigests;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.time.Duration;
+
+/**
+ * JwtDecoder decorator that remembers tokens which failed signature or format validation.
+ *
+ * <p>A token that was rejected as {@link AuthOutcome#MALFORMED} or
+ * {@link AuthOutcome#BAD_SIGNATURE} is rejected again with the same exception for a short
+ * time-to-live, without parsing it or verifying its signature. Other failures, such as expired
+ * tokens, tokens signed with a key not yet in the key set or an unreachable key source, are not
+ * cached. Entries are keyed by the SHA-256 digest
+ * of the raw token.</p>
+ */
+public class NegativeCachingJwtDecoder implements JwtDecoder {
+
+    private final JwtDecoder delegate;
+
+    private final Cache<String, JwtException> failures;
+
+    public NegativeCachingJwtDecoder(JwtDecoder delegate, long maximumSize, Duration ttl) {
+        this.delegate = delegate;
+        this.failures = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .executor(Runnable::run)
+                .build();
+    }
+
+    /**
+     * Rethrows the remembered failure for a recently rejected token, otherwise decodes it with
+     * the delegate and remembers signature and format failures.
+     */
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        var key = TokenDigests.sha256(token);
+        var failure = failures.getIfPresent(key);
+        if (failure != null) {
+            throw failure;
+        }
+
+        try {
+            return delegate.decode(token);
+        } catch (JwtException e) {
+            var outcome = JwtFailures.classify(e);
+            if (outcome == AuthOutcome.MALFORMED || outcome == AuthOutcome.BAD_SIGNATURE) {
+                failures.put(key, e);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the approximate number of remembered failures.
+     */
+    public long size() {
+        failures.cleanUp();
+        return failures.estimatedSize();
+    }
+}
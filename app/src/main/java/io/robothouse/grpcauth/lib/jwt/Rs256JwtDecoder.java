@@ -0,0 +1,376 @@
+package io.robothouse.grpcauth.lib.jwt;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.KeyType;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jose.util.JSONObjectUtils;
+import io.robothouse.grpcauth.lib.jfr.JwtParseEvent;
+import io.robothouse.grpcauth.lib.jfr.JwtVerifyEvent;
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimNames;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.JwtValidationException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Signature;
+import java.security.interfaces.RSAPublicKey;
+import java.text.ParseException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+/**
+ * A decoder specialised for RS256-signed tokens of a single issuer, such as Firebase ID tokens.
+ *
+ * <p>The token is split and base64url-decoded directly, its key is looked up by {@code kid} in
+ * an immutable map of pre-parsed {@link RSAPublicKey}s and the signature is checked with a
+ * pooled {@link Signature} already initialised for that key. Only the issuer, expiry and
+ * not-before claims are validated, with the same 60 second clock skew and error descriptions
+ * as Spring's default validators, so failures are classified exactly like those of the
+ * general-purpose decoder.</p>
+ *
+ * <p>The key map is rebuilt whenever the key set supplier returns a different {@link JWKSet}.
+ * A token with an unknown {@code kid} is looked up through the key source, which lets a
+ * {@link JwkSetManager} refresh its keys early, before the map is rebuilt and checked again.</p>
+ *
+ * <p>Parsing and signature verification are recorded as a {@link JwtParseEvent} and a
+ * {@link JwtVerifyEvent} when those JFR events are enabled.</p>
+ */
+public final class Rs256JwtDecoder implements JwtDecoder {
+
+    private static final String DECODING_ERROR_MESSAGE_TEMPLATE =
+            "An error occurred while attempting to decode the Jwt: %s";
+
+    private static final String RS256 = "RS256";
+
+    private static final String SIGNATURE_ALGORITHM = "SHA256withRSA";
+
+    private static final Duration CLOCK_SKEW = Duration.ofSeconds(60);
+
+    private static final String INVALID_TOKEN_URI = "https://tools.ietf.org/html/rfc6750#section-3.1";
+
+    private static final Base64.Decoder BASE64_URL = Base64.getUrlDecoder();
+
+    private final String issuer;
+
+    private final Supplier<JWKSet> keySets;
+
+    private final JWKSource<SecurityContext> keySource;
+
+    private final Clock clock;
+
+    private volatile Keys keys = new Keys(null, Map.of());
+
+    /**
+     * Creates a decoder reading keys from the given supplier and key source.
+     *
+     * @param issuer the issuer whose tokens are accepted
+     * @param keySets supplies the current key set, or null while none is available
+     * @param keySource the source consulted, and given a chance to refresh, for unknown key ids
+     */
+    public Rs256JwtDecoder(String issuer, Supplier<JWKSet> keySets, JWKSource<SecurityContext> keySource) {
+        this(issuer, keySets, keySource, Clock.systemUTC());
+    }
+
+    Rs256JwtDecoder(String issuer, Supplier<JWKSet> keySets, JWKSource<SecurityContext> keySource, Clock clock) {
+        this.issuer = issuer;
+        this.keySets = keySets;
+        this.keySource = keySource;
+        this.clock = clock;
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        var parseEvent = new JwtParseEvent();
+        parseEvent.begin();
+        byte[] bytes;
+        int secondDot;
+        Map<String, Object> headers;
+        Map<String, Object> claims;
+        byte[] signature;
+        String keyId;
+        try {
+            bytes = token.getBytes(StandardCharsets.US_ASCII);
+            var firstDot = indexOfDot(bytes, 0);
+            secondDot = firstDot < 0 ? -1 : indexOfDot(bytes, firstDot + 1);
+            if (secondDot < 0 || indexOfDot(bytes, secondDot + 1) >= 0) {
+                throw malformed(new ParseException("Invalid serialized JWS object: Missing or extra part delimiters", 0));
+            }
+
+            try {
+                headers = parseJson(bytes, 0, firstDot);
+                claims = parseJson(bytes, firstDot + 1, secondDot);
+                signature = decodeSegment(bytes, secondDot + 1, bytes.length);
+            } catch (ParseException e) {
+                throw malformed(e);
+            }
+
+            keyId = checkHeader(headers);
+        } catch (JwtException e) {
+            commit(parseEvent, JwtFailures.classify(e));
+            throw e;
+        }
+        commit(parseEvent, AuthOutcome.SUCCESS);
+
+        verifySignature(keyId, bytes, secondDot, signature);
+        return toJwt(token, headers, claims);
+    }
+
+    /**
+     * Checks the header the way the general-purpose decoder does and returns its key id.
+     */
+    private static String checkHeader(Map<String, Object> headers) {
+        if (!(headers.get("alg") instanceof String algorithm)) {
+            throw malformed(new ParseException("Missing or invalid \"alg\" in header JSON object", 0));
+        }
+        if (!RS256.equals(algorithm)) {
+            throw new BadJwtException(String.format(DECODING_ERROR_MESSAGE_TEMPLATE,
+                    "Signed JWT rejected: Another algorithm expected, or no matching key(s) found"));
+        }
+        if (headers.get("typ") instanceof String type && !"JWT".equalsIgnoreCase(type)) {
+            throw new BadJwtException(String.format(DECODING_ERROR_MESSAGE_TEMPLATE,
+                    "JOSE header typ (type) " + type + " not allowed"));
+        }
+        if (headers.containsKey("crit")) {
+            throw new BadJwtException(String.format(DECODING_ERROR_MESSAGE_TEMPLATE,
+                    "Signed JWT rejected: Unsupported critical header parameters"));
+        }
+        return headers.get("kid") instanceof String keyId ? keyId : null;
+    }
+
+    private void verifySignature(String keyId, byte[] signingInput, int signingInputLength, byte[] signature) {
+        var event = new JwtVerifyEvent();
+        event.begin();
+        KeyVerifier verifier;
+        try {
+            verifier = verifierFor(keyId);
+        } catch (JwtException e) {
+            commit(event, keyId, JwtFailures.classify(e));
+            throw e;
+        }
+        if (verifier == null) {
+            var message = String.format(DECODING_ERROR_MESSAGE_TEMPLATE,
+                    "Signed JWT rejected: Another algorithm expected, or no matching key(s) found");
+            if (keyId == null) {
+                commit(event, null, AuthOutcome.BAD_SIGNATURE);
+                throw new BadJwtException(message);
+            }
+            commit(event, keyId, AuthOutcome.UNKNOWN_KEY);
+            throw new UnknownKeyJwtException(message);
+        }
+        if (!verifier.verify(signingInput, signingInputLength, signature)) {
+            commit(event, keyId, AuthOutcome.BAD_SIGNATURE);
+            throw new BadJwtException(String.format(DECODING_ERROR_MESSAGE_TEMPLATE,
+                    "Signed JWT rejected: Invalid signature"));
+        }
+        commit(event, keyId, AuthOutcome.SUCCESS);
+    }
+
+    private void commit(JwtParseEvent event, AuthOutcome outcome) {
+        if (event.shouldCommit()) {
+            event.issuer = issuer;
+            event.outcome = outcome.tagValue();
+            event.commit();
+        }
+    }
+
+    private void commit(JwtVerifyEvent event, String keyId, AuthOutcome outcome) {
+        if (event.shouldCommit()) {
+            event.issuer = issuer;
+            event.keyId = keyId;
+            event.outcome = outcome.tagValue();
+            event.commit();
+        }
+    }
+
+    /**
+     * Returns the verifier for the key id, consulting the key source once if it is unknown.
+     */
+    private KeyVerifier verifierFor(String keyId) {
+        if (keyId == null) {
+            return null;
+        }
+        var verifier = currentKeys().verifiers().get(keyId);
+        if (verifier != null) {
+            return verifier;
+        }
+
+        try {
+            var matcher = new JWKMatcher.Builder().keyType(KeyType.RSA).keyID(keyId).build();
+            if (keySource.get(new JWKSelector(matcher), null).isEmpty()) {
+                return null;
+            }
+        } catch (KeySourceException e) {
+            throw new JwtException(String.format(DECODING_ERROR_MESSAGE_TEMPLATE, e.getMessage()), e);
+        }
+        return currentKeys().verifiers().get(keyId);
+    }
+
+    private Keys currentKeys() {
+        var snapshot = keys;
+        var keySet = keySets.get();
+        if (keySet != null && keySet != snapshot.source()) {
+            snapshot = Keys.of(keySet);
+            keys = snapshot;
+        }
+        return snapshot;
+    }
+
+    private Jwt toJwt(String token, Map<String, Object> headers, Map<String, Object> claims) {
+        var converted = new HashMap<String, Object>(claims);
+        var expiresAt = convertInstant(converted, JwtClaimNames.EXP);
+        var issuedAt = convertInstant(converted, JwtClaimNames.IAT);
+        var notBefore = convertInstant(converted, JwtClaimNames.NBF);
+        if (converted.get(JwtClaimNames.AUD) instanceof String audience) {
+            converted.put(JwtClaimNames.AUD, List.of(audience));
+        }
+
+        var now = clock.instant();
+        if (expiresAt != null && now.minus(CLOCK_SKEW).isAfter(expiresAt)) {
+            throw invalid("Jwt expired at " + expiresAt);
+        }
+        if (notBefore != null && now.plus(CLOCK_SKEW).isBefore(notBefore)) {
+            throw invalid("Jwt used before " + notBefore);
+        }
+        if (!issuer.equals(converted.get(JwtClaimNames.ISS))) {
+            throw invalid("The iss claim is not valid");
+        }
+        try {
+            return new Jwt(token, issuedAt, expiresAt, headers, converted);
+        } catch (IllegalArgumentException e) {
+            throw new BadJwtException(String.format(DECODING_ERROR_MESSAGE_TEMPLATE, e.getMessage()), e);
+        }
+    }
+
+    /**
+     * Replaces a NumericDate claim, in seconds since the epoch, with the equivalent Instant.
+     */
+    private static Instant convertInstant(Map<String, Object> claims, String name) {
+        var value = claims.get(name);
+        if (value == null) {
+            return null;
+        }
+        if (!(value instanceof Number seconds)) {
+            throw malformed(new ParseException("Unexpected type of JSON object member " + name, 0));
+        }
+        var instant = Instant.ofEpochSecond(seconds.longValue());
+        claims.put(name, instant);
+        return instant;
+    }
+
+    private static int indexOfDot(byte[] bytes, int from) {
+        for (var i = from; i < bytes.length; i++) {
+            if (bytes[i] == '.') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static Map<String, Object> parseJson(byte[] bytes, int from, int to) throws ParseException {
+        var json = new String(decodeSegment(bytes, from, to), StandardCharsets.UTF_8);
+        return JSONObjectUtils.parse(json);
+    }
+
+    private static byte[] decodeSegment(byte[] bytes, int from, int to) throws ParseException {
+        try {
+            var decoded = BASE64_URL.decode(ByteBuffer.wrap(bytes, from, to - from));
+            var segment = new byte[decoded.remaining()];
+            decoded.get(segment);
+            return segment;
+        } catch (IllegalArgumentException e) {
+            throw new ParseException("Invalid base64url encoding: " + e.getMessage(), from);
+        }
+    }
+
+    private static BadJwtException malformed(ParseException e) {
+        return new BadJwtException(String.format(DECODING_ERROR_MESSAGE_TEMPLATE, e.getMessage()), e);
+    }
+
+    private static JwtValidationException invalid(String description) {
+        var error = new OAuth2Error("invalid_token", description, INVALID_TOKEN_URI);
+        return new JwtValidationException("Unable to validate Jwt", List.of(error));
+    }
+
+    /**
+     * An immutable snapshot of the verifiers built from one key set.
+     *
+     * @param source the key set the verifiers were built from
+     * @param verifiers the verifiers keyed by key id
+     */
+    private record Keys(JWKSet source, Map<String, KeyVerifier> verifiers) {
+
+        /**
+         * Builds verifiers for every RSA signing key with a key id that allows RS256.
+         */
+        static Keys of(JWKSet keySet) {
+            var verifiers = new HashMap<String, KeyVerifier>();
+            for (var key : keySet.getKeys()) {
+                if (key instanceof RSAKey rsaKey
+                        && rsaKey.getKeyID() != null
+                        && (rsaKey.getKeyUse() == null || KeyUse.SIGNATURE.equals(rsaKey.getKeyUse()))
+                        && (rsaKey.getAlgorithm() == null || RS256.equals(rsaKey.getAlgorithm().getName()))) {
+                    try {
+                        verifiers.put(rsaKey.getKeyID(), new KeyVerifier(rsaKey.toRSAPublicKey()));
+                    } catch (JOSEException e) {
+                        // A key that cannot be converted is skipped, as the general-purpose decoder would.
+                    }
+                }
+            }
+            return new Keys(keySet, Map.copyOf(verifiers));
+        }
+    }
+
+    /**
+     * Verifies RS256 signatures for one key with a pool of initialised {@link Signature}s.
+     *
+     * <p>A pool is used rather than a thread-local so that instances are shared by virtual
+     * threads instead of being created for each of them. The pool only grows to the number of
+     * concurrent verifications, and a {@link Signature} is reset by each completed verify.</p>
+     */
+    private static final class KeyVerifier {
+
+        private final RSAPublicKey publicKey;
+
+        private final ConcurrentLinkedQueue<Signature> idle = new ConcurrentLinkedQueue<>();
+
+        KeyVerifier(RSAPublicKey publicKey) {
+            this.publicKey = publicKey;
+        }
+
+        boolean verify(byte[] signingInput, int signingInputLength, byte[] signature) {
+            var verifier = idle.poll();
+            try {
+                if (verifier == null) {
+                    verifier = Signature.getInstance(SIGNATURE_ALGORITHM);
+                    verifier.initVerify(publicKey);
+                }
+                verifier.update(signingInput, 0, signingInputLength);
+                var valid = verifier.verify(signature);
+                idle.offer(verifier);
+                return valid;
+            } catch (GeneralSecurityException e) {
+                // The instance is discarded as its state is unknown; the signature is not accepted.
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package io.robothouse.grpcauth.lib.jwt;
+
+/**
+ * Application event published when the set of signing keys for an issuer changes
+ * in a way that may invalidate previously verified tokens.
+ *
+ * @param issuer the issuer whose signing keys were rotated, or
+ *               {@code SessionTicketKeyRing.ROTATION_ISSUER} for session ticket keys
+ */
+public record SigningKeysRotatedEvent(String issuer) {}
@@ -0,0 +1,82 @@
+package io.robothouse.grpcauth.lib.jwt;
+
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * JwtDecoder decorator that coalesces concurrent decodes of the same token.
+ *
+ * <p>The first caller for a token becomes its leader and decodes it with the delegate; callers
+ * arriving while that decode is in flight wait for it and receive the same {@link Jwt} or the
+ * same exception. The leader removes the in-flight entry once its decode finishes, whatever
+ * the outcome, so entries never outlive the decode and a cancelled call cannot leak one.
+ * Entries are keyed by the raw token itself: they only live for the duration of a decode, so
+ * unlike the caches there is no retained memory to save by hashing, and hashing would only
+ * repeat work the surrounding caches already do.</p>
+ *
+ * <p>Waiting callers block on the leader's result. gRPC runs interceptors on the server's
+ * application executor rather than on transport event-loop threads, so only those executor
+ * threads, or virtual threads, ever wait here.</p>
+ */
+public class SingleFlightJwtDecoder implements JwtDecoder {
+
+    private final JwtDecoder delegate;
+
+    private final ConcurrentMap<String, CompletableFuture<Jwt>> inFlight = new ConcurrentHashMap<>();
+
+    public SingleFlightJwtDecoder(JwtDecoder delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Decodes the token with the delegate, or waits for the decode of the same token that is
+     * already in flight and shares its outcome.
+     */
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        var flight = new CompletableFuture<Jwt>();
+        var existing = inFlight.putIfAbsent(token, flight);
+        if (existing != null) {
+            return await(existing);
+        }
+
+        try {
+            var jwt = delegate.decode(token);
+            flight.complete(jwt);
+            return jwt;
+        } catch (Throwable e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(token, flight);
+        }
+    }
+
+    /**
+     * Returns the number of decodes currently in flight.
+     */
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+
+    private static Jwt await(CompletableFuture<Jwt> flight) {
+        try {
+            return flight.get();
+        } catch (ExecutionException e) {
+            switch (e.getCause()) {
+                case RuntimeException runtimeException -> throw runtimeException;
+                case Error error -> throw error;
+                default -> throw new JwtException("Concurrent decode of the same token failed", e.getCause());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JwtException("Interrupted while waiting for a concurrent decode of the same token", e);
+        }
+    }
+}
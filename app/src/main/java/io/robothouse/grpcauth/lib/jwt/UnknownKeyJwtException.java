@@ -0,0 +1,21 @@
+package io.robothouse.grpcauth.lib.jwt;
+
+import org.springframework.security.oauth2.jwt.BadJwtException;
+
+/**
+ * Thrown for a token whose {@code kid} names no key in the issuer's current key set, although
+ * its algorithm is accepted.
+ *
+ * <p>Valid tokens fail this way when the issuer starts signing with a new key and the key set
+ * has not been refreshed yet, so the failure is not treated as evidence of a forged token.</p>
+ */
+public class UnknownKeyJwtException extends BadJwtException {
+
+    public UnknownKeyJwtException(String message) {
+        super(message);
+    }
+
+    public UnknownKeyJwtException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
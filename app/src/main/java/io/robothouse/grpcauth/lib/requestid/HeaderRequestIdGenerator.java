@@ -0,0 +1,51 @@
+package io.robothouse.grpcauth.lib.requestid;
+
+import io.grpc.Metadata;
+
+/**
+ * Reuses the request id supplied by an upstream caller in the {@code x-request-id} header.
+ *
+ * <p>Incoming ids are only accepted if they are at most {@value #MAX_LENGTH} characters of
+ * letters, digits, '-', '_', '.' or ':', so that untrusted values cannot inject content into
+ * log lines. Calls without an acceptable header get an id from the fallback generator.</p>
+ */
+public class HeaderRequestIdGenerator implements RequestIdGenerator {
+
+    /**
+     * Metadata key of the header carrying an upstream request id.
+     */
+    public static final Metadata.Key<String> REQUEST_ID_METADATA_KEY =
+            Metadata.Key.of("x-request-id", Metadata.ASCII_STRING_MARSHALLER);
+
+    /**
+     * The maximum length of an accepted incoming request id.
+     */
+    static final int MAX_LENGTH = 128;
+
+    private final RequestIdGenerator fallback;
+
+    public HeaderRequestIdGenerator(RequestIdGenerator fallback) {
+        this.fallback = fallback;
+    }
+
+    @Override
+    public String generate(Metadata headers) {
+        var incoming = headers.get(REQUEST_ID_METADATA_KEY);
+        return isAcceptable(incoming) ? incoming : fallback.generate(headers);
+    }
+
+    private static boolean isAcceptable(String requestId) {
+        if (requestId == null || requestId.isEmpty() || requestId.length() > MAX_LENGTH) {
+            return false;
+        }
+        for (var i = 0; i < requestId.length(); i++) {
+            var c = requestId.charAt(i);
+            var allowed = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_' || c == '.' || c == ':';
+            if (!allowed) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
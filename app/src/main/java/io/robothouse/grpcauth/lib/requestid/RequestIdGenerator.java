@@ -0,0 +1,18 @@
+package io.robothouse.grpcauth.lib.requestid;
+
+import io.grpc.Metadata;
+
+/**
+ * Produces the correlation id assigned to an incoming call.
+ */
+@FunctionalInterface
+public interface RequestIdGenerator {
+
+    /**
+     * Returns the request id for a call.
+     *
+     * @param headers the metadata received with the call
+     * @return a non-empty request id
+     */
+    String generate(Metadata headers);
+}
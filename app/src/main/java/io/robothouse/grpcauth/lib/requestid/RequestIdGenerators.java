@@ -0,0 +1,70 @@
+package io.robothouse.grpcauth.lib.requestid;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Factory methods for the built-in request id strategies.
+ *
+ * <p>Every strategy produces ids in the canonical 36-character UUID format, so they can be
+ * swapped without affecting log consumers.</p>
+ */
+public final class RequestIdGenerators {
+
+    /**
+     * Mask clearing the version nibble of the most significant bits.
+     */
+    private static final long VERSION_MASK = ~0xF000L;
+
+    /**
+     * Mask clearing the two variant bits of the least significant bits.
+     */
+    private static final long VARIANT_MASK = 0x3FFF_FFFF_FFFF_FFFFL;
+
+    /**
+     * The IETF variant bits of the least significant bits.
+     */
+    private static final long VARIANT_IETF = 0x8000_0000_0000_0000L;
+
+    private RequestIdGenerators() {}
+
+    /**
+     * Returns a generator using {@link UUID#randomUUID()}.
+     *
+     * <p>Ids are cryptographically random, but every call draws from a shared
+     * {@code SecureRandom}, which contends across cores under load.</p>
+     */
+    public static RequestIdGenerator randomUuid() {
+        return headers -> UUID.randomUUID().toString();
+    }
+
+    /**
+     * Returns a generator producing version 4 UUIDs from {@link ThreadLocalRandom}.
+     *
+     * <p>Ids are unique for correlation purposes but not unpredictable; they must not be used
+     * as secrets.</p>
+     */
+    public static RequestIdGenerator threadLocalRandom() {
+        return headers -> {
+            var random = ThreadLocalRandom.current();
+            var mostSigBits = (random.nextLong() & VERSION_MASK) | 0x4000L;
+            var leastSigBits = (random.nextLong() & VARIANT_MASK) | VARIANT_IETF;
+            return new UUID(mostSigBits, leastSigBits).toString();
+        };
+    }
+
+    /**
+     * Returns a generator producing time-ordered version 7 UUIDs.
+     *
+     * <p>The first 48 bits hold the Unix time in milliseconds, so ids sort by creation time
+     * to millisecond precision; the remaining bits come from {@link ThreadLocalRandom}.</p>
+     */
+    public static RequestIdGenerator uuidV7() {
+        return headers -> {
+            var random = ThreadLocalRandom.current();
+            var mostSigBits = (System.currentTimeMillis() << 16) | 0x7000L | (random.nextLong() & 0x0FFFL);
+            var leastSigBits = (random.nextLong() & VARIANT_MASK) | VARIANT_IETF;
+            return new UUID(mostSigBits, leastSigBits).toString();
+        };
+    }
+}
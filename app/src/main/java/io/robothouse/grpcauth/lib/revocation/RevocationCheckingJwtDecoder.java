@@ -0,0 +1,36 @@
+package io.robothouse.grpcauth.lib.revocation;
+
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+/**
+ * JwtDecoder decorator that rejects tokens found in the {@link RevocationIndex}.
+ *
+ * <p>It wraps the verified-token cache, so revocations apply to cached tokens as soon as they
+ * are added to the index.</p>
+ */
+public class RevocationCheckingJwtDecoder implements JwtDecoder {
+
+    private final JwtDecoder delegate;
+
+    private final RevocationIndex revocationIndex;
+
+    public RevocationCheckingJwtDecoder(JwtDecoder delegate, RevocationIndex revocationIndex) {
+        this.delegate = delegate;
+        this.revocationIndex = revocationIndex;
+    }
+
+    /**
+     * Decodes the token with the delegate and fails with {@link RevokedJwtException} if it has
+     * been revoked.
+     */
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        var jwt = delegate.decode(token);
+        if (revocationIndex.isRevoked(jwt)) {
+            throw new RevokedJwtException();
+        }
+        return jwt;
+    }
+}
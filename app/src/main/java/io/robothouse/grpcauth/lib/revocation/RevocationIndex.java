@@ -0,0 +1,277 @@
+package io.robothouse.grpcauth.lib.revocation;
+
+import io.robothouse.grpcauth.lib.util.BloomFilter;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The set of revoked tokens, checked after every successful decode.
+ *
+ * <p>Tokens are revoked in two ways: every token of a subject issued at or before a
+ * revoked-after time, for example when a user is disabled or signs out everywhere, and single
+ * tokens by their {@code jti} claim. A subject revocation is forgotten once the retention has
+ * passed since its revoked-after time, by which point every token it covers has expired; a
+ * token revocation is forgotten once the token has expired.</p>
+ *
+ * <p>Lookups read an immutable snapshot through a single volatile field, without locks. A
+ * Bloom filter in front of the snapshot's maps answers the common case, a token that is not
+ * revoked, without probing them. Updates are merged into a copy of the snapshot, which then
+ * replaces it, so they never pause lookups.</p>
+ *
+ * <p>Revocations come from the push RPC and, optionally, from a file of lines of the form
+ * {@code sub <subject> <revoked-after>} or {@code jti <token id> <expires-at>}, with ISO-8601
+ * instants; blank lines and lines starting with {@code #} are ignored. The file is polled and
+ * merged into the index whenever its modification time changes.</p>
+ */
+@Log4j2
+public class RevocationIndex implements AutoCloseable {
+
+    /**
+     * Salt of subjects in the Bloom filter.
+     */
+    private static final int SUBJECT_SALT = 1;
+
+    /**
+     * Salt of token ids in the Bloom filter.
+     */
+    private static final int TOKEN_SALT = 2;
+
+    private final Duration retention;
+
+    private final Path revocationFile;
+
+    private final Duration pollInterval;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final Clock clock;
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    private volatile FileTime revocationFileModified;
+
+    /**
+     * @param retention how long after its revoked-after time a subject revocation is kept; at
+     *                  least the longest lifetime of an accepted token
+     * @param revocationFile an optional file of revocations, or null
+     * @param pollInterval how often the file's modification time is checked
+     */
+    public RevocationIndex(Duration retention, Path revocationFile, Duration pollInterval) {
+        this(retention, revocationFile, pollInterval, Clock.systemUTC());
+    }
+
+    RevocationIndex(Duration retention, Path revocationFile, Duration pollInterval, Clock clock) {
+        this.retention = retention;
+        this.revocationFile = revocationFile;
+        this.pollInterval = pollInterval;
+        this.clock = clock;
+        this.scheduler = revocationFile == null ? null : Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("revocation-reload").daemon().factory());
+    }
+
+    /**
+     * Loads the revocation file, if there is one, and starts polling it for changes.
+     */
+    public void start() {
+        if (scheduler != null) {
+            reloadIfChanged();
+            var millis = pollInterval.toMillis();
+            scheduler.scheduleWithFixedDelay(this::reloadIfChanged, millis, millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Returns whether the token has been revoked, by its subject or by its id.
+     *
+     * <p>A token without an {@code iat} claim is treated as issued before any revocation of
+     * its subject.</p>
+     */
+    public boolean isRevoked(Jwt jwt) {
+        var current = snapshot;
+        if (current.isEmpty()) {
+            return false;
+        }
+
+        var subject = jwt.getSubject();
+        if (subject != null && current.filter().mightContain(SUBJECT_SALT, subject)) {
+            var revokedAfter = current.subjects().get(subject);
+            if (revokedAfter != null && (jwt.getIssuedAt() == null || !jwt.getIssuedAt().isAfter(revokedAfter))) {
+                return true;
+            }
+        }
+        var tokenId = jwt.getId();
+        return tokenId != null
+                && current.filter().mightContain(TOKEN_SALT, tokenId)
+                && current.tokens().containsKey(tokenId);
+    }
+
+    /**
+     * Merges revocations into the index.
+     *
+     * <p>A subject already revoked keeps the later of its two revoked-after times, and a token
+     * already revoked the later of its two expiry times. Revocations that no longer cover any
+     * unexpired token are dropped.</p>
+     *
+     * @param subjects the subject revocations to add
+     * @param tokens the token revocations to add
+     */
+    public synchronized void revoke(Collection<SubjectRevocation> subjects, Collection<TokenRevocation> tokens) {
+        var now = clock.instant();
+        var current = snapshot;
+        var subjectMap = new HashMap<String, Instant>(current.subjects().size() + subjects.size());
+        current.subjects().forEach((subject, revokedAfter) -> {
+            if (revokedAfter.plus(retention).isAfter(now)) {
+                subjectMap.put(subject, revokedAfter);
+            }
+        });
+        for (var revocation : subjects) {
+            if (revocation.revokedAfter().plus(retention).isAfter(now)) {
+                subjectMap.merge(revocation.subject(), revocation.revokedAfter(), RevocationIndex::later);
+            }
+        }
+
+        var tokenMap = new HashMap<String, Instant>(current.tokens().size() + tokens.size());
+        current.tokens().forEach((tokenId, expiresAt) -> {
+            if (expiresAt.isAfter(now)) {
+                tokenMap.put(tokenId, expiresAt);
+            }
+        });
+        for (var revocation : tokens) {
+            if (revocation.expiresAt().isAfter(now)) {
+                tokenMap.merge(revocation.tokenId(), revocation.expiresAt(), RevocationIndex::later);
+            }
+        }
+
+        snapshot = Snapshot.of(subjectMap, tokenMap);
+    }
+
+    /**
+     * Returns the number of revoked subjects.
+     */
+    public int revokedSubjects() {
+        return snapshot.subjects().size();
+    }
+
+    /**
+     * Returns the number of revoked token ids.
+     */
+    public int revokedTokens() {
+        return snapshot.tokens().size();
+    }
+
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Merges the revocation file into the index if its modification time has changed since it
+     * was last loaded. A file that is missing or fails to parse leaves the index unchanged.
+     */
+    void reloadIfChanged() {
+        try {
+            var modified = Files.getLastModifiedTime(revocationFile);
+            if (modified.equals(revocationFileModified)) {
+                return;
+            }
+            var revocations = parse(Files.readAllLines(revocationFile));
+            revoke(revocations.subjects(), revocations.tokens());
+            revocationFileModified = modified;
+            log.info("Loaded {} subject and {} token revocations from {}",
+                    revocations.subjects().size(), revocations.tokens().size(), revocationFile);
+        } catch (NoSuchFileException e) {
+            log.debug("Revocation file {} does not exist", revocationFile);
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("Failed to load revocations from {}, keeping previous revocations: {}",
+                    revocationFile, e.getMessage());
+        }
+    }
+
+    static Revocations parse(List<String> lines) {
+        var subjects = new ArrayList<SubjectRevocation>();
+        var tokens = new ArrayList<TokenRevocation>();
+        for (var i = 0; i < lines.size(); i++) {
+            var line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            var fields = line.split("\\s+");
+            if (fields.length != 3) {
+                throw new IllegalArgumentException("Line " + (i + 1) + " is not '<sub|jti> <value> <instant>'");
+            }
+            Instant instant;
+            try {
+                instant = Instant.parse(fields[2]);
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Line " + (i + 1) + " has an invalid instant: " + fields[2], e);
+            }
+            switch (fields[0]) {
+                case "sub" -> subjects.add(new SubjectRevocation(fields[1], instant));
+                case "jti" -> tokens.add(new TokenRevocation(fields[1], instant));
+                default -> throw new IllegalArgumentException("Line " + (i + 1) + " has unknown kind " + fields[0]);
+            }
+        }
+        return new Revocations(subjects, tokens);
+    }
+
+    private static Instant later(Instant a, Instant b) {
+        return a.isAfter(b) ? a : b;
+    }
+
+    /**
+     * Revokes every token of a subject issued at or before a point in time.
+     *
+     * @param subject the {@code sub} claim of the revoked tokens
+     * @param revokedAfter tokens issued at or before this time are revoked
+     */
+    public record SubjectRevocation(String subject, Instant revokedAfter) {}
+
+    /**
+     * Revokes a single token.
+     *
+     * @param tokenId the {@code jti} claim of the revoked token
+     * @param expiresAt when the token expires, after which the revocation is forgotten
+     */
+    public record TokenRevocation(String tokenId, Instant expiresAt) {}
+
+    record Revocations(List<SubjectRevocation> subjects, List<TokenRevocation> tokens) {}
+
+    /**
+     * An immutable view of the index, with a Bloom filter over both maps.
+     */
+    private record Snapshot(Map<String, Instant> subjects, Map<String, Instant> tokens, BloomFilter filter) {
+
+        static final Snapshot EMPTY = new Snapshot(Map.of(), Map.of(), new BloomFilter(0));
+
+        static Snapshot of(Map<String, Instant> subjects, Map<String, Instant> tokens) {
+            var filter = new BloomFilter(subjects.size() + tokens.size());
+            subjects.keySet().forEach(subject -> filter.add(SUBJECT_SALT, subject));
+            tokens.keySet().forEach(tokenId -> filter.add(TOKEN_SALT, tokenId));
+            return new Snapshot(Map.copyOf(subjects), Map.copyOf(tokens), filter);
+        }
+
+        boolean isEmpty() {
+            return subjects.isEmpty() && tokens.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package io.robothouse.grpcauth.lib.revocation;
+
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.jwt.JwtValidationException;
+
+import java.util.List;
+
+/**
+ * Thrown for a token that is valid but has been revoked.
+ */
+public class RevokedJwtException extends JwtValidationException {
+
+    private static final OAuth2Error REVOKED_ERROR = new OAuth2Error(
+            "invalid_token", "The token has been revoked", "https://tools.ietf.org/html/rfc6750#section-3.1");
+
+    public RevokedJwtException() {
+        super("An error occurred while attempting to decode the Jwt: The token has been revoked", List.of(REVOKED_ERROR));
+    }
+}
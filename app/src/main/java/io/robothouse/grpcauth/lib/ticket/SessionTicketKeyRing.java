@@ -0,0 +1,241 @@
+package io.robothouse.grpcauth.lib.ticket;
+
+import io.robothouse.grpcauth.lib.jwt.SigningKeysRotatedEvent;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.context.ApplicationEventPublisher;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Holds the HMAC keys that sign and verify session tickets.
+ *
+ * <p>Keys are written as {@code <key id>:<base64 secret>} entries separated by commas or
+ * newlines; blank entries and lines starting with {@code #} are ignored. The first entry signs
+ * new tickets and every entry verifies them, so a key is rotated by adding its replacement at
+ * the top and removing it once the tickets it signed have expired.</p>
+ *
+ * <p>Keys come either from configuration or from a file. A key file is polled for changes and
+ * reloaded when its modification time changes; a file that fails to load leaves the previous
+ * keys in place. A reload that removes a key id publishes a {@link SigningKeysRotatedEvent} for
+ * {@value #ROTATION_ISSUER}, so that tickets signed with the removed key are no longer served
+ * from caches of verified tokens.</p>
+ */
+@Log4j2
+public class SessionTicketKeyRing implements AutoCloseable {
+
+    /**
+     * The minimum secret length in bytes, matching the output size of HMAC-SHA256.
+     */
+    public static final int MIN_SECRET_LENGTH = 32;
+
+    /**
+     * The issuer named in the rotation events published for session ticket keys.
+     */
+    public static final String ROTATION_ISSUER = "session-tickets";
+
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+
+    private static final Pattern KEY_ID_PATTERN = Pattern.compile("[A-Za-z0-9_-]+");
+
+    private final Path keyFile;
+
+    private final Duration pollInterval;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final ScheduledExecutorService scheduler;
+
+    private volatile Keys keys;
+
+    private volatile FileTime keyFileModified;
+
+    private SessionTicketKeyRing(Keys keys, Path keyFile, Duration pollInterval, ApplicationEventPublisher eventPublisher) {
+        this.keys = keys;
+        this.keyFile = keyFile;
+        this.pollInterval = pollInterval;
+        this.eventPublisher = eventPublisher;
+        this.scheduler = keyFile == null ? null : Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("ticket-keys-reload").daemon().factory());
+    }
+
+    /**
+     * Creates a key ring from configured entries.
+     *
+     * @param entries the key entries
+     * @return a key ring that never changes
+     * @throws IllegalStateException if the entries are invalid
+     */
+    public static SessionTicketKeyRing of(String entries) {
+        return new SessionTicketKeyRing(Keys.parse(entries), null, null, null);
+    }
+
+    /**
+     * Creates a key ring from a key file that is reloaded when it changes, once started.
+     *
+     * @param keyFile the file containing the key entries
+     * @param pollInterval how often the file's modification time is checked
+     * @param eventPublisher publishes a rotation event when a reload removes a key
+     * @return a key ring loaded from the file
+     * @throws IllegalStateException if the file cannot be read or its entries are invalid
+     */
+    public static SessionTicketKeyRing ofFile(Path keyFile, Duration pollInterval, ApplicationEventPublisher eventPublisher) {
+        try {
+            var modified = Files.getLastModifiedTime(keyFile);
+            var keyRing = new SessionTicketKeyRing(
+                    Keys.parse(Files.readString(keyFile)), keyFile, pollInterval, eventPublisher);
+            keyRing.keyFileModified = modified;
+            return keyRing;
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read session ticket key file " + keyFile, e);
+        }
+    }
+
+    /**
+     * Starts polling the key file, if there is one.
+     */
+    public void start() {
+        if (scheduler != null) {
+            var millis = pollInterval.toMillis();
+            scheduler.scheduleWithFixedDelay(this::reloadIfChanged, millis, millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Returns the current keys.
+     */
+    public Keys keys() {
+        return keys;
+    }
+
+    /**
+     * Reloads the key file if its modification time has changed since it was last loaded.
+     */
+    void reloadIfChanged() {
+        try {
+            var modified = Files.getLastModifiedTime(keyFile);
+            if (modified.equals(keyFileModified)) {
+                return;
+            }
+            var previous = keys;
+            keys = Keys.parse(Files.readString(keyFile));
+            keyFileModified = modified;
+            log.info("Reloaded {} session ticket keys from {}, signing with {}",
+                    keys.macs().size(), keyFile, keys.signingKeyId());
+            if (!keys.macs().keySet().containsAll(previous.macs().keySet())) {
+                eventPublisher.publishEvent(new SigningKeysRotatedEvent(ROTATION_ISSUER));
+            }
+        } catch (IOException | IllegalStateException e) {
+            log.warn("Failed to reload session ticket keys from {}, keeping previous keys: {}",
+                    keyFile, e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * An immutable set of ticket keys.
+     *
+     * @param signingKeyId the id of the key that signs new tickets
+     * @param macs the MACs of every key, keyed by key id
+     */
+    public record Keys(String signingKeyId, Map<String, TicketMac> macs) {
+
+        static Keys parse(String entries) {
+            var macs = new LinkedHashMap<String, TicketMac>();
+            for (var entry : entries.split("[,\\n]")) {
+                entry = entry.trim();
+                if (entry.isEmpty() || entry.startsWith("#")) {
+                    continue;
+                }
+                var separator = entry.indexOf(':');
+                if (separator <= 0) {
+                    throw new IllegalStateException("Session ticket key entries must be <key id>:<base64 secret>");
+                }
+                var keyId = entry.substring(0, separator);
+                if (!KEY_ID_PATTERN.matcher(keyId).matches()) {
+                    throw new IllegalStateException("Session ticket key ids may only contain letters, digits, '-' and '_'");
+                }
+                byte[] secret;
+                try {
+                    secret = Base64.getDecoder().decode(entry.substring(separator + 1));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalStateException("Session ticket key " + keyId + " is not valid base64", e);
+                }
+                if (secret.length < MIN_SECRET_LENGTH) {
+                    throw new IllegalStateException("Session ticket key " + keyId + " must be at least "
+                            + MIN_SECRET_LENGTH + " bytes");
+                }
+                if (macs.putIfAbsent(keyId, new TicketMac(new SecretKeySpec(secret, MAC_ALGORITHM))) != null) {
+                    throw new IllegalStateException("Duplicate session ticket key id " + keyId);
+                }
+            }
+            if (macs.isEmpty()) {
+                throw new IllegalStateException("At least one session ticket key is required");
+            }
+            return new Keys(macs.keySet().iterator().next(), Map.copyOf(macs));
+        }
+
+        /**
+         * Returns the MAC of the signing key.
+         */
+        public TicketMac signingMac() {
+            return macs.get(signingKeyId);
+        }
+    }
+
+    /**
+     * Computes HMAC-SHA256 for one key with a pool of initialised {@link Mac}s.
+     *
+     * <p>A pool is used rather than a thread-local so that instances are shared by virtual
+     * threads; it only grows to the number of concurrent computations.</p>
+     */
+    public static final class TicketMac {
+
+        private final SecretKeySpec key;
+
+        private final ConcurrentLinkedQueue<Mac> idle = new ConcurrentLinkedQueue<>();
+
+        TicketMac(SecretKeySpec key) {
+            this.key = key;
+        }
+
+        /**
+         * Returns the MAC of the first {@code length} bytes of the input.
+         */
+        public byte[] compute(byte[] input, int length) {
+            var mac = idle.poll();
+            try {
+                if (mac == null) {
+                    mac = Mac.getInstance(MAC_ALGORITHM);
+                    mac.init(key);
+                }
+                mac.update(input, 0, length);
+                var result = mac.doFinal();
+                idle.offer(mac);
+                return result;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(MAC_ALGORITHM + " is not available", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package io.robothouse.grpcauth.lib.ticket;
+
+import com.nimbusds.jose.util.JSONObjectUtils;
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimNames;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.JwtValidationException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.text.ParseException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mints and verifies session tickets: short-lived credentials signed by this service with
+ * HMAC-SHA256, which cost far less to verify than an RSA-signed ID token.
+ *
+ * <p>A ticket has the form {@code st1.<key id>.<payload>.<mac>}, where the payload is the
+ * base64url-encoded JSON of the subject, issuer, audience, issue time and expiry of the ID
+ * token it was exchanged for, and the MAC covers everything before it. A ticket never outlives
+ * that ID token, and carries its {@code jti}, so revoking the ID token revokes its tickets
+ * too. Verified tickets are returned as a {@link Jwt} with the same claims, whose {@code typ}
+ * header is {@value #TICKET_TYPE}, so callers can handle either credential alike.</p>
+ *
+ * <p>Failures are reported with the same exception types as JWT decoding, so they are
+ * classified the same way: a malformed ticket, an unknown key or a bad MAC is a
+ * {@link BadJwtException} and an expired ticket a {@link JwtValidationException}.</p>
+ */
+public final class SessionTickets {
+
+    /**
+     * The prefix that distinguishes session tickets from JWTs, which never contain it.
+     */
+    public static final String PREFIX = "st1.";
+
+    /**
+     * The {@code typ} header of the Jwt returned for a verified ticket.
+     */
+    public static final String TICKET_TYPE = "st1";
+
+    private static final String INVALID_TOKEN_URI = "https://tools.ietf.org/html/rfc6750#section-3.1";
+
+    private static final Base64.Encoder BASE64_URL_ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private static final Base64.Decoder BASE64_URL_DECODER = Base64.getUrlDecoder();
+
+    private final SessionTicketKeyRing keyRing;
+
+    private final Duration ttl;
+
+    private final Clock clock;
+
+    public SessionTickets(SessionTicketKeyRing keyRing, Duration ttl) {
+        this(keyRing, ttl, Clock.systemUTC());
+    }
+
+    SessionTickets(SessionTicketKeyRing keyRing, Duration ttl, Clock clock) {
+        this.keyRing = keyRing;
+        this.ttl = ttl;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns whether the raw credential is a session ticket rather than a JWT.
+     */
+    public static boolean isTicket(String token) {
+        return token.startsWith(PREFIX);
+    }
+
+    /**
+     * Returns whether the verified credential was a session ticket rather than an ID token.
+     */
+    public static boolean isTicket(Jwt jwt) {
+        return TICKET_TYPE.equals(jwt.getHeaders().get("typ"));
+    }
+
+    /**
+     * Mints a ticket for a verified ID token, signed with the current signing key.
+     *
+     * <p>The ticket expires after the configured lifetime, or when the ID token expires if
+     * that is sooner. It takes the ID token's {@code jti}, if it has one, so that a revocation
+     * of the token by id also matches the ticket.</p>
+     *
+     * @param jwt the verified ID token
+     * @return the ticket and its expiry
+     */
+    public Ticket mint(Jwt jwt) {
+        var now = clock.instant();
+        var issuedAt = Instant.ofEpochSecond(now.getEpochSecond());
+        var expiresAt = issuedAt.plus(ttl);
+        if (jwt.getExpiresAt() != null && jwt.getExpiresAt().isBefore(expiresAt)) {
+            expiresAt = Instant.ofEpochSecond(jwt.getExpiresAt().getEpochSecond());
+        }
+
+        var claims = new LinkedHashMap<String, Object>();
+        claims.put(JwtClaimNames.SUB, jwt.getSubject());
+        claims.put(JwtClaimNames.ISS, jwt.getClaimAsString(JwtClaimNames.ISS));
+        claims.put(JwtClaimNames.AUD, jwt.getAudience());
+        claims.put(JwtClaimNames.IAT, issuedAt.getEpochSecond());
+        claims.put(JwtClaimNames.EXP, expiresAt.getEpochSecond());
+        claims.put(JwtClaimNames.JTI, jwt.getId());
+        claims.values().removeIf(value -> value == null);
+        var payload = BASE64_URL_ENCODER.encodeToString(
+                JSONObjectUtils.toJSONString(claims).getBytes(StandardCharsets.UTF_8));
+
+        var keys = keyRing.keys();
+        var signingInput = PREFIX + keys.signingKeyId() + "." + payload;
+        var bytes = signingInput.getBytes(StandardCharsets.US_ASCII);
+        var mac = keys.signingMac().compute(bytes, bytes.length);
+        return new Ticket(signingInput + "." + BASE64_URL_ENCODER.encodeToString(mac), expiresAt);
+    }
+
+    /**
+     * Verifies a ticket and returns its claims.
+     *
+     * @param token the raw ticket
+     * @return a Jwt carrying the ticket's claims
+     * @throws JwtException if the ticket is malformed, not signed by a known key or expired
+     */
+    public Jwt verify(String token) throws JwtException {
+        var bytes = token.getBytes(StandardCharsets.US_ASCII);
+        var keyIdEnd = indexOfDot(bytes, PREFIX.length());
+        var payloadEnd = keyIdEnd < 0 ? -1 : indexOfDot(bytes, keyIdEnd + 1);
+        if (!isTicket(token) || payloadEnd < 0 || indexOfDot(bytes, payloadEnd + 1) >= 0) {
+            throw malformed(new ParseException("Invalid session ticket: Missing or extra part delimiters", 0));
+        }
+
+        var keyId = token.substring(PREFIX.length(), keyIdEnd);
+        var mac = keyRing.keys().macs().get(keyId);
+        if (mac == null) {
+            throw new BadJwtException("Session ticket rejected: Unknown key " + keyId);
+        }
+        byte[] expectedMac;
+        Map<String, Object> claims;
+        try {
+            expectedMac = decode(bytes, payloadEnd + 1, bytes.length);
+            if (!MessageDigest.isEqual(expectedMac, mac.compute(bytes, payloadEnd))) {
+                throw new BadJwtException("Session ticket rejected: Invalid signature");
+            }
+            claims = new HashMap<>(JSONObjectUtils.parse(
+                    new String(decode(bytes, keyIdEnd + 1, payloadEnd), StandardCharsets.UTF_8)));
+        } catch (ParseException e) {
+            throw malformed(e);
+        }
+
+        var issuedAt = toInstant(claims, JwtClaimNames.IAT);
+        var expiresAt = toInstant(claims, JwtClaimNames.EXP);
+        if (expiresAt == null) {
+            throw malformed(new ParseException("Session ticket has no expiry", 0));
+        }
+        if (!clock.instant().isBefore(expiresAt)) {
+            var error = new OAuth2Error("invalid_token", "Jwt expired at " + expiresAt, INVALID_TOKEN_URI);
+            throw new JwtValidationException("Unable to validate session ticket", List.of(error));
+        }
+        var headers = Map.<String, Object>of("alg", "HS256", "kid", keyId, "typ", TICKET_TYPE);
+        return new Jwt(token, issuedAt, expiresAt, headers, claims);
+    }
+
+    /**
+     * Replaces a NumericDate claim, in seconds since the epoch, with the equivalent Instant.
+     */
+    private static Instant toInstant(Map<String, Object> claims, String name) {
+        if (claims.get(name) instanceof Number seconds) {
+            var instant = Instant.ofEpochSecond(seconds.longValue());
+            claims.put(name, instant);
+            return instant;
+        }
+        return null;
+    }
+
+    private static int indexOfDot(byte[] bytes, int from) {
+        for (var i = from; i < bytes.length; i++) {
+            if (bytes[i] == '.') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static byte[] decode(byte[] bytes, int from, int to) throws ParseException {
+        try {
+            var decoded = BASE64_URL_DECODER.decode(ByteBuffer.wrap(bytes, from, to - from));
+            var result = new byte[decoded.remaining()];
+            decoded.get(result);
+            return result;
+        } catch (IllegalArgumentException e) {
+            throw new ParseException("Invalid base64url encoding: " + e.getMessage(), from);
+        }
+    }
+
+    private static BadJwtException malformed(ParseException e) {
+        return new BadJwtException("Malformed session ticket: " + e.getMessage(), e);
+    }
+
+    /**
+     * A minted session ticket.
+     *
+     * @param token the raw ticket, sent as a bearer credential
+     * @param expiresAt when the ticket expires
+     */
+    public record Ticket(String token, Instant expiresAt) {}
+}
@@ -0,0 +1,28 @@
+package io.robothouse.grpcauth.lib.ticket;
+
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+/**
+ * JwtDecoder decorator that also accepts session tickets.
+ *
+ * <p>Credentials are dispatched by prefix: session tickets are verified by
+ * {@link SessionTickets} and everything else is passed to the delegate.</p>
+ */
+public class TicketAwareJwtDecoder implements JwtDecoder {
+
+    private final JwtDecoder delegate;
+
+    private final SessionTickets sessionTickets;
+
+    public TicketAwareJwtDecoder(JwtDecoder delegate, SessionTickets sessionTickets) {
+        this.delegate = delegate;
+        this.sessionTickets = sessionTickets;
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        return SessionTickets.isTicket(token) ? sessionTickets.verify(token) : delegate.decode(token);
+    }
+}
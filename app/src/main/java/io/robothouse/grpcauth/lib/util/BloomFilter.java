@@ -0,0 +1,79 @@
+package io.robothouse.grpcauth.lib.util;
+
+/**
+ * An immutable-after-construction Bloom filter over strings.
+ *
+ * <p>Each string is hashed from its cached {@link String#hashCode()} mixed with a salt, so that
+ * the same filter can hold several kinds of keys, and the bit positions are derived from that
+ * one hash by double hashing. A lookup therefore allocates nothing and reads a handful of words.
+ * Strings with equal hash codes share their bits, which only adds false positives.</p>
+ *
+ * <p>The filter is filled while it is being built and must not be modified once it is shared
+ * between threads.</p>
+ */
+public final class BloomFilter {
+
+    /**
+     * Bits per expected entry; with {@link #HASH_COUNT} probes this gives about 1% false positives.
+     */
+    private static final int BITS_PER_ENTRY = 10;
+
+    private static final int HASH_COUNT = 7;
+
+    private static final int MIN_BITS = 1 << 10;
+
+    private final long[] words;
+
+    private final int mask;
+
+    /**
+     * @param expectedEntries the number of entries the filter is sized for
+     */
+    public BloomFilter(int expectedEntries) {
+        var bits = Math.max(MIN_BITS, Integer.highestOneBit(Math.max(1, expectedEntries) * BITS_PER_ENTRY - 1) << 1);
+        this.words = new long[bits >>> 6];
+        this.mask = bits - 1;
+    }
+
+    /**
+     * Adds a string under the given salt.
+     */
+    public void add(int salt, String value) {
+        var hash = hash(salt, value);
+        var h1 = (int) hash;
+        var h2 = (int) (hash >>> 32) | 1;
+        for (var i = 0; i < HASH_COUNT; i++) {
+            var bit = (h1 + i * h2) & mask;
+            words[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Returns false if the string was certainly not added under the given salt.
+     */
+    public boolean mightContain(int salt, String value) {
+        var hash = hash(salt, value);
+        var h1 = (int) hash;
+        var h2 = (int) (hash >>> 32) | 1;
+        for (var i = 0; i < HASH_COUNT; i++) {
+            var bit = (h1 + i * h2) & mask;
+            if ((words[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Spreads the string's hash code and the salt over 64 bits with the MurmurHash3 finaliser.
+     */
+    private static long hash(int salt, String value) {
+        var x = ((long) salt << 32) ^ (value.hashCode() & 0xFFFFFFFFL);
+        x ^= x >>> 33;
+        x *= 0xFF51AFD7ED558CCDL;
+        x ^= x >>> 33;
+        x *= 0xC4CEB9FE1A85EC53L;
+        x ^= x >>> 33;
+        return x;
+    }
+}
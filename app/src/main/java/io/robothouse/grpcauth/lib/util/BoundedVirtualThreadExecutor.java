@@ -0,0 +1,99 @@
+package io.robothouse.grpcauth.lib.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Executor that runs tasks on virtual threads while capping how many may run at once.
+ *
+ * <p>A virtual thread is only started when a permit is free, so there are never more than
+ * {@code maxConcurrency} of them. Tasks over the limit wait in a queue as plain runnables and
+ * are picked up by the running threads as they finish their current task. Submitting threads
+ * such as transport event loops never block.</p>
+ *
+ * <p>Tasks are never rejected while the executor is open, as gRPC submits the callbacks of
+ * calls it has already started here. Back-pressure comes from the callers instead: calls
+ * over the adaptive limit of {@code ConcurrencyLimitInterceptor} are closed by their first
+ * task, so under overload the queue drains as cheap rejections rather than growing with
+ * admitted work.</p>
+ */
+public final class BoundedVirtualThreadExecutor implements Executor, AutoCloseable {
+
+    private final ExecutorService virtualThreads;
+
+    private final Semaphore permits;
+
+    /**
+     * Tasks waiting for a running virtual thread to pick them up.
+     */
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param threadNamePrefix the prefix for the names of the virtual threads
+     * @param maxConcurrency the maximum number of tasks running at the same time
+     */
+    public BoundedVirtualThreadExecutor(String threadNamePrefix, int maxConcurrency) {
+        this.virtualThreads = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name(threadNamePrefix, 0).factory());
+        this.permits = new Semaphore(maxConcurrency);
+    }
+
+    /**
+     * Queues the task and starts a virtual thread for it if a permit is free.
+     *
+     * @throws RejectedExecutionException if the executor has been closed
+     */
+    @Override
+    public void execute(Runnable task) {
+        if (virtualThreads.isShutdown()) {
+            throw new RejectedExecutionException("Executor has been closed");
+        }
+        tasks.add(task);
+        startThread();
+    }
+
+    /**
+     * Stops accepting tasks; tasks already submitted are allowed to finish.
+     */
+    @Override
+    public void close() {
+        virtualThreads.shutdown();
+    }
+
+    private void startThread() {
+        if (!permits.tryAcquire()) {
+            return;
+        }
+        try {
+            virtualThreads.execute(this::runTasks);
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Runs queued tasks until the queue is empty, then gives the permit back.
+     *
+     * <p>The queue is checked again after the permit is released, so a task queued while no
+     * permit was free is never left without a thread.</p>
+     */
+    private void runTasks() {
+        try {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        } finally {
+            permits.release();
+            if (!tasks.isEmpty()) {
+                startThread();
+            }
+        }
+    }
+}
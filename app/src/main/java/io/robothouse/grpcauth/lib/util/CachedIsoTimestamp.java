@@ -0,0 +1,86 @@
+package io.robothouse.grpcauth.lib.util;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Produces ISO-8601 offset timestamps while formatting the date, time and offset at most once
+ * per second.
+ *
+ * <p>The output is identical to formatting {@code OffsetDateTime.now(clock)} with
+ * {@link DateTimeFormatter#ISO_OFFSET_DATE_TIME}: the cached second is followed by the
+ * nanosecond fraction with trailing zeros removed (omitted entirely when zero) and the zone
+ * offset in effect for that second.</p>
+ */
+public final class CachedIsoTimestamp {
+
+    /**
+     * Shared instance reading the system clock in the default time zone.
+     */
+    private static final CachedIsoTimestamp SYSTEM = new CachedIsoTimestamp(Clock.systemDefaultZone());
+
+    /**
+     * Maximum length of the nanosecond fraction, including the decimal point.
+     */
+    private static final int MAX_FRACTION_LENGTH = 10;
+
+    private final Clock clock;
+
+    /**
+     * The most recently formatted second; replaced racily, which is safe because it is immutable.
+     */
+    private volatile Second second = new Second(Long.MIN_VALUE, "", "");
+
+    CachedIsoTimestamp(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the current system time formatted as an ISO-8601 offset date-time.
+     *
+     * @return the current timestamp, e.g. {@code 2025-04-01T12:34:56.789+01:00}
+     */
+    public static String now() {
+        return SYSTEM.format(SYSTEM.clock.instant());
+    }
+
+    /**
+     * Formats the given instant in the clock's time zone.
+     */
+    String format(Instant instant) {
+        var cached = second;
+        if (cached.epochSecond() != instant.getEpochSecond()) {
+            cached = Second.of(instant.getEpochSecond(), clock);
+            second = cached;
+        }
+
+        var nanos = instant.getNano();
+        var builder = new StringBuilder(
+                cached.dateTime().length() + MAX_FRACTION_LENGTH + cached.offset().length());
+        builder.append(cached.dateTime());
+        if (nanos != 0) {
+            builder.append('.');
+            for (var divisor = 100_000_000; nanos != 0; divisor /= 10) {
+                builder.append((char) ('0' + nanos / divisor));
+                nanos %= divisor;
+            }
+        }
+        return builder.append(cached.offset()).toString();
+    }
+
+    /**
+     * The formatted local date-time and zone offset of a single epoch second.
+     */
+    private record Second(long epochSecond, String dateTime, String offset) {
+
+        static Second of(long epochSecond, Clock clock) {
+            var dateTime = OffsetDateTime.ofInstant(Instant.ofEpochSecond(epochSecond), clock.getZone());
+            return new Second(
+                    epochSecond,
+                    dateTime.toLocalDateTime().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME),
+                    dateTime.getOffset().getId());
+        }
+    }
+}
@@ -16,12 +16,21 @@ public final class CtxConstants {
      * Context key for storing the authenticated JWT token.
      *
      * <p>This key holds an Optional containing the decoded JWT if authentication
-     * was successful, or an empty Optional if the token was missing, malformed, or invalid.</p>
+     * was successful, or an empty Optional if the token was missing, malformed, or invalid,
+     * or if the method is public and no token was read.</p>
      */
-    public static final Context.Key<Optional<Jwt>> JWT_CONTEXT_KEY = Context.key("jwt");
+    public static final Context.Key<Optional<Jwt>> JWT_CONTEXT_KEY = Context.keyWithDefault("jwt", Optional.empty());
 
     /**
      * Context key for storing the unique request identifier.
      */
     public static final Context.Key<String> REQUEST_ID_CONTEXT_KEY = Context.key("requestId");
+
+    /**
+     * Context key for storing the peer of the call, as keyed by the peer failure limiter.
+     *
+     * <p>Set for every call that is not public, so that services validating tokens carried in
+     * their messages can charge failures to the same peer as the interceptor.</p>
+     */
+    public static final Context.Key<Object> PEER_CONTEXT_KEY = Context.key("peer");
 }
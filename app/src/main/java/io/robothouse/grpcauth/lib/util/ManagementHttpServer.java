@@ -0,0 +1,115 @@
+package io.robothouse.grpcauth.lib.util;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.actuate.health.HealthEndpoint;
+import org.springframework.boot.actuate.health.Status;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minimal HTTP server exposing the actuator health and Prometheus endpoints.
+ *
+ * <p>The service only speaks gRPC, so rather than running a full reactive or servlet web stack
+ * for two read-only endpoints, they are served by the JDK's built-in HTTP server on a single
+ * dispatcher thread. {@code /actuator/health} returns the aggregate status as JSON, with 503
+ * unless it is UP, and {@code /actuator/prometheus} returns the scrape in the Prometheus text
+ * format. An endpoint whose source is null is not served.</p>
+ */
+@Log4j2
+public final class ManagementHttpServer implements AutoCloseable {
+
+    /**
+     * The path of the health endpoint.
+     */
+    public static final String HEALTH_PATH = "/actuator/health";
+
+    /**
+     * The path of the Prometheus endpoint.
+     */
+    public static final String PROMETHEUS_PATH = "/actuator/prometheus";
+
+    private static final String PROMETHEUS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final int port;
+
+    private final PrometheusMeterRegistry prometheusRegistry;
+
+    private final HealthEndpoint healthEndpoint;
+
+    private HttpServer server;
+
+    /**
+     * @param port the port to listen on, or 0 for an ephemeral port
+     * @param prometheusRegistry the registry scraped by the Prometheus endpoint, or null
+     * @param healthEndpoint the health endpoint, or null
+     */
+    public ManagementHttpServer(int port, PrometheusMeterRegistry prometheusRegistry, HealthEndpoint healthEndpoint) {
+        this.port = port;
+        this.prometheusRegistry = prometheusRegistry;
+        this.healthEndpoint = healthEndpoint;
+    }
+
+    /**
+     * Binds the port and starts serving.
+     *
+     * @throws IOException if the port cannot be bound
+     */
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        if (healthEndpoint != null) {
+            server.createContext(HEALTH_PATH, this::health);
+        }
+        if (prometheusRegistry != null) {
+            server.createContext(PROMETHEUS_PATH, this::prometheus);
+        }
+        server.start();
+        log.info("Management endpoints listening on port {}", port());
+    }
+
+    /**
+     * Returns the port the server is bound to.
+     */
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops the server without waiting for exchanges in progress.
+     */
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    private void health(HttpExchange exchange) throws IOException {
+        var status = healthEndpoint.health().getStatus();
+        var body = "{\"status\":\"" + status.getCode() + "\"}";
+        respond(exchange, Status.UP.equals(status) ? 200 : 503, "application/json", body);
+    }
+
+    private void prometheus(HttpExchange exchange) throws IOException {
+        respond(exchange, 200, PROMETHEUS_CONTENT_TYPE, prometheusRegistry.scrape());
+    }
+
+    private static void respond(HttpExchange exchange, int statusCode, String contentType, String body)
+            throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "GET");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            var bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            exchange.sendResponseHeaders(statusCode, bytes.length);
+            exchange.getResponseBody().write(bytes);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package io.robothouse.grpcauth.lib.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Utility class for deriving fixed-size cache keys from bearer tokens.
+ *
+ * <p>Raw tokens are never used as map keys so that credentials are not retained
+ * verbatim in long-lived caches.</p>
+ */
+public final class TokenDigests {
+
+    private TokenDigests() {}
+
+    /**
+     * Returns the hex-encoded SHA-256 digest of the given token.
+     *
+     * @param token the raw bearer token
+     * @return a 64-character lowercase hex digest
+     */
+    public static String sha256(String token) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
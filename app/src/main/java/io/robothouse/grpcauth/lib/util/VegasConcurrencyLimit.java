@@ -0,0 +1,161 @@
+package io.robothouse.grpcauth.lib.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A concurrency limit that adapts to observed latency, after TCP Vegas.
+ *
+ * <p>The lowest latency seen is taken as the latency without queueing. Each completed call
+ * estimates how many calls are queued from the ratio of that latency to its own:
+ * {@code queue = limit * (1 - minRtt / rtt)}. While the estimated queue is small the limit
+ * grows, and once it exceeds a threshold the limit shrinks, so the limit settles where latency
+ * starts to rise. All thresholds scale with {@code log10(limit)}. A call that was dropped,
+ * for example by missing its deadline, always shrinks the limit.</p>
+ *
+ * <p>The minimum latency is periodically re-measured, after a randomised number of samples
+ * proportional to the limit, so that a permanent change in latency is eventually accepted as
+ * the new baseline. The limit only grows while at least half of it is in use.</p>
+ *
+ * <p>Acquiring and releasing permits is lock-free. Samples update the limit under a lock that
+ * is only tried, so a sample arriving while another is being applied is skipped rather than
+ * waiting for it.</p>
+ */
+public final class VegasConcurrencyLimit {
+
+    /**
+     * Multiplied by the limit to give the average number of samples between re-measurements of
+     * the minimum latency.
+     */
+    private static final int PROBE_MULTIPLIER = 30;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final ReentrantLock sampleLock = new ReentrantLock();
+
+    private volatile int limit;
+
+    /**
+     * The lowest latency seen since the last probe, in nanoseconds; 0 until the first sample.
+     * Guarded by sampleLock.
+     */
+    private long minRttNanos;
+
+    /**
+     * Samples left until the minimum latency is re-measured. Guarded by sampleLock.
+     */
+    private long probeCountdown;
+
+    /**
+     * @param initialLimit the limit before any latency has been observed
+     * @param minLimit the lowest the limit may fall to
+     * @param maxLimit the highest the limit may rise to
+     */
+    public VegasConcurrencyLimit(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit < 1 || minLimit > initialLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Concurrency limits must satisfy 1 <= min <= initial <= max");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = initialLimit;
+        this.probeCountdown = nextProbeCountdown(initialLimit);
+    }
+
+    /**
+     * Takes a permit if fewer calls than the limit are in flight.
+     *
+     * @return whether a permit was taken; if so it must be released exactly once
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            var current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Releases a permit and updates the limit from the call's latency.
+     *
+     * @param rttNanos how long the call held its permit
+     * @param dropped whether the call was dropped rather than completed, e.g. by its deadline
+     */
+    public void release(long rttNanos, boolean dropped) {
+        var inFlightAtCompletion = inFlight.getAndDecrement();
+        if (sampleLock.tryLock()) {
+            try {
+                limit = nextLimit(Math.max(rttNanos, 1), dropped, inFlightAtCompletion);
+            } finally {
+                sampleLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Releases a permit without sampling, for calls whose latency says nothing about load,
+     * such as calls cancelled by the client.
+     */
+    public void releaseWithoutSample() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * Returns the current limit.
+     */
+    public int limit() {
+        return limit;
+    }
+
+    /**
+     * Returns the number of permits currently held.
+     */
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    private int nextLimit(long rttNanos, boolean dropped, int inFlightAtCompletion) {
+        var current = limit;
+        if (minRttNanos == 0 || rttNanos < minRttNanos) {
+            minRttNanos = rttNanos;
+            return current;
+        }
+        if (--probeCountdown <= 0) {
+            minRttNanos = rttNanos;
+            probeCountdown = nextProbeCountdown(current);
+            return current;
+        }
+
+        var log = Math.max(1, (int) Math.log10(current));
+        int next;
+        if (dropped) {
+            next = current - log;
+        } else if (inFlightAtCompletion * 2 < current) {
+            return current;
+        } else {
+            var queueSize = (int) Math.ceil(current * (1 - (double) minRttNanos / rttNanos));
+            if (queueSize <= log) {
+                next = current + 6 * log;
+            } else if (queueSize < 3 * log) {
+                next = current + log;
+            } else if (queueSize > 6 * log) {
+                next = current - log;
+            } else {
+                return current;
+            }
+        }
+        return Math.clamp(next, minLimit, maxLimit);
+    }
+
+    private static long nextProbeCountdown(int limit) {
+        return (long) (PROBE_MULTIPLIER * limit * ThreadLocalRandom.current().nextDouble(0.5, 1));
+    }
+}
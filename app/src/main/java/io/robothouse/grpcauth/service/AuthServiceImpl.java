@@ -1,17 +1,38 @@
 package io.robothouse.grpcauth.service;
 
-import com.google.protobuf.Empty;
+import com.google.protobuf.Timestamp;
 import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
+import io.robothouse.grpcauth.lib.component.PeerFailureLimiter;
+import io.robothouse.grpcauth.lib.jfr.AuthenticateEvent;
+import io.robothouse.grpcauth.lib.jwt.AuthOutcome;
+import io.robothouse.grpcauth.lib.jwt.JwtFailures;
+import io.robothouse.grpcauth.lib.ticket.SessionTickets;
+import io.robothouse.grpcauth.lib.util.CachedIsoTimestamp;
 import io.robothouse.grpcauth.lib.util.CtxConstants;
 import io.robothouse.grpcauth.proto.AuthPayload;
 import io.robothouse.grpcauth.proto.AuthResponse;
 import io.robothouse.grpcauth.proto.AuthServiceGrpc;
+import io.robothouse.grpcauth.proto.AuthenticateRequest;
+import io.robothouse.grpcauth.proto.AuthenticateBatchRequest;
+import io.robothouse.grpcauth.proto.AuthenticateBatchResponse;
+import io.robothouse.grpcauth.proto.AuthenticateStreamRequest;
+import io.robothouse.grpcauth.proto.AuthenticateStreamResponse;
+import io.robothouse.grpcauth.proto.ExchangeTokenRequest;
+import io.robothouse.grpcauth.proto.ExchangeTokenResponse;
+import io.robothouse.grpcauth.proto.TokenAuthResult;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.grpc.server.service.GrpcService;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
 
-import java.time.OffsetDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * gRPC service implementation for authentication operations.
@@ -23,42 +44,313 @@ import java.time.format.DateTimeFormatter;
 @GrpcService
 public class AuthServiceImpl extends AuthServiceGrpc.AuthServiceImplBase {
 
+    /**
+     * The payload returned for every successful authentication; immutable, so shared by all calls.
+     */
+    private static final AuthPayload SUCCESS_PAYLOAD = AuthPayload.newBuilder()
+            .setSuccess(true)
+            .setStatusCode(Status.OK.getCode().value())
+            .setStatusMessage("Authentication successful.")
+            .build();
+
+    /**
+     * The payload returned for a token that failed validation because it has expired.
+     */
+    private static final AuthPayload EXPIRED_PAYLOAD = failurePayload("Token expired.");
+
+    /**
+     * The payload returned for a token that failed validation for any other reason.
+     */
+    private static final AuthPayload INVALID_PAYLOAD = failurePayload("Invalid token.");
+
+    /**
+     * The payload returned for a token that could not be validated, e.g. because its keys could not be fetched.
+     */
+    private static final AuthPayload UNAVAILABLE_PAYLOAD = AuthPayload.newBuilder()
+            .setSuccess(false)
+            .setStatusCode(Status.UNAVAILABLE.getCode().value())
+            .setStatusMessage("Unable to validate token.")
+            .build();
+
+    /**
+     * The payload returned for a token that was not validated because its peer is throttled.
+     */
+    private static final AuthPayload THROTTLED_PAYLOAD = AuthPayload.newBuilder()
+            .setSuccess(false)
+            .setStatusCode(Status.RESOURCE_EXHAUSTED.getCode().value())
+            .setStatusMessage("Too many failed authentication attempts.")
+            .build();
+
+    private final JwtDecoder jwtDecoder;
+
+    /**
+     * Limits failed attempts per peer for tokens carried in batch and stream messages.
+     */
+    private final PeerFailureLimiter peerFailureLimiter;
+
+    /**
+     * Bounded executor on which batch entries are validated in parallel.
+     */
+    private final Executor validationExecutor;
+
+    /**
+     * The maximum number of tokens accepted in a single batch request.
+     */
+    private final int maxBatchSize;
+
+    /**
+     * The maximum number of token frames requested ahead on a single authentication stream.
+     */
+    private final int maxStreamInFlight;
+
+    /**
+     * Mints session tickets for ExchangeToken; empty when session tickets are disabled.
+     */
+    private final Optional<SessionTickets> sessionTickets;
+
+    public AuthServiceImpl(
+            JwtDecoder jwtDecoder,
+            PeerFailureLimiter peerFailureLimiter,
+            @Qualifier("tokenValidationExecutor") Executor validationExecutor,
+            @Value("${spring.authentication.batch.max_size:100}") int maxBatchSize,
+            @Value("${spring.authentication.stream.max_in_flight:64}") int maxStreamInFlight,
+            Optional<SessionTickets> sessionTickets) {
+        this.jwtDecoder = jwtDecoder;
+        this.peerFailureLimiter = peerFailureLimiter;
+        this.validationExecutor = validationExecutor;
+        this.maxBatchSize = maxBatchSize;
+        this.maxStreamInFlight = maxStreamInFlight;
+        this.sessionTickets = sessionTickets;
+    }
+
     /**
      * Handles authentication requests by validating the JWT token from the context.
      *
      * <p>On success, returns an AuthResponse with the authentication details.
-     * On failure, throws a gRPC UNAUTHENTICATED status exception.</p>
+     * On failure, throws a gRPC UNAUTHENTICATED status exception. The success payload is
+     * shared and the timestamp is formatted from a per-second cache, so only the request id
+     * varies between responses.</p>
+     *
+     * <p>The claims selected by the request's claims mask are returned from the already
+     * verified JWT, so callers never need to decode the token themselves. An empty mask
+     * returns no claims; an unknown mask path fails the call with INVALID_ARGUMENT.</p>
+     *
+     * <p>The call is recorded as an {@link AuthenticateEvent} when that JFR event is enabled.</p>
      */
     @Override
-    public void authenticate(Empty request, StreamObserver<AuthResponse> responseObserver) {
-        var timestamp = OffsetDateTime.now().format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
-        var requestId = CtxConstants.REQUEST_ID_CONTEXT_KEY.get();
-        if (requestId == null) {
-            requestId = "unknown";
-            log.warn("Request ID not found in context");
-        }
+    public void authenticate(AuthenticateRequest request, StreamObserver<AuthResponse> responseObserver) {
+        var event = new AuthenticateEvent();
+        event.begin();
+        var timestamp = CachedIsoTimestamp.now();
+        var requestId = currentRequestId();
         var jwtOptional = CtxConstants.JWT_CONTEXT_KEY.get();
 
         if (jwtOptional.isEmpty()) {
             responseObserver.onError(Status.UNAUTHENTICATED
                     .withDescription("Missing or invalid JWT token")
                     .asRuntimeException());
+            commit(event, requestId, false, Status.Code.UNAUTHENTICATED);
             return;
         }
 
-        var payload = AuthPayload.newBuilder()
-                .setSuccess(true)
-                .setStatusCode(Status.OK.getCode().value())
-                .setStatusMessage("Authentication successful.")
-                .build();
+        ClaimsProjection projection;
+        try {
+            projection = request.hasClaimsMask() ? ClaimsProjection.of(request.getClaimsMask()) : ClaimsProjection.NONE;
+        } catch (IllegalArgumentException e) {
+            responseObserver.onError(Status.INVALID_ARGUMENT
+                    .withDescription(e.getMessage())
+                    .asRuntimeException());
+            commit(event, requestId, true, Status.Code.INVALID_ARGUMENT);
+            return;
+        }
 
         var response = AuthResponse.newBuilder()
                 .setRequestId(requestId)
                 .setDatetime(timestamp)
-                .setPayload(payload)
-                .build();
+                .setPayload(SUCCESS_PAYLOAD);
+        if (!projection.isEmpty()) {
+            response.setClaims(projection.project(jwtOptional.get()));
+        }
 
-        responseObserver.onNext(response);
+        responseObserver.onNext(response.build());
         responseObserver.onCompleted();
+        commit(event, requestId, !projection.isEmpty(), Status.Code.OK);
+    }
+
+    private static void commit(AuthenticateEvent event, String requestId, boolean claimsProjected, Status.Code status) {
+        if (event.shouldCommit()) {
+            event.requestId = requestId;
+            event.claimsProjected = claimsProjected;
+            event.status = status.name();
+            event.commit();
+        }
+    }
+
+    /**
+     * Handles batch authentication requests by validating every supplied token.
+     *
+     * <p>Tokens are validated in parallel on the bounded validation executor and the results
+     * are returned in request order. Individual token failures are reported in their
+     * TokenAuthResult; the call itself only fails if the batch exceeds the configured size.
+     * Each token draws on the calling peer's failed-attempt budget like a token in the
+     * Authorization header does.</p>
+     */
+    @Override
+    public void authenticateBatch(AuthenticateBatchRequest request,
+                                  StreamObserver<AuthenticateBatchResponse> responseObserver) {
+        var timestamp = CachedIsoTimestamp.now();
+        var requestId = currentRequestId();
+
+        if (request.getTokensCount() > maxBatchSize) {
+            responseObserver.onError(Status.INVALID_ARGUMENT
+                    .withDescription("Batch contains more than " + maxBatchSize + " tokens")
+                    .asRuntimeException());
+            return;
+        }
+
+        var peer = CtxConstants.PEER_CONTEXT_KEY.get();
+        var futures = request.getTokensList().stream()
+                .map(token -> CompletableFuture.supplyAsync(() -> validateToken(token, peer), validationExecutor)
+                        .exceptionally(error -> {
+                            log.error("Batch token validation failed unexpectedly: {}", error.getMessage());
+                            return AuthenticateStreamHandler.internalErrorResult();
+                        }))
+                .toList();
+
+        var response = AuthenticateBatchResponse.newBuilder()
+                .setRequestId(requestId)
+                .setDatetime(timestamp);
+        futures.forEach(future -> response.addResults(future.join()));
+
+        responseObserver.onNext(response.build());
+        responseObserver.onCompleted();
+    }
+
+    /**
+     * Handles streaming authentication by validating each token frame as it arrives.
+     *
+     * <p>Responses are written as soon as each validation completes and carry the frame's
+     * correlation id, so they may be returned out of order. Interceptor work such as request
+     * id generation and context setup happens once for the whole stream. Each frame draws on
+     * the calling peer's failed-attempt budget.</p>
+     */
+    @Override
+    public StreamObserver<AuthenticateStreamRequest> authenticateStream(
+            StreamObserver<AuthenticateStreamResponse> responseObserver) {
+        var peer = CtxConstants.PEER_CONTEXT_KEY.get();
+        return new AuthenticateStreamHandler(
+                (ServerCallStreamObserver<AuthenticateStreamResponse>) responseObserver,
+                token -> validateToken(token, peer),
+                validationExecutor,
+                maxStreamInFlight);
+    }
+
+    /**
+     * Exchanges the ID token from the context for a session ticket.
+     *
+     * <p>The ticket carries the token's subject and expiry and is verified with a symmetric
+     * key, so clients that call frequently can present it instead of the RSA-signed ID token.
+     * Fails with UNIMPLEMENTED when session tickets are disabled, and with INVALID_ARGUMENT
+     * when the caller authenticated with a ticket, so that tickets cannot be renewed.</p>
+     */
+    @Override
+    public void exchangeToken(ExchangeTokenRequest request, StreamObserver<ExchangeTokenResponse> responseObserver) {
+        var timestamp = CachedIsoTimestamp.now();
+        var requestId = currentRequestId();
+        var jwtOptional = CtxConstants.JWT_CONTEXT_KEY.get();
+
+        if (jwtOptional.isEmpty()) {
+            responseObserver.onError(Status.UNAUTHENTICATED
+                    .withDescription("Missing or invalid JWT token")
+                    .asRuntimeException());
+            return;
+        }
+        if (sessionTickets.isEmpty()) {
+            responseObserver.onError(Status.UNIMPLEMENTED
+                    .withDescription("Session tickets are not enabled")
+                    .asRuntimeException());
+            return;
+        }
+        if (SessionTickets.isTicket(jwtOptional.get())) {
+            responseObserver.onError(Status.INVALID_ARGUMENT
+                    .withDescription("Only ID tokens can be exchanged for session tickets")
+                    .asRuntimeException());
+            return;
+        }
+
+        var ticket = sessionTickets.get().mint(jwtOptional.get());
+        responseObserver.onNext(ExchangeTokenResponse.newBuilder()
+                .setRequestId(requestId)
+                .setDatetime(timestamp)
+                .setTicket(ticket.token())
+                .setExpiresAt(toTimestamp(ticket.expiresAt()))
+                .build());
+        responseObserver.onCompleted();
+    }
+
+    /**
+     * Validates a single raw token and describes the outcome.
+     *
+     * <p>While the peer is throttled the token is not decoded. Tokens that are malformed,
+     * badly signed or carry invalid claims take from the peer's failed-attempt budget, as in
+     * {@code JwtAuthenticationInterceptor}.</p>
+     *
+     * @param token the raw JWT token
+     * @param peer the peer key of the call carrying the token, or null if unknown
+     * @return the validation result, including subject and expiry on success
+     */
+    TokenAuthResult validateToken(String token, Object peer) {
+        if (peerFailureLimiter.isThrottled(peer)) {
+            return TokenAuthResult.newBuilder().setPayload(THROTTLED_PAYLOAD).build();
+        }
+        try {
+            var jwt = jwtDecoder.decode(token);
+            var result = TokenAuthResult.newBuilder().setPayload(SUCCESS_PAYLOAD);
+            if (jwt.getSubject() != null) {
+                result.setSubject(jwt.getSubject());
+            }
+            if (jwt.getExpiresAt() != null) {
+                result.setExpiresAt(toTimestamp(jwt.getExpiresAt()));
+            }
+            return result.build();
+        } catch (JwtException e) {
+            var outcome = JwtFailures.classify(e);
+            if (outcome == AuthOutcome.ERROR) {
+                log.error("Unable to validate token: {}", e.getMessage());
+                return TokenAuthResult.newBuilder().setPayload(UNAVAILABLE_PAYLOAD).build();
+            }
+            log.debug("Token validation failed: {}", e.getMessage());
+            if (outcome == AuthOutcome.MALFORMED || outcome == AuthOutcome.BAD_SIGNATURE
+                    || outcome == AuthOutcome.INVALID_CLAIMS) {
+                peerFailureLimiter.recordFailure(peer);
+            }
+            return TokenAuthResult.newBuilder()
+                    .setPayload(outcome == AuthOutcome.EXPIRED ? EXPIRED_PAYLOAD : INVALID_PAYLOAD)
+                    .build();
+        }
+    }
+
+    private static Timestamp toTimestamp(Instant instant) {
+        return Timestamp.newBuilder()
+                .setSeconds(instant.getEpochSecond())
+                .setNanos(instant.getNano())
+                .build();
+    }
+
+    private static AuthPayload failurePayload(String statusMessage) {
+        return AuthPayload.newBuilder()
+                .setSuccess(false)
+                .setStatusCode(Status.UNAUTHENTICATED.getCode().value())
+                .setStatusMessage(statusMessage)
+                .build();
+    }
+
+    private static String currentRequestId() {
+        var requestId = CtxConstants.REQUEST_ID_CONTEXT_KEY.get();
+        if (requestId == null) {
+            log.warn("Request ID not found in context");
+            return "unknown";
+        }
+        return requestId;
     }
 }
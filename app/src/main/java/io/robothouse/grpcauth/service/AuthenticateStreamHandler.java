@@ -0,0 +1,194 @@
+package io.robothouse.grpcauth.service;
+
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import io.robothouse.grpcauth.proto.AuthPayload;
+import io.robothouse.grpcauth.proto.AuthenticateStreamRequest;
+import io.robothouse.grpcauth.proto.AuthenticateStreamResponse;
+import io.robothouse.grpcauth.proto.TokenAuthResult;
+import lombok.extern.log4j.Log4j2;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Request observer for a single AuthenticateStream call.
+ *
+ * <p>Each token frame is validated asynchronously and its response is written as soon as it
+ * completes, so responses may arrive out of order and are matched by correlation id.
+ * Inbound flow control is manual: at most {@code maxInFlight} frames are requested ahead,
+ * and a further frame is only requested once a response has been handed to the transport,
+ * so a slow reader throttles its own sender instead of growing the pending queue.</p>
+ *
+ * <p>Writes to the response observer are not thread-safe, so every interaction with it is
+ * serialised on this handler's lock. A {@link ReentrantLock} rather than a monitor keeps
+ * virtual threads that wait on it, or write while holding it, from pinning their carrier.</p>
+ */
+@Log4j2
+final class AuthenticateStreamHandler implements StreamObserver<AuthenticateStreamRequest> {
+
+    private final ServerCallStreamObserver<AuthenticateStreamResponse> responseObserver;
+
+    private final Function<String, TokenAuthResult> validator;
+
+    private final Executor validationExecutor;
+
+    /**
+     * Guards the fields below and every call on the response observer.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Completed responses waiting for the transport to become ready.
+     */
+    private final Queue<AuthenticateStreamResponse> pending = new ArrayDeque<>();
+
+    /**
+     * Number of frames currently being validated.
+     */
+    private int inFlight;
+
+    /**
+     * Whether the client has half-closed its side of the stream.
+     */
+    private boolean halfClosed;
+
+    /**
+     * Whether the call has been completed, cancelled or failed.
+     */
+    private boolean finished;
+
+    AuthenticateStreamHandler(
+            ServerCallStreamObserver<AuthenticateStreamResponse> responseObserver,
+            Function<String, TokenAuthResult> validator,
+            Executor validationExecutor,
+            int maxInFlight) {
+        this.responseObserver = responseObserver;
+        this.validator = validator;
+        this.validationExecutor = validationExecutor;
+
+        responseObserver.disableAutoRequest();
+        responseObserver.setOnReadyHandler(this::drain);
+        responseObserver.setOnCancelHandler(this::cancel);
+        responseObserver.request(maxInFlight);
+    }
+
+    /**
+     * Starts validating a token frame on the validation executor.
+     */
+    @Override
+    public void onNext(AuthenticateStreamRequest request) {
+        lock.lock();
+        try {
+            if (finished) {
+                return;
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+
+        var correlationId = request.getCorrelationId();
+        CompletableFuture.supplyAsync(() -> validator.apply(request.getToken()), validationExecutor)
+                .whenComplete((result, error) -> {
+                    if (error != null) {
+                        log.error("Stream token validation failed unexpectedly: {}", error.getMessage());
+                        result = internalErrorResult();
+                    }
+                    complete(AuthenticateStreamResponse.newBuilder()
+                            .setCorrelationId(correlationId)
+                            .setResult(result)
+                            .build());
+                });
+    }
+
+    /**
+     * Abandons all outstanding work after the client failed the stream.
+     */
+    @Override
+    public void onError(Throwable t) {
+        log.warn("Authentication stream failed: {}", Status.fromThrowable(t));
+        cancel();
+    }
+
+    /**
+     * Completes the call once every outstanding frame has been answered.
+     */
+    @Override
+    public void onCompleted() {
+        lock.lock();
+        try {
+            halfClosed = true;
+        } finally {
+            lock.unlock();
+        }
+        drain();
+    }
+
+    private void complete(AuthenticateStreamResponse response) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (finished) {
+                return;
+            }
+            pending.add(response);
+        } finally {
+            lock.unlock();
+        }
+        drain();
+    }
+
+    /**
+     * Writes as many pending responses as the transport accepts, requesting one new frame
+     * per response written, and completes the call when nothing is left to answer.
+     */
+    private void drain() {
+        lock.lock();
+        try {
+            if (finished) {
+                return;
+            }
+
+            AuthenticateStreamResponse response;
+            while (responseObserver.isReady() && (response = pending.poll()) != null) {
+                responseObserver.onNext(response);
+                responseObserver.request(1);
+            }
+
+            if (halfClosed && inFlight == 0 && pending.isEmpty()) {
+                finished = true;
+                responseObserver.onCompleted();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void cancel() {
+        lock.lock();
+        try {
+            finished = true;
+            pending.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The result reported for a token whose validation failed with an unexpected exception.
+     */
+    static TokenAuthResult internalErrorResult() {
+        return TokenAuthResult.newBuilder()
+                .setPayload(AuthPayload.newBuilder()
+                        .setSuccess(false)
+                        .setStatusCode(Status.INTERNAL.getCode().value())
+                        .setStatusMessage("Internal error."))
+                .build();
+    }
+}
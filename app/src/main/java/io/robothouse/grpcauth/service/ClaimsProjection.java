@@ -0,0 +1,291 @@
+package io.robothouse.grpcauth.service;
+
+import com.google.protobuf.FieldMask;
+import com.google.protobuf.ListValue;
+import com.google.protobuf.NullValue;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Timestamp;
+import com.google.protobuf.Value;
+import io.robothouse.grpcauth.proto.Claims;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimNames;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * The subset of a token's claims requested through a claims field mask.
+ *
+ * <p>Mask paths name {@link Claims} fields. The path {@code custom_claims} selects every
+ * claim without a dedicated field, while {@code custom_claims.<name>} selects a single one.
+ * Only the selected claims are read from the token and set on the message.</p>
+ */
+final class ClaimsProjection {
+
+    /**
+     * A projection selecting no claims, used for requests with an empty mask.
+     */
+    static final ClaimsProjection NONE = new ClaimsProjection(EnumSet.noneOf(Field.class), false, List.of());
+
+    /**
+     * Claims that have a dedicated field and are therefore never reported as custom claims.
+     */
+    private static final Set<String> STANDARD_CLAIMS = Set.of(
+            JwtClaimNames.SUB, JwtClaimNames.ISS, JwtClaimNames.AUD, JwtClaimNames.IAT, JwtClaimNames.EXP,
+            JwtClaimNames.NBF, JwtClaimNames.JTI, "auth_time", "user_id", "email", "email_verified",
+            "phone_number", "name", "picture", "firebase");
+
+    private static final String CUSTOM_CLAIMS_PATH = "custom_claims";
+
+    private final Set<Field> fields;
+
+    private final boolean allCustomClaims;
+
+    private final List<String> customClaims;
+
+    private ClaimsProjection(Set<Field> fields, boolean allCustomClaims, List<String> customClaims) {
+        this.fields = fields;
+        this.allCustomClaims = allCustomClaims;
+        this.customClaims = customClaims;
+    }
+
+    /**
+     * Parses a claims mask.
+     *
+     * @param mask the requested claims
+     * @return the projection, or {@link #NONE} if the mask is empty
+     * @throws IllegalArgumentException if a path does not name a claims field
+     */
+    static ClaimsProjection of(FieldMask mask) {
+        if (mask.getPathsCount() == 0) {
+            return NONE;
+        }
+
+        var fields = EnumSet.noneOf(Field.class);
+        var allCustomClaims = false;
+        var customClaims = new ArrayList<String>();
+        for (var path : mask.getPathsList()) {
+            if (path.equals(CUSTOM_CLAIMS_PATH)) {
+                allCustomClaims = true;
+            } else if (path.startsWith(CUSTOM_CLAIMS_PATH + ".") && path.length() > CUSTOM_CLAIMS_PATH.length() + 1) {
+                customClaims.add(path.substring(CUSTOM_CLAIMS_PATH.length() + 1));
+            } else {
+                fields.add(Field.forPath(path));
+            }
+        }
+        return new ClaimsProjection(fields, allCustomClaims, List.copyOf(customClaims));
+    }
+
+    /**
+     * Returns whether no claims are selected.
+     */
+    boolean isEmpty() {
+        return fields.isEmpty() && !allCustomClaims && customClaims.isEmpty();
+    }
+
+    /**
+     * Builds the selected claims of the given token. Claims missing from the token are left unset.
+     *
+     * @param jwt the verified token
+     * @return the projected claims
+     */
+    Claims project(Jwt jwt) {
+        var claims = Claims.newBuilder();
+        for (var field : fields) {
+            field.copy(jwt, claims);
+        }
+        if (allCustomClaims) {
+            jwt.getClaims().forEach((name, value) -> {
+                if (!STANDARD_CLAIMS.contains(name)) {
+                    claims.putCustomClaims(name, toValue(value));
+                }
+            });
+        } else {
+            for (var name : customClaims) {
+                if (!STANDARD_CLAIMS.contains(name) && jwt.hasClaim(name)) {
+                    claims.putCustomClaims(name, toValue(jwt.getClaim(name)));
+                }
+            }
+        }
+        return claims.build();
+    }
+
+    /**
+     * Converts a JSON claim value, as parsed from the token, to a protobuf Value.
+     */
+    static Value toValue(Object value) {
+        var builder = Value.newBuilder();
+        switch (value) {
+            case null -> builder.setNullValue(NullValue.NULL_VALUE);
+            case Boolean bool -> builder.setBoolValue(bool);
+            case Number number -> builder.setNumberValue(number.doubleValue());
+            case String string -> builder.setStringValue(string);
+            case Instant instant -> builder.setNumberValue(instant.getEpochSecond());
+            case Date date -> builder.setNumberValue(date.toInstant().getEpochSecond());
+            case Collection<?> collection -> {
+                var list = ListValue.newBuilder();
+                collection.forEach(element -> list.addValues(toValue(element)));
+                builder.setListValue(list);
+            }
+            case Map<?, ?> map -> {
+                var struct = Struct.newBuilder();
+                map.forEach((key, element) -> struct.putFields(String.valueOf(key), toValue(element)));
+                builder.setStructValue(struct);
+            }
+            default -> builder.setStringValue(value.toString());
+        }
+        return builder.build();
+    }
+
+    private static Timestamp toTimestamp(Instant instant) {
+        return Timestamp.newBuilder()
+                .setSeconds(instant.getEpochSecond())
+                .setNanos(instant.getNano())
+                .build();
+    }
+
+    private static Instant claimAsInstant(Jwt jwt, String name) {
+        return switch (jwt.<Object>getClaim(name)) {
+            case Instant instant -> instant;
+            case Number seconds -> Instant.ofEpochSecond(seconds.longValue());
+            case Date date -> date.toInstant();
+            case null, default -> null;
+        };
+    }
+
+    private static String firebaseClaim(Jwt jwt, String name) {
+        var firebase = jwt.<Object>getClaim("firebase");
+        if (firebase instanceof Map<?, ?> map && map.get(name) instanceof String value) {
+            return value;
+        }
+        return null;
+    }
+
+    /**
+     * The typed claims fields that can be selected by name.
+     */
+    private enum Field {
+        SUBJECT("subject") {
+            @Override
+            void copy(Jwt jwt, Claims.Builder claims) {
+                setIfPresent(jwt.getSubject(), claims::setSubject);
+            }
+        },
+        ISSUER("issuer") {
+            @Override
+            void copy(Jwt jwt, Claims.Builder claims) {
+                setIfPresent(jwt.getClaimAsString(JwtClaimNames.ISS), claims::setIssuer);
+            }
+        },
+        AUDIENCE("audience") {
+            @Override
+            void copy(Jwt jwt, Claims.Builder claims) {
+                var audience = jwt.getAudience();
+                if (audience != null) {
+                    claims.addAllAudience(audience);
+                }
+            }
+        },
+        ISSUED_AT("issued_at") {
+            @Override
+            void copy(Jwt jwt, Claims.Builder claims) {
+                var issuedAt = claimAsInstant(jwt, JwtClaimNames.IAT);
+                if (issuedAt != null) {
+                    claims.setIssuedAt(toTimestamp(issuedAt));
+                }
+            }
+        },
+        EXPIRES_AT("expires_at") {
+            @Override
+            void copy(Jwt jwt, Claims.Builder claims) {
+                var expiresAt = claimAsInstant(jwt, JwtClaimNames.EXP);
+                if (expiresAt != null) {
+                    claims.setExpiresAt(toTimestamp(expiresAt));
+                }
+            }
+        },
+        AUTH_TIME("auth_time") {
+            @Override
+            void copy(Jwt jwt, Claims.Builder claims) {
+                var authTime = claimAsInstant(jwt, "auth_time");
+                if (authTime != null) {
+                    claims.setAuthTime(toTimestamp(authTime));
+                }
+            }
+        },
+        EMAIL("email") {
+            @Override
+            void copy(Jwt jwt, Claims.Builder claims) {
+                setIfPresent(jwt.getClaimAsString("email"), claims::setEmail);
+            }
+        },
+        EMAIL_VERIFIED("email_verified") {
+            @Override
+            void copy(Jwt jwt, Claims.Builder claims) {
+                if (jwt.<Object>getClaim("email_verified") instanceof Boolean verified) {
+                    claims.setEmailVerified(verified);
+                }
+            }
+        },
+        PHONE_NUMBER("phone_number") {
+            @Override
+            void copy(Jwt jwt, Claims.Builder claims) {
+                setIfPresent(jwt.getClaimAsString("phone_number"), claims::setPhoneNumber);
+            }
+        },
+        NAME("name") {
+            @Override
+            void copy(Jwt jwt, Claims.Builder claims) {
+                setIfPresent(jwt.getClaimAsString("name"), claims::setName);
+            }
+        },
+        PICTURE("picture") {
+            @Override
+            void copy(Jwt jwt, Claims.Builder claims) {
+                setIfPresent(jwt.getClaimAsString("picture"), claims::setPicture);
+            }
+        },
+        SIGN_IN_PROVIDER("sign_in_provider") {
+            @Override
+            void copy(Jwt jwt, Claims.Builder claims) {
+                setIfPresent(firebaseClaim(jwt, "sign_in_provider"), claims::setSignInProvider);
+            }
+        },
+        TENANT("tenant") {
+            @Override
+            void copy(Jwt jwt, Claims.Builder claims) {
+                setIfPresent(firebaseClaim(jwt, "tenant"), claims::setTenant);
+            }
+        };
+
+        private final String path;
+
+        Field(String path) {
+            this.path = path;
+        }
+
+        abstract void copy(Jwt jwt, Claims.Builder claims);
+
+        static Field forPath(String path) {
+            for (var field : values()) {
+                if (field.path.equals(path)) {
+                    return field;
+                }
+            }
+            throw new IllegalArgumentException("Unknown claims mask path: " + path);
+        }
+
+        private static void setIfPresent(String value, Consumer<String> setter) {
+            if (value != null) {
+                setter.accept(value);
+            }
+        }
+    }
+}
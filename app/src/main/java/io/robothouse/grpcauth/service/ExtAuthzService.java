@@ -0,0 +1,157 @@
+package io.robothouse.grpcauth.service;
+
+import io.envoyproxy.envoy.config.core.v3.HeaderValue;
+import io.envoyproxy.envoy.config.core.v3.HeaderValueOption;
+import io.envoyproxy.envoy.service.auth.v3.AuthorizationGrpc;
+import io.envoyproxy.envoy.service.auth.v3.CheckRequest;
+import io.envoyproxy.envoy.service.auth.v3.CheckResponse;
+import io.envoyproxy.envoy.service.auth.v3.DeniedHttpResponse;
+import io.envoyproxy.envoy.service.auth.v3.OkHttpResponse;
+import io.envoyproxy.envoy.type.v3.HttpStatus;
+import io.envoyproxy.envoy.type.v3.StatusCode;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import io.robothouse.grpcauth.lib.component.AuthMetrics;
+import io.robothouse.grpcauth.lib.jwt.AuthOutcome;
+import io.robothouse.grpcauth.lib.jwt.JwtFailures;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.grpc.server.service.GrpcService;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+/**
+ * gRPC service implementing Envoy's external authorization API
+ * ({@code envoy.service.auth.v3.Authorization/Check}).
+ *
+ * <p>Envoy's ext_authz filter sends the attributes of each HTTP request it proxies. The bearer
+ * token is taken from the request's {@code authorization} header and validated with the same
+ * decoder, and therefore the same caches, as the Authorization header of AuthService calls.</p>
+ *
+ * <p>An allowed request is forwarded upstream with the token's subject in the user id header,
+ * overwriting any value sent by the client. A missing, invalid or expired token is denied with
+ * HTTP 401. When the token cannot be validated at all, for example because the signing keys are
+ * unavailable, the Check call itself fails with UNAVAILABLE so that Envoy applies its configured
+ * failure mode.</p>
+ */
+@Log4j2
+@GrpcService
+public class ExtAuthzService extends AuthorizationGrpc.AuthorizationImplBase {
+
+    /**
+     * The HTTP header carrying the bearer token, as lower-cased by Envoy.
+     */
+    private static final String AUTHORIZATION_HEADER = "authorization";
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    /**
+     * The response denying a request that carries no bearer token.
+     */
+    private static final CheckResponse MISSING_TOKEN_RESPONSE = deniedResponse("Missing bearer token.", "invalid_request");
+
+    /**
+     * The response denying a request whose token has expired.
+     */
+    private static final CheckResponse EXPIRED_RESPONSE = deniedResponse("Token expired.", "invalid_token");
+
+    /**
+     * The response denying a request whose token failed validation for any other reason.
+     */
+    private static final CheckResponse INVALID_RESPONSE = deniedResponse("Invalid token.", "invalid_token");
+
+    private final JwtDecoder jwtDecoder;
+
+    private final AuthMetrics authMetrics;
+
+    /**
+     * The request header set to the subject of an allowed request's token.
+     */
+    private final String userIdHeader;
+
+    public ExtAuthzService(
+            JwtDecoder jwtDecoder,
+            AuthMetrics authMetrics,
+            @Value("${spring.authentication.ext_authz.user_id_header:x-user-id}") String userIdHeader) {
+        this.jwtDecoder = jwtDecoder;
+        this.authMetrics = authMetrics;
+        this.userIdHeader = userIdHeader;
+    }
+
+    /**
+     * Decides whether the HTTP request described by the CheckRequest is allowed.
+     *
+     * <p>The time spent validating the token is recorded per outcome under the same metric as
+     * AuthService calls.</p>
+     */
+    @Override
+    public void check(CheckRequest request, StreamObserver<CheckResponse> responseObserver) {
+        var startNanos = System.nanoTime();
+        var authHeader = request.getAttributes().getRequest().getHttp().getHeadersMap().get(AUTHORIZATION_HEADER);
+
+        if (authHeader == null || !authHeader.startsWith(BEARER_PREFIX)) {
+            authMetrics.recordValidation(AuthOutcome.MISSING_HEADER, System.nanoTime() - startNanos);
+            log.debug("Denying request without a bearer token");
+            responseObserver.onNext(MISSING_TOKEN_RESPONSE);
+            responseObserver.onCompleted();
+            return;
+        }
+
+        CheckResponse response;
+        try {
+            var jwt = jwtDecoder.decode(authHeader.substring(BEARER_PREFIX.length()));
+            authMetrics.recordValidation(AuthOutcome.SUCCESS, System.nanoTime() - startNanos);
+            response = allowedResponse(jwt.getSubject());
+        } catch (JwtException e) {
+            var outcome = JwtFailures.classify(e);
+            authMetrics.recordValidation(outcome, System.nanoTime() - startNanos);
+            if (outcome == AuthOutcome.ERROR) {
+                log.error("Unable to validate token: {}", e.getMessage());
+                responseObserver.onError(Status.UNAVAILABLE
+                        .withDescription("Unable to validate token")
+                        .asRuntimeException());
+                return;
+            }
+            log.debug("Denying request: {}", e.getMessage());
+            response = outcome == AuthOutcome.EXPIRED ? EXPIRED_RESPONSE : INVALID_RESPONSE;
+        }
+
+        responseObserver.onNext(response);
+        responseObserver.onCompleted();
+    }
+
+    private CheckResponse allowedResponse(String subject) {
+        var okResponse = OkHttpResponse.newBuilder();
+        if (subject != null) {
+            okResponse.addHeaders(header(userIdHeader, subject));
+        } else {
+            okResponse.addHeadersToRemove(userIdHeader);
+        }
+        return CheckResponse.newBuilder()
+                .setStatus(com.google.rpc.Status.newBuilder().setCode(Status.Code.OK.value()))
+                .setOkResponse(okResponse)
+                .build();
+    }
+
+    private static CheckResponse deniedResponse(String body, String error) {
+        return CheckResponse.newBuilder()
+                .setStatus(com.google.rpc.Status.newBuilder()
+                        .setCode(Status.Code.UNAUTHENTICATED.value())
+                        .setMessage(body))
+                .setDeniedResponse(DeniedHttpResponse.newBuilder()
+                        .setStatus(HttpStatus.newBuilder().setCode(StatusCode.Unauthorized))
+                        .addHeaders(header("www-authenticate", "Bearer error=\"" + error + "\""))
+                        .setBody(body))
+                .build();
+    }
+
+    /**
+     * Returns a header that replaces any existing value of the same name.
+     */
+    private static HeaderValueOption header(String key, String value) {
+        return HeaderValueOption.newBuilder()
+                .setHeader(HeaderValue.newBuilder().setKey(key).setValue(value))
+                .setAppendAction(HeaderValueOption.HeaderAppendAction.OVERWRITE_IF_EXISTS_OR_ADD)
+                .build();
+    }
+}
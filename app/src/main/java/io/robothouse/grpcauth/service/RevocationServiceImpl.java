@@ -0,0 +1,134 @@
+package io.robothouse.grpcauth.service;
+
+import com.google.protobuf.Timestamp;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import io.robothouse.grpcauth.lib.revocation.RevocationIndex;
+import io.robothouse.grpcauth.lib.util.CachedIsoTimestamp;
+import io.robothouse.grpcauth.lib.util.CtxConstants;
+import io.robothouse.grpcauth.proto.RevocationServiceGrpc;
+import io.robothouse.grpcauth.proto.RevokeRequest;
+import io.robothouse.grpcauth.proto.RevokeResponse;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.grpc.server.service.GrpcService;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+
+/**
+ * gRPC service that pushes revocations into the {@link RevocationIndex}.
+ *
+ * <p>Any authenticated caller may revoke its own subject, for example to sign out everywhere,
+ * and the token it calls with. Revoking anything else requires the caller's token to carry the
+ * configured admin claim set to {@code true}. Revocations take effect on the next call carrying
+ * a revoked token, including tokens already in the verified-token cache.</p>
+ */
+@Log4j2
+@GrpcService
+public class RevocationServiceImpl extends RevocationServiceGrpc.RevocationServiceImplBase {
+
+    private final RevocationIndex revocationIndex;
+
+    /**
+     * The boolean claim allowing a caller to revoke any subject or token.
+     */
+    private final String adminClaim;
+
+    /**
+     * How long a token revocation without an expiry is kept.
+     */
+    private final Duration retention;
+
+    public RevocationServiceImpl(
+            RevocationIndex revocationIndex,
+            @Value("${spring.authentication.revocation.admin_claim:revocation_admin}") String adminClaim,
+            @Value("${spring.authentication.revocation.retention:1h}") Duration retention) {
+        this.revocationIndex = revocationIndex;
+        this.adminClaim = adminClaim;
+        this.retention = retention;
+    }
+
+    /**
+     * Merges the requested revocations into the index.
+     *
+     * <p>A subject revocation without a revoked-after time revokes every token issued until
+     * now, and a token revocation without an expiry is kept for the retention period. Fails
+     * with PERMISSION_DENIED, without revoking anything, if the caller may not revoke every
+     * entry, and with INVALID_ARGUMENT if an entry has no subject or token id.</p>
+     */
+    @Override
+    public void revoke(RevokeRequest request, StreamObserver<RevokeResponse> responseObserver) {
+        var timestamp = CachedIsoTimestamp.now();
+        var requestId = CtxConstants.REQUEST_ID_CONTEXT_KEY.get();
+        var jwtOptional = CtxConstants.JWT_CONTEXT_KEY.get();
+
+        if (jwtOptional.isEmpty()) {
+            responseObserver.onError(Status.UNAUTHENTICATED
+                    .withDescription("Missing or invalid JWT token")
+                    .asRuntimeException());
+            return;
+        }
+        var caller = jwtOptional.get();
+        var admin = Boolean.TRUE.equals(caller.getClaims().get(adminClaim));
+        var now = Instant.now();
+
+        var subjects = new ArrayList<RevocationIndex.SubjectRevocation>(request.getSubjectsCount());
+        for (var revocation : request.getSubjectsList()) {
+            if (revocation.getSubject().isEmpty()) {
+                responseObserver.onError(invalidArgument("Subject revocations require a subject"));
+                return;
+            }
+            if (!admin && !revocation.getSubject().equals(caller.getSubject())) {
+                responseObserver.onError(permissionDenied());
+                return;
+            }
+            subjects.add(new RevocationIndex.SubjectRevocation(revocation.getSubject(),
+                    revocation.hasRevokedAfter() ? toInstant(revocation.getRevokedAfter()) : now));
+        }
+
+        var tokens = new ArrayList<RevocationIndex.TokenRevocation>(request.getTokensCount());
+        for (var revocation : request.getTokensList()) {
+            if (revocation.getTokenId().isEmpty()) {
+                responseObserver.onError(invalidArgument("Token revocations require a token id"));
+                return;
+            }
+            if (!admin && !revocation.getTokenId().equals(caller.getId())) {
+                responseObserver.onError(permissionDenied());
+                return;
+            }
+            tokens.add(new RevocationIndex.TokenRevocation(revocation.getTokenId(),
+                    revocation.hasExpiresAt() ? toInstant(revocation.getExpiresAt()) : now.plus(retention)));
+        }
+
+        revocationIndex.revoke(subjects, tokens);
+        log.info("Revoked {} subjects and {} tokens on behalf of {}", subjects.size(), tokens.size(), subjectOf(caller));
+        responseObserver.onNext(RevokeResponse.newBuilder()
+                .setRequestId(requestId == null ? "unknown" : requestId)
+                .setDatetime(timestamp)
+                .setRevokedSubjects(revocationIndex.revokedSubjects())
+                .setRevokedTokens(revocationIndex.revokedTokens())
+                .build());
+        responseObserver.onCompleted();
+    }
+
+    private static String subjectOf(Jwt jwt) {
+        return jwt.getSubject() == null ? "unknown subject" : jwt.getSubject();
+    }
+
+    private static Instant toInstant(Timestamp timestamp) {
+        return Instant.ofEpochSecond(timestamp.getSeconds(), timestamp.getNanos());
+    }
+
+    private static RuntimeException invalidArgument(String description) {
+        return Status.INVALID_ARGUMENT.withDescription(description).asRuntimeException();
+    }
+
+    private RuntimeException permissionDenied() {
+        return Status.PERMISSION_DENIED
+                .withDescription("Revoking other subjects or tokens requires the " + adminClaim + " claim")
+                .asRuntimeException();
+    }
+}
@@ -0,0 +1,98 @@
+package io.robothouse.grpcauth.lib.component;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import io.grpc.Status;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for AccessLogger.
+ */
+class AccessLoggerTest {
+
+    /**
+     * Appender capturing the events written to the access log.
+     */
+    private ListAppender<ILoggingEvent> appender;
+
+    private Logger accessLog;
+
+    @BeforeEach
+    void setUp() {
+        accessLog = (Logger) LoggerFactory.getLogger("io.robothouse.grpcauth.access");
+        appender = new ListAppender<>();
+        appender.start();
+        accessLog.addAppender(appender);
+    }
+
+    @AfterEach
+    void tearDown() {
+        accessLog.detachAppender(appender);
+    }
+
+    /**
+     * Tests that a successful call is logged with structured fields.
+     *
+     * <p>Given: An access logger that logs every successful call.</p>
+     * <p>When: A successful call taking 1.5 milliseconds is logged.</p>
+     * <p>Then: One INFO event carrying the request id, method, status and duration should be written.</p>
+     */
+    @Test
+    void logsSuccessfulCallWithStructuredFields() {
+        new AccessLogger(1).logCall("req-1", "AuthService/Authenticate", Status.Code.OK, 1_500_000);
+
+        assertEquals(1, appender.list.size());
+        var event = appender.list.getFirst();
+        assertEquals(Level.INFO, event.getLevel());
+        var fields = Arrays.stream(event.getArgumentArray()).map(Object::toString).toList();
+        assertEquals(
+                List.of("requestId=req-1", "method=AuthService/Authenticate", "status=OK", "durationMs=1.5"),
+                fields);
+    }
+
+    /**
+     * Tests that failed calls are logged even when successes are not.
+     *
+     * <p>Given: An access logger whose sample rate disables success logging.</p>
+     * <p>When: One successful and one failed call are logged.</p>
+     * <p>Then: Only the failed call should be written, at WARN.</p>
+     */
+    @Test
+    void alwaysLogsFailedCalls() {
+        var accessLogger = new AccessLogger(0);
+
+        accessLogger.logCall("req-1", "AuthService/Authenticate", Status.Code.OK, 1_000);
+        accessLogger.logCall("req-2", "AuthService/Authenticate", Status.Code.UNAUTHENTICATED, 1_000);
+
+        assertEquals(1, appender.list.size());
+        assertEquals(Level.WARN, appender.list.getFirst().getLevel());
+    }
+
+    /**
+     * Tests that successful calls are sampled.
+     *
+     * <p>Given: An access logger that logs one in ten successful calls.</p>
+     * <p>When: Ten thousand successful calls are logged.</p>
+     * <p>Then: Roughly a tenth of them should be written.</p>
+     */
+    @Test
+    void samplesSuccessfulCalls() {
+        var accessLogger = new AccessLogger(10);
+
+        for (var i = 0; i < 10_000; i++) {
+            accessLogger.logCall("req", "AuthService/Authenticate", Status.Code.OK, 1_000);
+        }
+
+        assertTrue(appender.list.size() > 700 && appender.list.size() < 1300, "logged " + appender.list.size());
+    }
+}
@@ -0,0 +1,63 @@
+package io.robothouse.grpcauth.lib.component;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.robothouse.grpcauth.lib.jwt.AuthOutcome;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for AuthMetrics.
+ */
+class AuthMetricsTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private AuthMetrics authMetrics;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        authMetrics = new AuthMetrics(meterRegistry);
+    }
+
+    /**
+     * Tests that a validation timer exists for every outcome before anything is recorded.
+     *
+     * <p>Given: A freshly created AuthMetrics.</p>
+     * <p>When: The registry is inspected.</p>
+     * <p>Then: One empty validation timer should be registered per outcome.</p>
+     */
+    @Test
+    void registersValidationTimerPerOutcomeUpFront() {
+        var timers = meterRegistry.get(AuthMetrics.VALIDATION_TIMER).timers();
+
+        assertEquals(AuthOutcome.values().length, timers.size());
+        timers.forEach(timer -> assertEquals(0, timer.count()));
+    }
+
+    /**
+     * Tests that a validation is recorded against the timer of its outcome.
+     *
+     * <p>Given: A freshly created AuthMetrics.</p>
+     * <p>When: A bad signature taking 2 milliseconds is recorded.</p>
+     * <p>Then: Only the bad_signature timer should contain the sample.</p>
+     */
+    @Test
+    void recordValidationUsesOutcomeTimer() {
+        authMetrics.recordValidation(AuthOutcome.BAD_SIGNATURE, TimeUnit.MILLISECONDS.toNanos(2));
+
+        var timer = meterRegistry.get(AuthMetrics.VALIDATION_TIMER)
+                .tag("outcome", "bad_signature")
+                .timer();
+        assertEquals(1, timer.count());
+        assertEquals(2.0, timer.totalTime(TimeUnit.MILLISECONDS));
+        assertEquals(0, meterRegistry.get(AuthMetrics.VALIDATION_TIMER)
+                .tag("outcome", "success")
+                .timer()
+                .count());
+    }
+}
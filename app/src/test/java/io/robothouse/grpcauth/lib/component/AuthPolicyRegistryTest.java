@@ -0,0 +1,62 @@
+package io.robothouse.grpcauth.lib.component;
+
+import io.envoyproxy.envoy.service.auth.v3.AuthorizationGrpc;
+import io.grpc.health.v1.HealthGrpc;
+import io.grpc.protobuf.services.ProtoReflectionServiceV1;
+import io.robothouse.grpcauth.proto.AuthServiceGrpc;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Unit tests for AuthPolicyRegistry.
+ */
+class AuthPolicyRegistryTest {
+
+    private final AuthPolicyRegistry registry = new AuthPolicyRegistry(List.of(
+            new AuthServiceGrpc.AuthServiceImplBase() {},
+            new HealthGrpc.HealthImplBase() {},
+            new AuthorizationGrpc.AuthorizationImplBase() {},
+            ProtoReflectionServiceV1.newInstance()));
+
+    /**
+     * Tests the policies of the registered methods.
+     *
+     * <p>Given: A registry built from the auth, health, ext_authz and reflection services.</p>
+     * <p>When: The policy of each kind of method is looked up.</p>
+     * <p>Then: Health, ext_authz and reflection should be public, batch and stream validation
+     * optional, and Authenticate and ExchangeToken required.</p>
+     */
+    @Test
+    void registeredMethodsHaveExpectedPolicies() {
+        assertEquals(AuthPolicy.PUBLIC, registry.policyFor(HealthGrpc.getCheckMethod()));
+        assertEquals(AuthPolicy.PUBLIC, registry.policyFor(HealthGrpc.getWatchMethod()));
+        assertEquals(AuthPolicy.PUBLIC, registry.policyFor(AuthorizationGrpc.getCheckMethod()));
+        assertEquals(AuthPolicy.PUBLIC, registry.policyFor(
+                io.grpc.reflection.v1.ServerReflectionGrpc.getServerReflectionInfoMethod()));
+        assertEquals(AuthPolicy.OPTIONAL, registry.policyFor(AuthServiceGrpc.getAuthenticateBatchMethod()));
+        assertEquals(AuthPolicy.OPTIONAL, registry.policyFor(AuthServiceGrpc.getAuthenticateStreamMethod()));
+        assertEquals(AuthPolicy.REQUIRED, registry.policyFor(AuthServiceGrpc.getAuthenticateMethod()));
+        assertEquals(AuthPolicy.REQUIRED, registry.policyFor(AuthServiceGrpc.getExchangeTokenMethod()));
+    }
+
+    /**
+     * Tests that methods not registered at startup are resolved from the same rules.
+     *
+     * <p>Given: A registry without the v1alpha reflection service, and an unknown method.</p>
+     * <p>When: Their policies are looked up.</p>
+     * <p>Then: Reflection should still be public and the unknown method should require authentication.</p>
+     */
+    @Test
+    void unregisteredMethodsFallBackToRules() {
+        var unknown = AuthServiceGrpc.getAuthenticateMethod().toBuilder()
+                .setFullMethodName("example.Unknown/Call")
+                .build();
+
+        assertEquals(AuthPolicy.PUBLIC, registry.policyFor(
+                io.grpc.reflection.v1alpha.ServerReflectionGrpc.getServerReflectionInfoMethod()));
+        assertEquals(AuthPolicy.REQUIRED, registry.policyFor(unknown));
+    }
+}
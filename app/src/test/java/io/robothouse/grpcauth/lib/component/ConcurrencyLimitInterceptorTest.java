@@ -0,0 +1,120 @@
+package io.robothouse.grpcauth.lib.component;
+
+import io.grpc.*;
+import io.grpc.health.v1.HealthGrpc;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.robothouse.grpcauth.proto.AuthServiceGrpc;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for ConcurrencyLimitInterceptor.
+ */
+class ConcurrencyLimitInterceptorTest {
+
+    private static final Metadata.Key<String> RETRY_PUSHBACK_KEY =
+            Metadata.Key.of("grpc-retry-pushback-ms", Metadata.ASCII_STRING_MARSHALLER);
+
+    /**
+     * Registry receiving the limit gauges and rejection counter.
+     */
+    private SimpleMeterRegistry meterRegistry;
+
+    private ConcurrencyLimitInterceptor interceptor;
+
+    /**
+     * Mock handler for the next interceptor in the chain.
+     */
+    private ServerCallHandler<Object, Object> nextHandler;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        interceptor = new ConcurrencyLimitInterceptor(true, 2, 1, 10, Duration.ofMillis(250), meterRegistry);
+        nextHandler = mock(ServerCallHandler.class);
+
+        when(nextHandler.startCall(any(), any())).thenReturn(new ServerCall.Listener<>() {});
+    }
+
+    /**
+     * Tests that calls over the limit are rejected with a retry hint.
+     *
+     * <p>Given: A limit of two with two calls in flight.</p>
+     * <p>When: A third call arrives.</p>
+     * <p>Then: It should be closed with UNAVAILABLE and a pushback trailer without reaching the
+     * next handler, and the rejection should be counted.</p>
+     */
+    @Test
+    void callOverLimitIsRejected() {
+        interceptor.interceptCall(call(AuthServiceGrpc.getAuthenticateMethod()), new Metadata(), nextHandler);
+        interceptor.interceptCall(call(AuthServiceGrpc.getAuthenticateMethod()), new Metadata(), nextHandler);
+        var rejected = call(AuthServiceGrpc.getAuthenticateMethod());
+
+        interceptor.interceptCall(rejected, new Metadata(), nextHandler);
+
+        var status = ArgumentCaptor.forClass(Status.class);
+        var trailers = ArgumentCaptor.forClass(Metadata.class);
+        verify(rejected).close(status.capture(), trailers.capture());
+        assertEquals(Status.Code.UNAVAILABLE, status.getValue().getCode());
+        assertEquals("250", trailers.getValue().get(RETRY_PUSHBACK_KEY));
+        verify(nextHandler, times(2)).startCall(any(), any());
+        assertEquals(1.0, meterRegistry.get(ConcurrencyLimitInterceptor.REJECTED_COUNTER).counter().count());
+        assertEquals(2.0, meterRegistry.get(ConcurrencyLimitInterceptor.IN_FLIGHT_GAUGE).gauge().value());
+    }
+
+    /**
+     * Tests that permits are returned when calls complete or are cancelled.
+     *
+     * <p>Given: A limit of two with two calls in flight.</p>
+     * <p>When: One call completes and the other is cancelled, each reported twice.</p>
+     * <p>Then: No calls should remain in flight.</p>
+     */
+    @Test
+    void permitsAreReleasedOnce() {
+        var completed = interceptor.interceptCall(
+                call(AuthServiceGrpc.getAuthenticateMethod()), new Metadata(), nextHandler);
+        var cancelled = interceptor.interceptCall(
+                call(AuthServiceGrpc.getAuthenticateMethod()), new Metadata(), nextHandler);
+
+        completed.onComplete();
+        completed.onComplete();
+        cancelled.onCancel();
+        cancelled.onCancel();
+
+        assertEquals(0, interceptor.limit().inFlight());
+    }
+
+    /**
+     * Tests that health checks and streaming calls are not limited.
+     *
+     * <p>Given: A limit of two with two calls in flight.</p>
+     * <p>When: A health check and a streaming call arrive.</p>
+     * <p>Then: Both should proceed without taking a permit.</p>
+     */
+    @Test
+    void healthAndStreamingCallsAreExempt() {
+        interceptor.interceptCall(call(AuthServiceGrpc.getAuthenticateMethod()), new Metadata(), nextHandler);
+        interceptor.interceptCall(call(AuthServiceGrpc.getAuthenticateMethod()), new Metadata(), nextHandler);
+
+        interceptor.interceptCall(call(HealthGrpc.getCheckMethod()), new Metadata(), nextHandler);
+        interceptor.interceptCall(call(AuthServiceGrpc.getAuthenticateStreamMethod()), new Metadata(), nextHandler);
+
+        verify(nextHandler, times(4)).startCall(any(), any());
+        assertEquals(2, interceptor.limit().inFlight());
+        assertEquals(0.0, meterRegistry.get(ConcurrencyLimitInterceptor.REJECTED_COUNTER).counter().count());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ServerCall<Object, Object> call(MethodDescriptor<?, ?> method) {
+        var call = (ServerCall<Object, Object>) mock(ServerCall.class);
+        when(call.getMethodDescriptor()).thenReturn((MethodDescriptor<Object, Object>) method);
+        return call;
+    }
+}
@@ -1,16 +1,32 @@
 package io.robothouse.grpcauth.lib.component;
 
 import io.grpc.*;
+import io.grpc.health.v1.HealthGrpc;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.robothouse.grpcauth.lib.jfr.JwtAuthenticationEvent;
+import io.robothouse.grpcauth.lib.jwt.AuthOutcome;
+import io.robothouse.grpcauth.lib.jwt.UnknownKeyJwtException;
+import io.robothouse.grpcauth.proto.AuthServiceGrpc;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.security.oauth2.jwt.BadJwtException;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.security.oauth2.jwt.JwtException;
 import org.springframework.security.oauth2.jwt.JwtValidationException;
 import org.springframework.security.oauth2.core.OAuth2Error;
 
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Collections;
+import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.*;
 
 /**
@@ -31,6 +47,11 @@ class JwtAuthenticationInterceptorTest {
 
     private JwtAuthenticationInterceptor interceptor;
 
+    /**
+     * Registry receiving the validation timers recorded by the interceptor.
+     */
+    private SimpleMeterRegistry meterRegistry;
+
     /**
      * Mock gRPC server call for interceptor testing.
      */
@@ -46,24 +67,147 @@ class JwtAuthenticationInterceptorTest {
      */
     private Metadata headers;
 
+    @TempDir
+    Path tempDir;
+
     @BeforeEach
     @SuppressWarnings("unchecked")
     void setUp() {
         jwtDecoder = mock(JwtDecoder.class);
-        interceptor = new JwtAuthenticationInterceptor(jwtDecoder);
+        meterRegistry = new SimpleMeterRegistry();
+        var authPolicyRegistry = new AuthPolicyRegistry(List.of(
+                new AuthServiceGrpc.AuthServiceImplBase() {}, new HealthGrpc.HealthImplBase() {}));
+        interceptor = new JwtAuthenticationInterceptor(
+                jwtDecoder, new AuthMetrics(meterRegistry), new PeerFailureLimiter(true, 1, 1, 100),
+                authPolicyRegistry);
         serverCall = mock(ServerCall.class);
         nextHandler = mock(ServerCallHandler.class);
         headers = new Metadata();
 
+        // Unless a test says otherwise, calls go to a method where authentication is optional.
+        when(serverCall.getMethodDescriptor()).thenReturn((MethodDescriptor) AuthServiceGrpc.getAuthenticateBatchMethod());
         when(nextHandler.startCall(any(), any())).thenReturn(new ServerCall.Listener<>() {});
     }
 
+    /**
+     * Tests that public methods bypass bearer authentication.
+     *
+     * <p>Given: A health check call without an Authorization header.</p>
+     * <p>When: The interceptor processes the call.</p>
+     * <p>Then: The call should proceed without decoding or recording a validation.</p>
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void publicMethodBypassesAuthentication() {
+        when(serverCall.getMethodDescriptor()).thenReturn((MethodDescriptor) HealthGrpc.getCheckMethod());
+
+        interceptor.interceptCall(serverCall, headers, nextHandler);
+
+        verifyNoInteractions(jwtDecoder);
+        verify(nextHandler).startCall(serverCall, headers);
+        assertEquals(0, validationCount(AuthOutcome.MISSING_HEADER));
+    }
+
+    /**
+     * Tests that a method requiring authentication fails fast without a token.
+     *
+     * <p>Given: An Authenticate call without an Authorization header.</p>
+     * <p>When: The interceptor processes the call.</p>
+     * <p>Then: The call should be closed with UNAUTHENTICATED without reaching the next handler.</p>
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void requiredMethodRejectsMissingToken() {
+        when(serverCall.getMethodDescriptor()).thenReturn((MethodDescriptor) AuthServiceGrpc.getAuthenticateMethod());
+
+        interceptor.interceptCall(serverCall, headers, nextHandler);
+
+        verify(serverCall).close(argThat(status -> status.getCode() == Status.Code.UNAUTHENTICATED), any());
+        verify(nextHandler, never()).startCall(any(), any());
+        assertEquals(1, validationCount(AuthOutcome.MISSING_HEADER));
+    }
+
+    /**
+     * Tests that the service's JFR profile records the authentication phase of a call.
+     *
+     * <p>Given: A recording using the shipped JFR profile, without the event's threshold.</p>
+     * <p>When: An Authenticate call with an expired token is intercepted.</p>
+     * <p>Then: One JWT authentication event should be recorded with the method, policy and outcome.</p>
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void jfrProfileRecordsAuthenticationEvent() throws Exception {
+        when(serverCall.getMethodDescriptor()).thenReturn((MethodDescriptor) AuthServiceGrpc.getAuthenticateMethod());
+        headers.put(AUTHORIZATION_KEY, "Bearer expired.jwt.token");
+        when(jwtDecoder.decode("expired.jwt.token")).thenThrow(new JwtValidationException("Jwt expired",
+                List.of(new OAuth2Error("invalid_token", "Jwt expired at 2025-01-01T00:00:00Z", null))));
+        var file = tempDir.resolve("auth.jfr");
+
+        try (var recording = new Recording(Configuration.create(Path.of("jfr/grpcauth.jfc")))) {
+            recording.enable(JwtAuthenticationEvent.class).withThreshold(Duration.ZERO);
+            recording.start();
+            interceptor.interceptCall(serverCall, headers, nextHandler);
+            recording.stop();
+            recording.dump(file);
+        }
+
+        var events = RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getEventType().getName().equals("io.robothouse.grpcauth.JwtAuthentication"))
+                .toList();
+        assertEquals(1, events.size());
+        assertEquals(AuthServiceGrpc.getAuthenticateMethod().getFullMethodName(), events.getFirst().getString("method"));
+        assertEquals("REQUIRED", events.getFirst().getString("policy"));
+        assertEquals("expired", events.getFirst().getString("outcome"));
+    }
+
+    /**
+     * Tests that a method requiring authentication fails fast with an invalid token.
+     *
+     * <p>Given: An Authenticate call with a badly signed token.</p>
+     * <p>When: The interceptor processes the call.</p>
+     * <p>Then: The call should be closed with UNAUTHENTICATED without reaching the next handler.</p>
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void requiredMethodRejectsInvalidToken() {
+        when(serverCall.getMethodDescriptor()).thenReturn((MethodDescriptor) AuthServiceGrpc.getAuthenticateMethod());
+        headers.put(AUTHORIZATION_KEY, "Bearer forged.jwt.token");
+        when(jwtDecoder.decode("forged.jwt.token")).thenThrow(new BadJwtException("Signed JWT rejected: Invalid signature"));
+
+        interceptor.interceptCall(serverCall, headers, nextHandler);
+
+        verify(serverCall).close(argThat(status -> status.getCode() == Status.Code.UNAUTHENTICATED), any());
+        verify(nextHandler, never()).startCall(any(), any());
+        assertEquals(1, validationCount(AuthOutcome.BAD_SIGNATURE));
+    }
+
+    /**
+     * Tests that a method requiring authentication fails retryably when the token cannot be validated.
+     *
+     * <p>Given: An Authenticate call whose token fails validation for a reason other than the token itself.</p>
+     * <p>When: The interceptor processes the call.</p>
+     * <p>Then: The call should be closed with UNAVAILABLE without reaching the next handler.</p>
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void requiredMethodFailsUnavailableWhenTokenCannotBeValidated() {
+        when(serverCall.getMethodDescriptor()).thenReturn((MethodDescriptor) AuthServiceGrpc.getAuthenticateMethod());
+        headers.put(AUTHORIZATION_KEY, "Bearer valid.jwt.token");
+        when(jwtDecoder.decode("valid.jwt.token")).thenThrow(new JwtException("Couldn't retrieve remote JWK set"));
+
+        interceptor.interceptCall(serverCall, headers, nextHandler);
+
+        verify(serverCall).close(argThat(status -> status.getCode() == Status.Code.UNAVAILABLE), any());
+        verify(nextHandler, never()).startCall(any(), any());
+        assertEquals(1, validationCount(AuthOutcome.ERROR));
+    }
+
     /**
      * Tests authentication with a valid Bearer token.
      *
      * <p>Given: A request with a valid Bearer token in the Authorization header.</p>
      * <p>When: The interceptor processes the call.</p>
-     * <p>Then: The token should be decoded and the call should proceed to the next handler.</p>
+     * <p>Then: The token should be decoded, a success recorded and the call should proceed to the next handler.</p>
      */
     @Test
     void interceptCallWithValidToken() throws Exception {
@@ -77,6 +221,7 @@ class JwtAuthenticationInterceptorTest {
 
         verify(jwtDecoder).decode(token);
         verify(nextHandler).startCall(any(), eq(headers));
+        assertEquals(1, validationCount(AuthOutcome.SUCCESS));
     }
 
     /**
@@ -84,7 +229,7 @@ class JwtAuthenticationInterceptorTest {
      *
      * <p>Given: A request with an invalid Bearer token that fails decoding.</p>
      * <p>When: The interceptor processes the call.</p>
-     * <p>Then: The token should be decoded (and fail) and the call should still proceed.</p>
+     * <p>Then: The token should be decoded (and fail) and the optional-auth call should still proceed.</p>
      */
     @Test
     void interceptCallWithInvalidToken() {
@@ -103,7 +248,7 @@ class JwtAuthenticationInterceptorTest {
      *
      * <p>Given: A request with an expired Bearer token that triggers a JwtValidationException.</p>
      * <p>When: The interceptor processes the call.</p>
-     * <p>Then: The token should be decoded (and fail) and the call should still proceed.</p>
+     * <p>Then: The token should be decoded (and fail), an expiry recorded and the optional-auth call should still proceed.</p>
      */
     @Test
     void interceptCallWithExpiredToken() {
@@ -117,6 +262,7 @@ class JwtAuthenticationInterceptorTest {
 
         verify(jwtDecoder).decode(token);
         verify(nextHandler).startCall(any(), eq(headers));
+        assertEquals(1, validationCount(AuthOutcome.EXPIRED));
     }
 
     /**
@@ -124,7 +270,7 @@ class JwtAuthenticationInterceptorTest {
      *
      * <p>Given: A request with no Authorization header.</p>
      * <p>When: The interceptor processes the call.</p>
-     * <p>Then: The decoder should not be called and the call should proceed.</p>
+     * <p>Then: The decoder should not be called, a missing header recorded and the optional-auth call should proceed.</p>
      */
     @Test
     void interceptCallWithMissingAuthHeader() {
@@ -132,6 +278,7 @@ class JwtAuthenticationInterceptorTest {
 
         verify(jwtDecoder, never()).decode(any());
         verify(nextHandler).startCall(any(), eq(headers));
+        assertEquals(1, validationCount(AuthOutcome.MISSING_HEADER));
     }
 
     /**
@@ -139,7 +286,7 @@ class JwtAuthenticationInterceptorTest {
      *
      * <p>Given: A request with a Basic auth header instead of Bearer.</p>
      * <p>When: The interceptor processes the call.</p>
-     * <p>Then: The decoder should not be called and the call should proceed.</p>
+     * <p>Then: The decoder should not be called and the optional-auth call should proceed.</p>
      */
     @Test
     void interceptCallWithMalformedAuthHeader() {
@@ -156,7 +303,7 @@ class JwtAuthenticationInterceptorTest {
      *
      * <p>Given: A request with "Bearer " but no actual token value.</p>
      * <p>When: The interceptor processes the call.</p>
-     * <p>Then: The decoder should attempt to decode the empty string and the call should proceed.</p>
+     * <p>Then: The decoder should attempt to decode the empty string and the optional-auth call should proceed.</p>
      */
     @Test
     void interceptCallWithEmptyBearerToken() {
@@ -168,4 +315,62 @@ class JwtAuthenticationInterceptorTest {
         verify(jwtDecoder).decode("");
         verify(nextHandler).startCall(any(), eq(headers));
     }
+
+    /**
+     * Tests that a peer is rejected after too many invalid tokens.
+     *
+     * <p>Given: A limiter allowing one failed attempt and a peer that has sent a badly signed token.</p>
+     * <p>When: The same peer makes another call.</p>
+     * <p>Then: The call should be closed with RESOURCE_EXHAUSTED without decoding the token.</p>
+     */
+    @Test
+    void interceptCallRejectsThrottledPeer() {
+        var token = "forged.jwt.token";
+        headers.put(AUTHORIZATION_KEY, "Bearer " + token);
+        when(serverCall.getAttributes()).thenReturn(Attributes.newBuilder()
+                .set(Grpc.TRANSPORT_ATTR_REMOTE_ADDR, new InetSocketAddress("192.0.2.10", 40000))
+                .build());
+        when(jwtDecoder.decode(token)).thenThrow(new BadJwtException("Signed JWT rejected: Invalid signature"));
+
+        interceptor.interceptCall(serverCall, headers, nextHandler);
+        interceptor.interceptCall(serverCall, headers, nextHandler);
+
+        verify(jwtDecoder, times(1)).decode(token);
+        verify(nextHandler, times(1)).startCall(any(), eq(headers));
+        verify(serverCall).close(argThat(status -> status.getCode() == Status.Code.RESOURCE_EXHAUSTED), any());
+        assertEquals(1, validationCount(AuthOutcome.BAD_SIGNATURE));
+        assertEquals(1, validationCount(AuthOutcome.THROTTLED));
+    }
+
+    /**
+     * Tests that tokens signed with an unknown key do not count against the peer.
+     *
+     * <p>Given: A limiter allowing one failed attempt and a token whose key id is not yet in the key set.</p>
+     * <p>When: The same peer sends the token twice.</p>
+     * <p>Then: Both calls should be decoded and recorded as unknown key, and the peer not throttled.</p>
+     */
+    @Test
+    void unknownKeyDoesNotThrottlePeer() {
+        var token = "rotated.jwt.token";
+        headers.put(AUTHORIZATION_KEY, "Bearer " + token);
+        when(serverCall.getAttributes()).thenReturn(Attributes.newBuilder()
+                .set(Grpc.TRANSPORT_ATTR_REMOTE_ADDR, new InetSocketAddress("192.0.2.10", 40000))
+                .build());
+        when(jwtDecoder.decode(token)).thenThrow(new UnknownKeyJwtException(
+                "Signed JWT rejected: Another algorithm expected, or no matching key(s) found"));
+
+        interceptor.interceptCall(serverCall, headers, nextHandler);
+        interceptor.interceptCall(serverCall, headers, nextHandler);
+
+        verify(jwtDecoder, times(2)).decode(token);
+        assertEquals(2, validationCount(AuthOutcome.UNKNOWN_KEY));
+        assertEquals(0, validationCount(AuthOutcome.THROTTLED));
+    }
+
+    private long validationCount(AuthOutcome outcome) {
+        return meterRegistry.get(AuthMetrics.VALIDATION_TIMER)
+                .tag("outcome", outcome.tagValue())
+                .timer()
+                .count();
+    }
 }
@@ -0,0 +1,116 @@
+package io.robothouse.grpcauth.lib.component;
+
+import io.grpc.Attributes;
+import io.grpc.Grpc;
+import io.grpc.ServerCall;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for PeerFailureLimiter.
+ */
+class PeerFailureLimiterTest {
+
+    /**
+     * Controllable nanosecond clock read by the limiter under test.
+     */
+    private final AtomicLong nanos = new AtomicLong(-TimeUnit.HOURS.toNanos(1));
+
+    private PeerFailureLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        limiter = new PeerFailureLimiter(true, 2, 3, 100, nanos::get);
+    }
+
+    /**
+     * Tests that a peer is throttled once its burst of failures is used up.
+     *
+     * <p>Given: A limiter allowing a burst of 3 failures.</p>
+     * <p>When: A peer fails 3 times.</p>
+     * <p>Then: The peer should be throttled and a further failure should not be accepted.</p>
+     */
+    @Test
+    void throttlesPeerAfterBurst() {
+        for (var i = 0; i < 3; i++) {
+            assertFalse(limiter.isThrottled("peer"));
+            assertTrue(limiter.recordFailure("peer"));
+        }
+
+        assertTrue(limiter.isThrottled("peer"));
+        assertFalse(limiter.recordFailure("peer"));
+        assertFalse(limiter.isThrottled("other"));
+    }
+
+    /**
+     * Tests that the bucket refills over time.
+     *
+     * <p>Given: A throttled peer and a refill rate of 2 failures per second.</p>
+     * <p>When: Half a second passes.</p>
+     * <p>Then: The peer should be allowed exactly one more failure.</p>
+     */
+    @Test
+    void refillsAtConfiguredRate() {
+        for (var i = 0; i < 3; i++) {
+            limiter.recordFailure("peer");
+        }
+
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+
+        assertFalse(limiter.isThrottled("peer"));
+        assertTrue(limiter.recordFailure("peer"));
+        assertTrue(limiter.isThrottled("peer"));
+    }
+
+    /**
+     * Tests that a disabled limiter never throttles.
+     *
+     * <p>Given: A disabled limiter.</p>
+     * <p>When: A peer fails many times.</p>
+     * <p>Then: The peer should never be throttled.</p>
+     */
+    @Test
+    void disabledLimiterNeverThrottles() {
+        limiter = new PeerFailureLimiter(false, 2, 3, 100, nanos::get);
+
+        for (var i = 0; i < 10; i++) {
+            assertTrue(limiter.recordFailure("peer"));
+        }
+
+        assertFalse(limiter.isThrottled("peer"));
+    }
+
+    /**
+     * Tests that TCP peers are keyed by host only.
+     *
+     * <p>Given: Two calls from the same host on different ports.</p>
+     * <p>When: Their peer keys are derived.</p>
+     * <p>Then: Both calls should map to the same key.</p>
+     */
+    @Test
+    void peerOfIgnoresRemotePort() throws Exception {
+        var host = InetAddress.getByName("192.0.2.10");
+
+        var first = limiter.peerOf(callFrom(new InetSocketAddress(host, 40000)));
+        var second = limiter.peerOf(callFrom(new InetSocketAddress(host, 40001)));
+
+        assertEquals(host, first);
+        assertEquals(first, second);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ServerCall<Object, Object> callFrom(InetSocketAddress remoteAddress) {
+        var call = (ServerCall<Object, Object>) mock(ServerCall.class);
+        when(call.getAttributes()).thenReturn(
+                Attributes.newBuilder().set(Grpc.TRANSPORT_ATTR_REMOTE_ADDR, remoteAddress).build());
+        return call;
+    }
+}
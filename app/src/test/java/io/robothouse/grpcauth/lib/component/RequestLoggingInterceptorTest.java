@@ -1,6 +1,8 @@
 package io.robothouse.grpcauth.lib.component;
 
 import io.grpc.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.robothouse.grpcauth.lib.requestid.RequestIdGenerators;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.slf4j.MDC;
@@ -15,6 +17,16 @@ class RequestLoggingInterceptorTest {
 
     private RequestLoggingInterceptor interceptor;
 
+    /**
+     * Registry receiving the call counters recorded by the interceptor.
+     */
+    private SimpleMeterRegistry meterRegistry;
+
+    /**
+     * Mock access logger receiving the completion event of each call.
+     */
+    private AccessLogger accessLogger;
+
     /**
      * Mock gRPC server call for interceptor testing.
      */
@@ -33,7 +45,10 @@ class RequestLoggingInterceptorTest {
     @BeforeEach
     @SuppressWarnings("unchecked")
     void setUp() {
-        interceptor = new RequestLoggingInterceptor();
+        meterRegistry = new SimpleMeterRegistry();
+        accessLogger = mock(AccessLogger.class);
+        interceptor = new RequestLoggingInterceptor(
+                new AuthMetrics(meterRegistry), RequestIdGenerators.randomUuid(), accessLogger);
         serverCall = mock(ServerCall.class);
         nextHandler = mock(ServerCallHandler.class);
         headers = new Metadata();
@@ -134,4 +149,62 @@ class RequestLoggingInterceptorTest {
 
         verify(nextHandler).startCall(any(), eq(headers));
     }
+
+    /**
+     * Tests that calls are counted per method.
+     *
+     * <p>Given: Two calls to the same method.</p>
+     * <p>When: The interceptor processes both calls.</p>
+     * <p>Then: The call counter for that method should be 2.</p>
+     */
+    @Test
+    void interceptCallCountsCallsByMethod() {
+        interceptor.interceptCall(serverCall, headers, nextHandler);
+        interceptor.interceptCall(serverCall, headers, nextHandler);
+
+        var count = meterRegistry.get(AuthMetrics.CALLS_COUNTER)
+                .tag("method", "TestService/TestMethod")
+                .counter()
+                .count();
+        assertEquals(2.0, count);
+    }
+
+    /**
+     * Tests that a completed call is access-logged with the status it was closed with.
+     *
+     * <p>Given: An intercepted call that the service closes with UNAUTHENTICATED.</p>
+     * <p>When: The listener's onComplete callback is invoked.</p>
+     * <p>Then: One access-log event with the request id, method and UNAUTHENTICATED should be written.</p>
+     */
+    @Test
+    void onCompleteLogsCallWithClosedStatus() {
+        when(nextHandler.startCall(any(), any())).thenAnswer(invocation -> {
+            ServerCall<Object, Object> call = invocation.getArgument(0);
+            call.close(Status.UNAUTHENTICATED, new Metadata());
+            return new ServerCall.Listener<>() {};
+        });
+
+        var listener = interceptor.interceptCall(serverCall, headers, nextHandler);
+        var requestId = MDC.get("requestId");
+        listener.onComplete();
+
+        verify(serverCall).close(eq(Status.UNAUTHENTICATED), any());
+        verify(accessLogger).logCall(eq(requestId), eq("TestService/TestMethod"), eq(Status.Code.UNAUTHENTICATED),
+                anyLong());
+    }
+
+    /**
+     * Tests that a cancelled call is access-logged as CANCELLED.
+     *
+     * <p>Given: An intercepted call that is never closed.</p>
+     * <p>When: The listener's onCancel callback is invoked.</p>
+     * <p>Then: One access-log event with status CANCELLED should be written.</p>
+     */
+    @Test
+    void onCancelLogsCallAsCancelled() {
+        var listener = interceptor.interceptCall(serverCall, headers, nextHandler);
+        listener.onCancel();
+
+        verify(accessLogger).logCall(anyString(), eq("TestService/TestMethod"), eq(Status.Code.CANCELLED), anyLong());
+    }
 }
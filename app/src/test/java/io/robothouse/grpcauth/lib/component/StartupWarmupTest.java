@@ -0,0 +1,110 @@
+package io.robothouse.grpcauth.lib.component;
+
+import com.nimbusds.jose.jwk.JWKSet;
+import io.grpc.health.v1.HealthCheckResponse;
+import io.grpc.protobuf.services.HealthStatusManager;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.robothouse.grpcauth.lib.jwt.JwkSetManager;
+import io.robothouse.grpcauth.proto.AuthServiceGrpc;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.boot.actuate.health.Status;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for StartupWarmup.
+ */
+class StartupWarmupTest {
+
+    /**
+     * Registry receiving the warm-up timer.
+     */
+    private SimpleMeterRegistry meterRegistry;
+
+    /**
+     * Mock manager of the issuer's signing keys.
+     */
+    private JwkSetManager jwkSetManager;
+
+    /**
+     * Mock gRPC health status manager.
+     */
+    private HealthStatusManager healthStatusManager;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        jwkSetManager = mock(JwkSetManager.class);
+        healthStatusManager = mock(HealthStatusManager.class);
+    }
+
+    /**
+     * Tests that the instance only reports serving once the warm-up has run.
+     *
+     * <p>Given: A warm-up of a few iterations with the signing keys already fetched.</p>
+     * <p>When: The warm-up is created and then run.</p>
+     * <p>Then: The gRPC health status should go from NOT_SERVING to SERVING, the actuator health
+     * from OUT_OF_SERVICE to UP, and the duration should be recorded as a success.</p>
+     */
+    @Test
+    void runReportsServingAfterWarmup() {
+        when(jwkSetManager.current()).thenReturn(Optional.of(
+                new JwkSetManager.KeySet(new JWKSet(), Instant.now(), Instant.now().plusSeconds(300))));
+        var warmup = warmup("nimbus");
+
+        assertEquals(Status.OUT_OF_SERVICE, warmup.health().getStatus());
+        warmup.run(new DefaultApplicationArguments());
+
+        InOrder inOrder = inOrder(healthStatusManager);
+        inOrder.verify(healthStatusManager).setStatus("", HealthCheckResponse.ServingStatus.NOT_SERVING);
+        inOrder.verify(healthStatusManager).setStatus("", HealthCheckResponse.ServingStatus.SERVING);
+        assertEquals(Status.UP, warmup.health().getStatus());
+        assertEquals(1, meterRegistry.get(StartupWarmup.WARMUP_TIMER).tag("outcome", "success").timer().count());
+        verify(jwkSetManager, never()).refresh();
+    }
+
+    /**
+     * Tests that keys that cannot be loaded do not keep the instance out of service.
+     *
+     * <p>Given: No signing keys and a key fetch that fails, with the rs256 engine.</p>
+     * <p>When: The warm-up is run.</p>
+     * <p>Then: The synthetic calls should still run, the instance should report serving and the
+     * outcome should be recorded as keys unavailable.</p>
+     */
+    @Test
+    void runServesWhenKeysUnavailable() {
+        when(jwkSetManager.current()).thenReturn(Optional.empty());
+        when(jwkSetManager.refresh()).thenReturn(CompletableFuture.failedFuture(new IllegalStateException("down")));
+        var warmup = warmup("rs256");
+
+        warmup.run(new DefaultApplicationArguments());
+
+        verify(healthStatusManager).setStatus("", HealthCheckResponse.ServingStatus.SERVING);
+        assertEquals(Status.UP, warmup.health().getStatus());
+        assertEquals(1, meterRegistry.get(StartupWarmup.WARMUP_TIMER)
+                .tag("outcome", "keys_unavailable").timer().count());
+    }
+
+    private StartupWarmup warmup(String decoderEngine) {
+        return new StartupWarmup(
+                true,
+                5,
+                decoderEngine,
+                Duration.ofSeconds(1),
+                jwkSetManager,
+                new PeerFailureLimiter(true, 5, 20, 100),
+                new AuthPolicyRegistry(List.of(new AuthServiceGrpc.AuthServiceImplBase() {})),
+                Optional.of(healthStatusManager),
+                meterRegistry);
+    }
+}
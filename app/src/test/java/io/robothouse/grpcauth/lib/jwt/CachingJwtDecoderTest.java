@@ -0,0 +1,176 @@
+package io.robothouse.grpcauth.lib.jwt;
+
+import io.robothouse.grpcauth.lib.jfr.VerifiedTokenCacheEvent;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for CachingJwtDecoder.
+ */
+class CachingJwtDecoderTest {
+
+    /**
+     * Fixed point in time used as "now" by the decoder under test.
+     */
+    private static final Instant NOW = Instant.parse("2025-01-01T00:00:00Z");
+
+    /**
+     * Mock JWT decoder performing the underlying verification.
+     */
+    private JwtDecoder delegate;
+
+    private CachingJwtDecoder decoder;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        delegate = mock(JwtDecoder.class);
+        decoder = new CachingJwtDecoder(delegate, 2, Duration.ofSeconds(30), Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    /**
+     * Tests that a repeated token is served from the cache.
+     *
+     * <p>Given: A token that decodes to a JWT expiring in one hour.</p>
+     * <p>When: The token is decoded twice.</p>
+     * <p>Then: The delegate should only be called once and both calls return the same JWT.</p>
+     */
+    @Test
+    void decodeCachesValidToken() {
+        var jwt = jwtExpiringAt(NOW.plus(Duration.ofHours(1)));
+        when(delegate.decode("token")).thenReturn(jwt);
+
+        var first = decoder.decode("token");
+        var second = decoder.decode("token");
+
+        assertSame(jwt, first);
+        assertSame(jwt, second);
+        verify(delegate, times(1)).decode("token");
+    }
+
+    /**
+     * Tests that a token expiring within the clock skew is not cached.
+     *
+     * <p>Given: A token that expires in ten seconds with a thirty second skew.</p>
+     * <p>When: The token is decoded twice.</p>
+     * <p>Then: The delegate should be called for both decodes.</p>
+     */
+    @Test
+    void decodeDoesNotCacheTokenExpiringWithinSkew() {
+        var jwt = jwtExpiringAt(NOW.plus(Duration.ofSeconds(10)));
+        when(delegate.decode("token")).thenReturn(jwt);
+
+        decoder.decode("token");
+        decoder.decode("token");
+
+        verify(delegate, times(2)).decode("token");
+    }
+
+    /**
+     * Tests that failed decodes are not cached.
+     *
+     * <p>Given: A token that the delegate rejects.</p>
+     * <p>When: The token is decoded twice.</p>
+     * <p>Then: Both decodes should fail and reach the delegate.</p>
+     */
+    @Test
+    void decodeDoesNotCacheFailures() {
+        when(delegate.decode("bad")).thenThrow(new JwtException("Invalid token"));
+
+        assertThrows(JwtException.class, () -> decoder.decode("bad"));
+        assertThrows(JwtException.class, () -> decoder.decode("bad"));
+
+        verify(delegate, times(2)).decode("bad");
+    }
+
+    /**
+     * Tests that a key rotation event clears the cache.
+     *
+     * <p>Given: A cached token.</p>
+     * <p>When: A SigningKeysRotatedEvent is received.</p>
+     * <p>Then: The next decode of the token should reach the delegate again.</p>
+     */
+    @Test
+    void signingKeyRotationClearsCache() {
+        var jwt = jwtExpiringAt(NOW.plus(Duration.ofHours(1)));
+        when(delegate.decode("token")).thenReturn(jwt);
+        decoder.decode("token");
+
+        decoder.onSigningKeysRotated(new SigningKeysRotatedEvent("https://issuer.example.com"));
+        decoder.decode("token");
+
+        verify(delegate, times(2)).decode("token");
+    }
+
+    /**
+     * Tests that the cache does not grow past its maximum size.
+     *
+     * <p>Given: A cache with a maximum size of two.</p>
+     * <p>When: Three distinct tokens are decoded.</p>
+     * <p>Then: At most two tokens should remain cached.</p>
+     */
+    @Test
+    void cacheIsBoundedBySize() {
+        var jwt = jwtExpiringAt(NOW.plus(Duration.ofHours(1)));
+        when(delegate.decode(anyString())).thenReturn(jwt);
+
+        decoder.decode("token-1");
+        decoder.decode("token-2");
+        decoder.decode("token-3");
+
+        assertTrue(decoder.size() <= 2);
+    }
+
+    /**
+     * Tests that decodes are recorded as JFR events with whether they hit the cache.
+     *
+     * <p>Given: A recording with the verified-token cache event enabled and no threshold.</p>
+     * <p>When: The same token is decoded twice.</p>
+     * <p>Then: A miss and then a hit should be recorded.</p>
+     */
+    @Test
+    void decodeRecordsCacheEvents() throws Exception {
+        var jwt = jwtExpiringAt(NOW.plus(Duration.ofHours(1)));
+        when(delegate.decode("token")).thenReturn(jwt);
+        var file = tempDir.resolve("cache.jfr");
+
+        try (var recording = new Recording()) {
+            recording.enable(VerifiedTokenCacheEvent.class).withThreshold(Duration.ZERO);
+            recording.start();
+            decoder.decode("token");
+            decoder.decode("token");
+            recording.stop();
+            recording.dump(file);
+        }
+
+        var hits = RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getEventType().getName().equals("io.robothouse.grpcauth.VerifiedTokenCache"))
+                .map(event -> event.getBoolean("hit"))
+                .toList();
+        assertEquals(List.of(false, true), hits);
+    }
+
+    private static Jwt jwtExpiringAt(Instant expiresAt) {
+        var jwt = mock(Jwt.class);
+        when(jwt.getExpiresAt()).thenReturn(expiresAt);
+        return jwt;
+    }
+}
@@ -0,0 +1,124 @@
+package io.robothouse.grpcauth.lib.jwt;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for IssuerDecoderRegistry.
+ */
+class IssuerDecoderRegistryTest {
+
+    private static final String ISSUER = "https://idp.example.com";
+
+    /**
+     * Tests that an issuer's decoder is created once, on first use, and closed with the registry.
+     *
+     * <p>Given: A registry with one issuer whose decoder owns a key set manager.</p>
+     * <p>When: The issuer's decoder is requested twice and the registry is closed.</p>
+     * <p>Then: The decoder should be created once, unknown issuers should have none, and the
+     * key set manager should be closed.</p>
+     */
+    @Test
+    void decoderForCreatesDecoderOnce() {
+        var jwtDecoder = mock(JwtDecoder.class);
+        var jwkSetManager = mock(JwkSetManager.class);
+        var creations = new AtomicInteger();
+        var registry = new IssuerDecoderRegistry(Map.of(ISSUER, () -> {
+            creations.incrementAndGet();
+            return new IssuerDecoderRegistry.IssuerDecoder(jwtDecoder, jwkSetManager);
+        }), Duration.ofSeconds(30));
+
+        assertEquals(0, creations.get());
+        assertSame(jwtDecoder, registry.decoderFor(ISSUER));
+        assertSame(jwtDecoder, registry.decoderFor(ISSUER));
+        assertNull(registry.decoderFor("https://attacker.example.com"));
+        registry.close();
+
+        assertEquals(1, creations.get());
+        verify(jwkSetManager).close();
+    }
+
+    /**
+     * Tests that concurrent first requests share a single, slow creation.
+     *
+     * <p>Given: An issuer whose decoder creation blocks until released.</p>
+     * <p>When: Eight virtual threads request the decoder while creation is blocked, and it is then released.</p>
+     * <p>Then: Every request should return the same decoder and it should be created once.</p>
+     */
+    @Test
+    void decoderForCreatesOnceForConcurrentRequests() throws Exception {
+        var jwtDecoder = mock(JwtDecoder.class);
+        var creations = new AtomicInteger();
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var registry = new IssuerDecoderRegistry(Map.of(ISSUER, () -> {
+            creations.incrementAndGet();
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new IssuerDecoderRegistry.IssuerDecoder(jwtDecoder, null);
+        }), Duration.ofSeconds(30));
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var results = new ArrayList<Future<JwtDecoder>>();
+            for (var i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> registry.decoderFor(ISSUER)));
+            }
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            release.countDown();
+
+            for (var result : results) {
+                assertSame(jwtDecoder, result.get(5, TimeUnit.SECONDS));
+            }
+        }
+        assertEquals(1, creations.get());
+    }
+
+    /**
+     * Tests that a failed creation is not retried until the retry interval has passed.
+     *
+     * <p>Given: An issuer whose decoder fails to be created the first time.</p>
+     * <p>When: The decoder is requested before and after the retry interval.</p>
+     * <p>Then: Requests within the interval should fail as errors without another attempt, and
+     * the first request after it should create the decoder.</p>
+     */
+    @Test
+    void decoderForBacksOffAfterFailure() {
+        var jwtDecoder = mock(JwtDecoder.class);
+        var attempts = new AtomicInteger();
+        var nanos = new AtomicLong();
+        var registry = new IssuerDecoderRegistry(Map.of(ISSUER, () -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IllegalStateException("Discovery unavailable");
+            }
+            return new IssuerDecoderRegistry.IssuerDecoder(jwtDecoder, null);
+        }), Duration.ofSeconds(30), nanos::get);
+
+        var first = assertThrows(JwtException.class, () -> registry.decoderFor(ISSUER));
+        nanos.addAndGet(Duration.ofSeconds(10).toNanos());
+        assertThrows(JwtException.class, () -> registry.decoderFor(ISSUER));
+        assertEquals(1, attempts.get());
+
+        nanos.addAndGet(Duration.ofSeconds(30).toNanos());
+        assertSame(jwtDecoder, registry.decoderFor(ISSUER));
+        assertEquals(2, attempts.get());
+        assertEquals(AuthOutcome.ERROR, JwtFailures.classify(first));
+    }
+}
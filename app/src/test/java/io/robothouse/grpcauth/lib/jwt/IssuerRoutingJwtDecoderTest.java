@@ -0,0 +1,139 @@
+package io.robothouse.grpcauth.lib.jwt;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for IssuerRoutingJwtDecoder.
+ */
+class IssuerRoutingJwtDecoderTest {
+
+    private static final String FIREBASE_ISSUER = "https://securetoken.google.com/project";
+
+    private static final String INTERNAL_ISSUER = "https://idp.example.com";
+
+    /**
+     * Mock decoder of the Firebase issuer.
+     */
+    private JwtDecoder firebaseDecoder;
+
+    /**
+     * Mock decoder of the internal issuer.
+     */
+    private JwtDecoder internalDecoder;
+
+    private IssuerRoutingJwtDecoder decoder;
+
+    @BeforeEach
+    void setUp() {
+        firebaseDecoder = mock(JwtDecoder.class);
+        internalDecoder = mock(JwtDecoder.class);
+        var registry = new IssuerDecoderRegistry(Map.of(
+                FIREBASE_ISSUER, () -> new IssuerDecoderRegistry.IssuerDecoder(firebaseDecoder, null),
+                INTERNAL_ISSUER, () -> new IssuerDecoderRegistry.IssuerDecoder(internalDecoder, null)),
+                Duration.ofSeconds(30));
+        decoder = new IssuerRoutingJwtDecoder(registry);
+    }
+
+    /**
+     * Tests that a token is verified by the decoder of its issuer only.
+     *
+     * <p>Given: Decoders for two issuers.</p>
+     * <p>When: A token from the internal issuer is decoded.</p>
+     * <p>Then: The internal decoder's result should be returned and the other decoder unused.</p>
+     */
+    @Test
+    void decodeRoutesToIssuerDecoder() {
+        var token = token("{\"sub\":\"user-1\",\"iss\":\"" + INTERNAL_ISSUER + "\"}");
+        var jwt = mock(Jwt.class);
+        when(internalDecoder.decode(token)).thenReturn(jwt);
+
+        assertSame(jwt, decoder.decode(token));
+        verifyNoInteractions(firebaseDecoder);
+    }
+
+    /**
+     * Tests that tokens from unknown issuers are rejected without verification.
+     *
+     * <p>Given: A token from an untrusted issuer and a token without an issuer.</p>
+     * <p>When: Each token is decoded.</p>
+     * <p>Then: Both should be rejected as invalid claims and no decoder should be called.</p>
+     */
+    @Test
+    void decodeRejectsUnknownOrMissingIssuer() {
+        var unknown = assertThrows(JwtException.class,
+                () -> decoder.decode(token("{\"iss\":\"https://attacker.example.com\"}")));
+        var missing = assertThrows(JwtException.class,
+                () -> decoder.decode(token("{\"sub\":\"user-1\"}")));
+
+        assertEquals(AuthOutcome.INVALID_CLAIMS, JwtFailures.classify(unknown));
+        assertEquals(AuthOutcome.INVALID_CLAIMS, JwtFailures.classify(missing));
+        verifyNoInteractions(firebaseDecoder, internalDecoder);
+    }
+
+    /**
+     * Tests that a token that cannot be parsed is reported as malformed.
+     *
+     * <p>Given: A token with a single part and a token whose payload is not base64url.</p>
+     * <p>When: Each token is decoded.</p>
+     * <p>Then: Both should be classified as malformed.</p>
+     */
+    @Test
+    void decodeRejectsMalformedToken() {
+        var noParts = assertThrows(JwtException.class, () -> decoder.decode("garbage"));
+        var badPayload = assertThrows(JwtException.class, () -> decoder.decode("e30.!!!.sig"));
+
+        assertEquals(AuthOutcome.MALFORMED, JwtFailures.classify(noParts));
+        assertEquals(AuthOutcome.MALFORMED, JwtFailures.classify(badPayload));
+    }
+
+    /**
+     * Tests that only the top-level iss member is read.
+     *
+     * <p>Given: Payloads with an iss key nested in an object, an iss string value and a
+     * top-level iss after them.</p>
+     * <p>When: The unverified issuer is read.</p>
+     * <p>Then: The top-level member should be returned.</p>
+     */
+    @Test
+    void unverifiedIssuerIgnoresNestedMembers() throws ParseException {
+        var token = token("{\"aud\":\"iss\",\"firebase\":{\"iss\":\"nested\",\"list\":[\"iss\",{\"iss\":1}]},"
+                + "\"iss\" : \"" + FIREBASE_ISSUER + "\"}");
+
+        assertEquals(FIREBASE_ISSUER, IssuerRoutingJwtDecoder.unverifiedIssuer(token));
+        assertNull(IssuerRoutingJwtDecoder.unverifiedIssuer(token("{\"iss\":42}")));
+    }
+
+    /**
+     * Tests that an escaped issuer is unescaped.
+     *
+     * <p>Given: A payload whose iss value escapes its slashes.</p>
+     * <p>When: The unverified issuer is read.</p>
+     * <p>Then: The unescaped issuer should be returned.</p>
+     */
+    @Test
+    void unverifiedIssuerUnescapesValue() throws ParseException {
+        var token = token("{\"iss\":\"https:\\/\\/idp.example.com\"}");
+
+        assertEquals(INTERNAL_ISSUER, IssuerRoutingJwtDecoder.unverifiedIssuer(token));
+    }
+
+    private static String token(String payload) {
+        var encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString("{\"alg\":\"RS256\"}".getBytes(StandardCharsets.UTF_8))
+                + "." + encoder.encodeToString(payload.getBytes(StandardCharsets.UTF_8))
+                + ".c2ln";
+    }
+}
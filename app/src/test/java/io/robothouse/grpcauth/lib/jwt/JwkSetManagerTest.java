@@ -0,0 +1,417 @@
+package io.robothouse.grpcauth.lib.jwt;
+
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for JwkSetManager against a local stub JWKS endpoint.
+ */
+class JwkSetManagerTest {
+
+    /**
+     * Local HTTP server standing in for the issuer's JWKS endpoint.
+     */
+    private HttpServer server;
+
+    /**
+     * The JSON body served by the stub endpoint; null makes the endpoint fail.
+     */
+    private final AtomicReference<String> jwksBody = new AtomicReference<>();
+
+    /**
+     * The Cache-Control header served by the stub endpoint.
+     */
+    private final AtomicReference<String> cacheControl = new AtomicReference<>("public, max-age=600");
+
+    /**
+     * Number of requests received by the stub endpoint.
+     */
+    private final AtomicInteger fetchCount = new AtomicInteger();
+
+    /**
+     * Artificial latency added to each stub response.
+     */
+    private volatile long responseDelayMillis;
+
+    /**
+     * Events published by the manager under test.
+     */
+    private final List<Object> events = new CopyOnWriteArrayList<>();
+
+    /**
+     * Registry receiving the fetch timers of the manager under test.
+     */
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private JwkSetManager manager;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/jwks", exchange -> {
+            fetchCount.incrementAndGet();
+            sleep(responseDelayMillis);
+            var body = jwksBody.get();
+            if (body == null) {
+                exchange.sendResponseHeaders(500, -1);
+            } else {
+                var bytes = body.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Cache-Control", cacheControl.get());
+                exchange.sendResponseHeaders(200, bytes.length);
+                exchange.getResponseBody().write(bytes);
+            }
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (manager != null) {
+            manager.close();
+        }
+        server.stop(0);
+    }
+
+    /**
+     * Tests that keys are prefetched on start and their lifetime follows Cache-Control.
+     *
+     * <p>Given: A JWKS endpoint serving one key with max-age=600.</p>
+     * <p>When: The manager is started.</p>
+     * <p>Then: The key should be available without further fetches and expire after 600 seconds.</p>
+     */
+    @Test
+    void startPrefetchesKeysWithCacheControlLifetime() throws Exception {
+        var key = generateKey("k1");
+        jwksBody.set(jwks(key));
+        manager = createManager(Duration.ofSeconds(30));
+
+        manager.start();
+        var matches = manager.get(selectorFor("k1"), null);
+
+        assertEquals(1, matches.size());
+        assertEquals(1, fetchCount.get());
+        var keySet = manager.current().orElseThrow();
+        assertEquals(Duration.ofSeconds(600), Duration.between(keySet.fetchedAt(), keySet.expiresAt()));
+    }
+
+    /**
+     * Tests that the last good key set is served while refreshes fail.
+     *
+     * <p>Given: A manager that has loaded a key and an endpoint that now fails.</p>
+     * <p>When: A refresh is attempted and a known key is requested.</p>
+     * <p>Then: The refresh should fail but the previously loaded key should still be served.</p>
+     */
+    @Test
+    void servesLastGoodKeySetWhenRefreshFails() throws Exception {
+        var key = generateKey("k1");
+        jwksBody.set(jwks(key));
+        manager = createManager(Duration.ZERO);
+        manager.start();
+
+        jwksBody.set(null);
+        assertThrows(Exception.class, () -> manager.refresh().get());
+
+        assertEquals(1, manager.get(selectorFor("k1"), null).size());
+    }
+
+    /**
+     * Tests that concurrent lookups of an unknown key id share a single fetch.
+     *
+     * <p>Given: A loaded key set and a slow endpoint that now also serves a new key.</p>
+     * <p>When: Eight threads concurrently request the new key id.</p>
+     * <p>Then: Every thread should find the key after exactly one additional fetch.</p>
+     */
+    @Test
+    void concurrentUnknownKeyLookupsAreCoalesced() throws Exception {
+        var oldKey = generateKey("k1");
+        var newKey = generateKey("k2");
+        jwksBody.set(jwks(oldKey));
+        manager = createManager(Duration.ZERO);
+        manager.start();
+
+        jwksBody.set(jwks(oldKey, newKey));
+        responseDelayMillis = 200;
+        var executor = Executors.newFixedThreadPool(8);
+        var startLatch = new CountDownLatch(1);
+        var results = new ArrayList<Future<Integer>>();
+        for (var i = 0; i < 8; i++) {
+            results.add(executor.submit(() -> {
+                startLatch.await();
+                return manager.get(selectorFor("k2"), null).size();
+            }));
+        }
+        startLatch.countDown();
+
+        for (var result : results) {
+            assertEquals(1, result.get());
+        }
+        executor.shutdown();
+        assertEquals(2, fetchCount.get());
+    }
+
+    /**
+     * Tests that unknown key ids do not trigger fetches within the minimum refresh interval.
+     *
+     * <p>Given: A freshly loaded key set and a 30 second minimum refresh interval.</p>
+     * <p>When: An unknown key id is requested.</p>
+     * <p>Then: No key should be returned and no additional fetch made.</p>
+     */
+    @Test
+    void unknownKeyLookupsAreThrottled() throws Exception {
+        jwksBody.set(jwks(generateKey("k1")));
+        manager = createManager(Duration.ofSeconds(30));
+        manager.start();
+
+        var matches = manager.get(selectorFor("unknown"), null);
+
+        assertTrue(matches.isEmpty());
+        assertEquals(1, fetchCount.get());
+    }
+
+    /**
+     * Tests that unknown key ids do not trigger fetches shortly after a failed fetch.
+     *
+     * <p>Given: A seeded key set, a 30 second minimum refresh interval and a failing endpoint.</p>
+     * <p>When: An unknown key id is requested twice.</p>
+     * <p>Then: Only the first lookup should fetch, and neither should return a key.</p>
+     */
+    @Test
+    void unknownKeyLookupsAreThrottledAfterFailedFetch(@TempDir Path tempDir) throws Exception {
+        var seedFile = tempDir.resolve("jwks.json");
+        Files.writeString(seedFile, jwks(generateKey("k1")));
+        manager = createManager(Duration.ofSeconds(30));
+        manager.seed(seedFile);
+
+        assertTrue(manager.get(selectorFor("unknown"), null).isEmpty());
+        assertTrue(manager.get(selectorFor("unknown"), null).isEmpty());
+
+        assertEquals(1, fetchCount.get());
+    }
+
+    /**
+     * Tests that lookups fail fast while no key set could be fetched.
+     *
+     * <p>Given: A 30 second minimum refresh interval and an endpoint that failed the initial fetch.</p>
+     * <p>When: A key is requested.</p>
+     * <p>Then: A KeySourceException should be thrown without another fetch.</p>
+     */
+    @Test
+    void lookupsFailFastAfterFailedInitialFetch() {
+        manager = createManager(Duration.ofSeconds(30));
+        manager.start();
+
+        assertThrows(KeySourceException.class, () -> manager.get(selectorFor("k1"), null));
+        assertEquals(1, fetchCount.get());
+    }
+
+    /**
+     * Tests that removing a key publishes a rotation event.
+     *
+     * <p>Given: A loaded key set containing key k1.</p>
+     * <p>When: A refresh returns a key set without k1.</p>
+     * <p>Then: A SigningKeysRotatedEvent should be published for the issuer.</p>
+     */
+    @Test
+    void removedKeyPublishesRotationEvent() throws Exception {
+        jwksBody.set(jwks(generateKey("k1")));
+        manager = createManager(Duration.ZERO);
+        manager.start();
+
+        jwksBody.set(jwks(generateKey("k2")));
+        manager.refresh().get();
+
+        assertEquals(List.of(new SigningKeysRotatedEvent("https://issuer.example.com")), events);
+    }
+
+    /**
+     * Tests that seeded keys are served without waiting for the endpoint.
+     *
+     * <p>Given: A seed file containing key k1 and an endpoint that is failing.</p>
+     * <p>When: The manager is seeded and started.</p>
+     * <p>Then: Key k1 should be available immediately.</p>
+     */
+    @Test
+    void seededKeysAreServedBeforeFirstFetch(@TempDir Path tempDir) throws Exception {
+        var seedFile = tempDir.resolve("jwks.json");
+        Files.writeString(seedFile, jwks(generateKey("k1")));
+        manager = createManager(Duration.ofSeconds(30));
+
+        manager.seed(seedFile);
+        manager.start();
+
+        assertEquals(1, manager.get(selectorFor("k1"), null).size());
+    }
+
+    /**
+     * Tests that a fetched key set is persisted and served by the next manager.
+     *
+     * <p>Given: A manager persisting to a snapshot file, which fetches key k1.</p>
+     * <p>When: The endpoint starts failing and a new manager restores the snapshot and starts.</p>
+     * <p>Then: The new manager should serve k1 with the original fetch time.</p>
+     */
+    @Test
+    void fetchedKeysAreRestoredFromSnapshot(@TempDir Path tempDir) throws Exception {
+        var snapshotFile = tempDir.resolve("snapshot").resolve("jwks.json");
+        jwksBody.set(jwks(generateKey("k1")));
+        manager = createManager(Duration.ofSeconds(30));
+        assertFalse(manager.restoreSnapshot(snapshotFile, Duration.ofHours(1)));
+        manager.start();
+        var fetched = manager.current().orElseThrow();
+        for (var i = 0; i < 100 && !Files.exists(snapshotFile); i++) {
+            sleep(20);
+        }
+        manager.close();
+
+        jwksBody.set(null);
+        manager = createManager(Duration.ofSeconds(30));
+        assertTrue(manager.restoreSnapshot(snapshotFile, Duration.ofHours(1)));
+        manager.start();
+
+        assertEquals(1, manager.get(selectorFor("k1"), null).size());
+        assertEquals(fetched.fetchedAt().getEpochSecond(), manager.current().orElseThrow().fetchedAt().getEpochSecond());
+        assertEquals(fetched.expiresAt().getEpochSecond(), manager.current().orElseThrow().expiresAt().getEpochSecond());
+    }
+
+    /**
+     * Tests that snapshots that are too old or of another issuer are not served.
+     *
+     * <p>Given: A snapshot fetched two days ago and a recent snapshot of another issuer.</p>
+     * <p>When: Each is restored with a maximum staleness of one day.</p>
+     * <p>Then: Neither should be restored.</p>
+     */
+    @Test
+    void staleOrForeignSnapshotIsIgnored(@TempDir Path tempDir) throws Exception {
+        var jwkSet = JWKSet.parse(jwks(generateKey("k1")));
+        var jwkSetUri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/jwks");
+        var now = Instant.now();
+        var staleFile = tempDir.resolve("stale.json");
+        new JwkSetSnapshot("https://issuer.example.com", jwkSetUri, new JwkSetManager.KeySet(
+                jwkSet, now.minus(Duration.ofDays(2)), now.minus(Duration.ofDays(2)).plusSeconds(600)))
+                .write(staleFile);
+        var foreignFile = tempDir.resolve("foreign.json");
+        new JwkSetSnapshot("https://other.example.com", jwkSetUri, new JwkSetManager.KeySet(
+                jwkSet, now, now.plusSeconds(600)))
+                .write(foreignFile);
+        manager = createManager(Duration.ofSeconds(30));
+
+        assertFalse(manager.restoreSnapshot(staleFile, Duration.ofDays(1)));
+        assertFalse(manager.restoreSnapshot(foreignFile, Duration.ofDays(1)));
+        assertTrue(manager.current().isEmpty());
+    }
+
+    /**
+     * Tests that start does not block when the initial fetch is not awaited.
+     *
+     * <p>Given: A slow endpoint and settings that do not await the initial fetch.</p>
+     * <p>When: The manager is started.</p>
+     * <p>Then: Start should return before the endpoint responds, with keys loaded later.</p>
+     */
+    @Test
+    void startDoesNotBlockWhenInitialFetchIsNotAwaited() throws Exception {
+        jwksBody.set(jwks(generateKey("k1")));
+        responseDelayMillis = 500;
+        manager = createManager(Duration.ofSeconds(30), false);
+
+        manager.start();
+
+        assertTrue(manager.current().isEmpty());
+        assertNotNull(manager.refresh().get());
+        assertEquals(1, manager.get(selectorFor("k1"), null).size());
+    }
+
+    /**
+     * Tests that fetches are timed by outcome.
+     *
+     * <p>Given: A manager that has loaded a key and an endpoint that then fails.</p>
+     * <p>When: A further refresh is attempted.</p>
+     * <p>Then: One successful and one failed fetch should be recorded for the issuer.</p>
+     */
+    @Test
+    void recordsFetchTimersByOutcome() throws Exception {
+        jwksBody.set(jwks(generateKey("k1")));
+        manager = createManager(Duration.ofSeconds(30));
+        manager.start();
+
+        jwksBody.set(null);
+        assertThrows(Exception.class, () -> manager.refresh().get());
+
+        assertEquals(1, fetchTimerCount("success"));
+        assertEquals(1, fetchTimerCount("failure"));
+    }
+
+    private long fetchTimerCount(String outcome) {
+        return meterRegistry.get(JwkSetManager.FETCH_TIMER)
+                .tag("issuer", "https://issuer.example.com")
+                .tag("outcome", outcome)
+                .timer()
+                .count();
+    }
+
+    private JwkSetManager createManager(Duration minRefreshInterval) {
+        return createManager(minRefreshInterval, true);
+    }
+
+    private JwkSetManager createManager(Duration minRefreshInterval, boolean awaitInitialFetch) {
+        return new JwkSetManager(
+                "https://issuer.example.com",
+                URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/jwks"),
+                HttpClient.newHttpClient(),
+                events::add,
+                meterRegistry,
+                new JwkSetManager.Settings(Duration.ofSeconds(5), Duration.ofMinutes(5), minRefreshInterval, awaitInitialFetch));
+    }
+
+    private static RSAKey generateKey(String keyId) throws Exception {
+        return new RSAKeyGenerator(2048).keyID(keyId).generate();
+    }
+
+    private static String jwks(RSAKey... keys) {
+        return new JWKSet(Stream.of(keys).<JWK>map(RSAKey::toPublicJWK).toList()).toString();
+    }
+
+    private static JWKSelector selectorFor(String keyId) {
+        return new JWKSelector(new JWKMatcher.Builder().keyID(keyId).build());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
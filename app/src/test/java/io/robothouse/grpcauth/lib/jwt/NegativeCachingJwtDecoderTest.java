@@ -0,0 +1,135 @@
+package io.robothouse.grpcauth.lib.jwt;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.JwtValidationException;
+
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for NegativeCachingJwtDecoder.
+ */
+class NegativeCachingJwtDecoderTest {
+
+    /**
+     * Mock JWT decoder performing the underlying verification.
+     */
+    private JwtDecoder delegate;
+
+    private NegativeCachingJwtDecoder decoder;
+
+    @BeforeEach
+    void setUp() {
+        delegate = mock(JwtDecoder.class);
+        decoder = new NegativeCachingJwtDecoder(delegate, 100, Duration.ofMinutes(1));
+    }
+
+    /**
+     * Tests that a badly signed token is rejected from the cache on replay.
+     *
+     * <p>Given: A token whose signature does not verify.</p>
+     * <p>When: The token is decoded twice.</p>
+     * <p>Then: The delegate should only be called once and both calls throw the same exception.</p>
+     */
+    @Test
+    void decodeCachesBadSignature() {
+        var failure = new BadJwtException("Signed JWT rejected: Invalid signature");
+        when(delegate.decode("token")).thenThrow(failure);
+
+        var first = assertThrows(JwtException.class, () -> decoder.decode("token"));
+        var second = assertThrows(JwtException.class, () -> decoder.decode("token"));
+
+        assertSame(failure, first);
+        assertSame(failure, second);
+        verify(delegate, times(1)).decode("token");
+        assertEquals(1, decoder.size());
+    }
+
+    /**
+     * Tests that a token signed with a key not yet in the key set is not cached.
+     *
+     * <p>Given: A token rejected because no key matches its key id, as during key rotation.</p>
+     * <p>When: The token is decoded twice.</p>
+     * <p>Then: The failure should be classified as an unknown key and the delegate called both times.</p>
+     */
+    @Test
+    void decodeDoesNotCacheUnknownKey() {
+        var failure = new UnknownKeyJwtException("An error occurred while attempting to decode the Jwt: "
+                + "Signed JWT rejected: Another algorithm expected, or no matching key(s) found");
+        when(delegate.decode("rotated")).thenThrow(failure);
+
+        assertThrows(JwtException.class, () -> decoder.decode("rotated"));
+        assertThrows(JwtException.class, () -> decoder.decode("rotated"));
+
+        assertEquals(AuthOutcome.UNKNOWN_KEY, JwtFailures.classify(failure));
+        verify(delegate, times(2)).decode("rotated");
+        assertEquals(0, decoder.size());
+    }
+
+    /**
+     * Tests that a malformed token is rejected from the cache on replay.
+     *
+     * <p>Given: A token that cannot be parsed.</p>
+     * <p>When: The token is decoded twice.</p>
+     * <p>Then: The delegate should only be called once.</p>
+     */
+    @Test
+    void decodeCachesMalformedToken() {
+        when(delegate.decode("garbage")).thenThrow(
+                new BadJwtException("Malformed token", new ParseException("Invalid serialized JWT", 0)));
+
+        assertThrows(JwtException.class, () -> decoder.decode("garbage"));
+        assertThrows(JwtException.class, () -> decoder.decode("garbage"));
+
+        verify(delegate, times(1)).decode("garbage");
+    }
+
+    /**
+     * Tests that expired tokens and key source errors are not cached.
+     *
+     * <p>Given: One expired token and one token whose keys could not be loaded.</p>
+     * <p>When: Each token is decoded twice.</p>
+     * <p>Then: The delegate should be called every time and nothing should be cached.</p>
+     */
+    @Test
+    void decodeDoesNotCacheOtherFailures() {
+        when(delegate.decode("expired")).thenThrow(new JwtValidationException(
+                "Token expired", List.of(new OAuth2Error("invalid_token", "Jwt expired at 2025-01-01", null))));
+        when(delegate.decode("unavailable")).thenThrow(new JwtException("Couldn't retrieve remote JWK set"));
+
+        for (var i = 0; i < 2; i++) {
+            assertThrows(JwtException.class, () -> decoder.decode("expired"));
+            assertThrows(JwtException.class, () -> decoder.decode("unavailable"));
+        }
+
+        verify(delegate, times(2)).decode("expired");
+        verify(delegate, times(2)).decode("unavailable");
+        assertEquals(0, decoder.size());
+    }
+
+    /**
+     * Tests that valid tokens are passed through.
+     *
+     * <p>Given: A token the delegate accepts.</p>
+     * <p>When: The token is decoded.</p>
+     * <p>Then: The delegate's JWT should be returned and nothing should be cached.</p>
+     */
+    @Test
+    void decodeReturnsValidToken() {
+        var jwt = mock(Jwt.class);
+        when(delegate.decode("valid")).thenReturn(jwt);
+
+        assertSame(jwt, decoder.decode("valid"));
+        assertEquals(0, decoder.size());
+    }
+}
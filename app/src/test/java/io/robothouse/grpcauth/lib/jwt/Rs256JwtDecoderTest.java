@@ -0,0 +1,308 @@
+package io.robothouse.grpcauth.lib.jwt;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.PlainHeader;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jose.util.Base64URL;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.PlainJWT;
+import com.nimbusds.jwt.SignedJWT;
+import io.robothouse.grpcauth.lib.jfr.JwtParseEvent;
+import io.robothouse.grpcauth.lib.jfr.JwtVerifyEvent;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for Rs256JwtDecoder, run against the same token matrix as the general-purpose decoder.
+ */
+class Rs256JwtDecoderTest {
+
+    private static final String ISSUER = "https://securetoken.google.com/test-project";
+
+    private static final String KEY_ID = "test-key";
+
+    private static RSAKey signingKey;
+
+    /**
+     * A different key published under the same key id, used to produce bad signatures.
+     */
+    private static RSAKey impostorKey;
+
+    private static RSAKey unknownKey;
+
+    private static JWKSet jwkSet;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeAll
+    static void generateKeys() throws JOSEException {
+        signingKey = new RSAKeyGenerator(2048).keyID(KEY_ID).generate();
+        impostorKey = new RSAKeyGenerator(2048).keyID(KEY_ID).generate();
+        unknownKey = new RSAKeyGenerator(2048).keyID("unknown-key").generate();
+        jwkSet = new JWKSet(signingKey.toPublicJWK());
+    }
+
+    /**
+     * Returns both decoder engines trusting the test signing key.
+     */
+    static Stream<Arguments> engines() {
+        var metadata = new IssuerMetadata(ISSUER, URI.create("http://localhost/jwks"), Set.of(JWSAlgorithm.RS256));
+        return Stream.of(
+                Arguments.of("nimbus", IssuerJwtDecoders.create(metadata, new ImmutableJWKSet<>(jwkSet))),
+                Arguments.of("rs256", new Rs256JwtDecoder(ISSUER, () -> jwkSet, new ImmutableJWKSet<>(jwkSet))));
+    }
+
+    /**
+     * Returns every combination of decoder engine and test token, with the expected outcome.
+     */
+    static Stream<Arguments> matrix() {
+        var now = Instant.now();
+        Map<String, Function<Instant, String>> tokens = Map.ofEntries(
+                Map.entry("valid", at -> sign(signingKey, claims(at).build())),
+                Map.entry("expired_within_skew", at -> sign(signingKey,
+                        claims(at.minus(Duration.ofHours(1))).expirationTime(Date.from(at.minusSeconds(30))).build())),
+                Map.entry("expired", at -> sign(signingKey,
+                        claims(at.minus(Duration.ofHours(2))).build())),
+                Map.entry("not_yet_valid", at -> sign(signingKey,
+                        claims(at).notBeforeTime(Date.from(at.plus(Duration.ofHours(1)))).build())),
+                Map.entry("expires_before_issued", at -> sign(signingKey,
+                        claims(at).expirationTime(Date.from(at.minusSeconds(1))).build())),
+                Map.entry("wrong_issuer", at -> sign(signingKey,
+                        claims(at).issuer("https://securetoken.google.com/other-project").build())),
+                Map.entry("bad_signature", at -> sign(impostorKey, claims(at).build())),
+                Map.entry("tampered_payload", at -> tamper(sign(signingKey, claims(at).build()))),
+                Map.entry("unknown_kid", at -> sign(unknownKey, claims(at).build())),
+                Map.entry("hs256", at -> signHs256(claims(at).build())),
+                Map.entry("unsecured", at -> new PlainJWT(new PlainHeader(), claims(at).build()).serialize()),
+                Map.entry("missing_part", at -> "not-a.valid-jwt"),
+                Map.entry("header_not_json", at -> Base64URL.encode("not json") + ".e30.c2ln"));
+        Map<String, AuthOutcome> expected = Map.ofEntries(
+                Map.entry("valid", AuthOutcome.SUCCESS),
+                Map.entry("expired_within_skew", AuthOutcome.SUCCESS),
+                Map.entry("expired", AuthOutcome.EXPIRED),
+                Map.entry("not_yet_valid", AuthOutcome.INVALID_CLAIMS),
+                Map.entry("expires_before_issued", AuthOutcome.BAD_SIGNATURE),
+                Map.entry("wrong_issuer", AuthOutcome.INVALID_CLAIMS),
+                Map.entry("bad_signature", AuthOutcome.BAD_SIGNATURE),
+                Map.entry("tampered_payload", AuthOutcome.BAD_SIGNATURE),
+                Map.entry("unknown_kid", AuthOutcome.UNKNOWN_KEY),
+                Map.entry("hs256", AuthOutcome.BAD_SIGNATURE),
+                Map.entry("unsecured", AuthOutcome.BAD_SIGNATURE),
+                Map.entry("missing_part", AuthOutcome.MALFORMED),
+                Map.entry("header_not_json", AuthOutcome.MALFORMED));
+
+        return engines().flatMap(engine -> tokens.keySet().stream().sorted().map(kind -> Arguments.of(
+                engine.get()[0], engine.get()[1], kind, tokens.get(kind).apply(now), expected.get(kind))));
+    }
+
+    /**
+     * Tests that each engine accepts and rejects the same tokens for the same reasons.
+     *
+     * <p>Given: A decoder engine and a token from the test matrix.</p>
+     * <p>When: The token is decoded.</p>
+     * <p>Then: The outcome, as classified for metrics, should match the expected outcome.</p>
+     */
+    @ParameterizedTest(name = "{0} {2}")
+    @MethodSource("matrix")
+    void decodeMatchesExpectedOutcome(String engine, JwtDecoder decoder, String kind, String token,
+                                      AuthOutcome expected) {
+        if (expected == AuthOutcome.SUCCESS) {
+            var jwt = decoder.decode(token);
+            assertEquals("test-user", jwt.getSubject());
+        } else {
+            var e = assertThrows(JwtException.class, () -> decoder.decode(token));
+            assertEquals(expected, JwtFailures.classify(e));
+        }
+    }
+
+    /**
+     * Tests that both engines produce identical tokens.
+     *
+     * <p>Given: A valid token carrying standard, Firebase and custom claims.</p>
+     * <p>When: The token is decoded by each engine.</p>
+     * <p>Then: The headers, claims and timestamps of the results should be equal.</p>
+     */
+    @Test
+    void decodeProducesSameJwtAsNimbus() {
+        var token = sign(signingKey, claims(Instant.now())
+                .claim("email_verified", true)
+                .claim("firebase", Map.of("sign_in_provider", "password", "identities", Map.of()))
+                .claim("role", "admin")
+                .claim("level", 3)
+                .build());
+        var decoders = engines().map(arguments -> (JwtDecoder) arguments.get()[1]).toList();
+
+        var nimbus = decoders.get(0).decode(token);
+        var rs256 = decoders.get(1).decode(token);
+
+        assertEquals(nimbus.getHeaders(), rs256.getHeaders());
+        assertEquals(nimbus.getClaims(), rs256.getClaims());
+        assertEquals(nimbus.getIssuedAt(), rs256.getIssuedAt());
+        assertEquals(nimbus.getExpiresAt(), rs256.getExpiresAt());
+    }
+
+    /**
+     * Tests that a token signed with a new key is accepted once the key source has refreshed.
+     *
+     * <p>Given: A decoder whose current key set lacks the token's key id, and a key source that
+     * publishes the new key set when asked for it.</p>
+     * <p>When: The token is decoded.</p>
+     * <p>Then: The key source should be consulted once and the token accepted.</p>
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void decodeRefreshesKeysForUnknownKeyId() throws KeySourceException {
+        var current = new AtomicReference<>(jwkSet);
+        var rotated = new JWKSet(List.of(signingKey.toPublicJWK(), unknownKey.toPublicJWK()));
+        JWKSource<SecurityContext> keySource = mock(JWKSource.class);
+        when(keySource.get(any(JWKSelector.class), any())).thenAnswer(invocation -> {
+            current.set(rotated);
+            return ((JWKSelector) invocation.getArgument(0)).select(rotated);
+        });
+        var decoder = new Rs256JwtDecoder(ISSUER, current::get, keySource);
+        decoder.decode(sign(signingKey, claims(Instant.now()).build()));
+
+        var jwt = decoder.decode(sign(unknownKey, claims(Instant.now()).build()));
+
+        assertEquals("test-user", jwt.getSubject());
+        verify(keySource, times(1)).get(any(JWKSelector.class), any());
+    }
+
+    /**
+     * Tests that a key source failure is reported as an error rather than a bad token.
+     *
+     * <p>Given: A decoder with no keys yet and a key source that cannot fetch them.</p>
+     * <p>When: A token is decoded.</p>
+     * <p>Then: The failure should be classified as an error.</p>
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void decodeReportsKeySourceFailureAsError() throws KeySourceException {
+        JWKSource<SecurityContext> keySource = mock(JWKSource.class);
+        when(keySource.get(any(JWKSelector.class), any())).thenThrow(new KeySourceException("Unreachable"));
+        var decoder = new Rs256JwtDecoder(ISSUER, () -> null, keySource);
+        var token = sign(signingKey, claims(Instant.now()).build());
+
+        var e = assertThrows(JwtException.class, () -> decoder.decode(token));
+
+        assertEquals(AuthOutcome.ERROR, JwtFailures.classify(e));
+    }
+
+    /**
+     * Tests that parsing and verification are recorded as JFR events.
+     *
+     * <p>Given: A recording with the parse and verify events enabled and no threshold.</p>
+     * <p>When: A valid token and a token with an unknown key id are decoded.</p>
+     * <p>Then: Both tokens should be recorded as parsed, and their verifications as a success
+     * and an unknown key, with their key ids.</p>
+     */
+    @Test
+    void decodeRecordsParseAndVerifyEvents() throws Exception {
+        var decoder = new Rs256JwtDecoder(ISSUER, () -> jwkSet, new ImmutableJWKSet<>(jwkSet));
+        var file = tempDir.resolve("decode.jfr");
+
+        try (var recording = new Recording()) {
+            recording.enable(JwtParseEvent.class).withThreshold(Duration.ZERO);
+            recording.enable(JwtVerifyEvent.class).withThreshold(Duration.ZERO);
+            recording.start();
+            decoder.decode(sign(signingKey, claims(Instant.now()).build()));
+            assertThrows(JwtException.class, () -> decoder.decode(sign(unknownKey, claims(Instant.now()).build())));
+            recording.stop();
+            recording.dump(file);
+        }
+
+        var events = RecordingFile.readAllEvents(file);
+        var parses = events.stream()
+                .filter(event -> event.getEventType().getName().equals("io.robothouse.grpcauth.JwtParse"))
+                .map(event -> event.getString("outcome"))
+                .toList();
+        var verifications = events.stream()
+                .filter(event -> event.getEventType().getName().equals("io.robothouse.grpcauth.JwtVerify"))
+                .map(event -> event.getString("keyId") + "=" + event.getString("outcome"))
+                .toList();
+        assertEquals(List.of("success", "success"), parses);
+        assertEquals(List.of("test-key=success", "unknown-key=unknown_key"), verifications);
+    }
+
+    private static JWTClaimsSet.Builder claims(Instant issuedAt) {
+        return new JWTClaimsSet.Builder()
+                .issuer(ISSUER)
+                .audience("test-project")
+                .subject("test-user")
+                .issueTime(Date.from(issuedAt))
+                .expirationTime(Date.from(issuedAt.plus(Duration.ofHours(1))))
+                .claim("auth_time", issuedAt.getEpochSecond())
+                .claim("email", "user@example.com");
+    }
+
+    private static String sign(RSAKey key, JWTClaimsSet claims) {
+        var header = new JWSHeader.Builder(JWSAlgorithm.RS256)
+                .keyID(key.getKeyID())
+                .type(JOSEObjectType.JWT)
+                .build();
+        try {
+            var jwt = new SignedJWT(header, claims);
+            jwt.sign(new RSASSASigner(key));
+            return jwt.serialize();
+        } catch (JOSEException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String signHs256(JWTClaimsSet claims) {
+        var header = new JWSHeader.Builder(JWSAlgorithm.HS256).keyID(KEY_ID).build();
+        try {
+            var jwt = new SignedJWT(header, claims);
+            jwt.sign(new MACSigner(new byte[32]));
+            return jwt.serialize();
+        } catch (JOSEException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Replaces the payload of a signed token while keeping its original signature.
+     */
+    private static String tamper(String token) {
+        var parts = token.split("\\.");
+        var payload = Base64URL.encode(new Base64URL(parts[1]).decodeToString().replace("test-user", "root-user"));
+        return parts[0] + "." + payload + "." + parts[2];
+    }
+}
@@ -0,0 +1,211 @@
+package io.robothouse.grpcauth.lib.jwt;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for SingleFlightJwtDecoder.
+ */
+class SingleFlightJwtDecoderTest {
+
+    /**
+     * Mock JWT decoder performing the underlying verification.
+     */
+    private JwtDecoder delegate;
+
+    private SingleFlightJwtDecoder decoder;
+
+    private ExecutorService executor;
+
+    /**
+     * Released by the test to let the delegate's decode finish.
+     */
+    private CountDownLatch release;
+
+    /**
+     * Counted down once the delegate's decode has started.
+     */
+    private CountDownLatch started;
+
+    @BeforeEach
+    void setUp() {
+        delegate = mock(JwtDecoder.class);
+        decoder = new SingleFlightJwtDecoder(delegate);
+        executor = Executors.newFixedThreadPool(4);
+        release = new CountDownLatch(1);
+        started = new CountDownLatch(1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Tests that concurrent decodes of the same token share one delegate call.
+     *
+     * <p>Given: A delegate decode of a token that is still in flight.</p>
+     * <p>When: Three more callers decode the same token before it finishes.</p>
+     * <p>Then: The delegate should be called once, every caller receives the same JWT and no
+     * entry remains in flight.</p>
+     */
+    @Test
+    void concurrentDecodesShareResult() throws Exception {
+        var jwt = jwt();
+        when(delegate.decode("token")).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return jwt;
+        });
+
+        var leader = executor.submit(() -> decoder.decode("token"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        var waiters = IntStream.range(0, 3)
+                .mapToObj(i -> executor.submit(() -> decoder.decode("token")))
+                .toList();
+        awaitWaiting(waiters.size());
+        release.countDown();
+
+        assertSame(jwt, leader.get(5, TimeUnit.SECONDS));
+        for (var waiter : waiters) {
+            assertSame(jwt, waiter.get(5, TimeUnit.SECONDS));
+        }
+        verify(delegate, times(1)).decode("token");
+        assertEquals(0, decoder.inFlightCount());
+    }
+
+    /**
+     * Tests that a failed decode is shared with concurrent callers.
+     *
+     * <p>Given: A delegate decode of a token that is still in flight and will fail.</p>
+     * <p>When: Another caller decodes the same token before it finishes.</p>
+     * <p>Then: Both callers should receive the same exception and no entry remains in flight.</p>
+     */
+    @Test
+    void concurrentDecodesShareFailure() throws Exception {
+        var failure = new BadJwtException("Signed JWT rejected: Invalid signature");
+        when(delegate.decode("token")).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            throw failure;
+        });
+
+        var leader = executor.submit(() -> decoder.decode("token"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        var waiter = executor.submit(() -> decoder.decode("token"));
+        awaitWaiting(1);
+        release.countDown();
+
+        var leaderFailure = assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS));
+        var waiterFailure = assertThrows(ExecutionException.class, () -> waiter.get(5, TimeUnit.SECONDS));
+        assertSame(failure, leaderFailure.getCause());
+        assertSame(failure, waiterFailure.getCause());
+        verify(delegate, times(1)).decode("token");
+        assertEquals(0, decoder.inFlightCount());
+    }
+
+    /**
+     * Tests that outcomes are not remembered once the decode has finished.
+     *
+     * <p>Given: A token whose decode failed.</p>
+     * <p>When: The token is decoded again afterwards.</p>
+     * <p>Then: The delegate should be called again.</p>
+     */
+    @Test
+    void sequentialDecodesAreNotCoalesced() {
+        when(delegate.decode("token")).thenThrow(new JwtException("Key source unavailable")).thenReturn(jwt());
+
+        assertThrows(JwtException.class, () -> decoder.decode("token"));
+        assertNotNull(decoder.decode("token"));
+
+        verify(delegate, times(2)).decode("token");
+        assertEquals(0, decoder.inFlightCount());
+    }
+
+    /**
+     * Tests that an interrupted waiter gives up without affecting the decode in flight.
+     *
+     * <p>Given: A delegate decode of a token that is still in flight, and a caller waiting on it.</p>
+     * <p>When: The waiting caller's thread is interrupted.</p>
+     * <p>Then: The waiter should fail with a JwtException while the leader still completes and
+     * removes its entry.</p>
+     */
+    @Test
+    void interruptedWaiterDoesNotLeakEntry() throws Exception {
+        var jwt = jwt();
+        when(delegate.decode("token")).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return jwt;
+        });
+
+        var leader = executor.submit(() -> decoder.decode("token"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        var waiterFailure = new AtomicReference<Throwable>();
+        var waiter = Thread.ofPlatform().start(() -> {
+            try {
+                decoder.decode("token");
+            } catch (Throwable e) {
+                waiterFailure.set(e);
+            }
+        });
+        awaitWaiting(1);
+        waiter.interrupt();
+        waiter.join(5_000);
+        release.countDown();
+
+        assertInstanceOf(JwtException.class, waiterFailure.get());
+        assertSame(jwt, leader.get(5, TimeUnit.SECONDS));
+        verify(delegate, times(1)).decode("token");
+        assertEquals(0, decoder.inFlightCount());
+    }
+
+    /**
+     * Waits until the given number of callers are blocked on an in-flight decode.
+     */
+    private static void awaitWaiting(int callers) throws InterruptedException {
+        var deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (System.nanoTime() < deadline) {
+            var allWaiting = Thread.getAllStackTraces().keySet().stream()
+                    .filter(thread -> thread.getState() == Thread.State.WAITING)
+                    .filter(thread -> Arrays.stream(thread.getStackTrace())
+                            .anyMatch(frame -> frame.getClassName().equals(SingleFlightJwtDecoder.class.getName())
+                                    && frame.getMethodName().equals("await")))
+                    .count() >= callers;
+            if (allWaiting) {
+                return;
+            }
+            Thread.sleep(5);
+        }
+        fail("Callers did not start waiting on the in-flight decode");
+    }
+
+    private static Jwt jwt() {
+        var now = Instant.now();
+        return Jwt.withTokenValue("token")
+                .header("alg", "RS256")
+                .subject("user")
+                .issuedAt(now)
+                .expiresAt(now.plus(Duration.ofHours(1)))
+                .build();
+    }
+}
@@ -0,0 +1,81 @@
+package io.robothouse.grpcauth.lib.requestid;
+
+import io.grpc.Metadata;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for HeaderRequestIdGenerator.
+ */
+class HeaderRequestIdGeneratorTest {
+
+    private HeaderRequestIdGenerator generator;
+
+    private Metadata headers;
+
+    @BeforeEach
+    void setUp() {
+        generator = new HeaderRequestIdGenerator(metadata -> "generated");
+        headers = new Metadata();
+    }
+
+    /**
+     * Tests that a well-formed incoming id is reused.
+     *
+     * <p>Given: A call carrying an x-request-id header.</p>
+     * <p>When: A request id is generated.</p>
+     * <p>Then: The incoming id should be returned unchanged.</p>
+     */
+    @Test
+    void reusesIncomingRequestId() {
+        headers.put(HeaderRequestIdGenerator.REQUEST_ID_METADATA_KEY, "edge-7f3a:01J9.abc_def");
+
+        assertEquals("edge-7f3a:01J9.abc_def", generator.generate(headers));
+    }
+
+    /**
+     * Tests that the fallback is used when no header is present.
+     *
+     * <p>Given: A call without an x-request-id header.</p>
+     * <p>When: A request id is generated.</p>
+     * <p>Then: The fallback generator's id should be returned.</p>
+     */
+    @Test
+    void fallsBackWhenHeaderMissing() {
+        assertEquals("generated", generator.generate(headers));
+    }
+
+    /**
+     * Tests that malformed incoming ids are replaced.
+     *
+     * <p>Given: A call whose x-request-id is empty, contains disallowed characters or is too long.</p>
+     * <p>When: A request id is generated.</p>
+     * <p>Then: The fallback generator's id should be returned.</p>
+     */
+    @ParameterizedTest
+    @ValueSource(strings = {"", "id with spaces", "id\"}{\"", "a/b"})
+    void fallsBackWhenHeaderMalformed(String incoming) {
+        headers.put(HeaderRequestIdGenerator.REQUEST_ID_METADATA_KEY, incoming);
+
+        assertEquals("generated", generator.generate(headers));
+    }
+
+    /**
+     * Tests that overly long incoming ids are replaced.
+     *
+     * <p>Given: A call whose x-request-id exceeds the maximum length.</p>
+     * <p>When: A request id is generated.</p>
+     * <p>Then: The fallback generator's id should be returned.</p>
+     */
+    @Test
+    void fallsBackWhenHeaderTooLong() {
+        headers.put(HeaderRequestIdGenerator.REQUEST_ID_METADATA_KEY,
+                "a".repeat(HeaderRequestIdGenerator.MAX_LENGTH + 1));
+
+        assertEquals("generated", generator.generate(headers));
+    }
+}
@@ -0,0 +1,67 @@
+package io.robothouse.grpcauth.lib.requestid;
+
+import io.grpc.Metadata;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.HashSet;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the built-in request id strategies.
+ */
+class RequestIdGeneratorsTest {
+
+    static Stream<Arguments> strategies() {
+        return Stream.of(
+                Arguments.of(RequestIdGenerators.randomUuid(), 4),
+                Arguments.of(RequestIdGenerators.threadLocalRandom(), 4),
+                Arguments.of(RequestIdGenerators.uuidV7(), 7));
+    }
+
+    /**
+     * Tests that every strategy produces distinct canonical UUIDs of the expected version.
+     *
+     * <p>Given: A request id strategy.</p>
+     * <p>When: A thousand ids are generated.</p>
+     * <p>Then: All ids should be distinct UUIDs with the strategy's version and the IETF variant.</p>
+     */
+    @ParameterizedTest
+    @MethodSource("strategies")
+    void generatesDistinctCanonicalUuids(RequestIdGenerator generator, int version) {
+        var ids = new HashSet<String>();
+
+        for (var i = 0; i < 1000; i++) {
+            var id = generator.generate(new Metadata());
+            var uuid = UUID.fromString(id);
+            assertTrue(id.matches("[a-f0-9-]{36}"));
+            assertEquals(version, uuid.version());
+            assertEquals(2, uuid.variant());
+            ids.add(id);
+        }
+
+        assertEquals(1000, ids.size());
+    }
+
+    /**
+     * Tests that version 7 ids carry the generation time.
+     *
+     * <p>Given: The uuid_v7 strategy.</p>
+     * <p>When: An id is generated.</p>
+     * <p>Then: Its leading 48 bits should hold the current Unix time in milliseconds.</p>
+     */
+    @Test
+    void uuidV7EmbedsCurrentTime() {
+        var before = System.currentTimeMillis();
+        var uuid = UUID.fromString(RequestIdGenerators.uuidV7().generate(new Metadata()));
+        var after = System.currentTimeMillis();
+
+        var timestamp = uuid.getMostSignificantBits() >>> 16;
+        assertTrue(timestamp >= before && timestamp <= after);
+    }
+}
@@ -0,0 +1,48 @@
+package io.robothouse.grpcauth.lib.revocation;
+
+import io.robothouse.grpcauth.lib.jwt.AuthOutcome;
+import io.robothouse.grpcauth.lib.jwt.JwtFailures;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for RevocationCheckingJwtDecoder.
+ */
+class RevocationCheckingJwtDecoderTest {
+
+    /**
+     * Tests that revoked tokens are rejected and classified as revoked.
+     *
+     * <p>Given: A delegate that decodes two tokens, one of which has a revoked token id.</p>
+     * <p>When: Both tokens are decoded.</p>
+     * <p>Then: The revoked token should fail with RevokedJwtException, classified as REVOKED, and the other should be returned.</p>
+     */
+    @Test
+    void revokedTokensAreRejected() {
+        var delegate = mock(JwtDecoder.class);
+        var expiresAt = Instant.now().plusSeconds(600);
+        when(delegate.decode("revoked")).thenReturn(jwt("jti-1"));
+        when(delegate.decode("valid")).thenReturn(jwt("jti-2"));
+        var index = new RevocationIndex(Duration.ofHours(1), null, Duration.ofSeconds(30));
+        index.revoke(List.of(), List.of(new RevocationIndex.TokenRevocation("jti-1", expiresAt)));
+        var decoder = new RevocationCheckingJwtDecoder(delegate, index);
+
+        var e = assertThrows(RevokedJwtException.class, () -> decoder.decode("revoked"));
+
+        assertEquals(AuthOutcome.REVOKED, JwtFailures.classify(e));
+        assertEquals("jti-2", decoder.decode("valid").getId());
+    }
+
+    private static Jwt jwt(String tokenId) {
+        return Jwt.withTokenValue("token").header("alg", "RS256").subject("user-1").jti(tokenId).build();
+    }
+}
@@ -0,0 +1,142 @@
+package io.robothouse.grpcauth.lib.revocation;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for RevocationIndex.
+ */
+class RevocationIndexTest {
+
+    private static final Instant NOW = Instant.parse("2025-06-01T12:00:00Z");
+
+    private static final Clock CLOCK = Clock.fixed(NOW, ZoneOffset.UTC);
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Tests that a subject revocation covers tokens issued up to its revoked-after time.
+     *
+     * <p>Given: An index in which a subject is revoked after a point in time.</p>
+     * <p>When: Tokens of that subject issued before, at and after that time, and without an iat, are checked.</p>
+     * <p>Then: Only the token issued after the revoked-after time should be accepted, along with tokens of other subjects.</p>
+     */
+    @Test
+    void subjectRevocationCoversTokensIssuedUntilRevokedAfter() {
+        var index = new RevocationIndex(Duration.ofHours(1), null, Duration.ofSeconds(30), CLOCK);
+        var revokedAfter = NOW.minusSeconds(60);
+
+        index.revoke(List.of(new RevocationIndex.SubjectRevocation("user-1", revokedAfter)), List.of());
+
+        assertTrue(index.isRevoked(jwt("user-1", revokedAfter.minusSeconds(1), null)));
+        assertTrue(index.isRevoked(jwt("user-1", revokedAfter, null)));
+        assertTrue(index.isRevoked(jwt("user-1", null, null)));
+        assertFalse(index.isRevoked(jwt("user-1", revokedAfter.plusSeconds(1), null)));
+        assertFalse(index.isRevoked(jwt("user-2", revokedAfter.minusSeconds(1), null)));
+        assertEquals(1, index.revokedSubjects());
+    }
+
+    /**
+     * Tests that a token revocation matches only the token with that id.
+     *
+     * <p>Given: An index in which a token id is revoked.</p>
+     * <p>When: Tokens with that id, another id and no id are checked.</p>
+     * <p>Then: Only the token with the revoked id should be reported as revoked.</p>
+     */
+    @Test
+    void tokenRevocationMatchesTokenId() {
+        var index = new RevocationIndex(Duration.ofHours(1), null, Duration.ofSeconds(30), CLOCK);
+
+        index.revoke(List.of(), List.of(new RevocationIndex.TokenRevocation("jti-1", NOW.plusSeconds(600))));
+
+        assertTrue(index.isRevoked(jwt("user-1", NOW, "jti-1")));
+        assertFalse(index.isRevoked(jwt("user-1", NOW, "jti-2")));
+        assertFalse(index.isRevoked(jwt("user-1", NOW, null)));
+        assertEquals(1, index.revokedTokens());
+    }
+
+    /**
+     * Tests that revocations that no longer cover any unexpired token are dropped.
+     *
+     * <p>Given: A subject revoked longer ago than the retention and a token that has already expired.</p>
+     * <p>When: They are merged into the index alongside current revocations.</p>
+     * <p>Then: Only the current revocations should be kept.</p>
+     */
+    @Test
+    void expiredRevocationsAreDropped() {
+        var index = new RevocationIndex(Duration.ofHours(1), null, Duration.ofSeconds(30), CLOCK);
+
+        index.revoke(
+                List.of(new RevocationIndex.SubjectRevocation("old", NOW.minus(Duration.ofHours(2))),
+                        new RevocationIndex.SubjectRevocation("current", NOW)),
+                List.of(new RevocationIndex.TokenRevocation("expired", NOW.minusSeconds(1)),
+                        new RevocationIndex.TokenRevocation("live", NOW.plusSeconds(1))));
+
+        assertEquals(1, index.revokedSubjects());
+        assertEquals(1, index.revokedTokens());
+        assertFalse(index.isRevoked(jwt("old", null, "expired")));
+        assertTrue(index.isRevoked(jwt("current", null, null)));
+    }
+
+    /**
+     * Tests that the revocation file is merged into the index when it changes.
+     *
+     * <p>Given: A revocation file with a comment and a subject revocation.</p>
+     * <p>When: The file is loaded, then rewritten with a token revocation and a new modification time, and reloaded.</p>
+     * <p>Then: Both revocations should be in the index.</p>
+     */
+    @Test
+    void revocationFileIsMergedWhenItChanges() throws IOException {
+        var file = tempDir.resolve("revocations.txt");
+        Files.writeString(file, "# disabled users\nsub user-1 " + NOW + "\n");
+        var index = new RevocationIndex(Duration.ofHours(1), file, Duration.ofSeconds(30), CLOCK);
+
+        index.reloadIfChanged();
+        Files.writeString(file, "jti jti-1 " + NOW.plusSeconds(600) + "\n");
+        Files.setLastModifiedTime(file, FileTime.from(NOW.plusSeconds(5)));
+        index.reloadIfChanged();
+
+        assertTrue(index.isRevoked(jwt("user-1", NOW, null)));
+        assertTrue(index.isRevoked(jwt("user-2", NOW, "jti-1")));
+        index.close();
+    }
+
+    /**
+     * Tests that malformed revocation lines are rejected.
+     *
+     * <p>Given: Lines with an unknown kind, a missing field and an invalid instant.</p>
+     * <p>When: Each line is parsed.</p>
+     * <p>Then: Each should fail with IllegalArgumentException.</p>
+     */
+    @Test
+    void malformedLinesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> RevocationIndex.parse(List.of("iss user-1 " + NOW)));
+        assertThrows(IllegalArgumentException.class, () -> RevocationIndex.parse(List.of("sub user-1")));
+        assertThrows(IllegalArgumentException.class, () -> RevocationIndex.parse(List.of("sub user-1 yesterday")));
+    }
+
+    private static Jwt jwt(String subject, Instant issuedAt, String tokenId) {
+        var builder = Jwt.withTokenValue("token").header("alg", "RS256").subject(subject);
+        if (issuedAt != null) {
+            builder.issuedAt(issuedAt);
+        }
+        if (tokenId != null) {
+            builder.jti(tokenId);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,113 @@
+package io.robothouse.grpcauth.lib.ticket;
+
+import io.robothouse.grpcauth.lib.jwt.SigningKeysRotatedEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.robothouse.grpcauth.lib.ticket.SessionTicketsTest.entry;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for SessionTicketKeyRing.
+ */
+class SessionTicketKeyRingTest {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Tests that the first entry signs and every entry verifies.
+     *
+     * <p>Given: Two comma-separated key entries.</p>
+     * <p>When: The key ring is created.</p>
+     * <p>Then: The first key should sign and both keys should be available.</p>
+     */
+    @Test
+    void firstEntrySigns() {
+        var keyRing = SessionTicketKeyRing.of(entry("key-2", 2) + ", " + entry("key-1", 1));
+
+        assertEquals("key-2", keyRing.keys().signingKeyId());
+        assertEquals(2, keyRing.keys().macs().size());
+    }
+
+    /**
+     * Tests that invalid key entries are rejected at startup.
+     *
+     * <p>Given: An empty, unseparated, non-base64, short or badly named key entry.</p>
+     * <p>When: The key ring is created.</p>
+     * <p>Then: An IllegalStateException should be thrown.</p>
+     */
+    @ParameterizedTest
+    @ValueSource(strings = {"", "no-separator", "key-1:not base64!", "key-1:c2hvcnQ=", "key.1:c2hvcnQ="})
+    void invalidEntriesAreRejected(String entries) {
+        assertThrows(IllegalStateException.class, () -> SessionTicketKeyRing.of(entries));
+    }
+
+    /**
+     * Tests that a changed key file is reloaded and a broken one is ignored.
+     *
+     * <p>Given: A key ring loaded from a file containing key-1.</p>
+     * <p>When: The file is rewritten to sign with key-2, and later with invalid content.</p>
+     * <p>Then: The key ring should switch to key-2 and keep it after the invalid rewrite, without
+     * publishing a rotation event as no key was removed.</p>
+     */
+    @Test
+    void keyFileIsReloadedWhenChanged() throws IOException {
+        var keyFile = tempDir.resolve("ticket-keys");
+        Files.writeString(keyFile, "# signing key first\n" + entry("key-1", 1) + "\n");
+        var events = new ArrayList<>();
+        var keyRing = SessionTicketKeyRing.ofFile(keyFile, Duration.ofMinutes(1), events::add);
+
+        write(keyFile, entry("key-2", 2) + "\n" + entry("key-1", 1) + "\n", 1);
+        keyRing.reloadIfChanged();
+        var rotated = keyRing.keys();
+        write(keyFile, "broken", 2);
+        keyRing.reloadIfChanged();
+
+        assertEquals("key-2", rotated.signingKeyId());
+        assertSame(rotated, keyRing.keys());
+        assertTrue(events.isEmpty());
+        keyRing.close();
+    }
+
+    /**
+     * Tests that removing a key from the key file publishes a rotation event.
+     *
+     * <p>Given: A key ring loaded from a file containing key-2 and key-1.</p>
+     * <p>When: The file is rewritten without key-1.</p>
+     * <p>Then: A SigningKeysRotatedEvent should be published for the session ticket keys.</p>
+     */
+    @Test
+    void removedKeyPublishesRotationEvent() throws IOException {
+        var keyFile = tempDir.resolve("ticket-keys");
+        Files.writeString(keyFile, entry("key-2", 2) + "\n" + entry("key-1", 1) + "\n");
+        var events = new ArrayList<>();
+        var keyRing = SessionTicketKeyRing.ofFile(keyFile, Duration.ofMinutes(1), events::add);
+
+        write(keyFile, entry("key-2", 2) + "\n", 1);
+        keyRing.reloadIfChanged();
+
+        assertEquals(List.of(new SigningKeysRotatedEvent(SessionTicketKeyRing.ROTATION_ISSUER)), events);
+        keyRing.close();
+    }
+
+    /**
+     * Writes the file and moves its modification time forward, as file systems may only
+     * record it to the second.
+     */
+    private static void write(Path file, String content, int secondsLater) throws IOException {
+        var modified = Files.getLastModifiedTime(file).toInstant();
+        Files.writeString(file, content);
+        Files.setLastModifiedTime(file, FileTime.from(modified.plusSeconds(secondsLater)));
+    }
+}
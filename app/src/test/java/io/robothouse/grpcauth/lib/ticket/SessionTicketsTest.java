@@ -0,0 +1,210 @@
+package io.robothouse.grpcauth.lib.ticket;
+
+import io.robothouse.grpcauth.lib.jwt.AuthOutcome;
+import io.robothouse.grpcauth.lib.jwt.JwtFailures;
+import io.robothouse.grpcauth.lib.revocation.RevocationIndex;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for SessionTickets.
+ */
+class SessionTicketsTest {
+
+    /**
+     * Fixed point in time at which tickets are minted.
+     */
+    private static final Instant NOW = Instant.parse("2025-01-01T00:00:00Z");
+
+    private static final String ISSUER = "https://securetoken.google.com/test-project";
+
+    /**
+     * Tests that a minted ticket verifies to the ID token's claims.
+     *
+     * <p>Given: A verified ID token expiring in one hour and a fifteen minute ticket lifetime.</p>
+     * <p>When: A ticket is minted and then verified.</p>
+     * <p>Then: The result should carry the token's subject, issuer and audience, expire after
+     * fifteen minutes and be recognised as a ticket.</p>
+     */
+    @Test
+    void mintedTicketVerifies() {
+        var tickets = tickets(keyRing("key-1"), NOW);
+
+        var ticket = tickets.mint(idToken(NOW.plus(Duration.ofHours(1))));
+        var jwt = tickets.verify(ticket.token());
+
+        assertTrue(SessionTickets.isTicket(ticket.token()));
+        assertTrue(SessionTickets.isTicket(jwt));
+        assertEquals("user-1", jwt.getSubject());
+        assertEquals(ISSUER, jwt.getClaimAsString("iss"));
+        assertEquals(List.of("test-project"), jwt.getAudience());
+        assertEquals(NOW, jwt.getIssuedAt());
+        assertEquals(NOW.plus(Duration.ofMinutes(15)), jwt.getExpiresAt());
+        assertEquals(ticket.expiresAt(), jwt.getExpiresAt());
+    }
+
+    /**
+     * Tests that a ticket carries its ID token's id, so that revoking the token revokes the ticket.
+     *
+     * <p>Given: A ticket minted for an ID token with a {@code jti} claim.</p>
+     * <p>When: The ticket is verified and the ID token is then revoked by id.</p>
+     * <p>Then: The ticket should carry the token's id and be revoked along with it.</p>
+     */
+    @Test
+    void mintedTicketCarriesTokenId() {
+        var tickets = tickets(keyRing("key-1"), NOW);
+        var idToken = Jwt.withTokenValue("id-token")
+                .header("alg", "RS256")
+                .issuer(ISSUER)
+                .subject("user-1")
+                .jti("jti-1")
+                .expiresAt(NOW.plus(Duration.ofHours(1)))
+                .build();
+        var revocations = new RevocationIndex(Duration.ofHours(1), null, Duration.ofSeconds(30));
+
+        var jwt = tickets.verify(tickets.mint(idToken).token());
+        assertFalse(revocations.isRevoked(jwt));
+        revocations.revoke(List.of(), List.of(new RevocationIndex.TokenRevocation("jti-1", Instant.now().plus(Duration.ofHours(1)))));
+
+        assertEquals("jti-1", jwt.getId());
+        assertTrue(revocations.isRevoked(jwt));
+    }
+
+    /**
+     * Tests that a ticket never outlives the ID token it was exchanged for.
+     *
+     * <p>Given: An ID token expiring in five minutes and a fifteen minute ticket lifetime.</p>
+     * <p>When: A ticket is minted.</p>
+     * <p>Then: The ticket should expire with the ID token.</p>
+     */
+    @Test
+    void ticketExpiryIsCappedByIdToken() {
+        var tickets = tickets(keyRing("key-1"), NOW);
+
+        var ticket = tickets.mint(idToken(NOW.plus(Duration.ofMinutes(5))));
+
+        assertEquals(NOW.plus(Duration.ofMinutes(5)), ticket.expiresAt());
+    }
+
+    /**
+     * Tests that an expired ticket is rejected as expired.
+     *
+     * <p>Given: A ticket minted with a fifteen minute lifetime.</p>
+     * <p>When: It is verified sixteen minutes later.</p>
+     * <p>Then: The failure should be classified as expired.</p>
+     */
+    @Test
+    void expiredTicketIsRejected() {
+        var keyRing = keyRing("key-1");
+        var ticket = tickets(keyRing, NOW).mint(idToken(NOW.plus(Duration.ofHours(1))));
+
+        var e = assertThrows(JwtException.class,
+                () -> tickets(keyRing, NOW.plus(Duration.ofMinutes(16))).verify(ticket.token()));
+
+        assertEquals(AuthOutcome.EXPIRED, JwtFailures.classify(e));
+    }
+
+    /**
+     * Tests that altered or foreign tickets are rejected as badly signed.
+     *
+     * <p>Given: A valid ticket.</p>
+     * <p>When: Its payload is altered, or it is verified with a different key ring.</p>
+     * <p>Then: Both failures should be classified as bad signatures.</p>
+     */
+    @Test
+    void tamperedOrForeignTicketIsRejected() {
+        var ticket = tickets(keyRing("key-1"), NOW).mint(idToken(NOW.plus(Duration.ofHours(1)))).token();
+        var parts = ticket.split("\\.");
+        var payload = new String(Base64.getUrlDecoder().decode(parts[2])).replace("user-1", "user-2");
+        var tampered = String.join(".", parts[0], parts[1],
+                Base64.getUrlEncoder().withoutPadding().encodeToString(payload.getBytes()), parts[3]);
+
+        var tamperedFailure = assertThrows(JwtException.class,
+                () -> tickets(keyRing("key-1"), NOW).verify(tampered));
+        var foreignFailure = assertThrows(JwtException.class,
+                () -> tickets(keyRing("key-1", 7), NOW).verify(ticket));
+
+        assertEquals(AuthOutcome.BAD_SIGNATURE, JwtFailures.classify(tamperedFailure));
+        assertEquals(AuthOutcome.BAD_SIGNATURE, JwtFailures.classify(foreignFailure));
+    }
+
+    /**
+     * Tests that malformed tickets are rejected as malformed.
+     *
+     * <p>Given: Tickets with missing parts or invalid encoding.</p>
+     * <p>When: They are verified.</p>
+     * <p>Then: The failures should be classified as malformed.</p>
+     */
+    @Test
+    void malformedTicketIsRejected() {
+        var tickets = tickets(keyRing("key-1"), NOW);
+
+        for (var ticket : List.of("st1.key-1", "st1.key-1.payload", "st1.key-1.e30.%%%", "st1.key-1.a.b.c")) {
+            var e = assertThrows(JwtException.class, () -> tickets.verify(ticket));
+            assertEquals(AuthOutcome.MALFORMED, JwtFailures.classify(e), ticket);
+        }
+    }
+
+    /**
+     * Tests that tickets signed with a previous key still verify after rotation.
+     *
+     * <p>Given: A ticket signed with key-1.</p>
+     * <p>When: The key ring is rotated so that key-2 signs and key-1 only verifies.</p>
+     * <p>Then: The old ticket should still verify and new tickets should be signed with key-2.</p>
+     */
+    @Test
+    void rotatedKeyStillVerifies() {
+        var oldTicket = tickets(keyRing("key-1"), NOW).mint(idToken(NOW.plus(Duration.ofHours(1))));
+        var rotated = SessionTicketKeyRing.of(entry("key-2", 2) + "," + entry("key-1", 1));
+        var tickets = tickets(rotated, NOW);
+
+        var jwt = tickets.verify(oldTicket.token());
+        var newTicket = tickets.mint(idToken(NOW.plus(Duration.ofHours(1))));
+
+        assertEquals("user-1", jwt.getSubject());
+        assertTrue(newTicket.token().startsWith("st1.key-2."));
+    }
+
+    private static SessionTickets tickets(SessionTicketKeyRing keyRing, Instant now) {
+        return new SessionTickets(keyRing, Duration.ofMinutes(15), Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    private static SessionTicketKeyRing keyRing(String keyId) {
+        return keyRing(keyId, 1);
+    }
+
+    private static SessionTicketKeyRing keyRing(String keyId, int fill) {
+        return SessionTicketKeyRing.of(entry(keyId, fill));
+    }
+
+    /**
+     * Returns a key entry whose secret is filled with the given byte.
+     */
+    static String entry(String keyId, int fill) {
+        var secret = new byte[SessionTicketKeyRing.MIN_SECRET_LENGTH];
+        Arrays.fill(secret, (byte) fill);
+        return keyId + ":" + Base64.getEncoder().encodeToString(secret);
+    }
+
+    private static Jwt idToken(Instant expiresAt) {
+        return Jwt.withTokenValue("id-token")
+                .header("alg", "RS256")
+                .issuer(ISSUER)
+                .audience(List.of("test-project"))
+                .subject("user-1")
+                .issuedAt(expiresAt.minus(Duration.ofHours(1)))
+                .expiresAt(expiresAt)
+                .build();
+    }
+}
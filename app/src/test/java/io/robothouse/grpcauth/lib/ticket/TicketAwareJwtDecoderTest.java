@@ -0,0 +1,66 @@
+package io.robothouse.grpcauth.lib.ticket;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for TicketAwareJwtDecoder.
+ */
+class TicketAwareJwtDecoderTest {
+
+    /**
+     * Mock JWT decoder verifying ID tokens.
+     */
+    private JwtDecoder delegate;
+
+    /**
+     * Mock session tickets service verifying tickets.
+     */
+    private SessionTickets sessionTickets;
+
+    private TicketAwareJwtDecoder decoder;
+
+    @BeforeEach
+    void setUp() {
+        delegate = mock(JwtDecoder.class);
+        sessionTickets = mock(SessionTickets.class);
+        decoder = new TicketAwareJwtDecoder(delegate, sessionTickets);
+    }
+
+    /**
+     * Tests that session tickets are verified without the delegate.
+     *
+     * <p>Given: A credential starting with the session ticket prefix.</p>
+     * <p>When: It is decoded.</p>
+     * <p>Then: The session tickets service should verify it and the delegate should not be called.</p>
+     */
+    @Test
+    void decodeVerifiesTickets() {
+        var jwt = mock(Jwt.class);
+        when(sessionTickets.verify("st1.key.payload.mac")).thenReturn(jwt);
+
+        assertSame(jwt, decoder.decode("st1.key.payload.mac"));
+        verifyNoInteractions(delegate);
+    }
+
+    /**
+     * Tests that other credentials are passed to the delegate.
+     *
+     * <p>Given: A JWT.</p>
+     * <p>When: It is decoded.</p>
+     * <p>Then: The delegate should decode it and the session tickets service should not be called.</p>
+     */
+    @Test
+    void decodeDelegatesIdTokens() {
+        var jwt = mock(Jwt.class);
+        when(delegate.decode("eyJ.header.signature")).thenReturn(jwt);
+
+        assertSame(jwt, decoder.decode("eyJ.header.signature"));
+        verifyNoInteractions(sessionTickets);
+    }
+}
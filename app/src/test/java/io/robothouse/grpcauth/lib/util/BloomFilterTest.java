@@ -0,0 +1,47 @@
+package io.robothouse.grpcauth.lib.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for BloomFilter.
+ */
+class BloomFilterTest {
+
+    /**
+     * Tests that added strings are always found under their own salt.
+     *
+     * <p>Given: A filter sized for 10,000 entries holding 10,000 strings under one salt.</p>
+     * <p>When: Each string is looked up under that salt.</p>
+     * <p>Then: Every lookup should report that the string might be present.</p>
+     */
+    @Test
+    void addedStringsAreAlwaysFound() {
+        var filter = new BloomFilter(10_000);
+        IntStream.range(0, 10_000).forEach(i -> filter.add(1, "user-" + i));
+
+        IntStream.range(0, 10_000).forEach(i -> assertTrue(filter.mightContain(1, "user-" + i)));
+    }
+
+    /**
+     * Tests that the false positive rate stays near its design rate.
+     *
+     * <p>Given: A filter sized for 10,000 entries holding 10,000 strings under one salt.</p>
+     * <p>When: 100,000 other strings, and the added strings under another salt, are looked up.</p>
+     * <p>Then: Fewer than 2% of the lookups should report a possible match.</p>
+     */
+    @Test
+    void falsePositiveRateIsLow() {
+        var filter = new BloomFilter(10_000);
+        IntStream.range(0, 10_000).forEach(i -> filter.add(1, "user-" + i));
+
+        var otherStrings = IntStream.range(0, 100_000).filter(i -> filter.mightContain(1, "other-" + i)).count();
+        var otherSalt = IntStream.range(0, 10_000).filter(i -> filter.mightContain(2, "user-" + i)).count();
+
+        assertTrue(otherStrings < 2_000, "false positives: " + otherStrings);
+        assertTrue(otherSalt < 200, "false positives under another salt: " + otherSalt);
+    }
+}
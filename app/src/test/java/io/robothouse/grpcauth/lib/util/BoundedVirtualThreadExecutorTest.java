@@ -0,0 +1,128 @@
+package io.robothouse.grpcauth.lib.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for BoundedVirtualThreadExecutor.
+ */
+class BoundedVirtualThreadExecutorTest {
+
+    private BoundedVirtualThreadExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = new BoundedVirtualThreadExecutor("test-", 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.close();
+    }
+
+    /**
+     * Tests that tasks run on virtual threads.
+     *
+     * <p>Given: A bounded virtual-thread executor.</p>
+     * <p>When: A task is executed.</p>
+     * <p>Then: The task should run on a virtual thread.</p>
+     */
+    @Test
+    void executeRunsTasksOnVirtualThreads() throws Exception {
+        var virtual = new AtomicBoolean();
+        var done = new CountDownLatch(1);
+
+        executor.execute(() -> {
+            virtual.set(Thread.currentThread().isVirtual());
+            done.countDown();
+        });
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(virtual.get());
+    }
+
+    /**
+     * Tests that no more tasks than the limit run at once.
+     *
+     * <p>Given: An executor limited to two concurrent tasks.</p>
+     * <p>When: Ten blocking tasks are submitted.</p>
+     * <p>Then: At most two tasks should ever run concurrently, and all should complete.</p>
+     */
+    @Test
+    void executeBoundsConcurrency() throws Exception {
+        var running = new AtomicInteger();
+        var maxRunning = new AtomicInteger();
+        var done = new CountDownLatch(10);
+
+        for (var i = 0; i < 10; i++) {
+            executor.execute(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                done.countDown();
+            });
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(2, maxRunning.get());
+    }
+
+    /**
+     * Tests that tasks over the limit wait without a virtual thread of their own.
+     *
+     * <p>Given: An executor limited to two concurrent tasks, both blocked.</p>
+     * <p>When: Eight more tasks are submitted and the blocked tasks are then released.</p>
+     * <p>Then: All ten tasks should complete, only on the two virtual threads started first.</p>
+     */
+    @Test
+    void executeQueuesTasksOverLimitWithoutStartingThreads() throws Exception {
+        var gate = new CountDownLatch(1);
+        var done = new CountDownLatch(10);
+        var threadNames = ConcurrentHashMap.<String>newKeySet();
+
+        for (var i = 0; i < 10; i++) {
+            executor.execute(() -> {
+                threadNames.add(Thread.currentThread().getName());
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            });
+        }
+        gate.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(Set.of("test-0", "test-1").containsAll(threadNames), threadNames::toString);
+    }
+
+    /**
+     * Tests that a closed executor rejects new tasks.
+     *
+     * <p>Given: A closed executor.</p>
+     * <p>When: A task is executed.</p>
+     * <p>Then: A RejectedExecutionException should be thrown.</p>
+     */
+    @Test
+    void executeRejectsTasksAfterClose() {
+        executor.close();
+
+        assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> {}));
+    }
+}
@@ -0,0 +1,66 @@
+package io.robothouse.grpcauth.lib.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for CachedIsoTimestamp.
+ */
+class CachedIsoTimestampTest {
+
+    /**
+     * Nanosecond values covering no fraction, every fraction length and trailing zeros.
+     */
+    private static final int[] NANOS = {
+            0, 1, 10, 120, 1_000, 999_999, 1_000_000, 5_000_000, 100_000_000, 120_000_000,
+            123_456_789, 999_999_999
+    };
+
+    /**
+     * Tests that the output matches ISO_OFFSET_DATE_TIME exactly.
+     *
+     * <p>Given: A clock in the given zone and instants spanning a daylight saving transition.</p>
+     * <p>When: Each instant is formatted with a range of nanosecond values.</p>
+     * <p>Then: Every result should equal the OffsetDateTime formatted with ISO_OFFSET_DATE_TIME.</p>
+     */
+    @ParameterizedTest
+    @ValueSource(strings = {"UTC", "Europe/London", "Asia/Kolkata", "America/St_Johns"})
+    void formatMatchesIsoOffsetDateTime(String zone) {
+        var zoneId = ZoneId.of(zone);
+        var timestamps = new CachedIsoTimestamp(Clock.system(zoneId));
+        var transition = Instant.parse("2025-03-30T00:59:58Z");
+
+        IntStream.range(0, 4).mapToObj(transition::plusSeconds).forEach(second -> {
+            for (var nanos : NANOS) {
+                var instant = second.plusNanos(nanos);
+                var expected = OffsetDateTime.ofInstant(instant, zoneId)
+                        .format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+                assertEquals(expected, timestamps.format(instant));
+            }
+        });
+    }
+
+    /**
+     * Tests that the current time is formatted like OffsetDateTime.now().
+     *
+     * <p>Given: The system clock in the default zone.</p>
+     * <p>When: The current timestamp is requested.</p>
+     * <p>Then: It should parse back with ISO_OFFSET_DATE_TIME and carry the default zone's offset.</p>
+     */
+    @Test
+    void nowUsesSystemDefaultZone() {
+        var parsed = OffsetDateTime.parse(CachedIsoTimestamp.now(), DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+
+        assertEquals(ZoneId.systemDefault().getRules().getOffset(parsed.toInstant()), parsed.getOffset());
+    }
+}
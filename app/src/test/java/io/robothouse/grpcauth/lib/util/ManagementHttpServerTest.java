@@ -0,0 +1,80 @@
+package io.robothouse.grpcauth.lib.util;
+
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthEndpoint;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for ManagementHttpServer.
+ */
+class ManagementHttpServerTest {
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    private ManagementHttpServer server;
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    /**
+     * Tests that the Prometheus endpoint returns the registry's scrape.
+     *
+     * <p>Given: A server on an ephemeral port with a Prometheus registry holding a counter.</p>
+     * <p>When: The Prometheus endpoint is requested.</p>
+     * <p>Then: The response should be the text format scrape containing the counter.</p>
+     */
+    @Test
+    void prometheusReturnsScrape() throws Exception {
+        var registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        registry.counter("grpcauth.test").increment();
+        server = new ManagementHttpServer(0, registry, null);
+        server.start();
+
+        var response = get(ManagementHttpServer.PROMETHEUS_PATH);
+
+        assertEquals(200, response.statusCode());
+        assertTrue(response.headers().firstValue("Content-Type").orElseThrow().startsWith("text/plain"));
+        assertTrue(response.body().contains("grpcauth_test_total 1.0"));
+    }
+
+    /**
+     * Tests that the health endpoint reports a status that is not UP as unavailable.
+     *
+     * <p>Given: A server whose health endpoint reports OUT_OF_SERVICE and no Prometheus registry.</p>
+     * <p>When: The health and Prometheus endpoints are requested.</p>
+     * <p>Then: Health should return 503 with the status, and Prometheus should not be served.</p>
+     */
+    @Test
+    void healthReportsStatus() throws Exception {
+        var healthEndpoint = mock(HealthEndpoint.class);
+        when(healthEndpoint.health()).thenReturn(Health.outOfService().build());
+        server = new ManagementHttpServer(0, null, healthEndpoint);
+        server.start();
+
+        var health = get(ManagementHttpServer.HEALTH_PATH);
+        var prometheus = get(ManagementHttpServer.PROMETHEUS_PATH);
+
+        assertEquals(503, health.statusCode());
+        assertEquals("{\"status\":\"OUT_OF_SERVICE\"}", health.body());
+        assertEquals(404, prometheus.statusCode());
+    }
+
+    private HttpResponse<String> get(String path) throws Exception {
+        var request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.port() + path)).build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,124 @@
+package io.robothouse.grpcauth.lib.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for VegasConcurrencyLimit.
+ */
+class VegasConcurrencyLimitTest {
+
+    private static final long BASE_RTT = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /**
+     * Tests that permits are only granted up to the limit.
+     *
+     * <p>Given: A limit of 20 with all 20 permits taken.</p>
+     * <p>When: Another permit is requested, and then one is released.</p>
+     * <p>Then: The request should be refused until a permit has been released.</p>
+     */
+    @Test
+    void permitsAreLimited() {
+        var limit = new VegasConcurrencyLimit(20, 10, 100);
+        for (var i = 0; i < 20; i++) {
+            assertTrue(limit.tryAcquire());
+        }
+
+        assertFalse(limit.tryAcquire());
+        limit.releaseWithoutSample();
+        assertTrue(limit.tryAcquire());
+        assertEquals(20, limit.inFlight());
+    }
+
+    /**
+     * Tests that the limit grows while latency stays at its minimum.
+     *
+     * <p>Given: A limit of 20 that is fully used.</p>
+     * <p>When: Every call completes at the baseline latency.</p>
+     * <p>Then: The limit should grow, up to the maximum.</p>
+     */
+    @Test
+    void limitGrowsWithoutQueueing() {
+        var limit = new VegasConcurrencyLimit(20, 10, 100);
+
+        for (var round = 0; round < 10; round++) {
+            saturate(limit, BASE_RTT, false);
+        }
+
+        assertEquals(100, limit.limit());
+    }
+
+    /**
+     * Tests that the limit shrinks once latency shows calls queueing.
+     *
+     * <p>Given: A limit of 100 with a baseline latency established.</p>
+     * <p>When: Calls complete at four times the baseline latency.</p>
+     * <p>Then: The limit should shrink, down to the minimum.</p>
+     */
+    @Test
+    void limitShrinksWhenQueueing() {
+        var limit = new VegasConcurrencyLimit(100, 10, 100);
+        limit.tryAcquire();
+        limit.release(BASE_RTT, false);
+
+        for (var round = 0; round < 10; round++) {
+            saturate(limit, 4 * BASE_RTT, false);
+        }
+
+        assertEquals(10, limit.limit());
+    }
+
+    /**
+     * Tests that dropped calls shrink the limit even without a latency increase.
+     *
+     * <p>Given: A limit of 50 with a baseline latency established.</p>
+     * <p>When: A call is dropped at the baseline latency.</p>
+     * <p>Then: The limit should shrink.</p>
+     */
+    @Test
+    void droppedCallShrinksLimit() {
+        var limit = new VegasConcurrencyLimit(50, 10, 100);
+        limit.tryAcquire();
+        limit.release(BASE_RTT, false);
+
+        limit.tryAcquire();
+        limit.release(BASE_RTT, true);
+
+        assertEquals(49, limit.limit());
+    }
+
+    /**
+     * Tests that the limit does not grow while most of it is unused.
+     *
+     * <p>Given: A limit of 50 with a baseline latency established.</p>
+     * <p>When: Single calls complete at the baseline latency.</p>
+     * <p>Then: The limit should not change.</p>
+     */
+    @Test
+    void limitDoesNotGrowWhenUnderused() {
+        var limit = new VegasConcurrencyLimit(50, 10, 100);
+
+        for (var i = 0; i < 100; i++) {
+            limit.tryAcquire();
+            limit.release(BASE_RTT, false);
+        }
+
+        assertEquals(50, limit.limit());
+    }
+
+    /**
+     * Takes every permit and then releases them all with the given latency.
+     */
+    private static void saturate(VegasConcurrencyLimit limit, long rttNanos, boolean dropped) {
+        var acquired = 0;
+        while (limit.tryAcquire()) {
+            acquired++;
+        }
+        for (var i = 0; i < acquired; i++) {
+            limit.release(rttNanos, dropped);
+        }
+    }
+}
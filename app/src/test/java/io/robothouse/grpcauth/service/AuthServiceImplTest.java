@@ -1,28 +1,59 @@
 package io.robothouse.grpcauth.service;
 
-import com.google.protobuf.Empty;
+import com.google.protobuf.FieldMask;
+import com.google.protobuf.Value;
 import io.grpc.Context;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
 import io.grpc.stub.StreamObserver;
+import io.robothouse.grpcauth.lib.component.PeerFailureLimiter;
+import io.robothouse.grpcauth.lib.ticket.SessionTicketKeyRing;
+import io.robothouse.grpcauth.lib.ticket.SessionTickets;
 import io.robothouse.grpcauth.lib.util.CtxConstants;
 import io.robothouse.grpcauth.proto.AuthResponse;
+import io.robothouse.grpcauth.proto.AuthenticateBatchRequest;
+import io.robothouse.grpcauth.proto.AuthenticateBatchResponse;
+import io.robothouse.grpcauth.proto.AuthenticateRequest;
+import io.robothouse.grpcauth.proto.ExchangeTokenRequest;
+import io.robothouse.grpcauth.proto.ExchangeTokenResponse;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.jwt.BadJwtException;
 import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.JwtValidationException;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 /**
  * Unit tests for the AuthServiceImpl gRPC service.
  */
 class AuthServiceImplTest {
 
+    /**
+     * Mock JWT decoder used for batch token validation.
+     */
+    private JwtDecoder jwtDecoder;
+
+    /**
+     * Peer failure limiter allowing a burst of two failed attempts.
+     */
+    private PeerFailureLimiter peerFailureLimiter;
+
     private AuthServiceImpl authService;
 
     /**
@@ -30,11 +61,19 @@ class AuthServiceImplTest {
      */
     private StreamObserver<AuthResponse> responseObserver;
 
+    /**
+     * Mock observer for capturing gRPC batch responses.
+     */
+    private StreamObserver<AuthenticateBatchResponse> batchResponseObserver;
+
     @BeforeEach
     @SuppressWarnings("unchecked")
     void setUp() {
-        authService = new AuthServiceImpl();
+        jwtDecoder = mock(JwtDecoder.class);
+        peerFailureLimiter = new PeerFailureLimiter(true, 1, 2, 100);
+        authService = new AuthServiceImpl(jwtDecoder, peerFailureLimiter, Runnable::run, 3, 8, Optional.empty());
         responseObserver = mock(StreamObserver.class);
+        batchResponseObserver = mock(StreamObserver.class);
     }
 
     /**
@@ -51,7 +90,7 @@ class AuthServiceImplTest {
                 .withValue(CtxConstants.JWT_CONTEXT_KEY, jwtOptional)
                 .withValue(CtxConstants.REQUEST_ID_CONTEXT_KEY, "test-request-id");
         var previousContext = context.attach();
-        var request = Empty.getDefaultInstance();
+        var request = AuthenticateRequest.getDefaultInstance();
         var responseCaptor = ArgumentCaptor.forClass(AuthResponse.class);
 
         authService.authenticate(request, responseObserver);
@@ -65,6 +104,75 @@ class AuthServiceImplTest {
         assertEquals(0, response.getPayload().getStatusCode());
         assertEquals("Authentication successful.", response.getPayload().getStatusMessage());
         assertEquals("test-request-id", response.getRequestId());
+        assertFalse(response.hasClaims());
+    }
+
+    /**
+     * Tests that the claims selected by the mask are returned.
+     *
+     * <p>Given: A verified JWT with subject, email, a custom role and a firebase claim.</p>
+     * <p>When: Authenticate is called with a mask selecting subject, sign_in_provider and the role claim.</p>
+     * <p>Then: Only the selected claims should be set on the response.</p>
+     */
+    @Test
+    void authenticateReturnsRequestedClaims() {
+        var jwt = Jwt.withTokenValue("token")
+                .header("alg", "RS256")
+                .subject("user-1")
+                .claim("email", "user@example.com")
+                .claim("role", "admin")
+                .claim("plan", "pro")
+                .claim("firebase", Map.of("sign_in_provider", "password"))
+                .build();
+        var context = Context.current()
+                .withValue(CtxConstants.JWT_CONTEXT_KEY, Optional.of(jwt))
+                .withValue(CtxConstants.REQUEST_ID_CONTEXT_KEY, "test-request-id");
+        var previousContext = context.attach();
+        var request = AuthenticateRequest.newBuilder()
+                .setClaimsMask(FieldMask.newBuilder()
+                        .addPaths("subject")
+                        .addPaths("sign_in_provider")
+                        .addPaths("custom_claims.role"))
+                .build();
+        var responseCaptor = ArgumentCaptor.forClass(AuthResponse.class);
+
+        authService.authenticate(request, responseObserver);
+
+        Mockito.verify(responseObserver).onNext(responseCaptor.capture());
+        context.detach(previousContext);
+
+        var claims = responseCaptor.getValue().getClaims();
+        assertEquals("user-1", claims.getSubject());
+        assertEquals("password", claims.getSignInProvider());
+        assertEquals("", claims.getEmail());
+        assertEquals(Map.of("role", Value.newBuilder().setStringValue("admin").build()), claims.getCustomClaimsMap());
+    }
+
+    /**
+     * Tests that an unknown claims mask path is rejected.
+     *
+     * <p>Given: A gRPC context containing a verified JWT.</p>
+     * <p>When: Authenticate is called with a mask naming a field that does not exist.</p>
+     * <p>Then: An INVALID_ARGUMENT status exception should be returned.</p>
+     */
+    @Test
+    void authenticateRejectsUnknownClaimsPath() {
+        var context = Context.current()
+                .withValue(CtxConstants.JWT_CONTEXT_KEY, Optional.of(mock(Jwt.class)))
+                .withValue(CtxConstants.REQUEST_ID_CONTEXT_KEY, "test-request-id");
+        var previousContext = context.attach();
+        var request = AuthenticateRequest.newBuilder()
+                .setClaimsMask(FieldMask.newBuilder().addPaths("password"))
+                .build();
+        var errorCaptor = ArgumentCaptor.forClass(Throwable.class);
+
+        authService.authenticate(request, responseObserver);
+
+        Mockito.verify(responseObserver).onError(errorCaptor.capture());
+        context.detach(previousContext);
+
+        var statusException = (StatusRuntimeException) errorCaptor.getValue();
+        assertEquals(Status.INVALID_ARGUMENT.getCode(), statusException.getStatus().getCode());
     }
 
     /**
@@ -81,7 +189,7 @@ class AuthServiceImplTest {
                 .withValue(CtxConstants.JWT_CONTEXT_KEY, jwtOptional)
                 .withValue(CtxConstants.REQUEST_ID_CONTEXT_KEY, "test-request-id");
         var previousContext = context.attach();
-        var request = Empty.getDefaultInstance();
+        var request = AuthenticateRequest.getDefaultInstance();
         var errorCaptor = ArgumentCaptor.forClass(Throwable.class);
 
         authService.authenticate(request, responseObserver);
@@ -110,7 +218,7 @@ class AuthServiceImplTest {
                 .withValue(CtxConstants.JWT_CONTEXT_KEY, Optional.empty())
                 .withValue(CtxConstants.REQUEST_ID_CONTEXT_KEY, "test-request-id");
         var previousContext = context.attach();
-        var request = Empty.getDefaultInstance();
+        var request = AuthenticateRequest.getDefaultInstance();
         var errorCaptor = ArgumentCaptor.forClass(Throwable.class);
 
         authService.authenticate(request, responseObserver);
@@ -137,7 +245,7 @@ class AuthServiceImplTest {
         var context = Context.current()
                 .withValue(CtxConstants.JWT_CONTEXT_KEY, jwtOptional);
         var previousContext = context.attach();
-        var request = Empty.getDefaultInstance();
+        var request = AuthenticateRequest.getDefaultInstance();
         var responseCaptor = ArgumentCaptor.forClass(AuthResponse.class);
 
         authService.authenticate(request, responseObserver);
@@ -148,4 +256,220 @@ class AuthServiceImplTest {
         var response = responseCaptor.getValue();
         assertEquals("unknown", response.getRequestId());
     }
+
+    /**
+     * Tests batch authentication with a mix of valid, expired and invalid tokens.
+     *
+     * <p>Given: A batch containing a valid, an expired and an invalid token.</p>
+     * <p>When: The authenticateBatch method is called.</p>
+     * <p>Then: One result per token should be returned in request order with the matching outcome.</p>
+     */
+    @Test
+    void authenticateBatchReturnsResultPerToken() {
+        var expiresAt = Instant.parse("2030-01-01T00:00:00Z");
+        var jwt = mock(Jwt.class);
+        when(jwt.getSubject()).thenReturn("user-1");
+        when(jwt.getExpiresAt()).thenReturn(expiresAt);
+        when(jwtDecoder.decode("valid")).thenReturn(jwt);
+        when(jwtDecoder.decode("expired")).thenThrow(new JwtValidationException("Token expired",
+                Collections.singleton(new OAuth2Error("exp", "Token expired", null))));
+        when(jwtDecoder.decode("invalid")).thenThrow(new BadJwtException("Invalid token"));
+        var request = AuthenticateBatchRequest.newBuilder()
+                .addTokens("valid")
+                .addTokens("expired")
+                .addTokens("invalid")
+                .build();
+        var responseCaptor = ArgumentCaptor.forClass(AuthenticateBatchResponse.class);
+
+        authService.authenticateBatch(request, batchResponseObserver);
+
+        Mockito.verify(batchResponseObserver).onNext(responseCaptor.capture());
+        Mockito.verify(batchResponseObserver).onCompleted();
+
+        var results = responseCaptor.getValue().getResultsList();
+        assertEquals(3, results.size());
+        assertTrue(results.get(0).getPayload().getSuccess());
+        assertEquals("user-1", results.get(0).getSubject());
+        assertEquals(expiresAt.getEpochSecond(), results.get(0).getExpiresAt().getSeconds());
+        assertFalse(results.get(1).getPayload().getSuccess());
+        assertEquals("Token expired.", results.get(1).getPayload().getStatusMessage());
+        assertFalse(results.get(2).getPayload().getSuccess());
+        assertEquals(Status.UNAUTHENTICATED.getCode().value(), results.get(2).getPayload().getStatusCode());
+        assertEquals("Invalid token.", results.get(2).getPayload().getStatusMessage());
+    }
+
+    /**
+     * Tests that batch entries which could not be validated do not fail the whole batch.
+     *
+     * <p>Given: A batch containing a valid token, a token whose keys cannot be fetched and a token whose
+     * validation throws an unexpected exception.</p>
+     * <p>When: The authenticateBatch method is called.</p>
+     * <p>Then: The valid token should succeed, the second should be UNAVAILABLE and the third INTERNAL.</p>
+     */
+    @Test
+    void authenticateBatchReportsUnvalidatedTokensPerEntry() {
+        when(jwtDecoder.decode("valid")).thenReturn(mock(Jwt.class));
+        when(jwtDecoder.decode("unavailable")).thenThrow(new JwtException("Couldn't retrieve remote JWK set"));
+        when(jwtDecoder.decode("broken")).thenThrow(new IllegalStateException("Decoder failed"));
+        var request = AuthenticateBatchRequest.newBuilder()
+                .addAllTokens(List.of("valid", "unavailable", "broken"))
+                .build();
+        var responseCaptor = ArgumentCaptor.forClass(AuthenticateBatchResponse.class);
+
+        authService.authenticateBatch(request, batchResponseObserver);
+
+        Mockito.verify(batchResponseObserver).onNext(responseCaptor.capture());
+        Mockito.verify(batchResponseObserver).onCompleted();
+        var results = responseCaptor.getValue().getResultsList();
+        assertTrue(results.get(0).getPayload().getSuccess());
+        assertEquals(Status.UNAVAILABLE.getCode().value(), results.get(1).getPayload().getStatusCode());
+        assertEquals(Status.INTERNAL.getCode().value(), results.get(2).getPayload().getStatusCode());
+    }
+
+    /**
+     * Tests that badly signed batch tokens are charged to the calling peer.
+     *
+     * <p>Given: A peer in the call context and a batch of three badly signed tokens.</p>
+     * <p>When: The authenticateBatch method is called.</p>
+     * <p>Then: The first two tokens should be decoded and the third rejected as throttled without being decoded.</p>
+     */
+    @Test
+    void authenticateBatchThrottlesPeerAfterFailures() {
+        when(jwtDecoder.decode(Mockito.anyString())).thenThrow(new BadJwtException("Invalid signature"));
+        var context = Context.current().withValue(CtxConstants.PEER_CONTEXT_KEY, "192.0.2.10");
+        var previousContext = context.attach();
+        var request = AuthenticateBatchRequest.newBuilder()
+                .addAllTokens(List.of("a", "b", "c"))
+                .build();
+        var responseCaptor = ArgumentCaptor.forClass(AuthenticateBatchResponse.class);
+
+        authService.authenticateBatch(request, batchResponseObserver);
+        context.detach(previousContext);
+
+        Mockito.verify(batchResponseObserver).onNext(responseCaptor.capture());
+        Mockito.verify(jwtDecoder, Mockito.times(2)).decode(Mockito.anyString());
+        var results = responseCaptor.getValue().getResultsList();
+        assertEquals("Invalid token.", results.get(1).getPayload().getStatusMessage());
+        assertEquals(Status.RESOURCE_EXHAUSTED.getCode().value(), results.get(2).getPayload().getStatusCode());
+        assertTrue(peerFailureLimiter.isThrottled("192.0.2.10"));
+    }
+
+    /**
+     * Tests that oversized batches are rejected.
+     *
+     * <p>Given: A batch containing more tokens than the configured maximum.</p>
+     * <p>When: The authenticateBatch method is called.</p>
+     * <p>Then: An INVALID_ARGUMENT status exception should be returned and no token decoded.</p>
+     */
+    @Test
+    void authenticateBatchRejectsOversizedBatch() {
+        var request = AuthenticateBatchRequest.newBuilder()
+                .addAllTokens(List.of("a", "b", "c", "d"))
+                .build();
+        var errorCaptor = ArgumentCaptor.forClass(Throwable.class);
+
+        authService.authenticateBatch(request, batchResponseObserver);
+
+        Mockito.verify(batchResponseObserver).onError(errorCaptor.capture());
+        Mockito.verify(jwtDecoder, Mockito.never()).decode(Mockito.any());
+        var statusException = (StatusRuntimeException) errorCaptor.getValue();
+        assertEquals(Status.INVALID_ARGUMENT.getCode(), statusException.getStatus().getCode());
+    }
+
+    /**
+     * Tests that an ID token is exchanged for a session ticket.
+     *
+     * <p>Given: Session tickets enabled and a verified ID token expiring in one hour.</p>
+     * <p>When: ExchangeToken is called.</p>
+     * <p>Then: The returned ticket should verify to the token's subject and expire with the ticket lifetime.</p>
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void exchangeTokenReturnsTicket() {
+        var tickets = sessionTickets();
+        var service = new AuthServiceImpl(jwtDecoder, peerFailureLimiter, Runnable::run, 3, 8, Optional.of(tickets));
+        StreamObserver<ExchangeTokenResponse> exchangeObserver = mock(StreamObserver.class);
+        var responseCaptor = ArgumentCaptor.forClass(ExchangeTokenResponse.class);
+        var now = Instant.now();
+        var jwt = Jwt.withTokenValue("token")
+                .header("alg", "RS256")
+                .subject("user-1")
+                .issuedAt(now)
+                .expiresAt(now.plus(Duration.ofHours(1)))
+                .build();
+
+        runWithJwt(jwt, () -> service.exchangeToken(ExchangeTokenRequest.getDefaultInstance(), exchangeObserver));
+
+        Mockito.verify(exchangeObserver).onNext(responseCaptor.capture());
+        Mockito.verify(exchangeObserver).onCompleted();
+        var response = responseCaptor.getValue();
+        assertEquals("test-request-id", response.getRequestId());
+        var verified = tickets.verify(response.getTicket());
+        assertEquals("user-1", verified.getSubject());
+        assertEquals(verified.getExpiresAt().getEpochSecond(), response.getExpiresAt().getSeconds());
+        assertTrue(verified.getExpiresAt().isBefore(now.plus(Duration.ofMinutes(16))));
+    }
+
+    /**
+     * Tests that a session ticket cannot be exchanged for another.
+     *
+     * <p>Given: Session tickets enabled and a caller authenticated with a ticket.</p>
+     * <p>When: ExchangeToken is called.</p>
+     * <p>Then: An INVALID_ARGUMENT status exception should be returned.</p>
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void exchangeTokenRejectsTicket() {
+        var tickets = sessionTickets();
+        var service = new AuthServiceImpl(jwtDecoder, peerFailureLimiter, Runnable::run, 3, 8, Optional.of(tickets));
+        StreamObserver<ExchangeTokenResponse> exchangeObserver = mock(StreamObserver.class);
+        var errorCaptor = ArgumentCaptor.forClass(Throwable.class);
+        var now = Instant.now();
+        var idToken = Jwt.withTokenValue("token")
+                .header("alg", "RS256")
+                .subject("user-1")
+                .issuedAt(now)
+                .expiresAt(now.plus(Duration.ofHours(1)))
+                .build();
+        var ticket = tickets.verify(tickets.mint(idToken).token());
+
+        runWithJwt(ticket, () -> service.exchangeToken(ExchangeTokenRequest.getDefaultInstance(), exchangeObserver));
+
+        Mockito.verify(exchangeObserver).onError(errorCaptor.capture());
+        var statusException = (StatusRuntimeException) errorCaptor.getValue();
+        assertEquals(Status.INVALID_ARGUMENT.getCode(), statusException.getStatus().getCode());
+    }
+
+    /**
+     * Tests that ExchangeToken is unavailable when session tickets are disabled.
+     *
+     * <p>Given: Session tickets disabled and a verified ID token.</p>
+     * <p>When: ExchangeToken is called.</p>
+     * <p>Then: An UNIMPLEMENTED status exception should be returned.</p>
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void exchangeTokenUnimplementedWhenDisabled() {
+        StreamObserver<ExchangeTokenResponse> exchangeObserver = mock(StreamObserver.class);
+        var errorCaptor = ArgumentCaptor.forClass(Throwable.class);
+
+        runWithJwt(mock(Jwt.class),
+                () -> authService.exchangeToken(ExchangeTokenRequest.getDefaultInstance(), exchangeObserver));
+
+        Mockito.verify(exchangeObserver).onError(errorCaptor.capture());
+        var statusException = (StatusRuntimeException) errorCaptor.getValue();
+        assertEquals(Status.UNIMPLEMENTED.getCode(), statusException.getStatus().getCode());
+    }
+
+    private static SessionTickets sessionTickets() {
+        var secret = Base64.getEncoder().encodeToString(new byte[SessionTicketKeyRing.MIN_SECRET_LENGTH]);
+        return new SessionTickets(SessionTicketKeyRing.of("test-key:" + secret), Duration.ofMinutes(15));
+    }
+
+    private static void runWithJwt(Jwt jwt, Runnable call) {
+        Context.current()
+                .withValue(CtxConstants.JWT_CONTEXT_KEY, Optional.of(jwt))
+                .withValue(CtxConstants.REQUEST_ID_CONTEXT_KEY, "test-request-id")
+                .run(call);
+    }
 }
@@ -0,0 +1,159 @@
+package io.robothouse.grpcauth.service;
+
+import io.grpc.stub.ServerCallStreamObserver;
+import io.robothouse.grpcauth.proto.AuthPayload;
+import io.robothouse.grpcauth.proto.AuthenticateStreamRequest;
+import io.robothouse.grpcauth.proto.AuthenticateStreamResponse;
+import io.robothouse.grpcauth.proto.TokenAuthResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for AuthenticateStreamHandler.
+ */
+class AuthenticateStreamHandlerTest {
+
+    /**
+     * Mock server-side response observer with manual flow control.
+     */
+    private ServerCallStreamObserver<AuthenticateStreamResponse> responseObserver;
+
+    /**
+     * Validation tasks submitted by the handler, run on demand by each test.
+     */
+    private List<Runnable> tasks;
+
+    private AuthenticateStreamHandler handler;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        responseObserver = mock(ServerCallStreamObserver.class);
+        tasks = new ArrayList<>();
+        Executor executor = tasks::add;
+        when(responseObserver.isReady()).thenReturn(true);
+        handler = new AuthenticateStreamHandler(responseObserver, AuthenticateStreamHandlerTest::result, executor, 4);
+    }
+
+    /**
+     * Tests that the handler takes over inbound flow control.
+     *
+     * <p>Given: A newly created stream handler.</p>
+     * <p>When: The handler is constructed.</p>
+     * <p>Then: Automatic requests should be disabled and the initial window requested.</p>
+     */
+    @Test
+    void constructorRequestsInitialWindow() {
+        verify(responseObserver).disableAutoRequest();
+        verify(responseObserver).request(4);
+    }
+
+    /**
+     * Tests that responses are written in completion order with their correlation ids.
+     *
+     * <p>Given: Two token frames received on the stream.</p>
+     * <p>When: The second validation completes before the first.</p>
+     * <p>Then: The responses should be written out of order and one frame requested per response.</p>
+     */
+    @Test
+    void responsesAreWrittenAsValidationsComplete() {
+        handler.onNext(frame("a", "token-a"));
+        handler.onNext(frame("b", "token-b"));
+        var captor = ArgumentCaptor.forClass(AuthenticateStreamResponse.class);
+
+        tasks.get(1).run();
+        tasks.get(0).run();
+
+        verify(responseObserver, times(2)).onNext(captor.capture());
+        assertEquals("b", captor.getAllValues().get(0).getCorrelationId());
+        assertEquals("token-b", captor.getAllValues().get(0).getResult().getSubject());
+        assertEquals("a", captor.getAllValues().get(1).getCorrelationId());
+        verify(responseObserver, times(2)).request(1);
+    }
+
+    /**
+     * Tests that responses are held back while the transport is not ready.
+     *
+     * <p>Given: A completed validation while the transport is not ready.</p>
+     * <p>When: The transport becomes ready and the client half-closes.</p>
+     * <p>Then: The response should only be written once ready, followed by call completion.</p>
+     */
+    @Test
+    void responsesWaitForTransportReadiness() {
+        var onReady = ArgumentCaptor.forClass(Runnable.class);
+        verify(responseObserver).setOnReadyHandler(onReady.capture());
+        when(responseObserver.isReady()).thenReturn(false);
+        handler.onNext(frame("a", "token-a"));
+        tasks.get(0).run();
+        handler.onCompleted();
+
+        verify(responseObserver, never()).onNext(any());
+        verify(responseObserver, never()).onCompleted();
+
+        when(responseObserver.isReady()).thenReturn(true);
+        onReady.getValue().run();
+
+        verify(responseObserver).onNext(any());
+        verify(responseObserver).onCompleted();
+    }
+
+    /**
+     * Tests that half-closing waits for in-flight validations.
+     *
+     * <p>Given: A token frame still being validated.</p>
+     * <p>When: The client half-closes the stream.</p>
+     * <p>Then: The call should only complete after the outstanding response is written.</p>
+     */
+    @Test
+    void halfCloseCompletesAfterOutstandingFrames() {
+        handler.onNext(frame("a", "token-a"));
+        handler.onCompleted();
+
+        verify(responseObserver, never()).onCompleted();
+
+        tasks.get(0).run();
+
+        verify(responseObserver).onNext(any());
+        verify(responseObserver).onCompleted();
+    }
+
+    /**
+     * Tests that nothing is written after the client cancels.
+     *
+     * <p>Given: A token frame still being validated.</p>
+     * <p>When: The client cancels the stream before the validation completes.</p>
+     * <p>Then: No response should be written.</p>
+     */
+    @Test
+    void cancellationDropsOutstandingResponses() {
+        handler.onNext(frame("a", "token-a"));
+
+        handler.onError(new RuntimeException("cancelled"));
+        tasks.get(0).run();
+
+        verify(responseObserver, never()).onNext(any());
+        verify(responseObserver, never()).onCompleted();
+    }
+
+    private static AuthenticateStreamRequest frame(String correlationId, String token) {
+        return AuthenticateStreamRequest.newBuilder()
+                .setCorrelationId(correlationId)
+                .setToken(token)
+                .build();
+    }
+
+    private static TokenAuthResult result(String token) {
+        return TokenAuthResult.newBuilder()
+                .setPayload(AuthPayload.newBuilder().setSuccess(true))
+                .setSubject(token)
+                .build();
+    }
+}
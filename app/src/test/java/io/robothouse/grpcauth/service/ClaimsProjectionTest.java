@@ -0,0 +1,107 @@
+package io.robothouse.grpcauth.service;
+
+import com.google.protobuf.FieldMask;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ClaimsProjection.
+ */
+class ClaimsProjectionTest {
+
+    private static final Instant ISSUED_AT = Instant.parse("2025-01-01T00:00:00Z");
+
+    private static final Jwt JWT = Jwt.withTokenValue("token")
+            .header("alg", "RS256")
+            .subject("user-1")
+            .issuer("https://securetoken.google.com/project")
+            .audience(List.of("project"))
+            .issuedAt(ISSUED_AT)
+            .expiresAt(ISSUED_AT.plusSeconds(3600))
+            .claim("auth_time", ISSUED_AT.getEpochSecond())
+            .claim("email", "user@example.com")
+            .claim("email_verified", true)
+            .claim("firebase", Map.of("sign_in_provider", "password", "tenant", "tenant-1"))
+            .claim("roles", List.of("admin", "billing"))
+            .claim("limits", Map.of("requests", 100L))
+            .build();
+
+    /**
+     * Tests that every typed field can be projected.
+     *
+     * <p>Given: A token carrying all typed claims.</p>
+     * <p>When: Each typed field is selected.</p>
+     * <p>Then: Every field should be populated and no custom claims returned.</p>
+     */
+    @Test
+    void projectsTypedFields() {
+        var mask = FieldMask.newBuilder().addAllPaths(List.of("subject", "issuer", "audience", "issued_at",
+                "expires_at", "auth_time", "email", "email_verified", "sign_in_provider", "tenant")).build();
+
+        var claims = ClaimsProjection.of(mask).project(JWT);
+
+        assertEquals("user-1", claims.getSubject());
+        assertEquals("https://securetoken.google.com/project", claims.getIssuer());
+        assertEquals(List.of("project"), claims.getAudienceList());
+        assertEquals(ISSUED_AT.getEpochSecond(), claims.getIssuedAt().getSeconds());
+        assertEquals(ISSUED_AT.getEpochSecond() + 3600, claims.getExpiresAt().getSeconds());
+        assertEquals(ISSUED_AT.getEpochSecond(), claims.getAuthTime().getSeconds());
+        assertEquals("user@example.com", claims.getEmail());
+        assertTrue(claims.getEmailVerified());
+        assertEquals("password", claims.getSignInProvider());
+        assertEquals("tenant-1", claims.getTenant());
+        assertEquals(0, claims.getCustomClaimsCount());
+    }
+
+    /**
+     * Tests that all custom claims are converted to protobuf values.
+     *
+     * <p>Given: A token carrying list and object custom claims.</p>
+     * <p>When: The custom_claims path is selected.</p>
+     * <p>Then: Only non-standard claims should be returned, with their JSON structure preserved.</p>
+     */
+    @Test
+    void projectsAllCustomClaims() {
+        var claims = ClaimsProjection.of(FieldMask.newBuilder().addPaths("custom_claims").build()).project(JWT);
+
+        assertEquals(2, claims.getCustomClaimsCount());
+        var roles = claims.getCustomClaimsOrThrow("roles").getListValue().getValuesList();
+        assertEquals("admin", roles.get(0).getStringValue());
+        assertEquals("billing", roles.get(1).getStringValue());
+        var limits = claims.getCustomClaimsOrThrow("limits").getStructValue();
+        assertEquals(100.0, limits.getFieldsOrThrow("requests").getNumberValue());
+        assertEquals("", claims.getSubject());
+    }
+
+    /**
+     * Tests that an empty mask selects nothing.
+     *
+     * <p>Given: An empty claims mask.</p>
+     * <p>When: It is parsed.</p>
+     * <p>Then: The projection should be empty.</p>
+     */
+    @Test
+    void emptyMaskSelectsNothing() {
+        assertTrue(ClaimsProjection.of(FieldMask.getDefaultInstance()).isEmpty());
+    }
+
+    /**
+     * Tests that unknown paths are rejected.
+     *
+     * <p>Given: A mask naming a field that does not exist.</p>
+     * <p>When: It is parsed.</p>
+     * <p>Then: An IllegalArgumentException should be thrown.</p>
+     */
+    @Test
+    void unknownPathIsRejected() {
+        var mask = FieldMask.newBuilder().addPaths("claims.subject").build();
+
+        assertThrows(IllegalArgumentException.class, () -> ClaimsProjection.of(mask));
+    }
+}
@@ -0,0 +1,178 @@
+package io.robothouse.grpcauth.service;
+
+import io.envoyproxy.envoy.config.core.v3.HeaderValueOption;
+import io.envoyproxy.envoy.service.auth.v3.AttributeContext;
+import io.envoyproxy.envoy.service.auth.v3.CheckRequest;
+import io.envoyproxy.envoy.service.auth.v3.CheckResponse;
+import io.envoyproxy.envoy.type.v3.StatusCode;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.robothouse.grpcauth.lib.component.AuthMetrics;
+import io.robothouse.grpcauth.lib.jwt.AuthOutcome;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.JwtValidationException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the ExtAuthzService gRPC service.
+ */
+class ExtAuthzServiceTest {
+
+    /**
+     * Mock JWT decoder used to validate the bearer tokens of checked requests.
+     */
+    private JwtDecoder jwtDecoder;
+
+    /**
+     * Registry receiving the validation timers recorded by the service.
+     */
+    private SimpleMeterRegistry meterRegistry;
+
+    private ExtAuthzService service;
+
+    /**
+     * Mock observer for capturing Check responses.
+     */
+    private StreamObserver<CheckResponse> responseObserver;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        jwtDecoder = mock(JwtDecoder.class);
+        meterRegistry = new SimpleMeterRegistry();
+        service = new ExtAuthzService(jwtDecoder, new AuthMetrics(meterRegistry), "x-user-id");
+        responseObserver = mock(StreamObserver.class);
+    }
+
+    /**
+     * Tests that a request with a valid token is allowed with the user id header.
+     *
+     * <p>Given: A checked request whose authorization header carries a valid token.</p>
+     * <p>When: Check is called.</p>
+     * <p>Then: The response should be OK and overwrite x-user-id with the token's subject.</p>
+     */
+    @Test
+    void validTokenIsAllowed() {
+        when(jwtDecoder.decode("valid-token")).thenReturn(jwt("user-1"));
+
+        var response = check(Map.of("authorization", "Bearer valid-token"));
+
+        assertEquals(Status.Code.OK.value(), response.getStatus().getCode());
+        assertTrue(response.hasOkResponse());
+        var header = response.getOkResponse().getHeaders(0);
+        assertEquals("x-user-id", header.getHeader().getKey());
+        assertEquals("user-1", header.getHeader().getValue());
+        assertEquals(HeaderValueOption.HeaderAppendAction.OVERWRITE_IF_EXISTS_OR_ADD, header.getAppendAction());
+        assertEquals(1, validationCount(AuthOutcome.SUCCESS));
+    }
+
+    /**
+     * Tests that requests without a bearer token are denied.
+     *
+     * <p>Given: Checked requests with no authorization header and with a non-bearer one.</p>
+     * <p>When: Check is called.</p>
+     * <p>Then: Both should be denied with HTTP 401 without decoding anything.</p>
+     */
+    @Test
+    void missingTokenIsDenied() {
+        var missing = check(Map.of());
+        var basic = check(Map.of("authorization", "Basic dXNlcjpwYXNz"));
+
+        for (var response : List.of(missing, basic)) {
+            assertEquals(Status.Code.UNAUTHENTICATED.value(), response.getStatus().getCode());
+            assertEquals(StatusCode.Unauthorized, response.getDeniedResponse().getStatus().getCode());
+        }
+        verifyNoInteractions(jwtDecoder);
+        assertEquals(2, validationCount(AuthOutcome.MISSING_HEADER));
+    }
+
+    /**
+     * Tests that a request with an expired token is denied as expired.
+     *
+     * <p>Given: A checked request whose token has expired.</p>
+     * <p>When: Check is called.</p>
+     * <p>Then: The request should be denied with HTTP 401 and an expired body.</p>
+     */
+    @Test
+    void expiredTokenIsDenied() {
+        var error = new OAuth2Error("invalid_token", "Jwt expired at 2025-01-01T00:00:00Z", null);
+        when(jwtDecoder.decode("expired-token"))
+                .thenThrow(new JwtValidationException("Unable to validate Jwt", List.of(error)));
+
+        var response = check(Map.of("authorization", "Bearer expired-token"));
+
+        assertEquals(StatusCode.Unauthorized, response.getDeniedResponse().getStatus().getCode());
+        assertEquals("Token expired.", response.getDeniedResponse().getBody());
+        assertEquals(1, validationCount(AuthOutcome.EXPIRED));
+    }
+
+    /**
+     * Tests that a token that cannot be validated fails the Check call.
+     *
+     * <p>Given: A decoder failing because the signing keys are unavailable.</p>
+     * <p>When: Check is called.</p>
+     * <p>Then: The call should fail with UNAVAILABLE rather than deny the request.</p>
+     */
+    @Test
+    void validationErrorFailsCheck() {
+        when(jwtDecoder.decode("token")).thenThrow(new JwtException("Key source unavailable"));
+
+        service.check(request(Map.of("authorization", "Bearer token")), responseObserver);
+
+        var captor = ArgumentCaptor.forClass(Throwable.class);
+        verify(responseObserver).onError(captor.capture());
+        verify(responseObserver, never()).onNext(any());
+        assertEquals(Status.Code.UNAVAILABLE, ((StatusRuntimeException) captor.getValue()).getStatus().getCode());
+        assertEquals(1, validationCount(AuthOutcome.ERROR));
+    }
+
+    private CheckResponse check(Map<String, String> headers) {
+        service.check(request(headers), responseObserver);
+        var captor = ArgumentCaptor.forClass(CheckResponse.class);
+        verify(responseObserver, atLeastOnce()).onNext(captor.capture());
+        return captor.getValue();
+    }
+
+    private static CheckRequest request(Map<String, String> headers) {
+        return CheckRequest.newBuilder()
+                .setAttributes(AttributeContext.newBuilder()
+                        .setRequest(AttributeContext.Request.newBuilder()
+                                .setHttp(AttributeContext.HttpRequest.newBuilder()
+                                        .setMethod("GET")
+                                        .setPath("/")
+                                        .putAllHeaders(headers))))
+                .build();
+    }
+
+    private static Jwt jwt(String subject) {
+        var now = Instant.now();
+        return Jwt.withTokenValue("valid-token")
+                .header("alg", "RS256")
+                .subject(subject)
+                .issuedAt(now)
+                .expiresAt(now.plus(Duration.ofHours(1)))
+                .build();
+    }
+
+    private long validationCount(AuthOutcome outcome) {
+        return meterRegistry.get(AuthMetrics.VALIDATION_TIMER)
+                .tag("outcome", outcome.tagValue())
+                .timer()
+                .count();
+    }
+}
@@ -0,0 +1,135 @@
+package io.robothouse.grpcauth.service;
+
+import io.grpc.Context;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.StreamObserver;
+import io.robothouse.grpcauth.lib.revocation.RevocationIndex;
+import io.robothouse.grpcauth.lib.util.CtxConstants;
+import io.robothouse.grpcauth.proto.RevokeRequest;
+import io.robothouse.grpcauth.proto.RevokeResponse;
+import io.robothouse.grpcauth.proto.SubjectRevocation;
+import io.robothouse.grpcauth.proto.TokenRevocation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Unit tests for the RevocationServiceImpl gRPC service.
+ */
+class RevocationServiceImplTest {
+
+    private RevocationIndex revocationIndex;
+
+    private RevocationServiceImpl revocationService;
+
+    /**
+     * Mock observer for capturing gRPC responses.
+     */
+    private StreamObserver<RevokeResponse> responseObserver;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        revocationIndex = new RevocationIndex(Duration.ofHours(1), null, Duration.ofSeconds(30));
+        revocationService = new RevocationServiceImpl(revocationIndex, "revocation_admin", Duration.ofHours(1));
+        responseObserver = mock(StreamObserver.class);
+    }
+
+    /**
+     * Tests that a caller may revoke its own subject and token.
+     *
+     * <p>Given: A caller without the admin claim.</p>
+     * <p>When: It revokes its own subject, without a revoked-after time, and its own token id.</p>
+     * <p>Then: Both should be revoked, covering tokens issued until now, and the counts returned.</p>
+     */
+    @Test
+    void callerMayRevokeItself() {
+        var request = RevokeRequest.newBuilder()
+                .addSubjects(SubjectRevocation.newBuilder().setSubject("user-1"))
+                .addTokens(TokenRevocation.newBuilder().setTokenId("jti-1"))
+                .build();
+        var responseCaptor = ArgumentCaptor.forClass(RevokeResponse.class);
+
+        withCaller(caller("user-1", "jti-1", false), () -> revocationService.revoke(request, responseObserver));
+
+        verify(responseObserver).onNext(responseCaptor.capture());
+        verify(responseObserver).onCompleted();
+        assertEquals(1, responseCaptor.getValue().getRevokedSubjects());
+        assertEquals(1, responseCaptor.getValue().getRevokedTokens());
+        assertTrue(revocationIndex.isRevoked(caller("user-1", "other", false)));
+        assertTrue(revocationIndex.isRevoked(caller("user-2", "jti-1", false)));
+    }
+
+    /**
+     * Tests that revoking another subject requires the admin claim.
+     *
+     * <p>Given: A caller without the admin claim.</p>
+     * <p>When: It revokes another subject.</p>
+     * <p>Then: The call should fail with PERMISSION_DENIED and nothing should be revoked.</p>
+     */
+    @Test
+    void revokingAnotherSubjectRequiresAdminClaim() {
+        var request = RevokeRequest.newBuilder()
+                .addSubjects(SubjectRevocation.newBuilder().setSubject("user-2"))
+                .build();
+        var errorCaptor = ArgumentCaptor.forClass(Throwable.class);
+
+        withCaller(caller("user-1", "jti-1", false), () -> revocationService.revoke(request, responseObserver));
+
+        verify(responseObserver).onError(errorCaptor.capture());
+        assertEquals(Status.Code.PERMISSION_DENIED,
+                ((StatusRuntimeException) errorCaptor.getValue()).getStatus().getCode());
+        assertEquals(0, revocationIndex.revokedSubjects());
+    }
+
+    /**
+     * Tests that an admin may revoke another subject.
+     *
+     * <p>Given: A caller whose token carries the admin claim.</p>
+     * <p>When: It revokes another subject.</p>
+     * <p>Then: Tokens of that subject issued until now should be revoked.</p>
+     */
+    @Test
+    void adminMayRevokeAnotherSubject() {
+        var request = RevokeRequest.newBuilder()
+                .addSubjects(SubjectRevocation.newBuilder().setSubject("user-2"))
+                .build();
+
+        withCaller(caller("admin", "jti-1", true), () -> revocationService.revoke(request, responseObserver));
+
+        verify(responseObserver).onCompleted();
+        assertTrue(revocationIndex.isRevoked(caller("user-2", "jti-2", false)));
+    }
+
+    private static Jwt caller(String subject, String tokenId, boolean admin) {
+        return Jwt.withTokenValue("token")
+                .header("alg", "RS256")
+                .subject(subject)
+                .jti(tokenId)
+                .issuedAt(Instant.now().minusSeconds(60))
+                .claim("revocation_admin", admin)
+                .build();
+    }
+
+    private static void withCaller(Jwt jwt, Runnable call) {
+        var previous = Context.current()
+                .withValue(CtxConstants.JWT_CONTEXT_KEY, Optional.of(jwt))
+                .withValue(CtxConstants.REQUEST_ID_CONTEXT_KEY, "test-request-id")
+                .attach();
+        try {
+            call.run();
+        } finally {
+            Context.current().detach(previous);
+        }
+    }
+}